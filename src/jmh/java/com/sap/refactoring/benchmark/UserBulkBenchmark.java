@@ -0,0 +1,112 @@
+package com.sap.refactoring.benchmark;
+
+import com.sap.refactoring.model.BulkResult;
+import com.sap.refactoring.model.BulkUserRequest;
+import com.sap.refactoring.model.EnrollmentResult;
+import com.sap.refactoring.model.UserDto;
+import com.sap.refactoring.repository.UserRepository;
+import com.sap.refactoring.service.UserBulkService;
+import com.sap.refactoring.service.UserService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deprovisioning {@code users} users: {@link UserBulkService} set-based statements against the
+ * per-ID loop over {@link UserService} that clients would otherwise run. Every invocation starts
+ * from a freshly seeded table, so the measured time is one full pass over all users.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class UserBulkBenchmark {
+
+    private static final int SEED_BATCH_SIZE = 5000;
+
+    @Param({"1000", "10000"})
+    public int users;
+
+    private ConfigurableApplicationContext context;
+    private UserService userService;
+    private UserBulkService userBulkService;
+    private UserRepository userRepository;
+    private List<Long> ids;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start("bench-bulk-" + users);
+        userService = context.getBean(UserService.class);
+        userBulkService = context.getBean(UserBulkService.class);
+        userRepository = context.getBean(UserRepository.class);
+    }
+
+    @Setup(Level.Invocation)
+    public void seed() {
+        userRepository.deleteAllInBatch();
+        ids = new ArrayList<>(users);
+        List<UserDto> batch = new ArrayList<>(SEED_BATCH_SIZE);
+        for (int i = 0; i < users; i++) {
+            batch.add(new UserDto(null, "Bulk User " + i, "bulk.user" + i + "@example.com", List.of("ROLE_USER", "ROLE_CONTRACTOR")));
+            if (batch.size() == SEED_BATCH_SIZE || i == users - 1) {
+                for (EnrollmentResult result : userService.addUsers(batch)) {
+                    ids.add(result.getId());
+                }
+                batch = new ArrayList<>(SEED_BATCH_SIZE);
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public int revokeRolePerId() {
+        int updated = 0;
+        for (Long id : ids) {
+            userService.patchUser(id, new UserDto(null, null, null, List.of("ROLE_USER")), null);
+            updated++;
+        }
+        return updated;
+    }
+
+    @Benchmark
+    public BulkResult revokeRoleBulk() {
+        return userBulkService.updateUsers(new BulkUserRequest(ids, null, null, null, List.of("ROLE_CONTRACTOR")));
+    }
+
+    @Benchmark
+    public int deletePerId() {
+        int deleted = 0;
+        for (Long id : ids) {
+            if (userService.deleteUser(id)) {
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    @Benchmark
+    public BulkResult deleteBulk() {
+        return userBulkService.deleteUsers(new BulkUserRequest(ids, null, null, null, null));
+    }
+}
@@ -0,0 +1,79 @@
+package com.sap.refactoring.benchmark;
+
+import com.sap.refactoring.cache.OffHeapUserCache;
+import com.sap.refactoring.cache.UserCache;
+import com.sap.refactoring.model.UserDto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookups and replacements over a working set of users held either on-heap by {@link UserCache}
+ * alone, or off-heap by {@link OffHeapUserCache}. Run with {@code -prof gc} (or GC logging) to compare
+ * allocation, heap occupancy and pause times; the off-heap tier keeps the users out of the old generation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xmx2g", "-XX:MaxDirectMemorySize=2g"})
+@Threads(4)
+public class UserCacheBenchmark {
+
+    @Param({"1000000"})
+    public int users;
+
+    private UserCache onHeap;
+    private OffHeapUserCache offHeap;
+
+    @Setup
+    public void setUp() {
+        onHeap = new UserCache(users, Duration.ofHours(1));
+        offHeap = new OffHeapUserCache(DataSize.ofBytes(users * 256L), DataSize.ofBytes(256), Duration.ofHours(1));
+        for (long id = 0; id < users; id++) {
+            onHeap.put(user(id));
+            offHeap.put(user(id));
+        }
+    }
+
+    private static UserDto user(long id) {
+        return new UserDto(id, "User " + id, "user" + id + "@example.com", List.of("ROLE_USER"), 0L);
+    }
+
+    @Benchmark
+    public Optional<UserDto> onHeapFindById() {
+        return onHeap.findById(ThreadLocalRandom.current().nextLong(users));
+    }
+
+    @Benchmark
+    public Optional<UserDto> offHeapFindById() {
+        return offHeap.findById(ThreadLocalRandom.current().nextLong(users));
+    }
+
+    @Benchmark
+    public void onHeapPut() {
+        onHeap.put(user(ThreadLocalRandom.current().nextLong(users)));
+    }
+
+    @Benchmark
+    public void offHeapPut() {
+        offHeap.put(user(ThreadLocalRandom.current().nextLong(users)));
+    }
+}
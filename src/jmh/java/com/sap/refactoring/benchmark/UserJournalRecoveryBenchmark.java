@@ -0,0 +1,94 @@
+package com.sap.refactoring.benchmark;
+
+import com.sap.refactoring.entity.UserEntity;
+import com.sap.refactoring.repository.memory.InMemoryUserRepository;
+import com.sap.refactoring.repository.memory.UserJournal;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Startup recovery time of the {@code durable} in-memory store, from a snapshot or from the write-ahead log alone.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class UserJournalRecoveryBenchmark {
+
+    private static final int SEED_BATCH_SIZE = 10000;
+
+    @Param({"1000000", "10000000"})
+    public int users;
+
+    @Param({"snapshot", "log"})
+    public String source;
+
+    private Path directory;
+    private UserJournal journal;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("user-journal-benchmark");
+        UserJournal seedJournal = newJournal();
+        InMemoryUserRepository userRepository = new InMemoryUserRepository(seedJournal);
+        List<UserEntity> batch = new ArrayList<>(SEED_BATCH_SIZE);
+        for (int i = 0; i < users; i++) {
+            UserEntity user = new UserEntity();
+            user.setName("Durable User " + i);
+            user.setEmail("durable.user" + i + "@example.com");
+            user.setRoles(i % 10 == 0 ? List.of("ROLE_USER", "ROLE_ADMIN") : List.of("ROLE_USER"));
+            batch.add(user);
+            if (batch.size() == SEED_BATCH_SIZE) {
+                userRepository.saveAll(batch);
+                batch = new ArrayList<>(SEED_BATCH_SIZE);
+            }
+        }
+        if ("snapshot".equals(source)) {
+            seedJournal.snapshot();
+        }
+        seedJournal.close();
+    }
+
+    @TearDown(Level.Invocation)
+    public void closeJournal() throws IOException {
+        journal.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        FileSystemUtils.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public long recover() {
+        journal = newJournal();
+        return new InMemoryUserRepository(journal).count();
+    }
+
+    // Never snapshots on its own, so that the "log" variant replays the whole log
+    private UserJournal newJournal() {
+        return new UserJournal(directory, UserJournal.FsyncPolicy.NEVER, DataSize.ofMegabytes(64), DataSize.ofBytes(Long.MAX_VALUE));
+    }
+}
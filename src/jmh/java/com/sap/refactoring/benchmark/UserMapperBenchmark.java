@@ -0,0 +1,55 @@
+package com.sap.refactoring.benchmark;
+
+import com.sap.refactoring.entity.UserEntity;
+import com.sap.refactoring.mapper.UserMapper;
+import com.sap.refactoring.model.UserDto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of converting between {@link UserEntity} and {@link UserDto}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserMapperBenchmark {
+
+    private UserMapper userMapper;
+    private UserEntity userEntity;
+    private UserDto userDto;
+
+    @Setup
+    public void setUp() {
+        userMapper = new UserMapper();
+        userEntity = new UserEntity();
+        userEntity.setId(1L);
+        userEntity.setName("John Doe");
+        userEntity.setEmail("john.doe@example.com");
+        userEntity.setRoles(List.of("ROLE_USER", "ROLE_ADMIN"));
+        userDto = new UserDto(1L, "John Doe", "john.doe@example.com", List.of("ROLE_USER", "ROLE_ADMIN"));
+    }
+
+    @Benchmark
+    public UserDto toDto() {
+        return userMapper.toDto(userEntity);
+    }
+
+    @Benchmark
+    public UserEntity toEntity() {
+        return userMapper.toEntity(userDto);
+    }
+}
@@ -0,0 +1,81 @@
+package com.sap.refactoring.benchmark;
+
+import com.sap.refactoring.entity.UserEntity;
+import com.sap.refactoring.model.UserDto;
+import com.sap.refactoring.repository.UserRepository;
+import com.sap.refactoring.service.UserService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link UserRepository} lookups against the JPA/H2 store and the in-memory store of the
+ * {@code memory} profile, bypassing the user cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserRepositoryBenchmark {
+
+    private static final int ROWS = 100000;
+    private static final int SEED_BATCH_SIZE = 5000;
+
+    @Param({"jpa", "memory"})
+    public String store;
+
+    private ConfigurableApplicationContext context;
+    private UserRepository userRepository;
+    private final List<Long> ids = new ArrayList<>(ROWS);
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start("bench-repository-" + store,
+                "--spring.profiles.active=" + ("memory".equals(store) ? "local,memory" : "local"));
+        userRepository = context.getBean(UserRepository.class);
+        UserService userService = context.getBean(UserService.class);
+
+        List<UserDto> batch = new ArrayList<>(SEED_BATCH_SIZE);
+        for (int i = 0; i < ROWS; i++) {
+            batch.add(new UserDto(null, "Stored User " + i, "stored.user" + i + "@example.com", List.of("ROLE_USER")));
+            if (batch.size() == SEED_BATCH_SIZE) {
+                userService.addUsers(batch).forEach(result -> ids.add(result.getId()));
+                batch = new ArrayList<>(SEED_BATCH_SIZE);
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Optional<UserEntity> findById() {
+        return userRepository.findById(ids.get(ThreadLocalRandom.current().nextInt(ids.size())));
+    }
+
+    @Benchmark
+    public Optional<UserEntity> findByEmail() {
+        return userRepository.findByEmail("stored.user" + ThreadLocalRandom.current().nextInt(ROWS) + "@example.com");
+    }
+}
@@ -0,0 +1,82 @@
+package com.sap.refactoring.benchmark;
+
+import com.sap.refactoring.model.UserDto;
+import com.sap.refactoring.service.UserService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link UserService} hot paths against an in-memory H2 database holding {@code rows} users.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserServiceBenchmark {
+
+    private static final int SEED_BATCH_SIZE = 5000;
+
+    @Param({"1000", "100000", "1000000"})
+    public int rows;
+
+    private ConfigurableApplicationContext context;
+    private UserService userService;
+    private final AtomicLong enrolled = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start("bench-service-" + rows);
+        userService = context.getBean(UserService.class);
+
+        List<UserDto> batch = new ArrayList<>(SEED_BATCH_SIZE);
+        for (int i = 0; i < rows; i++) {
+            batch.add(new UserDto(null, "Bench User " + i, "bench.user" + i + "@example.com", List.of("ROLE_USER")));
+            if (batch.size() == SEED_BATCH_SIZE || i == rows - 1) {
+                userService.addUsers(batch);
+                batch = new ArrayList<>(SEED_BATCH_SIZE);
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<UserDto> getAllUsers() {
+        return userService.getAllUsers();
+    }
+
+    @Benchmark
+    public UserDto findUserByName() {
+        return userService.findUserByName("Bench User " + ThreadLocalRandom.current().nextInt(rows));
+    }
+
+    @Benchmark
+    public UserDto addUser() {
+        long n = enrolled.incrementAndGet();
+        return userService.addUser(new UserDto(null, "Added User " + n, "added.user" + n + "@example.com", List.of("ROLE_USER")));
+    }
+}
@@ -0,0 +1,89 @@
+package com.sap.refactoring.benchmark;
+
+import com.sap.refactoring.cache.UserCache;
+import com.sap.refactoring.model.CursorPage;
+import com.sap.refactoring.model.UserDto;
+import com.sap.refactoring.service.UserService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Overhead of the metrics instrumentation: the same {@link UserService} calls with the
+ * {@code @Timed} aspect, repository timers and Hibernate statistics switched on and off.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserServiceInstrumentationBenchmark {
+
+    private static final int ROWS = 10000;
+
+    @Param({"false", "true"})
+    public boolean instrumented;
+
+    private ConfigurableApplicationContext context;
+    private UserService userService;
+    private UserCache userCache;
+    private List<Long> ids;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start("bench-instrumentation-" + instrumented,
+                "--management.observations.annotations.enabled=" + instrumented,
+                "--management.metrics.data.repository.autotime.enabled=" + instrumented,
+                "--spring.jpa.properties.hibernate.generate_statistics=" + instrumented);
+        userService = context.getBean(UserService.class);
+        userCache = context.getBean(UserCache.class);
+
+        List<UserDto> users = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            users.add(new UserDto(null, "Metered User " + i, "metered.user" + i + "@example.com", List.of("ROLE_USER")));
+        }
+        ids = new ArrayList<>(ROWS);
+        userService.addUsers(users).forEach(result -> ids.add(result.getId()));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    /**
+     * Cache hit: the cheapest call, where the instrumentation cost weighs the most.
+     */
+    @Benchmark
+    public UserDto findUserByIdCached() {
+        return userService.findUserById(ids.get(ThreadLocalRandom.current().nextInt(ROWS)));
+    }
+
+    @Benchmark
+    public UserDto findUserByIdUncached() {
+        userCache.clear();
+        return userService.findUserById(ids.get(ThreadLocalRandom.current().nextInt(ROWS)));
+    }
+
+    @Benchmark
+    public CursorPage<UserDto> getUsersPage() {
+        return userService.getUsersPage(null, 20);
+    }
+}
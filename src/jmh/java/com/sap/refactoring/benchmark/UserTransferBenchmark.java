@@ -0,0 +1,117 @@
+package com.sap.refactoring.benchmark;
+
+import com.sap.refactoring.model.ImportSummary;
+import com.sap.refactoring.model.UserDto;
+import com.sap.refactoring.service.UserService;
+import com.sap.refactoring.transfer.UserRecordWriter;
+import com.sap.refactoring.transfer.UserTransferService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Binary export and import throughput, in users per second, against an in-memory H2 database.
+ * Run with a small heap (e.g. {@code -Xmx256m}) to check that both directions stay memory-flat.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class UserTransferBenchmark {
+
+    private static final int ROWS = 100000;
+    private static final int SEED_BATCH_SIZE = 5000;
+
+    private ConfigurableApplicationContext context;
+    private UserTransferService userTransferService;
+    private byte[] importStream;
+    private int imports;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start("bench-transfer");
+        userTransferService = context.getBean(UserTransferService.class);
+        UserService userService = context.getBean(UserService.class);
+
+        List<UserDto> batch = new ArrayList<>(SEED_BATCH_SIZE);
+        for (int i = 0; i < ROWS; i++) {
+            batch.add(new UserDto(null, "Exported User " + i, "exported.user" + i + "@example.com", List.of("ROLE_USER")));
+            if (batch.size() == SEED_BATCH_SIZE) {
+                userService.addUsers(batch);
+                batch = new ArrayList<>(SEED_BATCH_SIZE);
+            }
+        }
+    }
+
+    // Every import needs unused emails
+    @Setup(Level.Invocation)
+    public void prepareImport() throws IOException {
+        int run = imports++;
+        ByteArrayOutputStream out = new ByteArrayOutputStream(ROWS * 64);
+        UserRecordWriter writer = new UserRecordWriter(Channels.newChannel(out));
+        for (int i = 0; i < ROWS; i++) {
+            writer.write(new UserDto(null, "Imported User " + i, "imported" + run + ".user" + i + "@example.com", List.of("ROLE_USER")));
+        }
+        writer.finish();
+        importStream = out.toByteArray();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public long exportUsers() throws IOException {
+        return userTransferService.exportUsers(new DiscardingChannel());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public ImportSummary importUsers() throws IOException {
+        return userTransferService.importUsers(Channels.newChannel(new ByteArrayInputStream(importStream)));
+    }
+
+    private static final class DiscardingChannel implements WritableByteChannel {
+
+        @Override
+        public int write(ByteBuffer source) {
+            int written = source.remaining();
+            source.position(source.limit());
+            return written;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,354 @@
+package com.sap.refactoring.loadtest;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Closed-loop HTTP load test: a fixed number of clients each send a request, wait for the
+ * response and send the next one, for a fixed duration.
+ * <p>
+ * Run it against an instance started with and without the {@code virtual} or {@code perf} profile
+ * and compare the reported throughput and latency percentiles. Options are read from system properties,
+ * which the {@code loadTest} Gradle task forwards from {@code -PloadTest.*} project properties:
+ * <ul>
+ *     <li>{@code loadTest.baseUrl} - the application URL, default {@code http://localhost:8080}</li>
+ *     <li>{@code loadTest.workload} - {@code get} to send the request path only, or {@code mixed} for
+ *     a mix of reads and writes over the seeded users, default {@code get}</li>
+ *     <li>{@code loadTest.path} - the request path of the {@code get} workload, default {@code /users/page?limit=20}</li>
+ *     <li>{@code loadTest.clients} - the number of concurrent clients, default 1000</li>
+ *     <li>{@code loadTest.warmupSeconds} - the warmup excluded from the results, default 5</li>
+ *     <li>{@code loadTest.durationSeconds} - the measured duration, default 30</li>
+ *     <li>{@code loadTest.seedUsers} - the number of users enrolled before the run, default 1000</li>
+ * </ul>
+ * The {@code mixed} workload sends, per {@value #MIX_TOTAL} requests, {@value #MIX_GET_USER}
+ * {@code GET /users/{id}}, {@value #MIX_GET_PAGE} {@code GET /users/page}, {@value #MIX_PATCH}
+ * {@code PATCH /users/edit/{id}} toggling a role and {@value #MIX_ENROLL_BATCH} {@code POST /users/enroll/batch}
+ * of {@value #ENROLL_BATCH_SIZE} new users, and reports the latency of each endpoint as well.
+ * <p>
+ * While the test runs, the live thread count, heap usage and process CPU of the application are
+ * sampled every second from its Actuator metrics endpoint, to compare the resource use of the
+ * execution modes (platform threads, virtual threads, reactive) at the same concurrency.
+ */
+public final class UserLoadTest {
+
+    private static final int SEED_BATCH_SIZE = 1000;
+
+    private static final int ENROLL_BATCH_SIZE = 20;
+
+    private static final int MIX_GET_USER = 60;
+    private static final int MIX_GET_PAGE = 15;
+    private static final int MIX_PATCH = 15;
+    private static final int MIX_ENROLL_BATCH = 10;
+    private static final int MIX_TOTAL = MIX_GET_USER + MIX_GET_PAGE + MIX_PATCH + MIX_ENROLL_BATCH;
+
+    private static final Pattern METRIC_VALUE = Pattern.compile("\"value\"\\s*:\\s*([0-9.eE+-]+)");
+
+    private static final Pattern ENROLLED_ID = Pattern.compile("\"id\"\\s*:\\s*(\\d+)");
+
+    // Unique per run, so that repeated runs against the same instance do not collide on emails
+    private static final long RUN_ID = System.currentTimeMillis();
+
+    private static final AtomicLong ENROLLED = new AtomicLong();
+
+    private UserLoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        String baseUrl = System.getProperty("loadTest.baseUrl", "http://localhost:8080");
+        String workloadName = System.getProperty("loadTest.workload", "get");
+        String path = System.getProperty("loadTest.path", "/users/page?limit=20");
+        int clients = Integer.getInteger("loadTest.clients", 1000);
+        int warmupSeconds = Integer.getInteger("loadTest.warmupSeconds", 5);
+        int durationSeconds = Integer.getInteger("loadTest.durationSeconds", 30);
+        int seedUsers = Integer.getInteger("loadTest.seedUsers", 1000);
+
+        HttpClient httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        long[] userIds = seed(httpClient, baseUrl, seedUsers);
+
+        Workload workload = switch (workloadName) {
+            case "get" -> {
+                Call call = new Call("GET " + path, request(baseUrl + path).GET().build());
+                yield random -> call;
+            }
+            case "mixed" -> {
+                if (userIds.length == 0) {
+                    throw new IllegalArgumentException("The mixed workload needs seeded users.");
+                }
+                yield random -> mixedCall(baseUrl, userIds, random);
+            }
+            default -> throw new IllegalArgumentException("Unknown workload " + workloadName + ", expected get or mixed.");
+        };
+        long measureFrom = System.nanoTime() + TimeUnit.SECONDS.toNanos(warmupSeconds);
+        long measureUntil = measureFrom + TimeUnit.SECONDS.toNanos(durationSeconds);
+
+        ExecutorService executor = Executors.newFixedThreadPool(clients);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<ClientResult>> futures = new ArrayList<>(clients);
+        for (int i = 0; i < clients; i++) {
+            futures.add(executor.submit(() -> runClient(httpClient, workload, start, measureFrom, measureUntil)));
+        }
+        System.out.printf("Running %d clients with the %s workload against %s for %ds after %ds warmup%n",
+                clients, workloadName, baseUrl, durationSeconds, warmupSeconds);
+        ResourceSampler sampler = new ResourceSampler(httpClient, baseUrl);
+        Thread samplerThread = new Thread(() -> sampler.run(measureFrom, measureUntil), "resource-sampler");
+        samplerThread.setDaemon(true);
+        samplerThread.start();
+        start.countDown();
+
+        Map<String, Latencies> byEndpoint = new TreeMap<>();
+        Latencies all = new Latencies();
+        long errors = 0;
+        for (Future<ClientResult> future : futures) {
+            ClientResult result = future.get();
+            result.latencies().forEach((endpoint, latencies) -> {
+                byEndpoint.computeIfAbsent(endpoint, key -> new Latencies()).addAll(latencies);
+                all.addAll(latencies);
+            });
+            errors += result.errors();
+        }
+        executor.shutdown();
+
+        samplerThread.join();
+        report(all.sorted(), errors, durationSeconds);
+        if (byEndpoint.size() > 1) {
+            byEndpoint.forEach((endpoint, latencies) -> reportEndpoint(endpoint, latencies.sorted(), durationSeconds));
+        }
+        sampler.report();
+    }
+
+    /**
+     * The next request of a client.
+     */
+    private interface Workload {
+        Call next(ThreadLocalRandom random);
+    }
+
+    private record Call(String endpoint, HttpRequest request) {
+    }
+
+    private record ClientResult(Map<String, Latencies> latencies, long errors) {
+    }
+
+    /**
+     * Growable array of latencies in nanoseconds.
+     */
+    private static final class Latencies {
+
+        private long[] values = new long[1024];
+        private int count;
+
+        void add(long latency) {
+            if (count == values.length) {
+                values = Arrays.copyOf(values, count * 2);
+            }
+            values[count++] = latency;
+        }
+
+        void addAll(Latencies other) {
+            for (int i = 0; i < other.count; i++) {
+                add(other.values[i]);
+            }
+        }
+
+        long[] sorted() {
+            long[] sorted = Arrays.copyOf(values, count);
+            Arrays.sort(sorted);
+            return sorted;
+        }
+    }
+
+    private static ClientResult runClient(HttpClient httpClient, Workload workload, CountDownLatch start,
+                                          long measureFrom, long measureUntil) throws InterruptedException {
+        start.await();
+        Map<String, Latencies> latencies = new HashMap<>();
+        long errors = 0;
+        long now = System.nanoTime();
+        while (now < measureUntil) {
+            Call call = workload.next(ThreadLocalRandom.current());
+            int status;
+            try {
+                status = httpClient.send(call.request(), HttpResponse.BodyHandlers.discarding()).statusCode();
+            } catch (Exception e) {
+                status = -1;
+            }
+            long end = System.nanoTime();
+            if (now >= measureFrom) {
+                if (status < 200 || status >= 300) {
+                    errors++;
+                } else {
+                    latencies.computeIfAbsent(call.endpoint(), endpoint -> new Latencies()).add(end - now);
+                }
+            }
+            now = end;
+        }
+        return new ClientResult(latencies, errors);
+    }
+
+    private static Call mixedCall(String baseUrl, long[] userIds, ThreadLocalRandom random) {
+        long userId = userIds[random.nextInt(userIds.length)];
+        int pick = random.nextInt(MIX_TOTAL);
+        if (pick < MIX_GET_USER) {
+            return new Call("GET /users/{id}", request(baseUrl + "/users/" + userId).GET().build());
+        }
+        pick -= MIX_GET_USER;
+        if (pick < MIX_GET_PAGE) {
+            return new Call("GET /users/page", request(baseUrl + "/users/page?limit=20").GET().build());
+        }
+        pick -= MIX_GET_PAGE;
+        if (pick < MIX_PATCH) {
+            String roles = random.nextBoolean() ? "[\"USER\"]" : "[\"USER\",\"AUDITOR\"]";
+            return new Call("PATCH /users/edit/{id}", request(baseUrl + "/users/edit/" + userId)
+                    .header("Content-Type", "application/json")
+                    .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"roles\":" + roles + "}"))
+                    .build());
+        }
+        long from = ENROLLED.getAndAdd(ENROLL_BATCH_SIZE);
+        return new Call("POST /users/enroll/batch", request(baseUrl + "/users/enroll/batch")
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(users("Enrolled User ", "enrolled.user", from, from + ENROLL_BATCH_SIZE)))
+                .build());
+    }
+
+    private static HttpRequest.Builder request(String url) {
+        return HttpRequest.newBuilder(URI.create(url)).timeout(Duration.ofSeconds(60));
+    }
+
+    // JSON array of users with the USER role, numbered from (inclusive) to (exclusive)
+    private static String users(String namePrefix, String emailPrefix, long from, long to) {
+        StringBuilder body = new StringBuilder("[");
+        for (long i = from; i < to; i++) {
+            if (i > from) {
+                body.append(',');
+            }
+            body.append("{\"name\":\"").append(namePrefix).append(i)
+                    .append("\",\"email\":\"").append(emailPrefix).append(RUN_ID).append('.').append(i).append("@example.com\"")
+                    .append(",\"roles\":[\"USER\"]}");
+        }
+        return body.append(']').toString();
+    }
+
+    // Enrolls the users and returns their IDs
+    private static long[] seed(HttpClient httpClient, String baseUrl, int users) throws Exception {
+        long[] ids = new long[users];
+        int seeded = 0;
+        for (int from = 0; from < users; from += SEED_BATCH_SIZE) {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/users/enroll/batch"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(users("Load User ", "load.user", from, Math.min(from + SEED_BATCH_SIZE, users))))
+                    .build();
+            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 201) {
+                throw new IllegalStateException("Seeding users failed with status " + response.statusCode());
+            }
+            Matcher matcher = ENROLLED_ID.matcher(response.body());
+            while (matcher.find()) {
+                ids[seeded++] = Long.parseLong(matcher.group(1));
+            }
+        }
+        return Arrays.copyOf(ids, seeded);
+    }
+
+    private static void report(long[] latencies, long errors, int durationSeconds) {
+        System.out.printf("Requests:   %d ok, %d failed%n", latencies.length, errors);
+        System.out.printf("Throughput: %.1f req/s%n", (double) latencies.length / durationSeconds);
+        if (latencies.length > 0) {
+            System.out.printf("Latency:    p50 %.1f ms, p99 %.1f ms, max %.1f ms%n",
+                    percentile(latencies, 0.50), percentile(latencies, 0.99), latencies[latencies.length - 1] / 1e6);
+        }
+    }
+
+    private static void reportEndpoint(String endpoint, long[] latencies, int durationSeconds) {
+        System.out.printf("  %-26s %8.1f req/s, p50 %.1f ms, p99 %.1f ms%n", endpoint,
+                (double) latencies.length / durationSeconds, percentile(latencies, 0.50), percentile(latencies, 0.99));
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(index, 0)] / 1e6;
+    }
+
+    /**
+     * Samples resource metrics of the application under test through {@code /actuator/metrics}.
+     */
+    private static final class ResourceSampler {
+
+        private final HttpClient httpClient;
+        private final String baseUrl;
+
+        private int samples;
+        private double peakThreads;
+        private double peakHeapBytes;
+        private double cpuSum;
+
+        ResourceSampler(HttpClient httpClient, String baseUrl) {
+            this.httpClient = httpClient;
+            this.baseUrl = baseUrl;
+        }
+
+        void run(long measureFrom, long measureUntil) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(Math.max(0, measureFrom - System.nanoTime()));
+                while (System.nanoTime() < measureUntil) {
+                    double threads = metric("jvm.threads.live");
+                    double heap = metric("jvm.memory.used?tag=area:heap");
+                    double cpu = metric("process.cpu.usage");
+                    if (threads < 0 || heap < 0 || cpu < 0) {
+                        return;
+                    }
+                    samples++;
+                    peakThreads = Math.max(peakThreads, threads);
+                    peakHeapBytes = Math.max(peakHeapBytes, heap);
+                    cpuSum += cpu;
+                    TimeUnit.SECONDS.sleep(1);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        // The metric value, or -1 if the endpoint is not available
+        private double metric(String name) throws InterruptedException {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/actuator/metrics/" + name))
+                    .timeout(Duration.ofSeconds(10))
+                    .build();
+            try {
+                HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+                Matcher matcher = METRIC_VALUE.matcher(response.body());
+                return response.statusCode() == 200 && matcher.find() ? Double.parseDouble(matcher.group(1)) : -1;
+            } catch (IOException e) {
+                return -1;
+            }
+        }
+
+        void report() {
+            if (samples == 0) {
+                System.out.println("Resources:  not sampled, /actuator/metrics is not reachable");
+                return;
+            }
+            System.out.printf("Resources:  peak %.0f live threads, peak heap %.1f MB, avg process CPU %.1f%%%n",
+                    peakThreads, peakHeapBytes / (1024 * 1024), 100 * cpuSum / samples);
+        }
+    }
+}
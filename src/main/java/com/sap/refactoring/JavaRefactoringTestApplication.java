@@ -3,9 +3,11 @@ package com.sap.refactoring;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @EntityScan(basePackages = "com.sap.refactoring.entity")
 @SpringBootApplication
+@EnableScheduling
 public class JavaRefactoringTestApplication
 {
 
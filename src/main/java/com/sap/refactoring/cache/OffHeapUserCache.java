@@ -0,0 +1,348 @@
+package com.sap.refactoring.cache;
+
+import com.sap.refactoring.model.UserDto;
+import com.sap.refactoring.repository.memory.LongIntHashMap;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Second tier of the {@link UserCache}, holding users serialized in direct memory, so that a working
+ * set much larger than the on-heap tier costs the garbage collector next to nothing.
+ * <p>
+ * Users are stored one per fixed-size slot of direct {@link ByteBuffer} slabs, which are allocated as
+ * slots are first used. Users that do not fit in a slot are not cached. The only heap structures are
+ * primitive arrays: per-slot metadata, and a {@link LongIntHashMap} from ID to slot.
+ * <p>
+ * When full, the slot to reuse is chosen by the clock algorithm: a hand sweeps the slots, sparing once
+ * those read since its last pass. Readers share a read lock and only set the reference bit of their
+ * slot; writers take the write lock. A capacity of zero disables the tier.
+ */
+@Component
+public class OffHeapUserCache implements MeterBinder {
+
+    private static final int MAX_SLAB_SIZE = 64 * 1024 * 1024;
+    private static final int HEADER_SIZE = 4;
+    private static final long NO_VERSION = -1;
+
+    private final int slotSize;
+    private final int slots;
+    private final int slotsPerSlab;
+    private final long ttlNanos;
+    private final ByteBuffer[] slabs;
+
+    private final long[] slotIds;
+    private final long[] slotExpiries;
+    private final byte[] slotReferenced;
+    private final int[] freeSlots;
+    private int freeCount;
+    private int hand;
+
+    private final LongIntHashMap idIndex;
+    private final StampedLock lock = new StampedLock();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public OffHeapUserCache(@Value("${user.cache.off-heap.capacity:0}") DataSize capacity,
+                            @Value("${user.cache.off-heap.slot-size:256B}") DataSize slotSize,
+                            @Value("${user.cache.ttl:10m}") Duration ttl) {
+        if (slotSize.toBytes() <= HEADER_SIZE || slotSize.toBytes() > MAX_SLAB_SIZE) {
+            throw new IllegalArgumentException("Off-heap slot size must be between " + (HEADER_SIZE + 1)
+                    + " and " + MAX_SLAB_SIZE + " bytes.");
+        }
+        this.slotSize = (int) slotSize.toBytes();
+        long slotCount = capacity.toBytes() / this.slotSize;
+        if (slotCount > Integer.MAX_VALUE / 4) {
+            throw new IllegalArgumentException("Off-heap capacity " + capacity + " has too many slots.");
+        }
+        this.slots = (int) slotCount;
+        this.slotsPerSlab = MAX_SLAB_SIZE / this.slotSize;
+        this.ttlNanos = ttl.toNanos();
+        this.slabs = new ByteBuffer[(slots + slotsPerSlab - 1) / slotsPerSlab];
+        this.slotIds = new long[slots];
+        this.slotExpiries = new long[slots];
+        this.slotReferenced = new byte[slots];
+        this.freeSlots = new int[slots];
+        // Hand out the lowest slots first, so that slabs are only allocated as they fill up
+        for (int i = 0; i < slots; i++) {
+            freeSlots[i] = slots - 1 - i;
+        }
+        this.freeCount = slots;
+        this.idIndex = new LongIntHashMap(slots);
+    }
+
+    /**
+     * @return whether the tier has any capacity.
+     */
+    public boolean isEnabled() {
+        return slots > 0;
+    }
+
+    /**
+     * Look up a user by ID.
+     *
+     * @param id the user ID.
+     * @return a copy of the cached user, or empty on a miss.
+     */
+    public Optional<UserDto> findById(long id) {
+        if (!isEnabled()) {
+            return Optional.empty();
+        }
+        return count(read(id));
+    }
+
+    /**
+     * Cache a user, replacing any cached version of it.
+     *
+     * @param user the user loaded from the database.
+     */
+    public void put(UserDto user) {
+        if (!isEnabled() || user == null || user.getId() == null) {
+            return;
+        }
+        byte[] record = encode(user);
+        long stamp = lock.writeLock();
+        try {
+            int cached = idIndex.get(user.getId());
+            if (cached != LongIntHashMap.MISSING) {
+                release(cached);
+            }
+            if (record.length > slotSize) {
+                return;
+            }
+            int slot = allocate();
+            slab(slot).put(offset(slot), record);
+            slotIds[slot] = user.getId();
+            slotExpiries[slot] = System.nanoTime() + ttlNanos;
+            slotReferenced[slot] = 0;
+            idIndex.put(user.getId(), slot);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Drop a user.
+     *
+     * @param id the user ID.
+     */
+    public void invalidate(long id) {
+        if (!isEnabled()) {
+            return;
+        }
+        long stamp = lock.writeLock();
+        try {
+            int slot = idIndex.get(id);
+            if (slot != LongIntHashMap.MISSING) {
+                release(slot);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Drop every cached user. The slabs are kept for reuse.
+     */
+    public void clear() {
+        long stamp = lock.writeLock();
+        try {
+            for (int slot = 0; slot < slots; slot++) {
+                if (slotExpiries[slot] != 0) {
+                    release(slot);
+                }
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * @return the number of cached users.
+     */
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return slots - freeCount;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * @return the bytes of direct memory allocated so far.
+     */
+    public long allocatedBytes() {
+        long stamp = lock.readLock();
+        try {
+            long allocated = 0;
+            for (ByteBuffer slab : slabs) {
+                allocated += slab == null ? 0 : slab.capacity();
+            }
+            return allocated;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        if (!isEnabled()) {
+            return;
+        }
+        FunctionCounter.builder("cache.gets", hits, LongAdder::sum)
+                .tag("cache", "users.offHeap").tag("result", "hit").register(registry);
+        FunctionCounter.builder("cache.gets", misses, LongAdder::sum)
+                .tag("cache", "users.offHeap").tag("result", "miss").register(registry);
+        FunctionCounter.builder("cache.evictions", evictions, LongAdder::sum)
+                .tag("cache", "users.offHeap").register(registry);
+        Gauge.builder("cache.size", this, OffHeapUserCache::size)
+                .tag("cache", "users.offHeap").register(registry);
+        Gauge.builder("user.cache.off-heap.bytes", this, OffHeapUserCache::allocatedBytes)
+                .baseUnit("bytes").register(registry);
+    }
+
+    private Optional<UserDto> count(UserDto user) {
+        (user == null ? misses : hits).increment();
+        return Optional.ofNullable(user);
+    }
+
+    private UserDto read(long id) {
+        byte[] record;
+        long stamp = lock.readLock();
+        try {
+            int slot = idIndex.get(id);
+            if (slot == LongIntHashMap.MISSING || slotExpiries[slot] - System.nanoTime() < 0) {
+                return null;
+            }
+            // Indexed slots were written under the write lock, which allocated their slab
+            ByteBuffer slab = slabs[slot / slotsPerSlab];
+            int offset = offset(slot);
+            record = new byte[HEADER_SIZE + slab.getInt(offset)];
+            slab.get(offset, record);
+            // Racy but harmless: readers only ever set the bit, the clock hand clears it under the write lock
+            slotReferenced[slot] = 1;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        return decode(record);
+    }
+
+    private int allocate() {
+        if (freeCount > 0) {
+            return freeSlots[--freeCount];
+        }
+        long now = System.nanoTime();
+        while (true) {
+            int slot = hand;
+            hand = hand + 1 == slots ? 0 : hand + 1;
+            if (slotReferenced[slot] != 0 && slotExpiries[slot] - now >= 0) {
+                slotReferenced[slot] = 0;
+                continue;
+            }
+            release(slot);
+            evictions.increment();
+            return freeSlots[--freeCount];
+        }
+    }
+
+    private void release(int slot) {
+        // Each cached ID holds exactly one slot, so the ID of an occupied slot always maps to it
+        idIndex.remove(slotIds[slot]);
+        slotExpiries[slot] = 0;
+        slotReferenced[slot] = 0;
+        freeSlots[freeCount++] = slot;
+    }
+
+    private ByteBuffer slab(int slot) {
+        int index = slot / slotsPerSlab;
+        if (slabs[index] == null) {
+            int slabSlots = Math.min(slotsPerSlab, slots - index * slotsPerSlab);
+            slabs[index] = ByteBuffer.allocateDirect(slabSlots * slotSize);
+        }
+        return slabs[index];
+    }
+
+    private int offset(int slot) {
+        return slot % slotsPerSlab * slotSize;
+    }
+
+    // Layout: record length, ID, version (-1 if none), name, email, role count and roles, strings as length (-1 if null) and UTF-8 bytes
+    private static byte[] encode(UserDto user) {
+        byte[] name = utf8(user.getName());
+        byte[] email = utf8(user.getEmail());
+        List<String> roles = user.getRoles() == null ? List.of() : user.getRoles();
+        byte[][] encodedRoles = new byte[roles.size()][];
+        int length = 8 + 8 + 4 + size(name) + 4 + size(email) + 4;
+        for (int i = 0; i < encodedRoles.length; i++) {
+            encodedRoles[i] = utf8(roles.get(i));
+            length += 4 + size(encodedRoles[i]);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + length);
+        buffer.putInt(length);
+        buffer.putLong(user.getId());
+        buffer.putLong(user.getVersion() == null ? NO_VERSION : user.getVersion());
+        putString(buffer, name);
+        putString(buffer, email);
+        buffer.putInt(encodedRoles.length);
+        for (byte[] role : encodedRoles) {
+            putString(buffer, role);
+        }
+        return buffer.array();
+    }
+
+    private static UserDto decode(byte[] record) {
+        ByteBuffer buffer = ByteBuffer.wrap(record, HEADER_SIZE, record.length - HEADER_SIZE);
+        long id = buffer.getLong();
+        long version = buffer.getLong();
+        String name = getString(buffer);
+        String email = getString(buffer);
+        int roleCount = buffer.getInt();
+        List<String> roles = new ArrayList<>(roleCount);
+        for (int i = 0; i < roleCount; i++) {
+            roles.add(getString(buffer));
+        }
+        return new UserDto(id, name, email, roles, version == NO_VERSION ? null : version);
+    }
+
+    private static byte[] utf8(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int size(byte[] value) {
+        return value == null ? 0 : value.length;
+    }
+
+    private static void putString(ByteBuffer buffer, byte[] value) {
+        if (value == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(value.length).put(value);
+        }
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        String value = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+}
@@ -0,0 +1,267 @@
+package com.sap.refactoring.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.sap.refactoring.model.UserDto;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Predicate;
+
+/**
+ * Bounded in-process read-through cache of users, keyed by ID and name.
+ * <p>
+ * User DTOs are stored by ID only; the name cache maps to the ID and every hit is checked
+ * against the cached user, so a stale name can never resolve to a user who has since been
+ * renamed. Names are not unique, so a name is only mapped by
+ * {@link #putForName(UserDto, long)}, with the namesake a name lookup resolved it to.
+ * Eviction is size- and TTL-based (W-TinyLFU).
+ * Hit, miss and eviction statistics are exported as {@code cache.*} metrics.
+ * <p>
+ * Users missed by ID fall back to the {@link OffHeapUserCache}, a larger tier outside the
+ * heap that every put and invalidation also goes to; its hits are promoted to the heap again.
+ * <p>
+ * A reader that loaded a user before a write committed may only put it after the write has evicted
+ * the entry. Readers therefore take a {@link #stamp()} before they load, and {@link #put(UserDto, long)}
+ * drops the user if its ID was invalidated since. Invalidations are recorded per stripe of IDs, so an
+ * unrelated invalidation sharing the stripe only costs a skipped put.
+ */
+@Component
+public class UserCache implements MeterBinder {
+
+    private static final int INVALIDATION_STRIPES = 4096;
+
+    private final Cache<Long, UserDto> usersById;
+    private final Cache<String, Long> idsByName;
+    private final OffHeapUserCache offHeap;
+    private final AtomicLong invalidations = new AtomicLong();
+    // Stamp of the last invalidation of any ID hashing to the stripe
+    private final AtomicLongArray invalidatedAt = new AtomicLongArray(INVALIDATION_STRIPES);
+
+    public UserCache(long maximumSize, Duration ttl) {
+        this(maximumSize, ttl, new OffHeapUserCache(DataSize.ofBytes(0), DataSize.ofBytes(256), ttl));
+    }
+
+    @Autowired
+    public UserCache(@Value("${user.cache.maximum-size:10000}") long maximumSize,
+                     @Value("${user.cache.ttl:10m}") Duration ttl,
+                     OffHeapUserCache offHeap) {
+        this.usersById = newCache(maximumSize, ttl);
+        this.idsByName = newCache(maximumSize, ttl);
+        this.offHeap = offHeap;
+    }
+
+    private static <K, V> Cache<K, V> newCache(long maximumSize, Duration ttl) {
+        return Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Look up a cached user by ID.
+     *
+     * @param id the user ID.
+     * @return the cached user, or empty on a miss.
+     */
+    public Optional<UserDto> findById(Long id) {
+        UserDto user = usersById.getIfPresent(id);
+        if (user != null) {
+            return Optional.of(copy(user));
+        }
+        if (id == null) {
+            return Optional.empty();
+        }
+        long stamp = stamp();
+        return promote(offHeap.findById(id), stamp);
+    }
+
+    /**
+     * Look up a cached user by name.
+     *
+     * @param name the user name.
+     * @return the cached user, or empty on a miss.
+     */
+    public Optional<UserDto> findByName(String name) {
+        return resolve(idsByName, name, user -> name.equals(user.getName()));
+    }
+
+    private Optional<UserDto> resolve(Cache<String, Long> index, String key, Predicate<UserDto> stillMatches) {
+        if (key == null) {
+            return Optional.empty();
+        }
+        Long id = index.getIfPresent(key);
+        if (id == null) {
+            return Optional.empty();
+        }
+        UserDto user = usersById.getIfPresent(id);
+        if (user == null || !stillMatches.test(user)) {
+            index.invalidate(key);
+            return Optional.empty();
+        }
+        return Optional.of(copy(user));
+    }
+
+    /**
+     * Take the stamp to pass to {@link #put(UserDto, long)}, before loading the user to cache.
+     *
+     * @return the number of invalidations so far.
+     */
+    public long stamp() {
+        return invalidations.get();
+    }
+
+    /**
+     * Cache a user under its ID, regardless of concurrent invalidations.
+     *
+     * @param user the user, known to be current.
+     */
+    public void put(UserDto user) {
+        put(user, Long.MAX_VALUE);
+    }
+
+    /**
+     * Cache a user under its ID, unless the user was invalidated after the stamp was
+     * taken, in which case the loaded user may predate a committed write.
+     *
+     * @param user  the user loaded from the database.
+     * @param stamp the {@link #stamp()} taken before the user was loaded.
+     */
+    public void put(UserDto user, long stamp) {
+        put(user, stamp, false);
+    }
+
+    /**
+     * Cache a user like {@link #put(UserDto, long)}, and as the user its name resolves to.
+     *
+     * @param user  the user a lookup by its name returned from the database.
+     * @param stamp the {@link #stamp()} taken before the user was loaded.
+     */
+    public void putForName(UserDto user, long stamp) {
+        put(user, stamp, true);
+    }
+
+    private void put(UserDto user, long stamp, boolean forName) {
+        if (user == null || user.getId() == null || invalidatedSince(user.getId(), stamp)) {
+            return;
+        }
+        putOnHeap(copy(user), forName);
+        offHeap.put(user);
+        dropIfInvalidatedSince(user.getId(), stamp);
+    }
+
+    private Optional<UserDto> promote(Optional<UserDto> user, long stamp) {
+        user.ifPresent(found -> {
+            if (!invalidatedSince(found.getId(), stamp)) {
+                putOnHeap(copy(found), false);
+                dropIfInvalidatedSince(found.getId(), stamp);
+            }
+        });
+        return user;
+    }
+
+    // An invalidation racing with the put either sees the entry and evicts it, or is seen here
+    private void dropIfInvalidatedSince(Long id, long stamp) {
+        if (invalidatedSince(id, stamp)) {
+            evict(id, null);
+        }
+    }
+
+    private boolean invalidatedSince(Long id, long stamp) {
+        return invalidatedAt.get(stripe(id)) > stamp;
+    }
+
+    private static int stripe(Long id) {
+        return (Long.hashCode(id) * 0x9E3779B9 >>> 20) & (INVALIDATION_STRIPES - 1);
+    }
+
+    private void putOnHeap(UserDto cached, boolean forName) {
+        usersById.put(cached.getId(), cached);
+        if (forName && cached.getName() != null) {
+            idsByName.put(cached.getName(), cached.getId());
+        }
+    }
+
+    /**
+     * Invalidate a user and the given name, now and again once the surrounding transaction
+     * commits. Readers that loaded the user before the commit cannot leave a stale entry behind,
+     * as long as they cache it with {@link #put(UserDto, long)}.
+     *
+     * @param id   the user ID, may be null.
+     * @param name a name key to drop, may be null.
+     */
+    public void invalidate(Long id, String name) {
+        evict(id, name);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict(id, name);
+                }
+            });
+        }
+    }
+
+    private void evict(Long id, String name) {
+        if (id != null) {
+            // Recorded before the entry goes, so that a put racing with the eviction sees it afterwards
+            long stamp = invalidations.incrementAndGet();
+            invalidatedAt.accumulateAndGet(stripe(id), stamp, Math::max);
+            UserDto cached = usersById.getIfPresent(id);
+            usersById.invalidate(id);
+            offHeap.invalidate(id);
+            if (cached != null) {
+                evict(null, cached.getName());
+            }
+        }
+        if (name != null) {
+            idsByName.invalidate(name);
+        }
+    }
+
+    /**
+     * Drop every cached entry.
+     */
+    public void clear() {
+        usersById.invalidateAll();
+        idsByName.invalidateAll();
+        offHeap.clear();
+    }
+
+    /**
+     * Hit, miss and eviction counters of the underlying caches.
+     *
+     * @return the statistics keyed by cache name.
+     */
+    public Map<String, CacheStats> stats() {
+        return Map.of(
+                "usersById", usersById.stats(),
+                "idsByName", idsByName.stats());
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, usersById, "users.byId");
+        CaffeineCacheMetrics.monitor(registry, idsByName, "users.byName");
+    }
+
+    private static UserDto copy(UserDto user) {
+        List<String> roles = user.getRoles() == null ? List.of() : List.copyOf(user.getRoles());
+        return new UserDto(user.getId(), user.getName(), user.getEmail(), roles, user.getVersion());
+    }
+}
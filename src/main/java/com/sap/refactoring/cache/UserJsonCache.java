@@ -0,0 +1,301 @@
+package com.sap.refactoring.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.sap.refactoring.event.UserChangedEvent;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Cache of user responses already encoded as UTF-8 JSON, written to the response as they are,
+ * so that hot reads skip Jackson altogether.
+ * <p>
+ * Single users are cached by ID together with their version, and only served to a reader that
+ * looked up that same version. Listings (pages, searches, whole collections) are cached under the
+ * {@link UserTableVersion} change count they were read at, so no listing is served once any user
+ * has changed. Both caches are invalidated by the {@link UserChangedEvent}s of the service layer.
+ * Listings also expire after {@code user.json-cache.listing-ttl}, which bounds how long one is
+ * served should a change made by another instance go unnoticed by the table version.
+ * <p>
+ * Each cache is bounded by the number of bytes it holds, and can keep its bytes off-heap in direct
+ * buffers. Hit and miss counts are exported as {@code cache.*} metrics, and the bytes held as
+ * {@code user.json.cache.bytes}.
+ */
+@Component
+public class UserJsonCache implements MeterBinder {
+
+    // Rough size of the key, value and map entry objects around the bytes of an entry
+    private static final int ENTRY_OVERHEAD = 96;
+    private static final int COPY_CHUNK_SIZE = 8192;
+
+    private final Cache<Long, UserJson> users;
+    private final Cache<ListingKey, ByteBuffer> listings;
+    private final int maxListingSize;
+    private final boolean offHeap;
+    private final Set<ListingKey> recordings = ConcurrentHashMap.newKeySet();
+    // Recordings in flight are held on the heap, at most listings-size worth of them at a time
+    private final Semaphore recordingBudget;
+
+    public UserJsonCache(@Value("${user.json-cache.users-size:16MB}") DataSize usersSize,
+                         @Value("${user.json-cache.listings-size:64MB}") DataSize listingsSize,
+                         @Value("${user.json-cache.max-listing-size:8MB}") DataSize maxListingSize,
+                         @Value("${user.json-cache.listing-ttl:1m}") Duration listingTtl,
+                         @Value("${user.json-cache.off-heap:false}") boolean offHeap) {
+        this.users = Caffeine.newBuilder()
+                .maximumWeight(usersSize.toBytes())
+                .weigher((Long id, UserJson user) -> ENTRY_OVERHEAD + user.json().capacity())
+                .recordStats()
+                .build();
+        this.listings = Caffeine.newBuilder()
+                .maximumWeight(listingsSize.toBytes())
+                .weigher((ListingKey key, ByteBuffer json) -> ENTRY_OVERHEAD + 2 * key.request().length() + json.capacity())
+                .expireAfterWrite(listingTtl)
+                .recordStats()
+                .build();
+        this.maxListingSize = (int) Math.min(maxListingSize.toBytes(), Integer.MAX_VALUE - 8);
+        this.offHeap = offHeap;
+        this.recordingBudget = new Semaphore((int) Math.max(1, Math.min(Integer.MAX_VALUE,
+                listingsSize.toBytes() / Math.max(1, this.maxListingSize))));
+    }
+
+    /**
+     * Look up the encoded JSON of a user.
+     *
+     * @param id      the user ID.
+     * @param version the version of the user the caller read.
+     * @return the JSON, or null on a miss or if only another version is cached.
+     */
+    public ByteBuffer findUser(long id, long version) {
+        UserJson user = users.getIfPresent(id);
+        return user == null || user.version() != version ? null : user.json().duplicate();
+    }
+
+    /**
+     * Cache the encoded JSON of a user.
+     *
+     * @param id      the user ID.
+     * @param version the version of the user the JSON was encoded from.
+     * @param json    the JSON.
+     * @return the cached JSON, to write out.
+     */
+    public ByteBuffer putUser(long id, long version, byte[] json) {
+        UserJson user = new UserJson(version, store(json));
+        users.put(id, user);
+        return user.json().duplicate();
+    }
+
+    /**
+     * Look up an encoded listing.
+     *
+     * @param changes the change count of the user table the caller read before anything else.
+     * @param request what the listing lists, such as the path and parameters of the request.
+     * @return the JSON, or null on a miss.
+     */
+    public ByteBuffer findListing(long changes, String request) {
+        ByteBuffer json = listings.getIfPresent(new ListingKey(changes, request));
+        return json == null ? null : json.duplicate();
+    }
+
+    /**
+     * Cache an encoded listing, unless it is larger than {@code user.json-cache.max-listing-size}.
+     *
+     * @param changes the change count of the user table read before the listing was.
+     * @param request what the listing lists.
+     * @param json    the JSON, or null if it was too large to record.
+     */
+    public void putListing(long changes, String request, byte[] json) {
+        if (json != null && json.length <= maxListingSize) {
+            listings.put(new ListingKey(changes, request), store(json));
+        }
+    }
+
+    /**
+     * Wrap a response stream so that what is written to it is held back and recorded for
+     * {@link #putListing}, up to the maximum listing size. Only one request records a listing at a
+     * time, and only as many as fit into {@code user.json-cache.listings-size} record at all; the
+     * others stream theirs directly.
+     *
+     * @param changes the change count of the user table read before the listing is.
+     * @param request what the listing lists.
+     * @param target  the stream to write to once the recording exceeds the maximum listing size.
+     * @return the recording stream, to {@link RecordingOutputStream#release() release} once done with,
+     * or null if the listing is recorded by another request or too many are being recorded.
+     */
+    public RecordingOutputStream recording(long changes, String request, OutputStream target) {
+        ListingKey key = new ListingKey(changes, request);
+        if (!recordingBudget.tryAcquire()) {
+            return null;
+        }
+        if (!recordings.add(key)) {
+            recordingBudget.release();
+            return null;
+        }
+        return new RecordingOutputStream(target, maxListingSize, () -> {
+            recordings.remove(key);
+            recordingBudget.release();
+        });
+    }
+
+    /**
+     * Drop the cached JSON of a changed user, and every listing.
+     *
+     * @param event the change.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        users.invalidate(event.userId());
+        listings.invalidateAll();
+    }
+
+    /**
+     * Drop every cached entry.
+     */
+    public void clear() {
+        users.invalidateAll();
+        listings.invalidateAll();
+    }
+
+    /**
+     * @return the number of bytes held, as weighed for the size bound.
+     */
+    public long weightedSize() {
+        users.cleanUp();
+        listings.cleanUp();
+        return bytesHeld(users) + bytesHeld(listings);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, users, "users.json");
+        CaffeineCacheMetrics.monitor(registry, listings, "users.json.listings");
+        Gauge.builder("user.json.cache.bytes", users, UserJsonCache::bytesHeld)
+                .tag("cache", "users.json")
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder("user.json.cache.bytes", listings, UserJsonCache::bytesHeld)
+                .tag("cache", "users.json.listings")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    /**
+     * Write encoded JSON out, straight from its array, or in chunks when it is off-heap.
+     *
+     * @param json the JSON; its position is not moved.
+     * @param out  the stream to write to.
+     * @throws IOException if writing fails.
+     */
+    public static void writeTo(ByteBuffer json, OutputStream out) throws IOException {
+        if (json.hasArray()) {
+            out.write(json.array(), json.arrayOffset() + json.position(), json.remaining());
+            return;
+        }
+        ByteBuffer source = json.duplicate();
+        byte[] chunk = new byte[Math.min(COPY_CHUNK_SIZE, source.remaining())];
+        while (source.hasRemaining()) {
+            int length = Math.min(chunk.length, source.remaining());
+            source.get(chunk, 0, length);
+            out.write(chunk, 0, length);
+        }
+    }
+
+    private ByteBuffer store(byte[] json) {
+        return offHeap ? ByteBuffer.allocateDirect(json.length).put(json).flip() : ByteBuffer.wrap(json);
+    }
+
+    private static long bytesHeld(Cache<?, ?> cache) {
+        return cache.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0L)).orElse(0L);
+    }
+
+    private record UserJson(long version, ByteBuffer json) {
+    }
+
+    private record ListingKey(long changes, String request) {
+    }
+
+    /**
+     * Stream holding back everything written to it, so that a response can still be tagged once its
+     * body is complete. Once the held bytes would exceed its limit, it writes them to its target and
+     * passes everything after them through.
+     */
+    public static final class RecordingOutputStream extends FilterOutputStream {
+
+        private final int limit;
+        private final Runnable onRelease;
+        private ByteArrayOutputStream copy = new ByteArrayOutputStream();
+        private boolean released;
+
+        private RecordingOutputStream(OutputStream target, int limit, Runnable onRelease) {
+            super(target);
+            this.limit = limit;
+            this.onRelease = onRelease;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (copy != null) {
+                if (copy.size() + len <= limit) {
+                    copy.write(b, off, len);
+                    return;
+                }
+                copy.writeTo(out);
+                copy = null;
+                release();
+            }
+            out.write(b, off, len);
+        }
+
+        // Flushing the target would commit the response before it is tagged
+        @Override
+        public void flush() throws IOException {
+            if (copy == null) {
+                out.flush();
+            }
+        }
+
+        // The held bytes are written by the caller, to the still open target
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+
+        /**
+         * @return everything written and held back, not yet written to the target, or null if it
+         * exceeded the limit and went to the target.
+         */
+        public byte[] recorded() {
+            return copy == null ? null : copy.toByteArray();
+        }
+
+        /**
+         * Let another request record the listing, once the held bytes are written out or given up.
+         */
+        public void release() {
+            if (!released) {
+                released = true;
+                onRelease.run();
+            }
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.sap.refactoring.cache;
+
+import com.sap.refactoring.event.UserChangedEvent;
+import com.sap.refactoring.repository.UserRepository;
+import com.sap.refactoring.repository.projection.UserTableFingerprint;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Change counter of the user table as a whole, the validator of collection ETags.
+ * <p>
+ * The counter is advanced after every committed user change of this instance, and when the
+ * {@link UserTableFingerprint} of the database differs from the one seen by the previous check, so
+ * that changes committed by other instances sharing the database also invalidate the tags and cached
+ * listings of this one, within the check interval. The counter starts from zero with every process,
+ * so ETags also carry the start time of the process: a tag issued before a restart, or by another
+ * instance, never matches. Callers read the tag before they read the users, so a response can be
+ * newer than its tag, which only costs an extra full response on the next poll, but never older.
+ */
+@Component
+public class UserTableVersion implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserTableVersion.class);
+
+    private final String epoch = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+    private final AtomicLong changes = new AtomicLong();
+
+    private final UserRepository userRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final AtomicBoolean checkScheduled = new AtomicBoolean();
+
+    private final ExecutorService checkExecutor;
+
+    private UserTableFingerprint fingerprint;
+
+    public UserTableVersion(UserRepository userRepository, TransactionTemplate transactionTemplate) {
+        this.userRepository = userRepository;
+        this.transactionTemplate = transactionTemplate;
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("user-table-check-");
+        threadFactory.setDaemon(true);
+        this.checkExecutor = Executors.newSingleThreadExecutor(threadFactory);
+    }
+
+    /**
+     * Advance the counter once a user change is committed.
+     *
+     * @param event the change.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        changes.incrementAndGet();
+    }
+
+    /**
+     * Start a check on the check thread, unless one is still running. The aggregate scans the table,
+     * so it runs on a thread of its own rather than on the scheduler.
+     */
+    @Scheduled(fixedDelayString = "${user.table-version.check-interval-ms:5000}",
+            initialDelayString = "${user.table-version.check-interval-ms:5000}")
+    public void scheduleCheck() {
+        if (!checkScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        checkExecutor.execute(() -> {
+            try {
+                check();
+            } catch (RuntimeException e) {
+                logger.warn("Check of the user table for changes of other instances failed", e);
+            } finally {
+                checkScheduled.set(false);
+            }
+        });
+    }
+
+    /**
+     * Advance the counter if the table changed since the previous check, on the calling thread. The
+     * transaction is not read-only, so that the check reads the primary rather than a lagging replica.
+     *
+     * @return whether the counter was advanced; the first check only records the fingerprint.
+     */
+    public synchronized boolean check() {
+        UserTableFingerprint current = transactionTemplate.execute(status -> userRepository.findTableFingerprint());
+        UserTableFingerprint previous = fingerprint;
+        fingerprint = current;
+        if (previous == null || Objects.equals(previous, current)) {
+            return false;
+        }
+        changes.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Stop the check thread.
+     */
+    @Override
+    public void destroy() {
+        checkExecutor.shutdownNow();
+    }
+
+    /**
+     * @return the number of user changes seen since startup.
+     */
+    public long changes() {
+        return changes.get();
+    }
+
+    /**
+     * Weak ETag of the current state of the table, for one representation of a collection.
+     *
+     * @param variant the representation, such as the media type, so that representations of the same
+     *                resource never share a tag.
+     * @return the ETag, quoted.
+     */
+    public String etag(String variant) {
+        return etag(changes.get(), variant);
+    }
+
+    /**
+     * Weak ETag of the table at a change count read earlier, for callers that also key other state by it.
+     *
+     * @param changes the change count, from {@link #changes()}.
+     * @param variant the representation.
+     * @return the ETag, quoted.
+     */
+    public String etag(long changes, String variant) {
+        return "W/\"" + epoch + "-" + changes + "-" + variant + "\"";
+    }
+}
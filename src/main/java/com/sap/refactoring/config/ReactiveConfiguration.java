@@ -0,0 +1,31 @@
+package com.sap.refactoring.config;
+
+import io.r2dbc.spi.ConnectionFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.transaction.reactive.TransactionalOperator;
+
+/**
+ * R2DBC wiring of the reactive stack, active with the {@code reactive} profile.
+ * <p>
+ * The R2DBC transaction manager is deliberately not exposed as a bean: a second
+ * {@code TransactionManager} would make the {@code @Transactional} JPA service ambiguous.
+ * Reactive transactions are demarcated through the {@link TransactionalOperator} instead.
+ */
+@Configuration(proxyBeanMethods = false)
+@Profile("reactive")
+public class ReactiveConfiguration {
+
+    @Bean
+    public DatabaseClient reactiveDatabaseClient(ConnectionFactory connectionFactory) {
+        return DatabaseClient.create(connectionFactory);
+    }
+
+    @Bean
+    public TransactionalOperator reactiveTransactionalOperator(ConnectionFactory connectionFactory) {
+        return TransactionalOperator.create(new R2dbcTransactionManager(connectionFactory));
+    }
+}
@@ -0,0 +1,71 @@
+package com.sap.refactoring.config;
+
+import com.sap.refactoring.routing.ReplicaRouting;
+import com.sap.refactoring.routing.ReplicaRoutingDataSource;
+import com.sap.refactoring.routing.ReplicaSelection;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * JDBC wiring of read replicas, active once {@code user.datasource.replica-urls} lists at least one.
+ * <p>
+ * The primary pool is built from {@code spring.datasource.*} as Spring Boot would build it, and each
+ * replica gets a read-only pool with the same credentials and {@code spring.datasource.hikari.*}
+ * settings. The {@link ReplicaRoutingDataSource} over them is the data source of JPA and every other
+ * JDBC user. The reactive stack keeps its single R2DBC connection factory.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty("user.datasource.replica-urls")
+@EnableConfigurationProperties(DataSourceProperties.class)
+public class ReplicaRoutingConfiguration {
+
+    private static final String HIKARI_PREFIX = "spring.datasource.hikari";
+
+    @Bean
+    @ConfigurationProperties(HIKARI_PREFIX)
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    @Bean
+    @Primary
+    public ReplicaRoutingDataSource dataSource(HikariDataSource primaryDataSource,
+                                               DataSourceProperties properties,
+                                               Environment environment,
+                                               ReplicaRouting replicaRouting,
+                                               ObjectProvider<MeterRegistry> meterRegistry,
+                                               @Value("${user.datasource.replica-urls}") List<String> replicaUrls,
+                                               @Value("${user.datasource.replica-selection:ROUND_ROBIN}") ReplicaSelection selection) {
+        List<HikariDataSource> replicas = new ArrayList<>(replicaUrls.size());
+        for (String url : replicaUrls) {
+            HikariDataSource replica = properties.initializeDataSourceBuilder()
+                    .type(HikariDataSource.class)
+                    .url(url.trim())
+                    .build();
+            Binder.get(environment).bind(HIKARI_PREFIX, Bindable.ofInstance(replica));
+            replica.setPoolName("replica-" + replicas.size());
+            replica.setReadOnly(true);
+            meterRegistry.ifAvailable(registry -> replica.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry)));
+            replicas.add(replica);
+        }
+        return new ReplicaRoutingDataSource(primaryDataSource, replicas, selection, replicaRouting);
+    }
+}
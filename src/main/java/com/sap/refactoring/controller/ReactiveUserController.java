@@ -0,0 +1,90 @@
+package com.sap.refactoring.controller;
+
+import com.sap.refactoring.exceptions.UserNotFoundException;
+import com.sap.refactoring.model.UserDto;
+import com.sap.refactoring.service.ReactiveUserService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking REST Controller for managing user-related operations, served by WebFlux
+ * in place of {@link UserController} when the {@code reactive} profile is active.
+ */
+@RestController
+@Profile("reactive")
+@RequiredArgsConstructor
+@RequestMapping("/users")
+public class ReactiveUserController {
+
+	private final ReactiveUserService userService;
+
+	/**
+	 * Creates a new user.
+	 *
+	 * @param userDto the user data to create.
+	 * @return the created user.
+	 */
+	@PostMapping("/enroll")
+	public Mono<ResponseEntity<UserDto>> addUser(@RequestBody UserDto userDto) {
+		return userService.addUser(userDto)
+				.map(user -> new ResponseEntity<>(user, HttpStatus.CREATED));
+	}
+
+	/**
+	 * Updates an existing user.
+	 *
+	 * @param id      the ID of the user to update.
+	 * @param userDto the updated user data.
+	 * @return the updated user.
+	 */
+	@PutMapping("edit/{id}")
+	public Mono<ResponseEntity<UserDto>> updateUser(@PathVariable Long id, @RequestBody UserDto userDto) {
+		return userService.updateUser(id, userDto).map(ResponseEntity::ok);
+	}
+
+	/**
+	 * Deletes a user.
+	 *
+	 * @param id the ID of the user to delete.
+	 * @return a 204 status if deleted, or a UserNotFoundException if the user is not found.
+	 */
+	@DeleteMapping("/{id}")
+	public Mono<ResponseEntity<Void>> deleteUser(@PathVariable Long id) {
+		return userService.deleteUser(id)
+				.flatMap(deleted -> deleted
+						? Mono.just(ResponseEntity.noContent().<Void>build())
+						: Mono.error(new UserNotFoundException("User with ID " + id + " not found.")));
+	}
+
+	/**
+	 * Retrieves all users, streamed from the database with backpressure: rows are read only as
+	 * fast as the client consumes them. Sends a JSON array by default, or newline-delimited JSON
+	 * when the client accepts {@code application/x-ndjson}.
+	 *
+	 * @return the users.
+	 */
+	@GetMapping(produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+	public Flux<UserDto> getAllUsers() {
+		return userService.getAllUsers();
+	}
+
+	/**
+	 * Finds a user by name.
+	 *
+	 * @param name the name of the user to find.
+	 * @return the user if found.
+	 * @throws UserNotFoundException if the user is not found.
+	 */
+	@GetMapping("/search")
+	public Mono<ResponseEntity<UserDto>> findUser(@RequestParam("name") String name) {
+		return userService.findUserByName(name)
+				.switchIfEmpty(Mono.error(() -> new UserNotFoundException("User with name '" + name + "' not found.")))
+				.map(ResponseEntity::ok);
+	}
+}
@@ -1,25 +1,90 @@
 package com.sap.refactoring.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.sap.refactoring.cache.UserJsonCache;
+import com.sap.refactoring.cache.UserTableVersion;
 import com.sap.refactoring.exceptions.UserNotFoundException;
+import com.sap.refactoring.exceptions.UserVersionConflictException;
+import com.sap.refactoring.model.BulkResult;
+import com.sap.refactoring.model.BulkUserRequest;
+import com.sap.refactoring.model.EnrollmentResult;
+import com.sap.refactoring.model.ImportSummary;
+import com.sap.refactoring.model.IngestionReport;
+import com.sap.refactoring.model.RoleStats;
+import com.sap.refactoring.model.SearchPage;
+import com.sap.refactoring.model.UpdateTicket;
 import com.sap.refactoring.model.UserDto;
+import com.sap.refactoring.routing.ReplicaRouting;
+import com.sap.refactoring.search.RoleMatch;
+import com.sap.refactoring.search.SearchMode;
+import com.sap.refactoring.search.UserRoleIndex;
+import com.sap.refactoring.search.UserSearchIndex;
+import com.sap.refactoring.service.UserBulkService;
+import com.sap.refactoring.service.UserIngestionService;
 import com.sap.refactoring.service.UserService;
+import com.sap.refactoring.transfer.UserRecordWriter;
+import com.sap.refactoring.transfer.UserTransferService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * REST Controller for managing user-related operations.
+ * Replaced by {@link ReactiveUserController} when the {@code reactive} profile is active.
  */
 @RestController
+@Profile("!reactive")
 @RequiredArgsConstructor
 @RequestMapping("/users")
 public class UserController {
 
+	private static final int ROLE_FILTER_BATCH_SIZE = 500;
+
 	private final UserService userService;
 
+	private final UserSearchIndex userSearchIndex;
+
+	private final UserRoleIndex userRoleIndex;
+
+	private final UserTransferService userTransferService;
+
+	private final UserIngestionService userIngestionService;
+
+	private final UserBulkService userBulkService;
+
+	private final UserTableVersion userTableVersion;
+
+	private final UserJsonCache userJsonCache;
+
+	private final ReplicaRouting replicaRouting;
+
+	private final ObjectMapper objectMapper;
+
 	/**
 	 * Creates a new user.
 	 *
@@ -32,16 +97,104 @@ public class UserController {
 	}
 
 	/**
-	 * Updates an existing user.
+	 * Creates a batch of users.
+	 *
+	 * @param userDtos the users to create.
+	 * @return one result per submitted user; 201 if all were created, 207 otherwise.
+	 */
+	@PostMapping("/enroll/batch")
+	public ResponseEntity<List<EnrollmentResult>> addUsers(@RequestBody List<UserDto> userDtos) {
+		List<EnrollmentResult> results = userService.addUsers(userDtos);
+		boolean allCreated = results.stream().allMatch(result -> result.getStatus() == EnrollmentResult.Status.CREATED);
+		return ResponseEntity.status(allCreated ? HttpStatus.CREATED : HttpStatus.MULTI_STATUS).body(results);
+	}
+
+	/**
+	 * Updates an existing user. With a {@code Prefer: respond-async} header, the update is only
+	 * validated and queued for write-behind, and a 202 status with a ticket is returned instead.
+	 * With an {@code If-Match} header naming the ETag of the user, the update is applied at once,
+	 * and only if the user has not changed since.
 	 *
 	 * @param id      the ID of the user to update.
 	 * @param userDto the updated user data.
-	 * @return the updated user.
+	 * @param prefer  the Prefer header of the request, if any.
+	 * @param ifMatch the If-Match header of the request, if any.
+	 * @return the updated user with its new ETag, or the ticket of the queued update.
+	 * @throws UserVersionConflictException if the user no longer matches the If-Match header.
 	 */
 	@PutMapping("edit/{id}")
-	public ResponseEntity<UserDto> updateUser(@PathVariable Long id, @RequestBody UserDto userDto) {
-		UserDto updatedUser = userService.updateUser(id, userDto);
-		return ResponseEntity.ok(updatedUser);
+	public ResponseEntity<?> updateUser(@PathVariable Long id, @RequestBody UserDto userDto,
+										@RequestHeader(value = "Prefer", required = false) String prefer,
+										@RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+		if (ifMatch == null && prefer != null && prefer.contains("respond-async")) {
+			UpdateTicket ticket = userService.submitUpdate(id, userDto);
+			return ResponseEntity.accepted()
+					.location(URI.create("/users/updates/" + ticket.getTicket()))
+					.body(ticket);
+		}
+		UserDto updatedUser = userService.updateUser(id, userDto, ifMatch == null ? null : parseIfMatch(ifMatch));
+		return ResponseEntity.ok().eTag(userEtag(updatedUser)).body(updatedUser);
+	}
+
+	/**
+	 * Partially updates an existing user: only the fields present in the body are changed, and an
+	 * update that changes nothing writes nothing. The update is applied at once; with an
+	 * {@code If-Match} header, only if the user has not changed since.
+	 *
+	 * @param id      the ID of the user to update.
+	 * @param patch   the fields to change; roles, if present, replace the current roles.
+	 * @param ifMatch the If-Match header of the request, if any.
+	 * @return the updated user with its ETag.
+	 * @throws UserNotFoundException        if the user is not found.
+	 * @throws UserVersionConflictException if the user no longer matches the If-Match header.
+	 */
+	@PatchMapping("edit/{id}")
+	public ResponseEntity<UserDto> patchUser(@PathVariable Long id, @RequestBody UserDto patch,
+											 @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+		UserDto updatedUser = userService.patchUser(id, patch, ifMatch == null ? null : parseIfMatch(ifMatch));
+		return ResponseEntity.ok().eTag(userEtag(updatedUser)).body(updatedUser);
+	}
+
+	/**
+	 * Retrieves the status of an update queued for write-behind.
+	 *
+	 * @param ticket the ticket returned when the update was accepted.
+	 * @return the status of the update, or a 404 status if the ticket is unknown or expired.
+	 */
+	@GetMapping("/updates/{ticket}")
+	public ResponseEntity<UpdateTicket> getUpdateStatus(@PathVariable String ticket) {
+		return ResponseEntity.of(userService.findUpdateTicket(ticket));
+	}
+
+	/**
+	 * Retrieves a user by ID, including updates that are queued but not yet written. The response
+	 * carries the version of the user as ETag, and is a 304 status without body when it matches
+	 * the If-None-Match header. The JSON of each version is encoded once and then served from the
+	 * {@link UserJsonCache}.
+	 *
+	 * @param id       the ID of the user.
+	 * @param request  the request, for its conditional headers.
+	 * @param response the response to write the user into.
+	 * @throws UserNotFoundException if the user is not found.
+	 * @throws IOException           if writing to the response fails.
+	 */
+	@GetMapping("/{id:\\d+}")
+	public void getUser(@PathVariable Long id, HttpServletRequest request, HttpServletResponse response) throws IOException {
+		UserDto user = userService.findUserById(id);
+		ByteBuffer json;
+		if (user.getVersion() == null) {
+			// Updates still queued for write-behind have no version yet, so they get neither ETag nor cache entry
+			json = ByteBuffer.wrap(objectMapper.writeValueAsBytes(user));
+		} else {
+			if (new ServletWebRequest(request, response).checkNotModified(userEtag(user))) {
+				return;
+			}
+			json = userJsonCache.findUser(user.getId(), user.getVersion());
+			if (json == null) {
+				json = userJsonCache.putUser(user.getId(), user.getVersion(), objectMapper.writeValueAsBytes(user));
+			}
+		}
+		writeJson(json, response);
 	}
 
 	/**
@@ -49,36 +202,348 @@ public class UserController {
 	 *
 	 * @param id the ID of the user to delete.
 	 * @return a 204 status if deleted.
+	 * @throws UserNotFoundException if the user with the given ID does not exist.
 	 */
 	@DeleteMapping("/{id}")
 	public ResponseEntity<Void> deleteUser(@PathVariable Long id) {
-		userService.deleteUser(id);
+		if (!userService.deleteUser(id)) {
+			throw new UserNotFoundException("User with ID " + id + " not found.");
+		}
 		return ResponseEntity.noContent().build();
 	}
 
 	/**
-	 * Retrieves all users.
+	 * Deletes many users at once, selected by ID or by role, with set-based statements in chunked
+	 * transactions.
 	 *
-	 * @return a list of all users.
+	 * @param request the IDs, or the roles and how they match, of the users to delete.
+	 * @return the number of users selected and deleted.
+	 */
+	@PostMapping("/bulk/delete")
+	public ResponseEntity<BulkResult> deleteUsers(@RequestBody BulkUserRequest request) {
+		return ResponseEntity.ok(userBulkService.deleteUsers(request));
+	}
+
+	/**
+	 * Grants and revokes roles of many users at once, selected by ID or by role, with set-based
+	 * statements in chunked transactions. Users that would be left without any role are not changed.
+	 *
+	 * @param request the users to update, and the roles to add and remove.
+	 * @return the number of users selected, changed and rejected, and of roles added and removed.
+	 */
+	@PostMapping("/bulk/update")
+	public ResponseEntity<BulkResult> updateUsers(@RequestBody BulkUserRequest request) {
+		return ResponseEntity.ok(userBulkService.updateUsers(request));
+	}
+
+	/**
+	 * Retrieves all users, streamed from a database cursor straight to the response.
+	 * Sends a chunked JSON array by default, or newline-delimited JSON when the client
+	 * accepts {@code application/x-ndjson}. Answers a matching If-None-Match header with a 304
+	 * status, without reading any user, as long as no user changed.
+	 *
+	 * @param accept   the Accept header of the request.
+	 * @param request  the request, for its conditional headers.
+	 * @param response the response to stream the users into.
+	 * @throws IOException if writing to the response fails.
 	 */
 	@GetMapping
-	public ResponseEntity<List<UserDto>> getAllUsers() {
-		List<UserDto> users = userService.getAllUsers();
-		return ResponseEntity.ok(users);
+	public void getAllUsers(@RequestHeader(value = HttpHeaders.ACCEPT, defaultValue = MediaType.APPLICATION_JSON_VALUE) String accept,
+							HttpServletRequest request, HttpServletResponse response) throws IOException {
+		writeUsers("all", accept, request, response, userService::streamAllUsers);
+	}
+
+	/**
+	 * Retrieves the users having any or all of the given roles, in ID order, looked up in the role index.
+	 * Streamed like {@link #getAllUsers}.
+	 *
+	 * @param roles    the roles to filter on; repeat the parameter for several roles.
+	 * @param match    ANY for users having at least one of the roles, ALL for users having every role.
+	 * @param accept   the Accept header of the request.
+	 * @param request  the request, for its conditional headers.
+	 * @param response the response to stream the users into.
+	 * @throws IOException if writing to the response fails.
+	 */
+	@GetMapping(params = "role")
+	public void getUsersByRoles(@RequestParam("role") List<String> roles,
+								@RequestParam(value = "match", defaultValue = "ANY") RoleMatch match,
+								@RequestHeader(value = HttpHeaders.ACCEPT, defaultValue = MediaType.APPLICATION_JSON_VALUE) String accept,
+								HttpServletRequest request, HttpServletResponse response) throws IOException {
+		writeUsers("roles " + match + " " + roles, accept, request, response, consumer -> {
+			long[] userIds = userRoleIndex.findUserIds(roles, match);
+			for (int from = 0; from < userIds.length; from += ROLE_FILTER_BATCH_SIZE) {
+				int to = Math.min(from + ROLE_FILTER_BATCH_SIZE, userIds.length);
+				userService.findUsersByIds(Arrays.stream(userIds, from, to).boxed().toList()).forEach(consumer);
+			}
+		});
+	}
+
+	/**
+	 * Counts users per role, from the role index.
+	 *
+	 * @return the number of users and the number of users having each role.
+	 */
+	@GetMapping("/roles/stats")
+	public ResponseEntity<RoleStats> getRoleStats() {
+		return ResponseEntity.ok(userRoleIndex.stats());
+	}
+
+	// Streams a collection of users, or replays it from the JSON cache while no user has changed.
+	// A listing is only tagged once its whole body is held back: a failure half way must not be confirmed by a 304
+	private void writeUsers(String listing, String accept, HttpServletRequest request, HttpServletResponse response,
+							Consumer<Consumer<UserDto>> users) throws IOException {
+		boolean ndjson = MediaType.parseMediaTypes(accept).stream()
+				.anyMatch(MediaType.APPLICATION_NDJSON::equalsTypeAndSubtype);
+		String variant = ndjson ? "ndjson" : "json";
+		long changes = userTableVersion.changes();
+		// Read from a replica that may lag behind, a listing is neither tagged nor cached with the current version
+		boolean cacheable = !replicaRouting.mayBeStale();
+		response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+		ServletWebRequest webRequest = new ServletWebRequest(request, response);
+		String etag = userTableVersion.etag(changes, variant);
+		String contentType = ndjson ? MediaType.APPLICATION_NDJSON_VALUE : MediaType.APPLICATION_JSON_VALUE;
+		String key = listing + " " + variant;
+		ByteBuffer cached = cacheable ? userJsonCache.findListing(changes, key) : null;
+		if (cached != null) {
+			if (webRequest.checkNotModified(etag)) {
+				return;
+			}
+			response.setStatus(HttpStatus.OK.value());
+			response.setContentType(contentType);
+			response.setContentLength(cached.remaining());
+			UserJsonCache.writeTo(cached, response.getOutputStream());
+			return;
+		}
+
+		response.setStatus(HttpStatus.OK.value());
+		response.setContentType(contentType);
+		OutputStream target = response.getOutputStream();
+		// Held back on the heap, a listing is recorded by one request at a time; concurrent ones stream it untagged
+		UserJsonCache.RecordingOutputStream recording = cacheable ? userJsonCache.recording(changes, key, target) : null;
+		if (recording == null) {
+			streamUsers(target, ndjson, users);
+			return;
+		}
+		try {
+			streamUsers(recording, ndjson, users);
+			byte[] json = recording.recorded();
+			if (json == null) {
+				return;
+			}
+			userJsonCache.putListing(changes, key, json);
+			if (webRequest.checkNotModified(etag)) {
+				return;
+			}
+			response.setContentLength(json.length);
+			target.write(json);
+		} finally {
+			recording.release();
+		}
+	}
+
+	private void streamUsers(OutputStream out, boolean ndjson, Consumer<Consumer<UserDto>> users) throws IOException {
+		ObjectWriter writer = objectMapper.writerFor(UserDto.class)
+				.without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+		try (JsonGenerator generator = objectMapper.createGenerator(out)) {
+			generator.setRootValueSeparator(null);
+			if (!ndjson) {
+				generator.writeStartArray();
+			}
+			users.accept(user -> {
+				try {
+					writer.writeValue(generator, user);
+					if (ndjson) {
+						generator.writeRaw('\n');
+					}
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+			if (!ndjson) {
+				generator.writeEndArray();
+			}
+		}
+	}
+
+	// Writes a JSON listing from the cache, encoding it first if it is not cached for the current table version.
+	// Only a listing that was found is tagged: a 404 or 400 must not be confirmed by a later 304
+	private void writeListing(String listing, HttpServletRequest request, HttpServletResponse response,
+							  Supplier<Object> body) throws IOException {
+		long changes = userTableVersion.changes();
+		if (replicaRouting.mayBeStale()) {
+			writeJson(ByteBuffer.wrap(objectMapper.writeValueAsBytes(body.get())), response);
+			return;
+		}
+		ServletWebRequest webRequest = new ServletWebRequest(request, response);
+		String etag = userTableVersion.etag(changes, "json");
+		ByteBuffer json = userJsonCache.findListing(changes, listing);
+		if (json == null) {
+			Object value = body.get();
+			if (webRequest.checkNotModified(etag)) {
+				return;
+			}
+			byte[] encoded = objectMapper.writeValueAsBytes(value);
+			userJsonCache.putListing(changes, listing, encoded);
+			json = ByteBuffer.wrap(encoded);
+		} else if (webRequest.checkNotModified(etag)) {
+			return;
+		}
+		writeJson(json, response);
+	}
+
+	private static void writeJson(ByteBuffer json, HttpServletResponse response) throws IOException {
+		response.setStatus(HttpStatus.OK.value());
+		response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+		response.setContentLength(json.remaining());
+		UserJsonCache.writeTo(json, response.getOutputStream());
+	}
+
+	/**
+	 * Exports all users in the binary transfer format of {@link UserRecordWriter}, streamed from a
+	 * database cursor to the response channel.
+	 *
+	 * @param response the response to stream the users into.
+	 * @throws IOException if writing to the response fails.
+	 */
+	@GetMapping("/export")
+	public void exportUsers(HttpServletResponse response) throws IOException {
+		response.setStatus(HttpStatus.OK.value());
+		response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+		response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"users.bin\"");
+		userTransferService.exportUsers(Channels.newChannel(response.getOutputStream()));
+	}
+
+	/**
+	 * Imports users sent in the binary transfer format, as produced by {@link #exportUsers}.
+	 * The users get new IDs; users whose email is already taken are rejected.
+	 *
+	 * @param request the request to read the users from.
+	 * @return the number of imported and rejected users, and the first rejections.
+	 * @throws IOException if reading the request fails.
+	 */
+	@PostMapping(value = "/import", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+	public ResponseEntity<ImportSummary> importUsers(HttpServletRequest request) throws IOException {
+		return ResponseEntity.ok(userTransferService.importUsers(Channels.newChannel(request.getInputStream())));
+	}
+
+	/**
+	 * Ingests a CSV or NDJSON feed of users, validated in parallel and written in batches. Sending
+	 * the feed again with the ID of a job that did not complete resumes it after its last
+	 * committed batch.
+	 *
+	 * @param job     the ID of the job; generated if omitted.
+	 * @param request the request to read the feed from, in UTF-8 unless it names another charset.
+	 * @return the outcome of the job, with the records rejected by this run and their lines.
+	 * @throws IOException if reading the request fails.
+	 */
+	@PostMapping(value = "/ingest", consumes = {"text/csv", MediaType.APPLICATION_NDJSON_VALUE})
+	public ResponseEntity<IngestionReport> ingestUsers(@RequestParam(value = "job", required = false) String job,
+			HttpServletRequest request) throws IOException {
+		MediaType contentType = MediaType.parseMediaType(request.getContentType());
+		Charset charset = contentType.getCharset() != null ? contentType.getCharset() : StandardCharsets.UTF_8;
+		Reader reader = new InputStreamReader(request.getInputStream(), charset);
+		return ResponseEntity.ok(userIngestionService.ingest(job, contentType, reader));
+	}
+
+	/**
+	 * Retrieves the progress of an ingestion job, as of its last committed batch.
+	 *
+	 * @param job the ID of the job.
+	 * @return the progress of the job, or 404 if the job is unknown.
+	 */
+	@GetMapping("/ingest/{job}")
+	public ResponseEntity<IngestionReport> getIngestionJob(@PathVariable String job) {
+		return userIngestionService.findJob(job)
+				.map(ResponseEntity::ok)
+				.orElseGet(() -> ResponseEntity.notFound().build());
 	}
+
+	/**
+	 * Retrieves one page of users ordered by ID.
+	 *
+	 * @param cursor the cursor returned with the previous page; omit it for the first page.
+	 * @param limit    the maximum number of users on the page.
+	 * @param request  the request, for its conditional headers.
+	 * @param response the response to write the page of users and the cursor of the next page, if any, into.
+	 * @throws IOException if writing to the response fails.
+	 */
+	@GetMapping("/page")
+	public void getUsersPage(@RequestParam(value = "cursor", required = false) String cursor,
+							 @RequestParam(value = "limit", defaultValue = "50") int limit,
+							 HttpServletRequest request, HttpServletResponse response) throws IOException {
+		writeListing("page " + limit + " " + cursor, request, response, () -> userService.getUsersPage(cursor, limit));
+	}
+
 	/**
 	 * Finds a user by name.
 	 *
-	 * @param name the name of the user to find.
-	 * @return the user if found.
+	 * @param name     the name of the user to find.
+	 * @param request  the request, for its conditional headers.
+	 * @param response the response to write the user into.
 	 * @throws UserNotFoundException if the user is not found.
+	 * @throws IOException           if writing to the response fails.
 	 */
 	@GetMapping("/search")
-	public ResponseEntity<UserDto> findUser(@RequestParam("name") String name) {
-		UserDto user = userService.findUserByName(name);
-		if (user == null) {
-			throw new UserNotFoundException("User with name '" + name + "' not found.");
+	public void findUser(@RequestParam("name") String name, HttpServletRequest request,
+						 HttpServletResponse response) throws IOException {
+		// Which namesake a name resolves to depends on other users too, so it is cached like a listing
+		writeListing("name " + name, request, response, () -> {
+			UserDto user = userService.findUserByName(name);
+			if (user == null) {
+				throw new UserNotFoundException("User with name '" + name + "' not found.");
+			}
+			return user;
+		});
+	}
+
+	/**
+	 * Searches users by name or email, case-insensitively, for typeahead.
+	 *
+	 * @param query the beginning of a name, of a word of a name, or of an email.
+	 * @param mode  PREFIX for prefix matches only, FUZZY to also match similar names.
+	 * @param page  the zero-based page number.
+	 * @param size     the page size, at most 100.
+	 * @param request  the request, for its conditional headers.
+	 * @param response the response to write the ranked page of matching users into.
+	 * @throws IOException if writing to the response fails.
+	 */
+	@GetMapping(value = "/search", params = "q")
+	public void searchUsers(@RequestParam("q") String query,
+							@RequestParam(value = "mode", defaultValue = "PREFIX") SearchMode mode,
+							@RequestParam(value = "page", defaultValue = "0") int page,
+							@RequestParam(value = "size", defaultValue = "20") int size,
+							HttpServletRequest request, HttpServletResponse response) throws IOException {
+		if (query.isBlank()) {
+			throw new IllegalArgumentException("Search query must not be blank.");
+		}
+		if (page < 0 || size < 1 || size > 100) {
+			throw new IllegalArgumentException("Page must be positive and size between 1 and 100.");
+		}
+		writeListing("q " + mode + " " + page + " " + size + " " + query, request, response, () -> {
+			UserSearchIndex.Hits hits = userSearchIndex.search(query, mode, page, size);
+			List<UserDto> users = userService.findUsersByIds(hits.ids());
+			return new SearchPage<>(users, page, size, hits.total());
+		});
+	}
+
+	// Strong ETag of a single user: its version, which changes with every change of the user
+	private static String userEtag(UserDto user) {
+		return "\"" + user.getVersion() + "\"";
+	}
+
+	// Version named by an If-Match header; null for "*", which any existing user matches
+	private static Long parseIfMatch(String ifMatch) {
+		String tag = ifMatch.trim();
+		if (tag.equals("*")) {
+			return null;
+		}
+		if (tag.length() > 2 && tag.startsWith("\"") && tag.endsWith("\"")) {
+			try {
+				return Long.valueOf(tag.substring(1, tag.length() - 1));
+			} catch (NumberFormatException e) {
+				// Not a tag issued for a user, so it cannot match
+			}
 		}
-		return ResponseEntity.ok(user);
+		throw new UserVersionConflictException("If-Match must name the ETag of the user.");
 	}
 }
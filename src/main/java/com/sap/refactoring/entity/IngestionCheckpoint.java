@@ -0,0 +1,49 @@
+package com.sap.refactoring.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Progress of a user feed ingestion job, advanced in the same transaction as every batch it writes,
+ * so that a resumed job continues exactly after the last committed batch.
+ */
+@Entity
+@Table(name = "ingestion_checkpoints")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class IngestionCheckpoint {
+
+    public enum Status {
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+
+    @Id
+    @Column(name = "job", length = 100)
+    private String job;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 16)
+    private Status status;
+
+    /**
+     * Last line of the input whose record is committed, or 0 before the first batch.
+     */
+    @Column(name = "last_line", nullable = false)
+    private long lastLine;
+
+    @Column(name = "imported", nullable = false)
+    private long imported;
+
+    @Column(name = "rejected", nullable = false)
+    private long rejected;
+
+    @Column(name = "updated_at", nullable = false)
+    private Instant updatedAt;
+}
@@ -5,29 +5,83 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.experimental.SuperBuilder;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+import org.hibernate.annotations.SQLRestriction;
+import org.hibernate.annotations.SortNatural;
 
-import java.util.List;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
 
 @Entity
-@Table(name = "users")
+@Table(name = "users",
+        uniqueConstraints = @UniqueConstraint(name = UserEntity.EMAIL_UNIQUE_CONSTRAINT, columnNames = "email"),
+        indexes = @Index(name = "idx_users_name", columnList = "name"))
+// Soft-deleted users stay in the table as tombstones until purged, but no query ever sees them
+@SQLRestriction("deleted = false")
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 @SuperBuilder
 public class UserEntity {
 
+    /**
+     * Name of the unique constraint on {@code users.email}, used to recognise duplicate emails on write.
+     */
+    public static final String EMAIL_UNIQUE_CONSTRAINT = "uk_users_email";
+
+    // Pooled sequence rather than IDENTITY so that Hibernate can batch inserts
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "users_seq")
+    @SequenceGenerator(name = "users_seq", sequenceName = "users_seq", allocationSize = 50)
     private Long id;
 
     @Column(name = "name", nullable = false)
     private String name;
 
-    @Column(name = "email", nullable = false, unique = true)
+    @Column(name = "email", nullable = false)
     private String email;
 
+    // Roles of up to 100 users are initialised per select when not join-fetched by the query.
+    // A set, unlike a bag, lets Hibernate insert and delete single rows instead of recreating the collection.
+    // The foreign key cascades, so that deleting a user is a single statement.
     @ElementCollection(fetch = FetchType.EAGER)
+    @BatchSize(size = 100)
+    @OnDelete(action = OnDeleteAction.CASCADE)
     @CollectionTable(name = "user_roles", joinColumns = @JoinColumn(name = "user_id"))
     @Column(name = "role")
-    private List<String> roles;
+    @SortNatural
+    private SortedSet<String> roles;
+
+    // Incremented on every change of the user, roles included; the default fills the column for existing rows
+    @Version
+    @ColumnDefault("0")
+    @Column(name = "version", nullable = false)
+    private Long version;
+
+    // Tombstone of a soft-deleted user, removed with its roles by the purger; the default fills the column for existing rows
+    @ColumnDefault("false")
+    @Column(name = "deleted", nullable = false)
+    private boolean deleted;
+
+    /**
+     * Replace the roles of the user by applying the difference to the current set in place, so that
+     * only added and removed roles are written, and nothing at all if they are the same.
+     *
+     * @param roles the new roles; null for none.
+     */
+    public void setRoles(Collection<String> roles) {
+        Set<String> updated = roles == null ? Set.of() : new HashSet<>(roles);
+        if (this.roles == null) {
+            this.roles = new TreeSet<>(updated);
+            return;
+        }
+        this.roles.retainAll(updated);
+        this.roles.addAll(updated);
+    }
 }
@@ -0,0 +1,32 @@
+package com.sap.refactoring.event;
+
+import com.sap.refactoring.model.UserDto;
+
+/**
+ * Published by the service layer whenever a user is created, updated or deleted.
+ * Listeners keeping derived in-memory state (indexes, counters) should react after commit.
+ *
+ * @param type   the kind of change.
+ * @param userId the ID of the changed user.
+ * @param user   the state of the user after the change, or null when it was deleted.
+ */
+public record UserChangedEvent(Type type, Long userId, UserDto user) {
+
+    public enum Type {
+        CREATED,
+        UPDATED,
+        DELETED
+    }
+
+    public static UserChangedEvent created(UserDto user) {
+        return new UserChangedEvent(Type.CREATED, user.getId(), user);
+    }
+
+    public static UserChangedEvent updated(UserDto user) {
+        return new UserChangedEvent(Type.UPDATED, user.getId(), user);
+    }
+
+    public static UserChangedEvent deleted(Long userId) {
+        return new UserChangedEvent(Type.DELETED, userId, null);
+    }
+}
@@ -1,24 +1,35 @@
 package com.sap.refactoring.exceptions;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
 
 import java.util.HashMap;
 import java.util.Map;
 
 /**
  * Global exception handler for managing exceptions across the application.
+ * Every handled error increments the {@code user.api.errors} counter, tagged with the handler branch.
  */
 @ControllerAdvice
+@RequiredArgsConstructor
 public class ControllerExceptionHandler {
 
+    private final MeterRegistry meterRegistry;
+
     /**
      * Handle UserNotFoundException and return a 404 status.
      */
     @ExceptionHandler(UserNotFoundException.class)
     public ResponseEntity<Map<String, String>> handleUserNotFoundException(UserNotFoundException ex) {
+        countError("user_not_found");
         Map<String, String> errorResponse = new HashMap<>();
         errorResponse.put("error", "User not found");
         errorResponse.put("details", ex.getMessage());
@@ -30,31 +41,94 @@ public class ControllerExceptionHandler {
      */
     @ExceptionHandler(InvalidUserException.class)
     public ResponseEntity<Map<String, String>> handleInvalidUserException(InvalidUserException ex) {
+        countError("invalid_user");
         Map<String, String> errorResponse = new HashMap<>();
         errorResponse.put("error", "Invalid user");
         errorResponse.put("details", ex.getMessage());
         return ResponseEntity.badRequest().body(errorResponse);
     }
 
+    /**
+     * Handle UserVersionConflictException, raised when the If-Match header of an update names an
+     * outdated version, and return a 412 status.
+     */
+    @ExceptionHandler(UserVersionConflictException.class)
+    public ResponseEntity<Map<String, String>> handleUserVersionConflictException(UserVersionConflictException ex) {
+        countError("precondition_failed");
+        Map<String, String> errorResponse = new HashMap<>();
+        errorResponse.put("error", "Precondition failed");
+        errorResponse.put("details", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).body(errorResponse);
+    }
+
+    /**
+     * Handle unconditional writes that lost a race with a concurrent write of the same user, and return a 409 status.
+     */
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<Map<String, String>> handleOptimisticLockingFailureException(OptimisticLockingFailureException ex) {
+        countError("concurrent_update");
+        Map<String, String> errorResponse = new HashMap<>();
+        errorResponse.put("error", "Conflict");
+        errorResponse.put("details", "The user was changed concurrently, retry the request.");
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(errorResponse);
+    }
+
     /**
      * Handle IllegalArgumentException and return a 400 status.
      */
     @ExceptionHandler(IllegalArgumentException.class)
     public ResponseEntity<Map<String, String>> handleIllegalArgumentException(IllegalArgumentException ex) {
+        countError("illegal_argument");
         Map<String, String> errorResponse = new HashMap<>();
         errorResponse.put("error", "Illegal argument");
         errorResponse.put("details", ex.getMessage());
         return ResponseEntity.badRequest().body(errorResponse);
     }
 
+    /**
+     * Handle request parameters of the wrong type, such as an unknown search mode, and return a 400 status.
+     */
+    @ExceptionHandler(MethodArgumentTypeMismatchException.class)
+    public ResponseEntity<Map<String, String>> handleMethodArgumentTypeMismatchException(MethodArgumentTypeMismatchException ex) {
+        countError("argument_type_mismatch");
+        Map<String, String> errorResponse = new HashMap<>();
+        errorResponse.put("error", "Illegal argument");
+        errorResponse.put("details", "Invalid value for parameter '" + ex.getName() + "'.");
+        return ResponseEntity.badRequest().body(errorResponse);
+    }
+
+    /**
+     * Handle WriteBehindQueueFullException and return a 503 status, asking the client to retry.
+     */
+    @ExceptionHandler(WriteBehindQueueFullException.class)
+    public ResponseEntity<Map<String, String>> handleWriteBehindQueueFullException(WriteBehindQueueFullException ex) {
+        countError("write_behind_rejected");
+        Map<String, String> errorResponse = new HashMap<>();
+        errorResponse.put("error", "Service unavailable");
+        errorResponse.put("details", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(errorResponse);
+    }
+
     /**
      * Handle all other exceptions and return a 500 status.
      */
     @ExceptionHandler(Exception.class)
     public ResponseEntity<Map<String, String>> handleGeneralException(Exception ex) {
+        countError("internal");
         Map<String, String> errorResponse = new HashMap<>();
         errorResponse.put("error", "Internal server error");
         errorResponse.put("details", ex.getMessage());
         return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
     }
+
+    // Tags are fixed handler names, never request data, to keep the metric's cardinality bounded
+    private void countError(String branch) {
+        Counter.builder("user.api.errors")
+                .description("Errors returned by the user API")
+                .tag("error", branch)
+                .register(meterRegistry)
+                .increment();
+    }
 }
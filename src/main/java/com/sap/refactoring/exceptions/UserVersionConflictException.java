@@ -0,0 +1,10 @@
+package com.sap.refactoring.exceptions;
+
+/**
+ * Thrown when a conditional update was based on a version of the user that is no longer current.
+ */
+public class UserVersionConflictException extends RuntimeException {
+    public UserVersionConflictException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.sap.refactoring.exceptions;
+
+public class WriteBehindQueueFullException extends RuntimeException {
+    public WriteBehindQueueFullException(String message) {
+        super(message);
+    }
+}
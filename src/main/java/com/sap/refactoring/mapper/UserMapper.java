@@ -2,37 +2,72 @@ package com.sap.refactoring.mapper;
 
 import com.sap.refactoring.entity.UserEntity;
 import com.sap.refactoring.model.UserDto;
+import com.sap.refactoring.repository.projection.UserRoleRow;
+import com.sap.refactoring.repository.projection.UserRow;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.Optional;
+import java.util.List;
 
 @Component
 public class UserMapper {
 
     // Converts User entity to UserDto
     public UserDto toDto(UserEntity user) {
-        return Optional.ofNullable(user) // Wrap the user in an Optional
-                .map(u -> new UserDto(
-                        u.getId(),
-                        u.getName(),
-                        u.getEmail(),
-                        u.getRoles() != null ? u.getRoles() : Collections.emptyList()
-                ))
-                .orElse(null); // Return null if user is null
+        if (user == null) {
+            return null;
+        }
+        // Copy the roles so that the DTO never holds on to the Hibernate-managed collection
+        return new UserDto(user.getId(), user.getName(), user.getEmail(), copyRoles(user.getRoles()), user.getVersion());
     }
 
-    // Converts UserDto to User entity
+    // Converts a list of User entities to a pre-sized list of UserDto
+    public List<UserDto> toDtos(List<UserEntity> users) {
+        List<UserDto> userDtos = new ArrayList<>(users.size());
+        for (UserEntity user : users) {
+            userDtos.add(toDto(user));
+        }
+        return userDtos;
+    }
+
+    // Merges user and role projections, both ordered by user id, into a pre-sized list of UserDto
+    public List<UserDto> toDtos(List<UserRow> users, List<UserRoleRow> roles) {
+        List<UserDto> userDtos = new ArrayList<>(users.size());
+        int roleIndex = 0;
+        for (UserRow user : users) {
+            // Skip roles of users that are not part of this listing
+            while (roleIndex < roles.size() && roles.get(roleIndex).userId() < user.id()) {
+                roleIndex++;
+            }
+            int firstRole = roleIndex;
+            while (roleIndex < roles.size() && roles.get(roleIndex).userId().equals(user.id())) {
+                roleIndex++;
+            }
+            List<String> userRoles = firstRole == roleIndex ? Collections.emptyList() : new ArrayList<>(roleIndex - firstRole);
+            for (int i = firstRole; i < roleIndex; i++) {
+                userRoles.add(roles.get(i).role());
+            }
+            userDtos.add(new UserDto(user.id(), user.name(), user.email(), userRoles));
+        }
+        return userDtos;
+    }
+
+    // Converts UserDto to User entity; the version is left to the persistence layer
     public UserEntity toEntity(UserDto userDto) {
-        return Optional.ofNullable(userDto) // Wrap the userDto in an Optional
-                .map(dto -> {
-                    UserEntity user = new UserEntity();
-                    user.setId(dto.getId());
-                    user.setName(dto.getName());
-                    user.setEmail(dto.getEmail());
-                    user.setRoles(dto.getRoles() != null ? dto.getRoles() : Collections.emptyList());
-                    return user;
-                })
-                .orElse(null); // Return null if userDto is null
+        if (userDto == null) {
+            return null;
+        }
+        UserEntity user = new UserEntity();
+        user.setId(userDto.getId());
+        user.setName(userDto.getName());
+        user.setEmail(userDto.getEmail());
+        user.setRoles(userDto.getRoles());
+        return user;
+    }
+
+    private static List<String> copyRoles(Collection<String> roles) {
+        return roles == null || roles.isEmpty() ? Collections.emptyList() : new ArrayList<>(roles);
     }
 }
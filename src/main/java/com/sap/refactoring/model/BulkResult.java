@@ -0,0 +1,41 @@
+package com.sap.refactoring.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Outcome of a bulk delete or update.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkResult {
+    /**
+     * Number of existing users selected by the request.
+     */
+    private long matched;
+    /**
+     * Number of users deleted, or changed by an update; users already as requested are not counted.
+     */
+    private long affected;
+    /**
+     * Number of users an update left unchanged because they would have lost all their roles.
+     */
+    private long rejected;
+    private long rolesAdded;
+    private long rolesRemoved;
+
+    /**
+     * Add the counts of another result, such as the one of a chunk, to this one.
+     *
+     * @param other the result to add.
+     */
+    public void add(BulkResult other) {
+        matched += other.matched;
+        affected += other.affected;
+        rejected += other.rejected;
+        rolesAdded += other.rolesAdded;
+        rolesRemoved += other.rolesRemoved;
+    }
+}
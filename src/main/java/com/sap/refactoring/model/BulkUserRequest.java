@@ -0,0 +1,37 @@
+package com.sap.refactoring.model;
+
+import com.sap.refactoring.search.RoleMatch;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Users to delete or update at once, selected either by ID or by role, and the role changes of an update.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkUserRequest {
+    /**
+     * IDs of the users; unknown IDs are skipped.
+     */
+    private List<Long> ids;
+    /**
+     * Roles selecting the users instead of IDs.
+     */
+    private List<String> roles;
+    /**
+     * How the selecting roles combine; ANY if omitted.
+     */
+    private RoleMatch match;
+    /**
+     * Roles granted by an update.
+     */
+    private List<String> addRoles;
+    /**
+     * Roles revoked by an update.
+     */
+    private List<String> removeRoles;
+}
@@ -0,0 +1,23 @@
+package com.sap.refactoring.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * A single page of a keyset-paginated listing.
+ *
+ * @param <T> the type of the page items.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPage<T> {
+    private List<T> items;
+    /**
+     * Opaque cursor to pass back to fetch the following page, or {@code null} on the last page.
+     */
+    private String next;
+}
@@ -0,0 +1,42 @@
+package com.sap.refactoring.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Outcome of enrolling a single user as part of a batch.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EnrollmentResult {
+
+    public enum Status {
+        CREATED,
+        FAILED
+    }
+
+    /**
+     * Position of the user in the submitted batch.
+     */
+    private int index;
+    private String email;
+    private Status status;
+    /**
+     * ID of the created user, set when the status is {@link Status#CREATED}.
+     */
+    private Long id;
+    /**
+     * Reason for the failure, set when the status is {@link Status#FAILED}.
+     */
+    private String error;
+
+    public static EnrollmentResult created(int index, String email, Long id) {
+        return new EnrollmentResult(index, email, Status.CREATED, id, null);
+    }
+
+    public static EnrollmentResult failed(int index, String email, String error) {
+        return new EnrollmentResult(index, email, Status.FAILED, null, error);
+    }
+}
@@ -0,0 +1,22 @@
+package com.sap.refactoring.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Outcome of a user import.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportSummary {
+    private long imported;
+    private long rejected;
+    /**
+     * The first rejected users, indexed by their position in the imported stream.
+     */
+    private List<EnrollmentResult> errors;
+}
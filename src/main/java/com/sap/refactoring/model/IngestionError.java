@@ -0,0 +1,20 @@
+package com.sap.refactoring.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A record of a user feed that was rejected.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class IngestionError {
+    /**
+     * Line of the input the record starts on, counting from 1.
+     */
+    private long line;
+    private String email;
+    private String error;
+}
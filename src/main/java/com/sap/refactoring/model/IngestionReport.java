@@ -0,0 +1,33 @@
+package com.sap.refactoring.model;
+
+import com.sap.refactoring.entity.IngestionCheckpoint;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Progress or outcome of a user feed ingestion job. Counts cover the whole job, across resumptions.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class IngestionReport {
+    private String job;
+    private IngestionCheckpoint.Status status;
+    /**
+     * Last line of the input processed and committed.
+     */
+    private long lastLine;
+    private long imported;
+    private long rejected;
+    /**
+     * Line the current run resumed after, 0 if it started from the beginning of the input.
+     */
+    private long resumedAfterLine;
+    /**
+     * The first records rejected by the current run.
+     */
+    private List<IngestionError> errors;
+}
@@ -0,0 +1,24 @@
+package com.sap.refactoring.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * Number of users per role.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RoleStats {
+    /**
+     * Total number of users, with or without roles.
+     */
+    private long users;
+    /**
+     * Number of users having each role, by role name.
+     */
+    private Map<String, Long> roles;
+}
@@ -0,0 +1,25 @@
+package com.sap.refactoring.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * A single page of ranked search results.
+ *
+ * @param <T> the type of the page items.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SearchPage<T> {
+    private List<T> items;
+    private int page;
+    private int size;
+    /**
+     * Total number of matches, capped at the maximum number of candidates a search ranks.
+     */
+    private int total;
+}
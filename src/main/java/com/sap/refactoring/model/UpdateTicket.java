@@ -0,0 +1,28 @@
+package com.sap.refactoring.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Status handle of a user update accepted for asynchronous write-behind.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UpdateTicket {
+
+    public enum Status {
+        PENDING,
+        APPLIED,
+        FAILED
+    }
+
+    private String ticket;
+    private Long userId;
+    private Status status;
+    /**
+     * Reason for the failure, set when the status is {@link Status#FAILED}.
+     */
+    private String error;
+}
@@ -1,8 +1,10 @@
 package com.sap.refactoring.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.validation.constraints.NotNull;
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.SuperBuilder;
 
@@ -18,4 +20,14 @@ public class UserDto {
     @NotNull(message = "Email cannot be null")
     private String email;
     private List<String> roles;
+    /**
+     * Version of the stored user, sent as its ETag rather than in the body; null when unknown.
+     */
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    private Long version;
+
+    public UserDto(Long id, String name, String email, List<String> roles) {
+        this(id, name, email, roles, null);
+    }
 }
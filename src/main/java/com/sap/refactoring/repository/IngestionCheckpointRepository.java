@@ -0,0 +1,9 @@
+package com.sap.refactoring.repository;
+
+import com.sap.refactoring.entity.IngestionCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface IngestionCheckpointRepository extends JpaRepository<IngestionCheckpoint, String> {
+}
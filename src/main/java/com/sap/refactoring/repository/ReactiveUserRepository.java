@@ -0,0 +1,172 @@
+package com.sap.refactoring.repository;
+
+import com.sap.refactoring.model.UserDto;
+import com.sap.refactoring.repository.projection.UserRoleJoinRow;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.Readable;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Non-blocking access to the {@code users} and {@code user_roles} tables, mapped by {@code UserEntity}.
+ * Active with the {@code reactive} profile only.
+ */
+@Repository
+@Profile("reactive")
+public class ReactiveUserRepository {
+
+    private static final String SELECT_USERS_WITH_ROLES =
+            "SELECT u.id, u.name, u.email, r.role FROM users u LEFT JOIN user_roles r ON r.user_id = u.id "
+                    + "WHERE u.deleted = FALSE ";
+
+    private final DatabaseClient databaseClient;
+
+    private final String nextIdQuery;
+
+    public ReactiveUserRepository(DatabaseClient databaseClient, ConnectionFactory connectionFactory) {
+        this.databaseClient = databaseClient;
+        this.nextIdQuery = connectionFactory.getMetadata().getName().contains("PostgreSQL")
+                ? "SELECT nextval('users_seq')"
+                : "SELECT NEXT VALUE FOR users_seq";
+    }
+
+    // All users with their roles, in id order, emitted as rows arrive and on demand of the subscriber
+    public Flux<UserDto> findAll() {
+        return toUsers(databaseClient.sql(SELECT_USERS_WITH_ROLES + "ORDER BY u.id")
+                .map(ReactiveUserRepository::toJoinRow)
+                .all());
+    }
+
+    // The user with the given id, with its roles
+    public Mono<UserDto> findById(Long id) {
+        return toUsers(databaseClient.sql(SELECT_USERS_WITH_ROLES + "AND u.id = :id")
+                .bind("id", id)
+                .map(ReactiveUserRepository::toJoinRow)
+                .all())
+                .next();
+    }
+
+    // The user with the given name and the lowest id; names are not unique
+    public Mono<UserDto> findFirstByName(String name) {
+        return toUsers(databaseClient.sql(SELECT_USERS_WITH_ROLES
+                        + "AND u.id = (SELECT MIN(id) FROM users WHERE name = :name AND deleted = FALSE)")
+                .bind("name", name)
+                .map(ReactiveUserRepository::toJoinRow)
+                .all())
+                .next();
+    }
+
+    /**
+     * Insert a user and its roles. Each insert draws its own value from {@code users_seq} and uses
+     * it as ID: with Hibernate's pooled optimizer that value is the upper bound of a block that
+     * Hibernate never hands out, so IDs cannot collide with the JPA path sharing the sequence.
+     */
+    public Mono<UserDto> insert(UserDto user) {
+        return databaseClient.sql(nextIdQuery)
+                .map(row -> row.get(0, Long.class))
+                .one()
+                .flatMap(id -> bindNameAndEmail(databaseClient.sql("INSERT INTO users (id, name, email, version, deleted) VALUES (:id, :name, :email, 0, FALSE)")
+                        .bind("id", id), user)
+                        .then()
+                        .then(insertRoles(id, new LinkedHashSet<>(user.getRoles())))
+                        .thenReturn(new UserDto(id, user.getName(), user.getEmail(), new ArrayList<>(new LinkedHashSet<>(user.getRoles())))));
+    }
+
+    // Update the name and email of a live user, bumping its JPA version, and replace its roles by deleting and
+    // inserting only the ones that differ; emits the number of updated users
+    public Mono<Long> update(Long id, UserDto user) {
+        return bindNameAndEmail(databaseClient.sql("UPDATE users SET name = :name, email = :email, version = version + 1 "
+                        + "WHERE id = :id AND deleted = FALSE")
+                .bind("id", id), user)
+                .fetch()
+                .rowsUpdated()
+                .flatMap(updated -> updated == 0
+                        ? Mono.just(0L)
+                        : findRoles(id).collect(Collectors.toSet()).flatMap(current -> {
+                            Set<String> added = new LinkedHashSet<>(user.getRoles());
+                            added.removeAll(current);
+                            Set<String> removed = new HashSet<>(current);
+                            removed.removeAll(user.getRoles());
+                            return deleteRoles(id, removed).then(insertRoles(id, added));
+                        }).thenReturn(updated));
+    }
+
+    // Delete a live user in a single statement, its roles going with it through the cascading foreign key;
+    // emits the number of deleted users
+    public Mono<Long> deleteById(Long id) {
+        return databaseClient.sql("DELETE FROM users WHERE id = :id AND deleted = FALSE")
+                .bind("id", id)
+                .fetch()
+                .rowsUpdated();
+    }
+
+    // Turn a live user into a tombstone, bumping its JPA version; emits the number of marked users
+    public Mono<Long> markDeletedById(Long id) {
+        return databaseClient.sql("UPDATE users SET deleted = TRUE, version = version + 1 WHERE id = :id AND deleted = FALSE")
+                .bind("id", id)
+                .fetch()
+                .rowsUpdated();
+    }
+
+    private Flux<String> findRoles(Long id) {
+        return databaseClient.sql("SELECT role FROM user_roles WHERE user_id = :id")
+                .bind("id", id)
+                .map(row -> row.get("role", String.class))
+                .all();
+    }
+
+    private Mono<Void> insertRoles(Long id, Collection<String> roles) {
+        return Flux.fromIterable(roles)
+                .concatMap(role -> databaseClient.sql("INSERT INTO user_roles (user_id, role) VALUES (:id, :role)")
+                        .bind("id", id)
+                        .bind("role", role)
+                        .then())
+                .then();
+    }
+
+    private Mono<Void> deleteRoles(Long id, Collection<String> roles) {
+        return Flux.fromIterable(roles)
+                .concatMap(role -> databaseClient.sql("DELETE FROM user_roles WHERE user_id = :id AND role = :role")
+                        .bind("id", id)
+                        .bind("role", role)
+                        .then())
+                .then();
+    }
+
+    // Missing values are bound as NULL so that the NOT NULL constraints reject them, as on the JPA path
+    private static DatabaseClient.GenericExecuteSpec bindNameAndEmail(DatabaseClient.GenericExecuteSpec spec, UserDto user) {
+        spec = user.getName() == null ? spec.bindNull("name", String.class) : spec.bind("name", user.getName());
+        return user.getEmail() == null ? spec.bindNull("email", String.class) : spec.bind("email", user.getEmail());
+    }
+
+    private static UserRoleJoinRow toJoinRow(Readable row) {
+        return new UserRoleJoinRow(row.get("id", Long.class), row.get("name", String.class),
+                row.get("email", String.class), row.get("role", String.class));
+    }
+
+    // Groups consecutive join rows of the same user, as emitted in id order, into one user
+    private static Flux<UserDto> toUsers(Flux<UserRoleJoinRow> rows) {
+        return rows.bufferUntilChanged(UserRoleJoinRow::id)
+                .map(userRows -> {
+                    UserRoleJoinRow first = userRows.get(0);
+                    List<String> roles = new ArrayList<>(userRows.size());
+                    for (UserRoleJoinRow row : userRows) {
+                        if (row.role() != null) {
+                            roles.add(row.role());
+                        }
+                    }
+                    return new UserDto(first.id(), first.name(), first.email(), roles);
+                });
+    }
+}
@@ -1,20 +1,140 @@
 package com.sap.refactoring.repository;
 
 import com.sap.refactoring.entity.UserEntity;
+import com.sap.refactoring.repository.projection.UserRoleJoinRow;
+import com.sap.refactoring.repository.projection.UserRoleRow;
+import com.sap.refactoring.repository.projection.UserRow;
+import com.sap.refactoring.repository.projection.UserTableFingerprint;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
 
 @Repository
 public interface UserRepository extends JpaRepository<UserEntity, Long> {
 
+    // Loads all users together with their roles in a single join-fetch select
+    @Override
+    @EntityGraph(attributePaths = "roles")
+    List<UserEntity> findAll();
+
     // Custom query to find a user by email
     @Query("SELECT u FROM UserEntity u WHERE u.email = :email")
+    @EntityGraph(attributePaths = "roles")
     Optional<UserEntity> findByEmail(@Param("email") String email);
 
     // Custom query to find a user by name
+    @EntityGraph(attributePaths = "roles")
     Optional<UserEntity> findByName(String name);
+
+    // All users with the given name, lowest id first; names are not unique
+    @EntityGraph(attributePaths = "roles")
+    List<UserEntity> findAllByNameOrderByIdAsc(String name);
+
+    // Projection of the given emails that are already taken, checked for a whole batch in one query;
+    // native, as tombstones hide from JPQL but keep their email unique until purged
+    @Query(value = "SELECT email FROM users WHERE email IN (:emails)", nativeQuery = true)
+    Set<String> findExistingEmails(@Param("emails") Collection<String> emails);
+
+    // Aggregate of all live users that changes with any write, from whichever instance it came
+    @Query("SELECT new com.sap.refactoring.repository.projection.UserTableFingerprint(COUNT(u), SUM(u.id), SUM(u.version)) "
+            + "FROM UserEntity u")
+    UserTableFingerprint findTableFingerprint();
+
+    // Projection of all users, in id order, without loading managed entities
+    @Query("SELECT new com.sap.refactoring.repository.projection.UserRow(u.id, u.name, u.email) "
+            + "FROM UserEntity u ORDER BY u.id")
+    List<UserRow> findAllRows();
+
+    // Projection of all user roles, ordered by user id
+    @Query("SELECT new com.sap.refactoring.repository.projection.UserRoleRow(u.id, r) "
+            + "FROM UserEntity u JOIN u.roles r ORDER BY u.id")
+    List<UserRoleRow> findAllRoleRows();
+
+    // Keyset page projection: users with an id strictly greater than the given one, in id order
+    @Query("SELECT new com.sap.refactoring.repository.projection.UserRow(u.id, u.name, u.email) "
+            + "FROM UserEntity u WHERE u.id > :afterId ORDER BY u.id")
+    List<UserRow> findRowPageAfter(@Param("afterId") long afterId, Pageable pageable);
+
+    // Projection of the given users, in id order
+    @Query("SELECT new com.sap.refactoring.repository.projection.UserRow(u.id, u.name, u.email) "
+            + "FROM UserEntity u WHERE u.id IN :ids ORDER BY u.id")
+    List<UserRow> findRowsByIds(@Param("ids") Collection<Long> ids);
+
+    // Projection of the roles of the given users, ordered by user id
+    @Query("SELECT new com.sap.refactoring.repository.projection.UserRoleRow(u.id, r) "
+            + "FROM UserEntity u JOIN u.roles r WHERE u.id IN :ids ORDER BY u.id")
+    List<UserRoleRow> findRoleRowsByUserIds(@Param("ids") Collection<Long> ids);
+
+    // Streams all users joined with their roles, in id order, from a DB cursor;
+    // must be consumed inside a transaction and closed
+    @Query("SELECT new com.sap.refactoring.repository.projection.UserRoleJoinRow(u.id, u.name, u.email, r) "
+            + "FROM UserEntity u LEFT JOIN u.roles r ORDER BY u.id")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    Stream<UserRoleJoinRow> streamAllJoinRows();
+
+    // Deletes a live user in a single statement, its roles going with it through the cascading foreign key;
+    // returns the number of deleted users
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("DELETE FROM UserEntity u WHERE u.id = :id AND u.deleted = false")
+    int deleteLiveById(@Param("id") Long id);
+
+    // Turns a live user into a tombstone in a single statement, bumping its version; returns the number of marked users
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE UserEntity u SET u.deleted = true, u.version = u.version + 1 WHERE u.id = :id AND u.deleted = false")
+    int markDeletedById(@Param("id") Long id);
+
+    // Deletes the given live users in a single statement, their roles going with them; returns the number of deleted users
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("DELETE FROM UserEntity u WHERE u.id IN :ids AND u.deleted = false")
+    int deleteLiveByIds(@Param("ids") Collection<Long> ids);
+
+    // Turns the given live users into tombstones in a single statement; returns the number of marked users
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE UserEntity u SET u.deleted = true, u.version = u.version + 1 WHERE u.id IN :ids AND u.deleted = false")
+    int markDeletedByIds(@Param("ids") Collection<Long> ids);
+
+    // Increments the version of the given live users, whose roles were changed in bulk; returns the number of users
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE UserEntity u SET u.version = u.version + 1 WHERE u.id IN :ids AND u.deleted = false")
+    int incrementVersions(@Param("ids") Collection<Long> ids);
+
+    // Revokes the given roles from the given users in a single statement; returns the number of revoked roles
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "DELETE FROM user_roles WHERE user_id IN (:ids) AND role IN (:roles)", nativeQuery = true)
+    int deleteRolesOfUsers(@Param("ids") Collection<Long> ids, @Param("roles") Collection<String> roles);
+
+    // Grants a role to those of the given live users not having it yet, in a single statement;
+    // returns the number of granted roles
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "INSERT INTO user_roles (user_id, role) SELECT u.id, :role FROM users u "
+            + "WHERE u.id IN (:ids) AND u.deleted = FALSE "
+            + "AND NOT EXISTS (SELECT 1 FROM user_roles r WHERE r.user_id = u.id AND r.role = :role)", nativeQuery = true)
+    int insertRoleOfUsers(@Param("ids") Collection<Long> ids, @Param("role") String role);
+
+    // IDs of up to limit tombstones, lowest first; native, as the entity hides tombstones from JPQL
+    @Query(value = "SELECT id FROM users WHERE deleted = TRUE ORDER BY id LIMIT :limit", nativeQuery = true)
+    List<Long> findTombstoneIds(@Param("limit") int limit);
+
+    // Deletes the roles of the given tombstones; returns the number of deleted roles
+    @Modifying
+    @Query(value = "DELETE FROM user_roles WHERE user_id IN (:ids)", nativeQuery = true)
+    int purgeTombstoneRoles(@Param("ids") Collection<Long> ids);
+
+    // Deletes the given tombstones, which must no longer have roles; returns the number of deleted users
+    @Modifying
+    @Query(value = "DELETE FROM users WHERE id IN (:ids) AND deleted = TRUE", nativeQuery = true)
+    int purgeTombstones(@Param("ids") Collection<Long> ids);
 }
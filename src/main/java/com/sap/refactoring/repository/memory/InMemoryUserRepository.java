@@ -0,0 +1,906 @@
+package com.sap.refactoring.repository.memory;
+
+import com.sap.refactoring.entity.UserEntity;
+import com.sap.refactoring.repository.UserRepository;
+import com.sap.refactoring.repository.projection.UserRoleJoinRow;
+import com.sap.refactoring.repository.projection.UserRoleRow;
+import com.sap.refactoring.repository.projection.UserRow;
+import com.sap.refactoring.repository.projection.UserTableFingerprint;
+import jakarta.persistence.EntityNotFoundException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.IncorrectResultSizeDataAccessException;
+import org.springframework.data.domain.Example;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.repository.query.FluentQuery;
+import org.springframework.lang.Nullable;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.stereotype.Repository;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+/**
+ * Heap-resident user store implementing {@link UserRepository} without Hibernate or a database,
+ * selected with the {@code memory} profile.
+ * <p>
+ * Users are kept in columns indexed by a row slot: IDs in a {@code long[]}, names and emails as
+ * UTF-8 byte arrays and roles as {@code short} codes of a role dictionary, so each distinct role
+ * string is held once. IDs map to slots through a primitive open-addressing map and emails and
+ * names through hash indexes over the columns. Listings walk a sorted array of live IDs.
+ * <p>
+ * Writers are serialized by a {@link StampedLock}. Lookups run as optimistic reads without
+ * taking the lock and only fall back to the read lock if a write interleaved. Every repository
+ * call is atomic, but there is no rollback across calls: a transaction that fails after a save
+ * leaves that save in place. Neither are there tombstones: with {@code user.soft-delete.enabled},
+ * deleted users are still removed at once.
+ * <p>
+ * With the {@code durable} profile, every write is logged to the {@link UserJournal} before it is
+ * applied, and the store is restored from the journal on startup.
+ */
+@Repository
+@Primary
+@Profile("memory")
+public class InMemoryUserRepository implements UserRepository {
+
+    private static final Logger logger = LoggerFactory.getLogger(InMemoryUserRepository.class);
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final StampedLock lock = new StampedLock();
+
+    private final LongIntHashMap slotsById = new LongIntHashMap(INITIAL_CAPACITY);
+    private final SlotIndex emailIndex = new SlotIndex(INITIAL_CAPACITY, slot -> emails[slot]);
+    private final SlotIndex nameIndex = new SlotIndex(INITIAL_CAPACITY, slot -> names[slot]);
+
+    // Columns, indexed by slot; a slot is free when its email is null
+    private long[] ids = new long[INITIAL_CAPACITY];
+    private long[] versions = new long[INITIAL_CAPACITY];
+    private byte[][] names = new byte[INITIAL_CAPACITY][];
+    private byte[][] emails = new byte[INITIAL_CAPACITY][];
+    private short[][] roles = new short[INITIAL_CAPACITY][];
+
+    private int[] freeSlots = new int[16];
+    private int freeSlotCount;
+    private int slotCount;
+
+    // Live IDs in ascending order
+    private long[] sortedIds = new long[INITIAL_CAPACITY];
+    private int size;
+
+    private long lastId;
+
+    // While a snapshot is restored in slot order, IDs are appended and sorted once at the end
+    private boolean unsortedIds;
+
+    private final Map<String, Short> roleCodes = new HashMap<>();
+    private String[] roleNames = new String[16];
+
+    private final UserJournal journal;
+
+    public InMemoryUserRepository() {
+        this(null);
+    }
+
+    public InMemoryUserRepository(@Nullable UserJournal journal) {
+        this(journal, false);
+    }
+
+    @Autowired
+    public InMemoryUserRepository(@Nullable UserJournal journal,
+                                  @Value("${user.soft-delete.enabled:false}") boolean softDelete) {
+        if (softDelete) {
+            logger.warn("user.soft-delete.enabled has no effect on the in-memory user store: deleted users are removed at once");
+        }
+        this.journal = journal;
+        if (journal != null) {
+            unsortedIds = true;
+            long stamp = lock.writeLock();
+            try {
+                journal.open(new JournalStore());
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+    }
+
+    // --- Lookups ---
+
+    @Override
+    public Optional<UserEntity> findById(Long id) {
+        return read(() -> Optional.ofNullable(toEntity(slotOf(id))));
+    }
+
+    @Override
+    public boolean existsById(Long id) {
+        return read(() -> slotOf(id) >= 0);
+    }
+
+    @Override
+    public Optional<UserEntity> findByEmail(String email) {
+        byte[] key = encode(email);
+        return read(() -> Optional.ofNullable(toEntity(key == null ? -1 : emailIndex.findAny(key))));
+    }
+
+    @Override
+    public Optional<UserEntity> findByName(String name) {
+        List<UserEntity> users = findAllByNameOrderByIdAsc(name);
+        if (users.size() > 1) {
+            throw new IncorrectResultSizeDataAccessException(1, users.size());
+        }
+        return users.stream().findFirst();
+    }
+
+    @Override
+    public List<UserEntity> findAllByNameOrderByIdAsc(String name) {
+        byte[] key = encode(name);
+        if (key == null) {
+            return List.of();
+        }
+        return read(() -> {
+            List<UserEntity> users = new ArrayList<>(1);
+            nameIndex.forEach(key, slot -> users.add(toEntity(slot)));
+            users.sort((a, b) -> Long.compare(a.getId(), b.getId()));
+            return users;
+        });
+    }
+
+    @Override
+    public Set<String> findExistingEmails(Collection<String> emails) {
+        return read(() -> {
+            Set<String> existing = new HashSet<>();
+            for (String email : emails) {
+                byte[] key = encode(email);
+                if (key != null && emailIndex.findAny(key) >= 0) {
+                    existing.add(email);
+                }
+            }
+            return existing;
+        });
+    }
+
+    @Override
+    public List<UserEntity> findAll() {
+        return readLocked(() -> {
+            List<UserEntity> users = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                users.add(toEntity(slotsById.get(sortedIds[i])));
+            }
+            return users;
+        });
+    }
+
+    @Override
+    public List<UserEntity> findAllById(Iterable<Long> ids) {
+        return read(() -> {
+            List<UserEntity> users = new ArrayList<>();
+            for (Long id : ids) {
+                UserEntity user = toEntity(slotOf(id));
+                if (user != null) {
+                    users.add(user);
+                }
+            }
+            return users;
+        });
+    }
+
+    @Override
+    public long count() {
+        return read(() -> (long) size);
+    }
+
+    // --- Projections ---
+
+    @Override
+    public UserTableFingerprint findTableFingerprint() {
+        return readLocked(() -> {
+            long idSum = 0;
+            long versionSum = 0;
+            for (int i = 0; i < size; i++) {
+                idSum += sortedIds[i];
+                versionSum += versions[slotsById.get(sortedIds[i])];
+            }
+            return size == 0 ? new UserTableFingerprint(0L, null, null) : new UserTableFingerprint((long) size, idSum, versionSum);
+        });
+    }
+
+    @Override
+    public List<UserRow> findAllRows() {
+        return readLocked(() -> rows(0, size));
+    }
+
+    @Override
+    public List<UserRoleRow> findAllRoleRows() {
+        return readLocked(() -> roleRows(0, size));
+    }
+
+    @Override
+    public List<UserRow> findRowPageAfter(long afterId, Pageable pageable) {
+        return readLocked(() -> {
+            int from = firstIndexAfter(afterId);
+            int to = pageable.isPaged() ? (int) Math.min(size, (long) from + pageable.getPageSize()) : size;
+            return rows(from, to);
+        });
+    }
+
+    @Override
+    public List<UserRow> findRowsByIds(Collection<Long> ids) {
+        return read(() -> {
+            List<UserRow> rows = new ArrayList<>(ids.size());
+            for (Long id : sortedDistinct(ids)) {
+                int slot = slotOf(id);
+                if (slot >= 0) {
+                    rows.add(new UserRow(id, decode(names[slot]), decode(emails[slot])));
+                }
+            }
+            return rows;
+        });
+    }
+
+    @Override
+    public List<UserRoleRow> findRoleRowsByUserIds(Collection<Long> ids) {
+        return read(() -> {
+            List<UserRoleRow> rows = new ArrayList<>(ids.size());
+            for (Long id : sortedDistinct(ids)) {
+                int slot = slotOf(id);
+                if (slot >= 0) {
+                    for (short code : roles[slot]) {
+                        rows.add(new UserRoleRow(id, roleNames[code]));
+                    }
+                }
+            }
+            return rows;
+        });
+    }
+
+    @Override
+    public Stream<UserRoleJoinRow> streamAllJoinRows() {
+        return readLocked(() -> {
+            List<UserRoleJoinRow> rows = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                int slot = slotsById.get(sortedIds[i]);
+                String name = decode(names[slot]);
+                String email = decode(emails[slot]);
+                if (roles[slot].length == 0) {
+                    rows.add(new UserRoleJoinRow(ids[slot], name, email, null));
+                }
+                for (short code : roles[slot]) {
+                    rows.add(new UserRoleJoinRow(ids[slot], name, email, roleNames[code]));
+                }
+            }
+            return rows.stream();
+        });
+    }
+
+    // --- Writes ---
+
+    @Override
+    public <S extends UserEntity> S save(S user) {
+        saveAll(List.of(user));
+        return user;
+    }
+
+    /**
+     * Save users atomically: the whole batch is checked against the constraints before any user
+     * is written, so a violation leaves the store unchanged. New users get their ID assigned, and
+     * every changed user its next version, like the {@code @Version} column of the entity. Like the
+     * dirty check of Hibernate, a user saved unchanged keeps its version and is not written.
+     */
+    @Override
+    public <S extends UserEntity> List<S> saveAll(Iterable<S> users) {
+        List<S> batch = new ArrayList<>();
+        users.forEach(batch::add);
+        long lsn = 0;
+        long stamp = lock.writeLock();
+        try {
+            checkConstraints(batch);
+            List<UserRecord> records = new ArrayList<>(batch.size());
+            for (S user : batch) {
+                if (user.getId() == null) {
+                    user.setId(++lastId);
+                }
+                int slot = slotsById.get(user.getId());
+                byte[] name = encode(user.getName());
+                byte[] email = encode(user.getEmail());
+                List<String> userRoles = user.getRoles() == null ? List.of() : List.copyOf(user.getRoles());
+                if (slot >= 0 && isUnchanged(slot, name, email, userRoles)) {
+                    user.setVersion(versions[slot]);
+                    continue;
+                }
+                user.setVersion(slot < 0 ? 0L : versions[slot] + 1);
+                records.add(new UserRecord(user.getId(), user.getVersion(), name, email, userRoles));
+            }
+            if (journal != null && !records.isEmpty()) {
+                lsn = journal.appendPut(records);
+            }
+            for (UserRecord record : records) {
+                write(record);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        sync(lsn);
+        return batch;
+    }
+
+    @Override
+    public void deleteById(Long id) {
+        deleteLiveById(id);
+    }
+
+    @Override
+    public int deleteLiveById(Long id) {
+        long lsn = 0;
+        int deleted = 0;
+        long stamp = lock.writeLock();
+        try {
+            int slot = slotOf(id);
+            if (slot >= 0) {
+                if (journal != null) {
+                    lsn = journal.appendDelete(id);
+                }
+                removeSlot(slot);
+                deleted = 1;
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        sync(lsn);
+        return deleted;
+    }
+
+    // The store keeps no tombstones: a soft delete removes the user at once, leaving nothing to purge
+    @Override
+    public int markDeletedById(Long id) {
+        return deleteLiveById(id);
+    }
+
+    @Override
+    public int deleteLiveByIds(Collection<Long> ids) {
+        long lsn = 0;
+        int deleted = 0;
+        long stamp = lock.writeLock();
+        try {
+            for (long id : sortedDistinct(ids)) {
+                int slot = slotsById.get(id);
+                if (slot >= 0) {
+                    if (journal != null) {
+                        lsn = journal.appendDelete(id);
+                    }
+                    removeSlot(slot);
+                    deleted++;
+                }
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        sync(lsn);
+        return deleted;
+    }
+
+    @Override
+    public int markDeletedByIds(Collection<Long> ids) {
+        return deleteLiveByIds(ids);
+    }
+
+    @Override
+    public int incrementVersions(Collection<Long> ids) {
+        return rewrite(ids, user -> new UserRecord(user.id(), user.version() + 1, user.name(), user.email(), user.roles()));
+    }
+
+    @Override
+    public int deleteRolesOfUsers(Collection<Long> ids, Collection<String> roles) {
+        int[] revoked = new int[1];
+        rewrite(ids, user -> {
+            List<String> kept = new ArrayList<>(user.roles());
+            if (!kept.removeAll(roles)) {
+                return null;
+            }
+            revoked[0] += user.roles().size() - kept.size();
+            return new UserRecord(user.id(), user.version(), user.name(), user.email(), kept);
+        });
+        return revoked[0];
+    }
+
+    @Override
+    public int insertRoleOfUsers(Collection<Long> ids, String role) {
+        return rewrite(ids, user -> {
+            if (user.roles().contains(role)) {
+                return null;
+            }
+            List<String> granted = new ArrayList<>(user.roles());
+            granted.add(role);
+            return new UserRecord(user.id(), user.version(), user.name(), user.email(), granted);
+        });
+    }
+
+    @Override
+    public List<Long> findTombstoneIds(int limit) {
+        return List.of();
+    }
+
+    @Override
+    public int purgeTombstoneRoles(Collection<Long> ids) {
+        return 0;
+    }
+
+    @Override
+    public int purgeTombstones(Collection<Long> ids) {
+        return 0;
+    }
+
+    @Override
+    public void delete(UserEntity user) {
+        deleteById(user.getId());
+    }
+
+    @Override
+    public void deleteAllById(Iterable<? extends Long> ids) {
+        ids.forEach(this::deleteById);
+    }
+
+    @Override
+    public void deleteAll(Iterable<? extends UserEntity> users) {
+        users.forEach(this::delete);
+    }
+
+    @Override
+    public void deleteAll() {
+        long lsn = 0;
+        long stamp = lock.writeLock();
+        try {
+            if (journal != null) {
+                lsn = journal.appendClear();
+            }
+            clear();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        sync(lsn);
+    }
+
+    // Writes are applied immediately, so there is nothing to flush
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public <S extends UserEntity> S saveAndFlush(S user) {
+        return save(user);
+    }
+
+    @Override
+    public <S extends UserEntity> List<S> saveAllAndFlush(Iterable<S> users) {
+        return saveAll(users);
+    }
+
+    @Override
+    @Deprecated
+    public void deleteInBatch(Iterable<UserEntity> users) {
+        deleteAll(users);
+    }
+
+    @Override
+    public void deleteAllInBatch(Iterable<UserEntity> users) {
+        deleteAll(users);
+    }
+
+    @Override
+    public void deleteAllByIdInBatch(Iterable<Long> ids) {
+        deleteAllById(ids);
+    }
+
+    @Override
+    public void deleteAllInBatch() {
+        deleteAll();
+    }
+
+    @Override
+    @Deprecated
+    public UserEntity getOne(Long id) {
+        return getReferenceById(id);
+    }
+
+    @Override
+    @Deprecated
+    public UserEntity getById(Long id) {
+        return getReferenceById(id);
+    }
+
+    @Override
+    public UserEntity getReferenceById(Long id) {
+        return findById(id).orElseThrow(() -> new EntityNotFoundException("Unable to find user with id " + id));
+    }
+
+    // --- Paging; sorting and query by example are not supported ---
+
+    @Override
+    public Page<UserEntity> findAll(Pageable pageable) {
+        if (pageable.getSort().isSorted()) {
+            throw unsupported();
+        }
+        List<UserEntity> users = findAll();
+        if (pageable.isUnpaged()) {
+            return new PageImpl<>(users);
+        }
+        int from = (int) Math.min(pageable.getOffset(), users.size());
+        int to = Math.min(from + pageable.getPageSize(), users.size());
+        return new PageImpl<>(users.subList(from, to), pageable, users.size());
+    }
+
+    @Override
+    public List<UserEntity> findAll(Sort sort) {
+        throw unsupported();
+    }
+
+    @Override
+    public <S extends UserEntity> Optional<S> findOne(Example<S> example) {
+        throw unsupported();
+    }
+
+    @Override
+    public <S extends UserEntity> List<S> findAll(Example<S> example) {
+        throw unsupported();
+    }
+
+    @Override
+    public <S extends UserEntity> List<S> findAll(Example<S> example, Sort sort) {
+        throw unsupported();
+    }
+
+    @Override
+    public <S extends UserEntity> Page<S> findAll(Example<S> example, Pageable pageable) {
+        throw unsupported();
+    }
+
+    @Override
+    public <S extends UserEntity> long count(Example<S> example) {
+        throw unsupported();
+    }
+
+    @Override
+    public <S extends UserEntity> boolean exists(Example<S> example) {
+        throw unsupported();
+    }
+
+    @Override
+    public <S extends UserEntity, R> R findBy(Example<S> example, Function<FluentQuery.FetchableFluentQuery<S>, R> queryFunction) {
+        throw unsupported();
+    }
+
+    // --- Internals ---
+
+    // Runs a reader without locking and retries under the read lock if a writer interfered;
+    // a torn read may fail in arbitrary ways, which is why any runtime exception triggers the retry
+    private <T> T read(Supplier<T> reader) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                T result = reader.get();
+                if (lock.validate(stamp)) {
+                    return result;
+                }
+            } catch (RuntimeException e) {
+                if (lock.validate(stamp)) {
+                    throw e;
+                }
+            }
+        }
+        return readLocked(reader);
+    }
+
+    // Full scans run under the read lock, so that a long read is not repeatedly invalidated by writers
+    private <T> T readLocked(Supplier<T> reader) {
+        long stamp = lock.readLock();
+        try {
+            return reader.get();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private int slotOf(Long id) {
+        return id == null ? -1 : slotsById.get(id);
+    }
+
+    private UserEntity toEntity(int slot) {
+        if (slot < 0) {
+            return null;
+        }
+        short[] codes = roles[slot];
+        List<String> userRoles = new ArrayList<>(codes.length);
+        for (short code : codes) {
+            userRoles.add(roleNames[code]);
+        }
+        UserEntity user = new UserEntity();
+        user.setId(ids[slot]);
+        user.setName(decode(names[slot]));
+        user.setEmail(decode(emails[slot]));
+        user.setRoles(userRoles);
+        user.setVersion(versions[slot]);
+        return user;
+    }
+
+    private List<UserRow> rows(int from, int to) {
+        List<UserRow> rows = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            int slot = slotsById.get(sortedIds[i]);
+            rows.add(new UserRow(ids[slot], decode(names[slot]), decode(emails[slot])));
+        }
+        return rows;
+    }
+
+    private List<UserRoleRow> roleRows(int from, int to) {
+        List<UserRoleRow> rows = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            int slot = slotsById.get(sortedIds[i]);
+            for (short code : roles[slot]) {
+                rows.add(new UserRoleRow(ids[slot], roleNames[code]));
+            }
+        }
+        return rows;
+    }
+
+    private int firstIndexAfter(long afterId) {
+        int index = Arrays.binarySearch(sortedIds, 0, size, afterId);
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+
+    private static long[] sortedDistinct(Collection<Long> ids) {
+        return ids.stream().mapToLong(Long::longValue).distinct().sorted().toArray();
+    }
+
+    // Same rules as the users table: name and email are required, the email is unique, and a user
+    // read at some version can only be saved while it is still at that version
+    private void checkConstraints(List<? extends UserEntity> batch) {
+        Set<String> batchEmails = new HashSet<>();
+        for (UserEntity user : batch) {
+            int current = slotOf(user.getId());
+            if (current >= 0 && user.getVersion() != null && user.getVersion() != versions[current]) {
+                throw new ObjectOptimisticLockingFailureException(UserEntity.class, user.getId());
+            }
+            if (user.getName() == null || user.getEmail() == null) {
+                throw new DataIntegrityViolationException("NULL not allowed for column \""
+                        + (user.getName() == null ? "NAME" : "EMAIL") + "\"");
+            }
+            int slot = emailIndex.findAny(encode(user.getEmail()));
+            boolean takenByOther = slot >= 0 && (user.getId() == null || ids[slot] != user.getId());
+            if (!batchEmails.add(user.getEmail()) || takenByOther) {
+                throw new DataIntegrityViolationException("Unique index or primary key violation: \""
+                        + UserEntity.EMAIL_UNIQUE_CONSTRAINT + "\" on USERS(EMAIL)");
+            }
+        }
+    }
+
+    private boolean isUnchanged(int slot, byte[] name, byte[] email, List<String> userRoles) {
+        return Arrays.equals(names[slot], name) && Arrays.equals(emails[slot], email)
+                && new HashSet<>(record(slot).roles()).equals(new HashSet<>(userRoles));
+    }
+
+    private void write(UserRecord user) {
+        int slot = slotsById.get(user.id());
+        if (slot >= 0) {
+            emailIndex.remove(emails[slot], slot);
+            nameIndex.remove(names[slot], slot);
+        } else {
+            lastId = Math.max(lastId, user.id());
+            slot = allocateSlot();
+            ids[slot] = user.id();
+            slotsById.put(user.id(), slot);
+            insertSortedId(user.id());
+        }
+        versions[slot] = user.version();
+        names[slot] = user.name();
+        emails[slot] = user.email();
+        roles[slot] = encodeRoles(user.roles());
+        emailIndex.add(emails[slot], slot);
+        nameIndex.add(names[slot], slot);
+    }
+
+    // Replaces the given users by the records the change makes of them, null for no change, journaled as one batch;
+    // returns the number of changed users
+    private int rewrite(Collection<Long> ids, UnaryOperator<UserRecord> change) {
+        long lsn = 0;
+        List<UserRecord> records = new ArrayList<>();
+        long stamp = lock.writeLock();
+        try {
+            for (long id : sortedDistinct(ids)) {
+                int slot = slotsById.get(id);
+                if (slot >= 0) {
+                    UserRecord changed = change.apply(record(slot));
+                    if (changed != null) {
+                        records.add(changed);
+                    }
+                }
+            }
+            if (journal != null && !records.isEmpty()) {
+                lsn = journal.appendPut(records);
+            }
+            for (UserRecord record : records) {
+                write(record);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        sync(lsn);
+        return records.size();
+    }
+
+    private UserRecord record(int slot) {
+        List<String> userRoles = new ArrayList<>(roles[slot].length);
+        for (short code : roles[slot]) {
+            userRoles.add(roleNames[code]);
+        }
+        return new UserRecord(ids[slot], versions[slot], names[slot], emails[slot], userRoles);
+    }
+
+    private void clear() {
+        slotsById.clear();
+        emailIndex.clear();
+        nameIndex.clear();
+        Arrays.fill(emails, null);
+        Arrays.fill(names, null);
+        Arrays.fill(roles, null);
+        slotCount = 0;
+        freeSlotCount = 0;
+        size = 0;
+    }
+
+    // Waits for the journal outside the write lock, so that concurrent writers share a disk force
+    private void sync(long lsn) {
+        if (journal != null && lsn > 0) {
+            journal.sync(lsn);
+        }
+    }
+
+    private void removeSlot(int slot) {
+        long id = ids[slot];
+        emailIndex.remove(emails[slot], slot);
+        nameIndex.remove(names[slot], slot);
+        slotsById.remove(id);
+        int index = Arrays.binarySearch(sortedIds, 0, size, id);
+        System.arraycopy(sortedIds, index + 1, sortedIds, index, size - index - 1);
+        size--;
+        names[slot] = null;
+        emails[slot] = null;
+        roles[slot] = null;
+        if (freeSlotCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeSlotCount * 2);
+        }
+        freeSlots[freeSlotCount++] = slot;
+    }
+
+    private int allocateSlot() {
+        if (freeSlotCount > 0) {
+            return freeSlots[--freeSlotCount];
+        }
+        if (slotCount == ids.length) {
+            int capacity = ids.length * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            versions = Arrays.copyOf(versions, capacity);
+            names = Arrays.copyOf(names, capacity);
+            emails = Arrays.copyOf(emails, capacity);
+            roles = Arrays.copyOf(roles, capacity);
+        }
+        return slotCount++;
+    }
+
+    // IDs are mostly assigned in ascending order, so this is usually an append
+    private void insertSortedId(long id) {
+        if (size == sortedIds.length) {
+            sortedIds = Arrays.copyOf(sortedIds, size * 2);
+        }
+        int index = unsortedIds || size == 0 || sortedIds[size - 1] < id ? size : -Arrays.binarySearch(sortedIds, 0, size, id) - 1;
+        System.arraycopy(sortedIds, index, sortedIds, index + 1, size - index);
+        sortedIds[index] = id;
+        size++;
+    }
+
+    private short[] encodeRoles(List<String> userRoles) {
+        if (userRoles == null || userRoles.isEmpty()) {
+            return new short[0];
+        }
+        short[] codes = new short[userRoles.size()];
+        for (int i = 0; i < codes.length; i++) {
+            codes[i] = roleCode(userRoles.get(i));
+        }
+        return codes;
+    }
+
+    private short roleCode(String role) {
+        Short code = roleCodes.get(role);
+        if (code != null) {
+            return code;
+        }
+        if (roleCodes.size() == Short.MAX_VALUE) {
+            throw new DataIntegrityViolationException("Too many distinct roles.");
+        }
+        short newCode = (short) roleCodes.size();
+        if (newCode == roleNames.length) {
+            roleNames = Arrays.copyOf(roleNames, roleNames.length * 2);
+        }
+        roleNames[newCode] = role;
+        roleCodes.put(role, newCode);
+        return newCode;
+    }
+
+    private static byte[] encode(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String decode(byte[] value) {
+        return value == null ? null : new String(value, StandardCharsets.UTF_8);
+    }
+
+    // Restores the store from the journal and captures it for snapshots
+    private final class JournalStore implements UserJournal.Store {
+
+        @Override
+        public void restore(UserRecord user) {
+            write(user);
+        }
+
+        @Override
+        public void restoreDelete(long id) {
+            int slot = slotsById.get(id);
+            if (slot >= 0) {
+                removeSlot(slot);
+            }
+        }
+
+        @Override
+        public void restoreClear() {
+            clear();
+        }
+
+        @Override
+        public void restoreLastId(long id) {
+            lastId = Math.max(lastId, id);
+        }
+
+        @Override
+        public void snapshotRestored() {
+            Arrays.sort(sortedIds, 0, size);
+            unsortedIds = false;
+        }
+
+        @Override
+        public StoreImage capture() {
+            long stamp = lock.writeLock();
+            try {
+                // Names, emails and role codes are replaced on write, never modified, so shallow copies suffice
+                return new StoreImage(journal.rotate(), lastId, slotCount,
+                        Arrays.copyOf(ids, slotCount), Arrays.copyOf(versions, slotCount), Arrays.copyOf(names, slotCount),
+                        Arrays.copyOf(emails, slotCount), Arrays.copyOf(roles, slotCount),
+                        Arrays.copyOf(roleNames, roleCodes.size()));
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+    }
+
+    private static UnsupportedOperationException unsupported() {
+        return new UnsupportedOperationException("Not supported by the in-memory user store.");
+    }
+}
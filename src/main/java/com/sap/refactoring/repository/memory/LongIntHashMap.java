@@ -0,0 +1,141 @@
+package com.sap.refactoring.repository.memory;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from {@code long} keys to non-negative {@code int} values, with linear
+ * probing and backward-shift deletion, so no boxing, entry objects or tombstones are involved.
+ * Not thread-safe; {@link InMemoryUserRepository} and the off-heap user cache guard it with their locks.
+ * <p>
+ * {@link #get(long)} may also run as an optimistic read racing with a writer. Keys, values and mask
+ * are therefore swapped as one fully built {@link Table}, and a probe gives up after visiting every
+ * entry, so a torn read returns a wrong value for the caller to discard rather than spinning forever.
+ */
+public final class LongIntHashMap {
+
+    public static final int MISSING = -1;
+
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private Table table;
+    private int size;
+
+    private record Table(long[] keys, int[] values, int mask) {
+
+        Table(int capacity) {
+            this(new long[capacity], filled(capacity), capacity - 1);
+        }
+
+        private static int[] filled(int capacity) {
+            int[] values = new int[capacity];
+            Arrays.fill(values, MISSING);
+            return values;
+        }
+    }
+
+    public LongIntHashMap(int expectedSize) {
+        table = new Table(tableSizeFor(expectedSize));
+    }
+
+    /**
+     * @return the value of the key, or {@link #MISSING}.
+     */
+    public int get(long key) {
+        Table table = this.table;
+        long[] keys = table.keys();
+        int[] values = table.values();
+        int mask = table.mask();
+        for (int i = index(key, mask), probes = 0; probes < values.length; i = (i + 1) & mask, probes++) {
+            int value = values[i];
+            if (value == MISSING || keys[i] == key) {
+                return value;
+            }
+        }
+        return MISSING;
+    }
+
+    public void put(long key, int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Values must not be negative: " + value);
+        }
+        long[] keys = table.keys();
+        int[] values = table.values();
+        int mask = table.mask();
+        for (int i = index(key, mask); ; i = (i + 1) & mask) {
+            if (values[i] == MISSING) {
+                keys[i] = key;
+                values[i] = value;
+                if (++size > values.length * LOAD_FACTOR) {
+                    resize();
+                }
+                return;
+            }
+            if (keys[i] == key) {
+                values[i] = value;
+                return;
+            }
+        }
+    }
+
+    public void remove(long key) {
+        long[] keys = table.keys();
+        int[] values = table.values();
+        int mask = table.mask();
+        int i = index(key, mask);
+        while (values[i] != MISSING && keys[i] != key) {
+            i = (i + 1) & mask;
+        }
+        if (values[i] == MISSING) {
+            return;
+        }
+        values[i] = MISSING;
+        size--;
+        // Shift back the following entries of the cluster that would otherwise become unreachable
+        for (int j = (i + 1) & mask; values[j] != MISSING; j = (j + 1) & mask) {
+            int home = index(keys[j], mask);
+            boolean reachable = i <= j ? (i < home && home <= j) : (i < home || home <= j);
+            if (!reachable) {
+                keys[i] = keys[j];
+                values[i] = values[j];
+                values[j] = MISSING;
+                i = j;
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        table = new Table(table.values().length);
+        size = 0;
+    }
+
+    // Fills the larger table before publishing it, so that readers only ever see a complete one
+    private void resize() {
+        Table old = table;
+        Table resized = new Table(old.values().length * 2);
+        for (int j = 0; j < old.values().length; j++) {
+            if (old.values()[j] != MISSING) {
+                int i = index(old.keys()[j], resized.mask());
+                while (resized.values()[i] != MISSING) {
+                    i = (i + 1) & resized.mask();
+                }
+                resized.keys()[i] = old.keys()[j];
+                resized.values()[i] = old.values()[j];
+            }
+        }
+        table = resized;
+    }
+
+    private static int index(long key, int mask) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private static int tableSizeFor(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(2, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        return Math.max(capacity, 16);
+    }
+}
@@ -0,0 +1,144 @@
+package com.sap.refactoring.repository.memory;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+
+/**
+ * Open-addressing hash index from byte-string keys to row slots, used for the email and name
+ * columns. The keys are not copied: the index stores the slot and the key hash only, and compares
+ * candidates against the column through {@code keyOfSlot}. Several slots may share a key.
+ * Not thread-safe; {@link InMemoryUserRepository} guards it with its lock.
+ * <p>
+ * Lookups may also run as optimistic reads racing with a writer, so slots and hashes are swapped as
+ * one fully built {@link Table}, and a probe gives up after visiting every entry.
+ */
+final class SlotIndex {
+
+    private static final int EMPTY = -1;
+    private static final int DELETED = -2;
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private final IntFunction<byte[]> keyOfSlot;
+
+    private Table table;
+    private int used;
+
+    private record Table(int[] slots, int[] hashes) {
+
+        Table(int capacity) {
+            this(new int[capacity], new int[capacity]);
+            Arrays.fill(slots, EMPTY);
+        }
+    }
+
+    SlotIndex(int expectedSize, IntFunction<byte[]> keyOfSlot) {
+        this.keyOfSlot = keyOfSlot;
+        this.table = new Table(Math.max(16, Integer.highestOneBit(Math.max(8, expectedSize) * 2) << 1));
+    }
+
+    /**
+     * Pass every slot whose key equals the given one to the consumer.
+     */
+    void forEach(byte[] key, IntConsumer consumer) {
+        Table table = this.table;
+        int[] slots = table.slots();
+        int[] hashes = table.hashes();
+        int mask = slots.length - 1;
+        int hash = hash(key);
+        for (int i = hash & mask, probes = 0; slots[i] != EMPTY && probes < slots.length; i = (i + 1) & mask, probes++) {
+            int slot = slots[i];
+            if (slot != DELETED && hashes[i] == hash && Arrays.equals(keyOfSlot.apply(slot), key)) {
+                consumer.accept(slot);
+            }
+        }
+    }
+
+    /**
+     * @return the first slot found with the given key, or -1.
+     */
+    int findAny(byte[] key) {
+        Table table = this.table;
+        int[] slots = table.slots();
+        int[] hashes = table.hashes();
+        int mask = slots.length - 1;
+        int hash = hash(key);
+        for (int i = hash & mask, probes = 0; slots[i] != EMPTY && probes < slots.length; i = (i + 1) & mask, probes++) {
+            int slot = slots[i];
+            if (slot != DELETED && hashes[i] == hash && Arrays.equals(keyOfSlot.apply(slot), key)) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    void add(byte[] key, int slot) {
+        int[] slots = table.slots();
+        int[] hashes = table.hashes();
+        int hash = hash(key);
+        int mask = slots.length - 1;
+        int i = hash & mask;
+        while (slots[i] >= 0) {
+            i = (i + 1) & mask;
+        }
+        if (slots[i] == EMPTY) {
+            used++;
+        }
+        slots[i] = slot;
+        hashes[i] = hash;
+        if (used > slots.length * LOAD_FACTOR) {
+            rehash();
+        }
+    }
+
+    void remove(byte[] key, int slot) {
+        int[] slots = table.slots();
+        int hash = hash(key);
+        int mask = slots.length - 1;
+        for (int i = hash & mask; slots[i] != EMPTY; i = (i + 1) & mask) {
+            if (slots[i] == slot) {
+                slots[i] = DELETED;
+                return;
+            }
+        }
+    }
+
+    void clear() {
+        table = new Table(table.slots().length);
+        used = 0;
+    }
+
+    // Rebuilds the table, dropping deleted markers and growing it if live entries need the room;
+    // the new table is filled before it is published
+    private void rehash() {
+        int[] oldSlots = table.slots();
+        int[] oldHashes = table.hashes();
+        int live = 0;
+        for (int slot : oldSlots) {
+            if (slot >= 0) {
+                live++;
+            }
+        }
+        Table rebuilt = new Table(live * 4 > oldSlots.length ? oldSlots.length * 2 : oldSlots.length);
+        int[] slots = rebuilt.slots();
+        int[] hashes = rebuilt.hashes();
+        int mask = slots.length - 1;
+        for (int j = 0; j < oldSlots.length; j++) {
+            if (oldSlots[j] >= 0) {
+                int i = oldHashes[j] & mask;
+                while (slots[i] != EMPTY) {
+                    i = (i + 1) & mask;
+                }
+                slots[i] = oldSlots[j];
+                hashes[i] = oldHashes[j];
+            }
+        }
+        table = rebuilt;
+        used = live;
+    }
+
+    private static int hash(byte[] key) {
+        int hash = Arrays.hashCode(key) * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,20 @@
+package com.sap.refactoring.repository.memory;
+
+/**
+ * Point-in-time copy of the columns of the in-memory store, written out as a journal snapshot.
+ * Slots whose email is null are free. The byte and role arrays are shared with the store, which
+ * replaces rather than modifies them.
+ *
+ * @param generation the first journal generation not covered by this image.
+ * @param lastId     the highest user ID ever assigned.
+ * @param slotCount  the number of slots in use or free.
+ * @param ids        the user IDs, by slot.
+ * @param versions   the user versions, by slot.
+ * @param names      the UTF-8 encoded names, by slot.
+ * @param emails     the UTF-8 encoded emails, by slot.
+ * @param roles      the role codes, by slot.
+ * @param roleNames  the role names, by code.
+ */
+record StoreImage(long generation, long lastId, int slotCount, long[] ids, long[] versions, byte[][] names, byte[][] emails,
+                  short[][] roles, String[] roleNames) {
+}
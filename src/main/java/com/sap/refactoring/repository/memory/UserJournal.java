@@ -0,0 +1,801 @@
+package com.sap.refactoring.repository.memory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+import java.util.zip.Checksum;
+
+/**
+ * Persistence of the {@link InMemoryUserRepository} in a local directory, selected with the {@code durable} profile.
+ * <p>
+ * Every write of the store is appended as one checksummed record to a memory-mapped write-ahead log before it
+ * is applied, so a batch is recovered entirely or not at all. When the log has grown past a threshold, the
+ * store is compacted into a binary snapshot: the log is rotated to a new generation while writers are briefly
+ * blocked, the columns of the store are written out, and the generations the snapshot covers are deleted.
+ * On startup the snapshot is loaded and the newer generations are replayed; a torn record at the end of the
+ * last generation is cut off.
+ * <p>
+ * How long a write waits for the disk depends on the {@link FsyncPolicy}. With {@link FsyncPolicy#ALWAYS},
+ * writers that arrive while the log is being forced are all covered by the next force (group commit).
+ */
+@Component
+@Profile("durable")
+public class UserJournal implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserJournal.class);
+
+    private static final String SNAPSHOT_FILE = "users.snapshot";
+    private static final Pattern LOG_FILE = Pattern.compile("users-(\\d+)\\.wal");
+    private static final int SNAPSHOT_MAGIC = 0x55534E50;
+    // Version 1 snapshots predate user versions, whose users are restored at version 0;
+    // versions before 3 store role counts as unsigned shorts
+    private static final int SNAPSHOT_VERSION = 3;
+
+    // Records of type PUT predate user versions; new puts are written as PUT_VERSIONED
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    private static final byte CLEAR = 3;
+    private static final byte PUT_VERSIONED = 4;
+
+    // Payload length and CRC-32C of the payload
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int IO_BUFFER_SIZE = 1 << 20;
+
+    /**
+     * When writes are forced to disk.
+     */
+    public enum FsyncPolicy {
+        /**
+         * A write returns once its log record is on disk.
+         */
+        ALWAYS,
+        /**
+         * The log is forced every {@code user.durable.fsync-interval-ms}; a machine crash loses at most
+         * the writes of the last interval.
+         */
+        INTERVAL,
+        /**
+         * The operating system writes the log back when it sees fit; only process crashes are survived.
+         */
+        NEVER
+    }
+
+    /**
+     * The store the journal restores on startup and snapshots.
+     */
+    interface Store {
+
+        void restore(UserRecord user);
+
+        void restoreDelete(long id);
+
+        void restoreClear();
+
+        void restoreLastId(long lastId);
+
+        /**
+         * Called once the users of the snapshot, restored in no particular order, are all in, before the log is replayed.
+         */
+        void snapshotRestored();
+
+        /**
+         * Copy the store and {@link UserJournal#rotate() rotate} the log at the same point, blocking writers meanwhile.
+         */
+        StoreImage capture();
+    }
+
+    private record Replay(long validEnd, long records, boolean torn) {
+    }
+
+    private final Path directory;
+    private final FsyncPolicy fsyncPolicy;
+    private final int segmentSize;
+    private final long snapshotThreshold;
+
+    // Log state, guarded by logLock, a lock rather than the monitor so that virtual threads forcing a
+    // full segment do not pin their carrier. Positions in the log (LSNs) count the bytes appended since startup.
+    private Store store;
+    private long generation;
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+    private long segmentOffset;
+    private long segmentLsn;
+    private long appendedLsn;
+    private long logBytes;
+    private ByteBuffer recordBuffer = ByteBuffer.allocate(4096);
+    private final CRC32C recordChecksum = new CRC32C();
+
+    private final ReentrantLock logLock = new ReentrantLock();
+    private final AtomicLong durableLsn = new AtomicLong();
+    private final ReentrantLock syncLock = new ReentrantLock();
+    private final ReentrantLock snapshotLock = new ReentrantLock();
+    // Snapshots take seconds for large stores, so they run apart from the scheduler that forces the log
+    private final ExecutorService snapshotExecutor;
+    private final AtomicBoolean snapshotScheduled = new AtomicBoolean();
+
+    public UserJournal(@Value("${user.durable.directory:data}") Path directory,
+                       @Value("${user.durable.fsync:INTERVAL}") FsyncPolicy fsyncPolicy,
+                       @Value("${user.durable.segment-size:64MB}") DataSize segmentSize,
+                       @Value("${user.durable.snapshot-threshold:256MB}") DataSize snapshotThreshold) {
+        this.directory = directory;
+        this.fsyncPolicy = fsyncPolicy;
+        this.segmentSize = Math.toIntExact(segmentSize.toBytes());
+        this.snapshotThreshold = snapshotThreshold.toBytes();
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("user-snapshot-");
+        threadFactory.setDaemon(true);
+        this.snapshotExecutor = Executors.newSingleThreadExecutor(threadFactory);
+    }
+
+    /**
+     * Restore the store from the snapshot and the log written since, then start logging its writes.
+     * Called once by the store, which must not be written concurrently.
+     *
+     * @param store the store to restore.
+     */
+    void open(Store store) {
+        logLock.lock();
+        try {
+            this.store = store;
+            Files.createDirectories(directory);
+            long started = System.nanoTime();
+            long snapshotGeneration = loadSnapshot(store);
+            store.snapshotRestored();
+            long lastGeneration = snapshotGeneration;
+            long validEnd = 0;
+            long records = 0;
+            List<Long> generations = logGenerations();
+            for (int i = 0; i < generations.size(); i++) {
+                long logGeneration = generations.get(i);
+                if (logGeneration < snapshotGeneration) {
+                    // Left over from a compaction interrupted before its clean-up
+                    Files.delete(logFile(logGeneration));
+                    continue;
+                }
+                Replay replay = replayLog(logGeneration, store);
+                if (replay.torn()) {
+                    if (i < generations.size() - 1) {
+                        throw new IllegalStateException("User journal generation " + logGeneration
+                                + " is corrupt at byte " + replay.validEnd() + ".");
+                    }
+                    logger.warn("Cutting off a torn record at byte {} of user journal generation {}",
+                            replay.validEnd(), logGeneration);
+                }
+                lastGeneration = logGeneration;
+                validEnd = replay.validEnd();
+                records += replay.records();
+                logBytes += replay.validEnd();
+            }
+            generation = lastGeneration;
+            openLog(validEnd);
+            logger.info("User journal restored snapshot generation {} and {} log records in {} ms",
+                    snapshotGeneration, records, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open the user journal in " + directory, e);
+        } finally {
+            logLock.unlock();
+        }
+    }
+
+    /**
+     * Log the saving of users, new or updated, as one record.
+     *
+     * @param users the users as they are about to be stored.
+     * @return the log position to {@link #sync(long)} on.
+     */
+    long appendPut(List<UserRecord> users) {
+        logLock.lock();
+        try {
+            beginRecord(PUT_VERSIONED, 4);
+            recordBuffer.putInt(users.size());
+            for (UserRecord user : users) {
+                reserve(8 + 8 + 4 + user.name().length + 4 + user.email().length + 4);
+                recordBuffer.putLong(user.id());
+                recordBuffer.putLong(user.version());
+                recordBuffer.putInt(user.name().length).put(user.name());
+                recordBuffer.putInt(user.email().length).put(user.email());
+                if (user.roles() == null) {
+                    recordBuffer.putInt(-1);
+                    continue;
+                }
+                recordBuffer.putInt(user.roles().size());
+                for (String role : user.roles()) {
+                    byte[] encoded = role == null ? null : role.getBytes(StandardCharsets.UTF_8);
+                    reserve(4 + (encoded == null ? 0 : encoded.length));
+                    recordBuffer.putInt(encoded == null ? -1 : encoded.length);
+                    if (encoded != null) {
+                        recordBuffer.put(encoded);
+                    }
+                }
+            }
+            return appendRecord();
+        } finally {
+            logLock.unlock();
+        }
+    }
+
+    /**
+     * Log the deletion of a user.
+     *
+     * @param id the ID of the user.
+     * @return the log position to {@link #sync(long)} on.
+     */
+    long appendDelete(long id) {
+        logLock.lock();
+        try {
+            beginRecord(DELETE, 8);
+            recordBuffer.putLong(id);
+            return appendRecord();
+        } finally {
+            logLock.unlock();
+        }
+    }
+
+    /**
+     * Log the deletion of all users.
+     *
+     * @return the log position to {@link #sync(long)} on.
+     */
+    long appendClear() {
+        logLock.lock();
+        try {
+            beginRecord(CLEAR, 0);
+            return appendRecord();
+        } finally {
+            logLock.unlock();
+        }
+    }
+
+    /**
+     * Wait until the log is on disk up to the given position, if the fsync policy requires it.
+     *
+     * @param lsn the position returned by an append.
+     */
+    void sync(long lsn) {
+        if (fsyncPolicy == FsyncPolicy.ALWAYS) {
+            force(lsn);
+        }
+    }
+
+    /**
+     * Force the log to disk, for the {@link FsyncPolicy#INTERVAL} policy.
+     */
+    @Scheduled(fixedDelayString = "${user.durable.fsync-interval-ms:100}")
+    public void forcePeriodically() {
+        if (fsyncPolicy == FsyncPolicy.INTERVAL) {
+            force(appendedLsn());
+        }
+    }
+
+    /**
+     * Compact the store into a snapshot once enough log has been written since the last one. The snapshot
+     * is written on a thread of its own, so that the scheduler keeps forcing the log every interval meanwhile.
+     */
+    @Scheduled(fixedDelayString = "${user.durable.snapshot-check-interval-ms:10000}")
+    public void snapshotIfDue() {
+        if (logBytes() < snapshotThreshold || !snapshotScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        snapshotExecutor.execute(() -> {
+            try {
+                snapshot();
+            } catch (RuntimeException e) {
+                logger.error("User snapshot failed, the log is kept until the next one", e);
+            } finally {
+                snapshotScheduled.set(false);
+            }
+        });
+    }
+
+    /**
+     * Write a snapshot of the store and delete the log generations it covers. Writers are only
+     * blocked while the columns of the store are copied.
+     */
+    public void snapshot() {
+        snapshotLock.lock();
+        try {
+            Store snapshotStore;
+            logLock.lock();
+            try {
+                snapshotStore = store;
+            } finally {
+                logLock.unlock();
+            }
+            if (snapshotStore == null) {
+                return;
+            }
+            long started = System.nanoTime();
+            StoreImage image = snapshotStore.capture();
+            Path temporary = directory.resolve(SNAPSHOT_FILE + ".tmp");
+            long users = writeSnapshot(image, temporary);
+            Files.move(temporary, directory.resolve(SNAPSHOT_FILE),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            forceDirectory();
+            for (long logGeneration : logGenerations()) {
+                if (logGeneration < image.generation()) {
+                    Files.deleteIfExists(logFile(logGeneration));
+                }
+            }
+            logger.info("User snapshot of {} users written at generation {} in {} ms", users, image.generation(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write the user snapshot in " + directory, e);
+        } finally {
+            snapshotLock.unlock();
+        }
+    }
+
+    /**
+     * Start a new log generation. Called by the store while capturing a snapshot, so that the snapshot
+     * and the new generation meet exactly.
+     *
+     * @return the new generation.
+     */
+    long rotate() {
+        logLock.lock();
+        try {
+            forceSegment();
+            channel.close();
+            generation++;
+            logBytes = 0;
+            openLog(0);
+            return generation;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot rotate the user journal in " + directory, e);
+        } finally {
+            logLock.unlock();
+        }
+    }
+
+    /**
+     * Force the log to disk and close it. A snapshot still being written is abandoned, and the log it
+     * would have replaced is kept.
+     *
+     * @throws IOException if the log cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        snapshotExecutor.shutdown();
+        logLock.lock();
+        try {
+            if (channel == null) {
+                return;
+            }
+            forceSegment();
+            channel.close();
+            channel = null;
+            segment = null;
+        } finally {
+            logLock.unlock();
+        }
+    }
+
+    // --- Log ---
+
+    private long appendedLsn() {
+        logLock.lock();
+        try {
+            return appendedLsn;
+        } finally {
+            logLock.unlock();
+        }
+    }
+
+    private long logBytes() {
+        logLock.lock();
+        try {
+            return store == null ? 0 : logBytes;
+        } finally {
+            logLock.unlock();
+        }
+    }
+
+    private void beginRecord(byte type, int payloadSize) {
+        recordBuffer.clear();
+        reserve(RECORD_HEADER_SIZE + 1 + payloadSize);
+        recordBuffer.position(RECORD_HEADER_SIZE);
+        recordBuffer.put(type);
+    }
+
+    private void reserve(int bytes) {
+        if (recordBuffer.remaining() < bytes) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(recordBuffer.capacity() * 2, recordBuffer.position() + bytes));
+            recordBuffer.flip();
+            recordBuffer = larger.put(recordBuffer);
+        }
+    }
+
+    private long appendRecord() {
+        if (channel == null) {
+            throw new IllegalStateException("The user journal is closed.");
+        }
+        ByteBuffer record = recordBuffer.flip();
+        int length = record.limit() - RECORD_HEADER_SIZE;
+        recordChecksum.reset();
+        recordChecksum.update(record.slice(RECORD_HEADER_SIZE, length));
+        record.putInt(0, length).putInt(4, (int) recordChecksum.getValue());
+
+        if (segment.remaining() < record.limit()) {
+            long filePosition = segmentOffset + segment.position();
+            if (fsyncPolicy != FsyncPolicy.NEVER) {
+                forceSegment();
+            }
+            mapSegment(filePosition, Math.max(segmentSize, record.limit()));
+        }
+        segment.put(record);
+        appendedLsn += record.limit();
+        logBytes += record.limit();
+        return appendedLsn;
+    }
+
+    private void force(long lsn) {
+        if (durableLsn.get() >= lsn) {
+            return;
+        }
+        syncLock.lock();
+        try {
+            // Writers queued behind the previous force are usually covered by it already
+            if (durableLsn.get() >= lsn) {
+                return;
+            }
+            MappedByteBuffer buffer;
+            long base;
+            long end;
+            logLock.lock();
+            try {
+                if (segment == null) {
+                    return;
+                }
+                buffer = segment;
+                base = segmentLsn;
+                end = appendedLsn;
+            } finally {
+                logLock.unlock();
+            }
+            long from = Math.max(durableLsn.get(), base);
+            if (end > from) {
+                buffer.force((int) (from - base), (int) (end - from));
+            }
+            durableLsn.accumulateAndGet(end, Math::max);
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    // Forces the unforced part of the current segment; called with the log lock held
+    private void forceSegment() {
+        long from = Math.max(durableLsn.get(), segmentLsn);
+        if (appendedLsn > from) {
+            segment.force((int) (from - segmentLsn), (int) (appendedLsn - from));
+        }
+        durableLsn.accumulateAndGet(appendedLsn, Math::max);
+    }
+
+    private void openLog(long position) throws IOException {
+        channel = FileChannel.open(logFile(generation),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        // Drops a torn tail, and the zeroed space mapped ahead of the last record
+        channel.truncate(position);
+        mapSegment(position, segmentSize);
+    }
+
+    private void mapSegment(long position, int size) {
+        try {
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, position, size);
+            segmentOffset = position;
+            segmentLsn = appendedLsn;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot map the user journal in " + directory, e);
+        }
+    }
+
+    private Replay replayLog(long logGeneration, Store store) throws IOException {
+        try (FileChannel log = FileChannel.open(logFile(logGeneration), StandardOpenOption.READ)) {
+            BlockReader reader = new BlockReader(log, log.size(), null);
+            CRC32C checksum = new CRC32C();
+            long records = 0;
+            while (true) {
+                long start = reader.position();
+                if (!reader.ensure(RECORD_HEADER_SIZE)) {
+                    return new Replay(start, records, reader.buffer.hasRemaining());
+                }
+                ByteBuffer buffer = reader.buffer;
+                int length = buffer.getInt();
+                int expected = buffer.getInt();
+                if (length == 0) {
+                    return new Replay(start, records, false);
+                }
+                if (length < 0 || !reader.ensure(length)) {
+                    return new Replay(start, records, true);
+                }
+                checksum.reset();
+                checksum.update(buffer.slice(buffer.position(), length));
+                if ((int) checksum.getValue() != expected) {
+                    return new Replay(start, records, true);
+                }
+                apply(buffer, store);
+                records++;
+            }
+        }
+    }
+
+    private static void apply(ByteBuffer record, Store store) {
+        byte type = record.get();
+        switch (type) {
+            case PUT, PUT_VERSIONED -> {
+                int count = record.getInt();
+                for (int i = 0; i < count; i++) {
+                    long id = record.getLong();
+                    long version = type == PUT_VERSIONED ? record.getLong() : 0;
+                    byte[] name = bytes(record, record.getInt());
+                    byte[] email = bytes(record, record.getInt());
+                    int roleCount = record.getInt();
+                    List<String> roles = null;
+                    if (roleCount >= 0) {
+                        roles = new ArrayList<>(roleCount);
+                        for (int r = 0; r < roleCount; r++) {
+                            int roleLength = record.getInt();
+                            roles.add(roleLength < 0 ? null : new String(bytes(record, roleLength), StandardCharsets.UTF_8));
+                        }
+                    }
+                    store.restore(new UserRecord(id, version, name, email, roles));
+                }
+            }
+            case DELETE -> store.restoreDelete(record.getLong());
+            case CLEAR -> store.restoreClear();
+            default -> throw new IllegalStateException("Unknown user journal record type " + type + ".");
+        }
+    }
+
+    private List<Long> logGenerations() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> LOG_FILE.matcher(file.getFileName().toString()))
+                    .filter(Matcher::matches)
+                    .map(matcher -> Long.valueOf(matcher.group(1)))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private Path logFile(long logGeneration) {
+        return directory.resolve("users-" + logGeneration + ".wal");
+    }
+
+    // --- Snapshot ---
+
+    // Layout: magic, version, generation, last ID, role dictionary, user count, users, CRC-32C of all before.
+    // A user is its ID, version, name, email and role codes
+    private long writeSnapshot(StoreImage image, Path file) throws IOException {
+        long users = 0;
+        for (int slot = 0; slot < image.slotCount(); slot++) {
+            if (image.emails()[slot] != null) {
+                users++;
+            }
+        }
+        try (FileChannel snapshot = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            BlockWriter writer = new BlockWriter(snapshot);
+            writer.reserve(4 + 4 + 8 + 8 + 4)
+                    .putInt(SNAPSHOT_MAGIC)
+                    .putInt(SNAPSHOT_VERSION)
+                    .putLong(image.generation())
+                    .putLong(image.lastId())
+                    .putInt(image.roleNames().length);
+            for (String roleName : image.roleNames()) {
+                byte[] encoded = roleName == null ? new byte[0] : roleName.getBytes(StandardCharsets.UTF_8);
+                writer.reserve(4 + encoded.length).putInt(roleName == null ? -1 : encoded.length).put(encoded);
+            }
+            writer.reserve(8).putLong(users);
+            for (int slot = 0; slot < image.slotCount(); slot++) {
+                byte[] email = image.emails()[slot];
+                if (email == null) {
+                    continue;
+                }
+                byte[] name = image.names()[slot];
+                short[] roles = image.roles()[slot];
+                ByteBuffer buffer = writer.reserve(8 + 8 + 4 + name.length + 4 + email.length + 4 + 2 * roles.length);
+                buffer.putLong(image.ids()[slot]);
+                buffer.putLong(image.versions()[slot]);
+                buffer.putInt(name.length).put(name);
+                buffer.putInt(email.length).put(email);
+                buffer.putInt(roles.length);
+                for (short role : roles) {
+                    buffer.putShort(role);
+                }
+            }
+            writer.finish();
+            snapshot.force(true);
+        }
+        return users;
+    }
+
+    // Returns the first log generation not covered by the snapshot
+    private long loadSnapshot(Store store) throws IOException {
+        Path file = directory.resolve(SNAPSHOT_FILE);
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        try (FileChannel snapshot = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = snapshot.size();
+            CRC32C checksum = new CRC32C();
+            BlockReader reader = new BlockReader(snapshot, size - 4, checksum);
+            ByteBuffer buffer = reader.require(4 + 4 + 8 + 8 + 4);
+            int magic = buffer.getInt();
+            int formatVersion = buffer.getInt();
+            if (magic != SNAPSHOT_MAGIC || formatVersion < 1 || formatVersion > SNAPSHOT_VERSION) {
+                throw new IllegalStateException(file + " is not a user snapshot of a supported version.");
+            }
+            boolean versioned = formatVersion >= 2;
+            boolean intRoleCounts = formatVersion >= 3;
+            long generation = buffer.getLong();
+            long lastId = buffer.getLong();
+            String[] roleNames = new String[buffer.getInt()];
+            for (int code = 0; code < roleNames.length; code++) {
+                int length = reader.require(4).getInt();
+                roleNames[code] = length < 0 ? null : new String(bytes(reader.require(length), length), StandardCharsets.UTF_8);
+            }
+
+            long users = reader.require(8).getLong();
+            for (long i = 0; i < users; i++) {
+                buffer = reader.require(8 + (versioned ? 8 : 0) + 4);
+                long id = buffer.getLong();
+                long version = versioned ? buffer.getLong() : 0;
+                int nameLength = buffer.getInt();
+                byte[] name = bytes(reader.require(nameLength + 4), nameLength);
+                int emailLength = reader.buffer.getInt();
+                byte[] email = bytes(reader.require(emailLength + (intRoleCounts ? 4 : 2)), emailLength);
+                int roleCount = intRoleCounts ? reader.buffer.getInt() : Short.toUnsignedInt(reader.buffer.getShort());
+                buffer = reader.require(2 * roleCount);
+                List<String> roles = new ArrayList<>(roleCount);
+                for (int r = 0; r < roleCount; r++) {
+                    roles.add(roleNames[buffer.getShort()]);
+                }
+                store.restore(new UserRecord(id, version, name, email, roles));
+            }
+            store.restoreLastId(lastId);
+
+            ByteBuffer trailer = ByteBuffer.allocate(4);
+            snapshot.read(trailer, size - 4);
+            if (reader.position() != size - 4 || trailer.flip().getInt() != (int) checksum.getValue()) {
+                throw new IllegalStateException(file + " is corrupt.");
+            }
+            return generation;
+        }
+    }
+
+    private void forceDirectory() {
+        // Makes the rename durable; not every platform can open a directory
+        try (FileChannel directoryChannel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            directoryChannel.force(true);
+        } catch (IOException e) {
+            logger.debug("Cannot force directory {}", directory, e);
+        }
+    }
+
+    private static byte[] bytes(ByteBuffer buffer, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    // --- Buffered file access ---
+
+    // Sequential reader keeping at least the requested number of bytes readable in its buffer
+    private static final class BlockReader {
+
+        private final FileChannel channel;
+        private final long limit;
+        private final Checksum checksum;
+        private ByteBuffer buffer = ByteBuffer.allocateDirect(IO_BUFFER_SIZE).flip();
+        private long filePosition;
+
+        BlockReader(FileChannel channel, long limit, Checksum checksum) {
+            this.channel = channel;
+            this.limit = limit;
+            this.checksum = checksum;
+        }
+
+        long position() {
+            return filePosition - buffer.remaining();
+        }
+
+        boolean ensure(int bytes) throws IOException {
+            if (buffer.remaining() >= bytes) {
+                return true;
+            }
+            if (buffer.capacity() < bytes) {
+                buffer = ByteBuffer.allocateDirect(Math.max(bytes, buffer.capacity() * 2)).put(buffer);
+            } else {
+                buffer.compact();
+            }
+            while (buffer.position() < bytes && filePosition < limit) {
+                int start = buffer.position();
+                buffer.limit(start + (int) Math.min(buffer.capacity() - start, limit - filePosition));
+                int read = channel.read(buffer, filePosition);
+                if (read < 0) {
+                    break;
+                }
+                if (checksum != null) {
+                    checksum.update(buffer.slice(start, read));
+                }
+                filePosition += read;
+                buffer.limit(buffer.capacity());
+            }
+            buffer.flip();
+            return buffer.remaining() >= bytes;
+        }
+
+        ByteBuffer require(int bytes) throws IOException {
+            if (!ensure(bytes)) {
+                throw new IllegalStateException("User snapshot is truncated at byte " + position() + ".");
+            }
+            return buffer;
+        }
+    }
+
+    // Sequential writer checksumming everything it writes
+    private static final class BlockWriter {
+
+        private final FileChannel channel;
+        private final CRC32C checksum = new CRC32C();
+        private ByteBuffer buffer = ByteBuffer.allocateDirect(IO_BUFFER_SIZE);
+
+        BlockWriter(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        ByteBuffer reserve(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+                if (buffer.capacity() < bytes) {
+                    buffer = ByteBuffer.allocateDirect(bytes);
+                }
+            }
+            return buffer;
+        }
+
+        void finish() throws IOException {
+            flush();
+            ByteBuffer trailer = ByteBuffer.allocate(4).putInt((int) checksum.getValue()).flip();
+            while (trailer.hasRemaining()) {
+                channel.write(trailer);
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            checksum.update(buffer.duplicate());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.sap.refactoring.repository.memory;
+
+import java.util.List;
+
+/**
+ * A user as written to the in-memory store and its journal, with name and email already UTF-8 encoded.
+ *
+ * @param id      the user ID.
+ * @param version the version of the user, 0 when created.
+ * @param name    the UTF-8 encoded name.
+ * @param email   the UTF-8 encoded email.
+ * @param roles   the role names, possibly null.
+ */
+record UserRecord(long id, long version, byte[] name, byte[] email, List<String> roles) {
+}
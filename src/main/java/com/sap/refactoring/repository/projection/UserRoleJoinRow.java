@@ -0,0 +1,7 @@
+package com.sap.refactoring.repository.projection;
+
+/**
+ * Read-only projection of a user joined with one of its roles; {@code role} is null for a user without roles.
+ */
+public record UserRoleJoinRow(Long id, String name, String email, String role) {
+}
@@ -0,0 +1,7 @@
+package com.sap.refactoring.repository.projection;
+
+/**
+ * Read-only projection of a row of the {@code user_roles} table.
+ */
+public record UserRoleRow(Long userId, String role) {
+}
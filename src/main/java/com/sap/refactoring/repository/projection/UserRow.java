@@ -0,0 +1,7 @@
+package com.sap.refactoring.repository.projection;
+
+/**
+ * Read-only projection of a row of the {@code users} table, without roles.
+ */
+public record UserRow(Long id, String name, String email) {
+}
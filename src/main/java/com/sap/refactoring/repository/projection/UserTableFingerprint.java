@@ -0,0 +1,9 @@
+package com.sap.refactoring.repository.projection;
+
+/**
+ * Aggregate of the live rows of the {@code users} table that changes with every insert, update and
+ * delete: IDs are never reused and every change increments the version of a user. The sums are null
+ * for an empty table.
+ */
+public record UserTableFingerprint(Long users, Long idSum, Long versionSum) {
+}
@@ -0,0 +1,87 @@
+package com.sap.refactoring.routing;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Read-your-writes across instances: a client that changed data reads from the primary for the
+ * read-your-writes window, wherever its next requests land.
+ * <p>
+ * Every request that may write marks the client with a cookie holding the time of the write, which
+ * expires with the window; requests carrying a cookie from within the window are pinned to the
+ * primary. Only active when replicas are configured, and only for the servlet stack.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnProperty("user.datasource.replica-urls")
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    /**
+     * Name of the cookie holding the time of the last write of the client, in epoch milliseconds.
+     */
+    public static final String COOKIE_NAME = "last-write";
+
+    private final ReplicaRouting replicaRouting;
+
+    public ReadYourWritesFilter(ReplicaRouting replicaRouting) {
+        this.replicaRouting = replicaRouting;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        long now = System.currentTimeMillis();
+        boolean write = isWrite(request);
+        if (write) {
+            Cookie cookie = new Cookie(COOKIE_NAME, Long.toString(now));
+            cookie.setPath("/");
+            cookie.setHttpOnly(true);
+            // Rounded up, so the cookie never expires before the window closes
+            long windowMillis = replicaRouting.getReadYourWritesWindow().toMillis();
+            cookie.setMaxAge((int) Math.max(1, Math.min(Integer.MAX_VALUE, (windowMillis + 999) / 1000)));
+            response.addCookie(cookie);
+        }
+        if (!write && !wroteRecently(request, now)) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        replicaRouting.requirePrimary();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            replicaRouting.releasePrimary();
+        }
+    }
+
+    private boolean wroteRecently(HttpServletRequest request, long now) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) {
+            return false;
+        }
+        for (Cookie cookie : cookies) {
+            if (COOKIE_NAME.equals(cookie.getName())) {
+                try {
+                    long written = Long.parseLong(cookie.getValue());
+                    return now - written < replicaRouting.getReadYourWritesWindow().toMillis();
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean isWrite(HttpServletRequest request) {
+        String method = request.getMethod();
+        return !"GET".equals(method) && !"HEAD".equals(method) && !"OPTIONS".equals(method);
+    }
+}
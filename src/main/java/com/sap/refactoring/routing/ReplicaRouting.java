@@ -0,0 +1,149 @@
+package com.sap.refactoring.routing;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.sap.refactoring.event.UserChangedEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Read-your-writes state of the read-replica routing.
+ * <p>
+ * Replicas apply committed changes with a lag, so for the read-your-writes window after a change
+ * this instance treats the changed users, and listings as a whole, as possibly stale on a replica.
+ * Callers use it to read such users from the primary, and to keep replica reads out of caches
+ * that would outlive the lag. The current thread can also be pinned to the primary, which
+ * {@link ReadYourWritesFilter} does for the requests of clients that wrote recently.
+ * <p>
+ * Without replicas ({@code user.datasource.replica-urls} unset) nothing is tracked, nothing is
+ * ever stale and every read goes to the one data source anyway.
+ */
+@Component
+public class ReplicaRouting {
+
+    private final boolean enabled;
+    private final Duration readYourWritesWindow;
+    private final Cache<Long, Boolean> recentlyChanged;
+    private final ThreadLocal<Boolean> primaryRequired = new ThreadLocal<>();
+    private volatile long lastChangeNanos;
+    private volatile boolean changed;
+
+    public ReplicaRouting(@Value("${user.datasource.replica-urls:}") List<String> replicaUrls,
+                          @Value("${user.datasource.read-your-writes-window:2s}") Duration readYourWritesWindow) {
+        if (readYourWritesWindow.isNegative()) {
+            throw new IllegalArgumentException("The read-your-writes window must not be negative.");
+        }
+        this.enabled = !replicaUrls.isEmpty();
+        this.readYourWritesWindow = readYourWritesWindow;
+        this.recentlyChanged = Caffeine.newBuilder()
+                .expireAfterWrite(readYourWritesWindow)
+                .build();
+    }
+
+    /**
+     * Remember a committed user change for the read-your-writes window.
+     *
+     * @param event the change.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        recentlyChanged.put(event.userId(), Boolean.TRUE);
+        lastChangeNanos = System.nanoTime();
+        changed = true;
+    }
+
+    /**
+     * @return whether read-only transactions are routed to replicas.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return how long after a change reads are kept off the replicas.
+     */
+    public Duration getReadYourWritesWindow() {
+        return readYourWritesWindow;
+    }
+
+    /**
+     * Whether a replica may not have applied the latest change of a user yet.
+     *
+     * @param userId the user ID.
+     * @return true if the user changed within the read-your-writes window.
+     */
+    public boolean mayBeStale(Long userId) {
+        return enabled && userId != null && recentlyChanged.getIfPresent(userId) != null;
+    }
+
+    /**
+     * Whether a replica may not have applied the latest change of any user yet.
+     *
+     * @return true if any user changed within the read-your-writes window.
+     */
+    public boolean mayBeStale() {
+        return enabled && changed && System.nanoTime() - lastChangeNanos < readYourWritesWindow.toNanos();
+    }
+
+    /**
+     * Run an action with all its transactions on the primary, read-only ones included.
+     *
+     * @param action the action.
+     * @param <T>    the result type.
+     * @return the result of the action.
+     */
+    public <T> T onPrimary(Supplier<T> action) {
+        Boolean previous = primaryRequired.get();
+        primaryRequired.set(Boolean.TRUE);
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) {
+                primaryRequired.remove();
+            } else {
+                primaryRequired.set(previous);
+            }
+        }
+    }
+
+    /**
+     * Run an action with all its transactions on the primary, read-only ones included.
+     *
+     * @param action the action.
+     */
+    public void runOnPrimary(Runnable action) {
+        onPrimary(() -> {
+            action.run();
+            return null;
+        });
+    }
+
+    /**
+     * Pin the current thread to the primary until {@link #releasePrimary()}.
+     */
+    public void requirePrimary() {
+        primaryRequired.set(Boolean.TRUE);
+    }
+
+    /**
+     * Let the read-only transactions of the current thread go to replicas again.
+     */
+    public void releasePrimary() {
+        primaryRequired.remove();
+    }
+
+    /**
+     * @return whether the current thread is pinned to the primary.
+     */
+    public boolean isPrimaryRequired() {
+        return primaryRequired.get() != null;
+    }
+}
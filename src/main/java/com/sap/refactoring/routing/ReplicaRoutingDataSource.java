@@ -0,0 +1,101 @@
+package com.sap.refactoring.routing;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Data source sending read-only transactions to replicas and everything else to the primary.
+ * <p>
+ * Connections are handed out as lazy proxies and only bound to a pool at their first statement:
+ * a transaction opens its connection before it is marked read-only, so routing any earlier would
+ * send every transaction to the primary. Statements outside transactions, transactions that write,
+ * and threads pinned by {@link ReplicaRouting#isPrimaryRequired()} use the primary.
+ */
+public class ReplicaRoutingDataSource extends LazyConnectionDataSourceProxy implements DisposableBean {
+
+    private static final String PRIMARY = "primary";
+
+    private final List<HikariDataSource> replicas;
+
+    /**
+     * @param primary        the data source of the primary, which also accepts writes.
+     * @param replicas       the read-only pools of the replicas, closed with this data source.
+     * @param selection      how a replica is picked per transaction.
+     * @param replicaRouting the pinning of threads to the primary.
+     */
+    public ReplicaRoutingDataSource(DataSource primary, List<HikariDataSource> replicas,
+                                    ReplicaSelection selection, ReplicaRouting replicaRouting) {
+        if (replicas.isEmpty()) {
+            throw new IllegalArgumentException("At least one replica is required.");
+        }
+        this.replicas = List.copyOf(replicas);
+        Router router = new Router(primary, this.replicas, selection, replicaRouting);
+        router.afterPropertiesSet();
+        setTargetDataSource(router);
+    }
+
+    @Override
+    public void destroy() {
+        replicas.forEach(HikariDataSource::close);
+    }
+
+    private static final class Router extends AbstractRoutingDataSource {
+
+        private final List<HikariDataSource> replicas;
+        private final ReplicaSelection selection;
+        private final ReplicaRouting replicaRouting;
+        private final AtomicInteger next = new AtomicInteger();
+
+        Router(DataSource primary, List<HikariDataSource> replicas, ReplicaSelection selection, ReplicaRouting replicaRouting) {
+            this.replicas = replicas;
+            this.selection = selection;
+            this.replicaRouting = replicaRouting;
+            Map<Object, Object> targets = new HashMap<>();
+            targets.put(PRIMARY, primary);
+            for (int i = 0; i < replicas.size(); i++) {
+                targets.put(i, replicas.get(i));
+            }
+            setTargetDataSources(targets);
+            setDefaultTargetDataSource(primary);
+            setLenientFallback(false);
+        }
+
+        @Override
+        protected Object determineCurrentLookupKey() {
+            if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly() || replicaRouting.isPrimaryRequired()) {
+                return PRIMARY;
+            }
+            int first = Math.floorMod(next.getAndIncrement(), replicas.size());
+            if (selection == ReplicaSelection.ROUND_ROBIN) {
+                return first;
+            }
+            int least = first;
+            int leastActive = activeConnections(replicas.get(first));
+            for (int i = 1; i < replicas.size() && leastActive > 0; i++) {
+                int candidate = (first + i) % replicas.size();
+                int active = activeConnections(replicas.get(candidate));
+                if (active < leastActive) {
+                    least = candidate;
+                    leastActive = active;
+                }
+            }
+            return least;
+        }
+
+        // The pool is only created with the first connection, so an unused replica counts as idle
+        private static int activeConnections(HikariDataSource replica) {
+            HikariPoolMXBean pool = replica.getHikariPoolMXBean();
+            return pool == null ? 0 : pool.getActiveConnections();
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.sap.refactoring.routing;
+
+/**
+ * How {@link ReplicaRoutingDataSource} picks the replica serving a read-only transaction.
+ */
+public enum ReplicaSelection {
+    /**
+     * Replicas take turns, one transaction each.
+     */
+    ROUND_ROBIN,
+    /**
+     * The replica whose pool has the fewest connections in use; ties go to the next replica in turn.
+     */
+    LEAST_LOADED
+}
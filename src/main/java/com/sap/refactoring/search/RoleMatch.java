@@ -0,0 +1,15 @@
+package com.sap.refactoring.search;
+
+/**
+ * How the roles of a role filter combine.
+ */
+public enum RoleMatch {
+    /**
+     * Users having at least one of the roles.
+     */
+    ANY,
+    /**
+     * Users having every one of the roles.
+     */
+    ALL
+}
@@ -0,0 +1,15 @@
+package com.sap.refactoring.search;
+
+/**
+ * Matching strategy of a user search. Both modes are case-insensitive.
+ */
+public enum SearchMode {
+    /**
+     * Names, name words or emails starting with the query.
+     */
+    PREFIX,
+    /**
+     * Prefix matches plus names similar to the query (trigram similarity), to tolerate typos.
+     */
+    FUZZY
+}
@@ -0,0 +1,244 @@
+package com.sap.refactoring.search;
+
+import com.sap.refactoring.event.UserChangedEvent;
+import com.sap.refactoring.model.RoleStats;
+import com.sap.refactoring.model.UserDto;
+import com.sap.refactoring.routing.ReplicaRouting;
+import com.sap.refactoring.service.UserService;
+import org.roaringbitmap.longlong.Roaring64Bitmap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory index of users by role, to filter and count users by role without reading them.
+ * <p>
+ * Role names are interned into a dictionary of small codes, and every role code owns a compressed
+ * (Roaring) bitmap of the IDs of its users. A change of the roles of a user only touches the bitmaps
+ * of the roles it gained or lost. The index is loaded from the database on startup and kept up to
+ * date from {@link UserChangedEvent}s, like {@link UserSearchIndex}.
+ */
+@Component
+public class UserRoleIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserRoleIndex.class);
+
+    private final UserService userService;
+
+    private final ReplicaRouting replicaRouting;
+
+    private final Map<String, Integer> roleCodes = new HashMap<>();
+    private final List<String> roleNames = new ArrayList<>();
+    private final List<Roaring64Bitmap> roleBitmaps = new ArrayList<>();
+    private final Roaring64Bitmap users = new Roaring64Bitmap();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // IDs changed by events while the initial load runs; the load must not overwrite them
+    private volatile Set<Long> changedWhileLoading;
+
+    public UserRoleIndex(UserService userService, ReplicaRouting replicaRouting) {
+        this.userService = userService;
+        this.replicaRouting = replicaRouting;
+    }
+
+    /**
+     * Load every user from the database once the application is ready.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        Set<Long> changed = ConcurrentHashMap.newKeySet();
+        changedWhileLoading = changed;
+        try {
+            // Read from the primary: a lagging replica could miss changes committed before the load started
+            replicaRouting.runOnPrimary(() -> userService.streamAllUsers(user -> {
+                lock.writeLock().lock();
+                try {
+                    if (!changed.contains(user.getId())) {
+                        index(user);
+                    }
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }));
+        } finally {
+            changedWhileLoading = null;
+        }
+
+        lock.writeLock().lock();
+        try {
+            // IDs are allocated sequentially, so most bitmaps compress well into runs
+            long sizeInBytes = users.getLongSizeInBytes();
+            for (Roaring64Bitmap bitmap : roleBitmaps) {
+                bitmap.runOptimize();
+                sizeInBytes += bitmap.getLongSizeInBytes();
+            }
+            users.runOptimize();
+            logger.info("Role index loaded with {} users and {} roles in {} bytes",
+                    users.getLongCardinality(), roleNames.size(), sizeInBytes);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Apply a committed user change to the index.
+     *
+     * @param event the change.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        lock.writeLock().lock();
+        try {
+            Set<Long> changed = changedWhileLoading;
+            if (changed != null) {
+                changed.add(event.userId());
+            }
+            if (event.type() == UserChangedEvent.Type.DELETED) {
+                remove(event.userId());
+            } else {
+                index(event.user());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Add or replace a user in the index.
+     *
+     * @param user the user.
+     */
+    public void put(UserDto user) {
+        lock.writeLock().lock();
+        try {
+            index(user);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Find the users having any or all of the given roles.
+     *
+     * @param roles the role names, matched exactly.
+     * @param match whether a user needs any or all of the roles.
+     * @return the IDs of the matching users, in ascending order.
+     */
+    public long[] findUserIds(Collection<String> roles, RoleMatch match) {
+        if (roles.isEmpty()) {
+            return new long[0];
+        }
+        lock.readLock().lock();
+        try {
+            List<Roaring64Bitmap> bitmaps = new ArrayList<>(roles.size());
+            for (String role : roles) {
+                Integer code = roleCodes.get(role);
+                if (code != null) {
+                    bitmaps.add(roleBitmaps.get(code));
+                } else if (match == RoleMatch.ALL) {
+                    return new long[0];
+                }
+            }
+            if (bitmaps.isEmpty()) {
+                return new long[0];
+            }
+
+            Roaring64Bitmap result;
+            if (match == RoleMatch.ALL) {
+                // Intersect from the rarest role, so that the intermediate result stays small
+                bitmaps.sort(Comparator.comparingLong(Roaring64Bitmap::getLongCardinality));
+                result = bitmaps.get(0).clone();
+                for (int i = 1; i < bitmaps.size() && !result.isEmpty(); i++) {
+                    result.and(bitmaps.get(i));
+                }
+            } else {
+                result = bitmaps.get(0).clone();
+                for (int i = 1; i < bitmaps.size(); i++) {
+                    result.or(bitmaps.get(i));
+                }
+            }
+            return result.toArray();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the number of users, and of users per role, omitting roles no user has anymore.
+     */
+    public RoleStats stats() {
+        lock.readLock().lock();
+        try {
+            Map<String, Long> counts = new TreeMap<>();
+            for (int code = 0; code < roleNames.size(); code++) {
+                long count = roleBitmaps.get(code).getLongCardinality();
+                if (count > 0) {
+                    counts.put(roleNames.get(code), count);
+                }
+            }
+            return new RoleStats(users.getLongCardinality(), counts);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void index(UserDto user) {
+        long id = user.getId();
+        List<String> roles = user.getRoles() == null ? List.of() : user.getRoles();
+        for (String role : roles) {
+            if (role != null) {
+                codeOf(role);
+            }
+        }
+        // Only the bitmaps of roles gained or lost change
+        boolean[] wanted = new boolean[roleNames.size()];
+        for (String role : roles) {
+            if (role != null) {
+                wanted[roleCodes.get(role)] = true;
+            }
+        }
+        for (int code = 0; code < roleBitmaps.size(); code++) {
+            Roaring64Bitmap bitmap = roleBitmaps.get(code);
+            if (wanted[code]) {
+                if (!bitmap.contains(id)) {
+                    bitmap.addLong(id);
+                }
+            } else if (bitmap.contains(id)) {
+                bitmap.removeLong(id);
+            }
+        }
+        users.addLong(id);
+    }
+
+    private void remove(long id) {
+        for (Roaring64Bitmap bitmap : roleBitmaps) {
+            bitmap.removeLong(id);
+        }
+        users.removeLong(id);
+    }
+
+    private int codeOf(String role) {
+        Integer code = roleCodes.get(role);
+        if (code == null) {
+            code = roleNames.size();
+            roleCodes.put(role, code);
+            roleNames.add(role);
+            roleBitmaps.add(new Roaring64Bitmap());
+        }
+        return code;
+    }
+}
@@ -0,0 +1,351 @@
+package com.sap.refactoring.search;
+
+import com.sap.refactoring.event.UserChangedEvent;
+import com.sap.refactoring.model.UserDto;
+import com.sap.refactoring.routing.ReplicaRouting;
+import com.sap.refactoring.service.UserService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-memory search index over user names and emails, for typeahead and fuzzy lookups.
+ * <p>
+ * Prefix queries run against a sorted set of {@code term + '\0' + id} keys, where the terms of a
+ * user are its full name, every following word of the name and its email. Fuzzy queries add
+ * names sharing enough trigrams with the query, looked up in the rarest trigram postings first and
+ * within a fixed budget of posting entries, so that common trigrams never make a query scan every
+ * user. Only the requested page is ordered. Reads are lock-free; writers are serialized.
+ * The index is loaded from the database on startup and kept up to date from {@link UserChangedEvent}s.
+ */
+@Component
+public class UserSearchIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserSearchIndex.class);
+
+    /**
+     * Maximum number of matching users ranked per query.
+     */
+    public static final int MAX_CANDIDATES = 10000;
+
+    private static final char ID_SEPARATOR = '\0';
+    private static final double FUZZY_THRESHOLD = 0.3;
+    // Posting entries visited per fuzzy query; beyond it, names only reached through common trigrams are missed
+    private static final int FUZZY_SCAN_LIMIT = 2000;
+
+    private static final double SCORE_EXACT = 4;
+    private static final double SCORE_PREFIX = 3;
+    private static final double SCORE_WORD_PREFIX = 2;
+
+    // Best first: highest score, then by name and ID for a stable order across pages
+    private static final Comparator<Match> RANKING = Comparator.comparingDouble(Match::score).reversed()
+            .thenComparing(Match::name)
+            .thenComparingLong(Match::id);
+
+    private final UserService userService;
+
+    private final ReplicaRouting replicaRouting;
+
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+    private final NavigableSet<String> terms = new ConcurrentSkipListSet<>();
+    private final Map<String, Set<Long>> trigramPostings = new ConcurrentHashMap<>();
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    // IDs changed by events while the initial load runs; the load must not overwrite them
+    private volatile Set<Long> changedWhileLoading;
+
+    public UserSearchIndex(UserService userService, ReplicaRouting replicaRouting) {
+        this.userService = userService;
+        this.replicaRouting = replicaRouting;
+    }
+
+    private record Entry(String name, String email, List<String> terms, Set<String> trigrams) {
+    }
+
+    private record Match(long id, double score, String name) {
+    }
+
+    /**
+     * Ranked IDs of one page of matches.
+     *
+     * @param ids   the matching user IDs, best match first.
+     * @param total the total number of matches, capped at {@link #MAX_CANDIDATES}.
+     */
+    public record Hits(List<Long> ids, int total) {
+    }
+
+    /**
+     * Load every user from the database once the application is ready.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        Set<Long> changed = ConcurrentHashMap.newKeySet();
+        changedWhileLoading = changed;
+        try {
+            // Read from the primary: a lagging replica could miss changes committed before the load started
+            replicaRouting.runOnPrimary(() -> userService.streamAllUsers(user -> {
+                writeLock.lock();
+                try {
+                    if (!changed.contains(user.getId())) {
+                        index(user);
+                    }
+                } finally {
+                    writeLock.unlock();
+                }
+            }));
+        } finally {
+            changedWhileLoading = null;
+        }
+        logger.info("Search index loaded with {} users", entries.size());
+    }
+
+    /**
+     * Apply a committed user change to the index.
+     *
+     * @param event the change.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        writeLock.lock();
+        try {
+            Set<Long> changed = changedWhileLoading;
+            if (changed != null) {
+                changed.add(event.userId());
+            }
+            if (event.type() == UserChangedEvent.Type.DELETED) {
+                remove(event.userId());
+            } else {
+                index(event.user());
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Add or replace a user in the index.
+     *
+     * @param user the user.
+     */
+    public void put(UserDto user) {
+        writeLock.lock();
+        try {
+            index(user);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of indexed users.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Search users by name or email.
+     *
+     * @param query the text typed by the client.
+     * @param mode  the matching strategy.
+     * @param page  the zero-based page number.
+     * @param size  the page size.
+     * @return the ranked IDs of the requested page and the total number of matches.
+     */
+    public Hits search(String query, SearchMode mode, int page, int size) {
+        String normalized = normalize(query);
+        if (normalized.isEmpty()) {
+            return new Hits(List.of(), 0);
+        }
+
+        Map<Long, Double> scores = new HashMap<>();
+        for (String key : terms.subSet(normalized, true, normalized + Character.MAX_VALUE, false)) {
+            Long id = Long.valueOf(key.substring(key.lastIndexOf(ID_SEPARATOR) + 1));
+            Entry entry = entries.get(id);
+            if (entry != null) {
+                scores.merge(id, prefixScore(entry, normalized), Math::max);
+            }
+            if (scores.size() >= MAX_CANDIDATES) {
+                break;
+            }
+        }
+        if (mode == SearchMode.FUZZY && scores.size() < MAX_CANDIDATES) {
+            addFuzzyMatches(normalized, scores);
+        }
+
+        return rank(scores, page, size);
+    }
+
+    private Hits rank(Map<Long, Double> scores, int page, int size) {
+        int total = scores.size();
+        int from = (int) Math.min((long) page * size, total);
+        int to = (int) Math.min((long) from + size, total);
+        if (to == 0) {
+            return new Hits(List.of(), total);
+        }
+        // Only the matches up to the requested page need ordering: keep them in a heap, worst on top
+        PriorityQueue<Match> best = new PriorityQueue<>(to + 1, RANKING.reversed());
+        for (Map.Entry<Long, Double> score : scores.entrySet()) {
+            Match match = new Match(score.getKey(), score.getValue(), nameOf(score.getKey()));
+            if (best.size() < to) {
+                best.add(match);
+            } else if (RANKING.compare(match, best.peek()) < 0) {
+                best.poll();
+                best.add(match);
+            }
+        }
+        Match[] ranked = best.toArray(new Match[0]);
+        Arrays.sort(ranked, RANKING);
+
+        List<Long> ids = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            ids.add(ranked[i].id());
+        }
+        return new Hits(ids, total);
+    }
+
+    private void addFuzzyMatches(String normalized, Map<Long, Double> scores) {
+        Set<String> queryTrigrams = trigrams(normalized);
+        List<Set<Long>> postings = new ArrayList<>(queryTrigrams.size());
+        for (String trigram : queryTrigrams) {
+            Set<Long> posting = trigramPostings.get(trigram);
+            if (posting != null && !posting.isEmpty()) {
+                postings.add(posting);
+            }
+        }
+        postings.sort(Comparator.comparingInt(Set::size));
+
+        // A name reaching the threshold shares at least minShared trigrams with the query, so it is in
+        // one of the postings left after dropping the minShared - 1 most common ones
+        int minShared = (int) Math.ceil(FUZZY_THRESHOLD * (queryTrigrams.size() + 1) / 2);
+        int searched = Math.max(0, postings.size() - Math.max(0, minShared - 1));
+        Set<Long> candidates = new HashSet<>();
+        int visited = 0;
+        for (Set<Long> posting : postings.subList(0, searched)) {
+            for (Long id : posting) {
+                if (!scores.containsKey(id)) {
+                    candidates.add(id);
+                }
+                if (++visited >= FUZZY_SCAN_LIMIT) {
+                    break;
+                }
+            }
+            if (visited >= FUZZY_SCAN_LIMIT) {
+                break;
+            }
+        }
+
+        for (Long id : candidates) {
+            Entry entry = entries.get(id);
+            if (entry == null) {
+                continue;
+            }
+            int shared = 0;
+            for (String trigram : queryTrigrams) {
+                if (entry.trigrams().contains(trigram)) {
+                    shared++;
+                }
+            }
+            // Dice coefficient, always below the prefix scores
+            double similarity = 2.0 * shared / (queryTrigrams.size() + entry.trigrams().size());
+            if (similarity >= FUZZY_THRESHOLD) {
+                scores.put(id, similarity);
+                if (scores.size() >= MAX_CANDIDATES) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private static double prefixScore(Entry entry, String query) {
+        if (query.equals(entry.name()) || query.equals(entry.email())) {
+            return SCORE_EXACT;
+        }
+        if (entry.name().startsWith(query) || entry.email().startsWith(query)) {
+            return SCORE_PREFIX;
+        }
+        return SCORE_WORD_PREFIX;
+    }
+
+    private String nameOf(Long id) {
+        Entry entry = entries.get(id);
+        return entry == null ? "" : entry.name();
+    }
+
+    private void index(UserDto user) {
+        remove(user.getId());
+        String name = normalize(user.getName());
+        String email = normalize(user.getEmail());
+
+        List<String> userTerms = new ArrayList<>();
+        if (!name.isEmpty()) {
+            userTerms.add(name);
+            // Following words of the name, so that "doe" finds "John Doe"
+            for (int i = name.indexOf(' '); i >= 0; i = name.indexOf(' ', i + 1)) {
+                userTerms.add(name.substring(i + 1));
+            }
+        }
+        if (!email.isEmpty()) {
+            userTerms.add(email);
+        }
+        Set<String> nameTrigrams = name.isEmpty() ? Set.of() : trigrams(name);
+
+        entries.put(user.getId(), new Entry(name, email, userTerms, nameTrigrams));
+        for (String term : userTerms) {
+            terms.add(term + ID_SEPARATOR + user.getId());
+        }
+        for (String trigram : nameTrigrams) {
+            trigramPostings.computeIfAbsent(trigram, key -> ConcurrentHashMap.newKeySet()).add(user.getId());
+        }
+    }
+
+    private void remove(Long id) {
+        Entry entry = entries.remove(id);
+        if (entry == null) {
+            return;
+        }
+        for (String term : entry.terms()) {
+            terms.remove(term + ID_SEPARATOR + id);
+        }
+        for (String trigram : entry.trigrams()) {
+            Set<Long> posting = trigramPostings.get(trigram);
+            if (posting != null) {
+                posting.remove(id);
+            }
+        }
+    }
+
+    private static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        return text.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    private static Set<String> trigrams(String text) {
+        String padded = "  " + text + " ";
+        Set<String> trigrams = new HashSet<>(padded.length());
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            trigrams.add(padded.substring(i, i + 3));
+        }
+        return trigrams;
+    }
+}
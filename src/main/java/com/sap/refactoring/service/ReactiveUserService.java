@@ -0,0 +1,126 @@
+package com.sap.refactoring.service;
+
+import com.sap.refactoring.event.UserChangedEvent;
+import com.sap.refactoring.exceptions.UserNotFoundException;
+import com.sap.refactoring.model.UserDto;
+import com.sap.refactoring.repository.ReactiveUserRepository;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking counterpart of {@link UserService}, active with the {@code reactive} profile.
+ * Applies the same validation and error translation; change events are published once the
+ * transaction has committed.
+ */
+@Service
+@Profile("reactive")
+@RequiredArgsConstructor
+public class ReactiveUserService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReactiveUserService.class);
+
+    private final ReactiveUserRepository userRepository;
+
+    private final TransactionalOperator transactionalOperator;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${user.soft-delete.enabled:false}")
+    private boolean softDelete;
+
+    /**
+     * Add a new user to the system.
+     *
+     * @param userDto the data transfer object containing user data.
+     * @return the created user DTO, or an InvalidUserException if the data is invalid or the email is already in use.
+     */
+    public Mono<UserDto> addUser(UserDto userDto) {
+        return Mono.defer(() -> {
+                    UserService.validateUserDto(userDto);
+                    return userRepository.insert(userDto);
+                })
+                .as(transactionalOperator::transactional)
+                .onErrorMap(DataIntegrityViolationException.class, e -> {
+                    logger.error("Error saving user with email {}: {}", userDto.getEmail(), e.getMessage());
+                    return UserService.toInvalidUserException(e);
+                })
+                .doOnNext(savedUser -> {
+                    logger.info("User with email {} created successfully", savedUser.getEmail());
+                    eventPublisher.publishEvent(UserChangedEvent.created(savedUser));
+                });
+    }
+
+    /**
+     * Update an existing user by ID.
+     *
+     * @param userId  the ID of the user to update.
+     * @param userDto the updated user data.
+     * @return the updated user DTO, or a UserNotFoundException if the user is not found.
+     */
+    public Mono<UserDto> updateUser(Long userId, UserDto userDto) {
+        return Mono.defer(() -> {
+                    UserService.validateUserDto(userDto);
+                    return userRepository.update(userId, userDto);
+                })
+                .flatMap(updated -> updated == 0
+                        ? Mono.<UserDto>error(new UserNotFoundException("User with ID " + userId + " not found."))
+                        : Mono.just(new UserDto(userId, userDto.getName(), userDto.getEmail(), userDto.getRoles())))
+                .as(transactionalOperator::transactional)
+                .onErrorMap(DataIntegrityViolationException.class, e -> {
+                    logger.error("Error updating user with ID {}: {}", userId, e.getMessage());
+                    return UserService.toInvalidUserException(e);
+                })
+                .doOnNext(updatedUser -> {
+                    logger.info("User with ID {} updated successfully", userId);
+                    eventPublisher.publishEvent(UserChangedEvent.updated(updatedUser));
+                });
+    }
+
+    /**
+     * Delete a user by ID with a single statement, or only mark it as deleted in soft-delete mode.
+     *
+     * @param userId the ID of the user to delete.
+     * @return true if the user was deleted, false if there was no such user.
+     */
+    public Mono<Boolean> deleteUser(Long userId) {
+        return (softDelete ? userRepository.markDeletedById(userId) : userRepository.deleteById(userId))
+                .as(transactionalOperator::transactional)
+                .map(deleted -> {
+                    if (deleted == 0) {
+                        logger.warn("User with ID {} not found for deletion", userId);
+                        return false;
+                    }
+                    logger.info("User with ID {} deleted successfully", userId);
+                    eventPublisher.publishEvent(UserChangedEvent.deleted(userId));
+                    return true;
+                });
+    }
+
+    /**
+     * Stream all users in ID order. Rows are fetched as the subscriber requests them.
+     *
+     * @return the users.
+     */
+    public Flux<UserDto> getAllUsers() {
+        return userRepository.findAll();
+    }
+
+    /**
+     * Find a user by name.
+     *
+     * @param name the name of the user to find.
+     * @return the user DTO, or empty if not found.
+     */
+    public Mono<UserDto> findUserByName(String name) {
+        return userRepository.findFirstByName(name);
+    }
+}
@@ -0,0 +1,207 @@
+package com.sap.refactoring.service;
+
+import com.sap.refactoring.cache.UserCache;
+import com.sap.refactoring.event.UserChangedEvent;
+import com.sap.refactoring.mapper.UserMapper;
+import com.sap.refactoring.model.BulkResult;
+import com.sap.refactoring.model.BulkUserRequest;
+import com.sap.refactoring.model.UserDto;
+import com.sap.refactoring.repository.UserRepository;
+import com.sap.refactoring.search.RoleMatch;
+import com.sap.refactoring.search.UserRoleIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Deletes and updates many users at once with set-based statements.
+ * <p>
+ * Users are selected by ID, or by role through the {@link UserRoleIndex}, and processed in chunks
+ * of one transaction each. A chunk reads the users it selected in two statements, which also
+ * rechecks a role filter against the database, and then changes all of them with one statement
+ * per kind of change, however many users it holds. Caches are invalidated and change events
+ * published per user, as for single changes.
+ */
+@Service
+public class UserBulkService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserBulkService.class);
+
+    private final UserRepository userRepository;
+    private final UserMapper userMapper;
+    private final UserCache userCache;
+    private final UserRoleIndex userRoleIndex;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+    private final boolean softDelete;
+
+    public UserBulkService(UserRepository userRepository,
+                           UserMapper userMapper,
+                           UserCache userCache,
+                           UserRoleIndex userRoleIndex,
+                           ApplicationEventPublisher eventPublisher,
+                           TransactionTemplate transactionTemplate,
+                           @Value("${user.bulk.chunk-size:1000}") int chunkSize,
+                           @Value("${user.soft-delete.enabled:false}") boolean softDelete) {
+        if (chunkSize < 1 || chunkSize > UserService.MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("Bulk chunk size must be between 1 and " + UserService.MAX_BATCH_SIZE + ".");
+        }
+        this.userRepository = userRepository;
+        this.userMapper = userMapper;
+        this.userCache = userCache;
+        this.userRoleIndex = userRoleIndex;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = transactionTemplate;
+        this.chunkSize = chunkSize;
+        this.softDelete = softDelete;
+    }
+
+    /**
+     * Delete the selected users, or mark them as deleted in soft-delete mode.
+     *
+     * @param request the IDs or roles selecting the users.
+     * @return the number of users selected and deleted.
+     * @throws IllegalArgumentException if the request selects users by neither or both IDs and roles.
+     */
+    public BulkResult deleteUsers(BulkUserRequest request) {
+        long[] userIds = selectUserIds(request);
+        BulkResult result = new BulkResult();
+        for (int from = 0; from < userIds.length; from += chunkSize) {
+            List<Long> chunk = chunk(userIds, from);
+            result.add(transactionTemplate.execute(status -> deleteChunk(chunk, request)));
+        }
+        logger.info("Bulk delete removed {} of {} selected users", result.getAffected(), userIds.length);
+        return result;
+    }
+
+    /**
+     * Grant and revoke roles of the selected users. Users left without any role are not changed.
+     *
+     * @param request the IDs or roles selecting the users, and the roles to add and remove.
+     * @return the number of users selected, changed and rejected, and of roles added and removed.
+     * @throws IllegalArgumentException if the request selects users by neither or both IDs and roles,
+     *                                  or changes no role, a blank role, or the same role both ways.
+     */
+    public BulkResult updateUsers(BulkUserRequest request) {
+        Set<String> added = roles(request.getAddRoles());
+        Set<String> removed = roles(request.getRemoveRoles());
+        if (added.isEmpty() && removed.isEmpty()) {
+            throw new IllegalArgumentException("A bulk update must add or remove at least one role.");
+        }
+        if (added.stream().anyMatch(removed::contains)) {
+            throw new IllegalArgumentException("A role cannot be both added and removed.");
+        }
+        long[] userIds = selectUserIds(request);
+        BulkResult result = new BulkResult();
+        for (int from = 0; from < userIds.length; from += chunkSize) {
+            List<Long> chunk = chunk(userIds, from);
+            result.add(transactionTemplate.execute(status -> updateChunk(chunk, request, added, removed)));
+        }
+        logger.info("Bulk update changed {} of {} selected users", result.getAffected(), userIds.length);
+        return result;
+    }
+
+    private BulkResult deleteChunk(List<Long> chunk, BulkUserRequest request) {
+        List<UserDto> users = loadSelected(chunk, request);
+        if (users.isEmpty()) {
+            return new BulkResult();
+        }
+        List<Long> ids = users.stream().map(UserDto::getId).toList();
+        int deleted = softDelete ? userRepository.markDeletedByIds(ids) : userRepository.deleteLiveByIds(ids);
+        for (UserDto user : users) {
+            userCache.invalidate(user.getId(), user.getName());
+            eventPublisher.publishEvent(UserChangedEvent.deleted(user.getId()));
+        }
+        return new BulkResult(users.size(), deleted, 0, 0, 0);
+    }
+
+    private BulkResult updateChunk(List<Long> chunk, BulkUserRequest request, Set<String> added, Set<String> removed) {
+        List<UserDto> users = loadSelected(chunk, request);
+        List<UserDto> changed = new ArrayList<>();
+        int rejected = 0;
+        for (UserDto user : users) {
+            Set<String> roles = new TreeSet<>(user.getRoles());
+            boolean differs = roles.removeAll(removed);
+            differs |= roles.addAll(added);
+            if (differs) {
+                if (roles.isEmpty()) {
+                    rejected++;
+                } else {
+                    changed.add(new UserDto(user.getId(), user.getName(), user.getEmail(), new ArrayList<>(roles)));
+                }
+            }
+        }
+        if (changed.isEmpty()) {
+            return new BulkResult(users.size(), 0, rejected, 0, 0);
+        }
+        List<Long> ids = changed.stream().map(UserDto::getId).toList();
+        int rolesRemoved = removed.isEmpty() ? 0 : userRepository.deleteRolesOfUsers(ids, removed);
+        int rolesAdded = 0;
+        for (String role : added) {
+            rolesAdded += userRepository.insertRoleOfUsers(ids, role);
+        }
+        userRepository.incrementVersions(ids);
+        for (UserDto user : changed) {
+            userCache.invalidate(user.getId(), user.getName());
+            eventPublisher.publishEvent(UserChangedEvent.updated(user));
+        }
+        return new BulkResult(users.size(), changed.size(), rejected, rolesAdded, rolesRemoved);
+    }
+
+    // Users of the chunk as stored, restricted to those still matching the role filter, if any
+    private List<UserDto> loadSelected(List<Long> chunk, BulkUserRequest request) {
+        List<UserDto> users = userMapper.toDtos(userRepository.findRowsByIds(chunk), userRepository.findRoleRowsByUserIds(chunk));
+        if (isEmpty(request.getRoles())) {
+            return users;
+        }
+        Set<String> roles = roles(request.getRoles());
+        RoleMatch match = request.getMatch() == null ? RoleMatch.ANY : request.getMatch();
+        return users.stream()
+                .filter(user -> match == RoleMatch.ALL
+                        ? user.getRoles().containsAll(roles)
+                        : user.getRoles().stream().anyMatch(roles::contains))
+                .toList();
+    }
+
+    private long[] selectUserIds(BulkUserRequest request) {
+        if (isEmpty(request.getIds()) == isEmpty(request.getRoles())) {
+            throw new IllegalArgumentException("Select the users either by IDs or by roles.");
+        }
+        if (!isEmpty(request.getIds())) {
+            return request.getIds().stream().filter(Objects::nonNull).mapToLong(Long::longValue).distinct().sorted().toArray();
+        }
+        return userRoleIndex.findUserIds(roles(request.getRoles()),
+                request.getMatch() == null ? RoleMatch.ANY : request.getMatch());
+    }
+
+    private List<Long> chunk(long[] userIds, int from) {
+        return Arrays.stream(userIds, from, Math.min(from + chunkSize, userIds.length)).boxed().toList();
+    }
+
+    private static Set<String> roles(List<String> roles) {
+        if (roles == null) {
+            return Set.of();
+        }
+        if (roles.stream().anyMatch(role -> role == null || role.isBlank())) {
+            throw new IllegalArgumentException("Roles must not be blank.");
+        }
+        return new HashSet<>(roles);
+    }
+
+    private static boolean isEmpty(Collection<?> values) {
+        return values == null || values.isEmpty();
+    }
+}
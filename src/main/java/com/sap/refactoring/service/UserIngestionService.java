@@ -0,0 +1,325 @@
+package com.sap.refactoring.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sap.refactoring.entity.IngestionCheckpoint;
+import com.sap.refactoring.exceptions.InvalidUserException;
+import com.sap.refactoring.model.EnrollmentResult;
+import com.sap.refactoring.model.IngestionError;
+import com.sap.refactoring.model.IngestionReport;
+import com.sap.refactoring.model.UserDto;
+import com.sap.refactoring.repository.IngestionCheckpointRepository;
+import com.sap.refactoring.transfer.UserFeedReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Ingests user feeds, CSV or NDJSON, of any size.
+ * <p>
+ * The feed is split into records on the calling thread, in batches. Batches are decoded and checked
+ * against the enrollment rules on a pool of validation threads, at most two batches per thread
+ * ahead of the writer, which bounds memory. The calling thread then writes the valid users of each
+ * batch, in input order, through {@link UserService#addUsers} in a transaction that also advances
+ * the checkpoint of the job. Emails repeated within the feed or already taken are rejected there.
+ * A concurrent enrollment can still take an email between that check and the insert, which rolls
+ * the batch back: the batch is then written again, and the check of the new attempt rejects that
+ * record alone. Sending a feed again under the ID of a job that did not complete skips the records
+ * up to its checkpoint.
+ */
+@Service
+public class UserIngestionService implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserIngestionService.class);
+
+    /**
+     * Maximum number of rejected records listed in an {@link IngestionReport}.
+     */
+    public static final int MAX_REPORTED_ERRORS = 1000;
+
+    /**
+     * Number of batches between two progress log lines.
+     */
+    private static final int PROGRESS_LOG_INTERVAL = 50;
+
+    /**
+     * Number of times a batch is written before a constraint violation fails the job.
+     */
+    private static final int MAX_WRITE_ATTEMPTS = 3;
+
+    private final UserService userService;
+    private final IngestionCheckpointRepository checkpointRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final int batchSize;
+    private final int maxBatchesInFlight;
+    private final ExecutorService validationExecutor;
+    private final Set<String> runningJobs = ConcurrentHashMap.newKeySet();
+
+    public UserIngestionService(UserService userService,
+                                IngestionCheckpointRepository checkpointRepository,
+                                TransactionTemplate transactionTemplate,
+                                ObjectMapper objectMapper,
+                                @Value("${user.ingest.batch-size:1000}") int batchSize,
+                                @Value("${user.ingest.validation-threads:0}") int validationThreads) {
+        if (batchSize < 1 || batchSize > UserService.MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("Ingestion batch size must be between 1 and " + UserService.MAX_BATCH_SIZE + ".");
+        }
+        int threads = validationThreads > 0 ? validationThreads : Runtime.getRuntime().availableProcessors();
+        this.userService = userService;
+        this.checkpointRepository = checkpointRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+        this.batchSize = batchSize;
+        this.maxBatchesInFlight = 2 * threads;
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("user-ingest-");
+        threadFactory.setDaemon(true);
+        this.validationExecutor = Executors.newFixedThreadPool(threads, threadFactory);
+    }
+
+    /**
+     * Ingest a feed, or resume a job that did not complete.
+     *
+     * @param job       the ID of the job, to resume it later; a new ID is generated if null or blank.
+     * @param mediaType {@code text/csv} or {@code application/x-ndjson}.
+     * @param input     the feed; not closed.
+     * @return the outcome of the job, with the records rejected by this run.
+     * @throws IOException              if reading the feed fails; the committed batches are kept.
+     * @throws IllegalArgumentException if the feed type is not supported, the feed is malformed
+     *                                  beyond a single record, or the job is already running.
+     */
+    public IngestionReport ingest(String job, MediaType mediaType, Reader input) throws IOException {
+        String jobId = job == null || job.isBlank() ? UUID.randomUUID().toString() : job;
+        UserFeedReader reader = UserFeedReader.open(mediaType, input, objectMapper);
+        if (!runningJobs.add(jobId)) {
+            throw new IllegalArgumentException("Ingestion job " + jobId + " is already running.");
+        }
+        try {
+            IngestionCheckpoint checkpoint = checkpointRepository.findById(jobId)
+                    .orElseGet(() -> new IngestionCheckpoint(jobId, IngestionCheckpoint.Status.RUNNING, 0, 0, 0, Instant.now()));
+            if (checkpoint.getStatus() == IngestionCheckpoint.Status.COMPLETED) {
+                logger.info("Ingestion job {} already completed", jobId);
+                return toReport(checkpoint, new ArrayList<>());
+            }
+            if (checkpoint.getLastLine() > 0) {
+                logger.info("Resuming ingestion job {} after line {}", jobId, checkpoint.getLastLine());
+            }
+            return new Run(checkpoint, reader).execute();
+        } finally {
+            runningJobs.remove(jobId);
+        }
+    }
+
+    /**
+     * Find the progress of a job, as of its last committed batch.
+     *
+     * @param job the ID of the job.
+     * @return the progress, without rejected records, or empty if the job is unknown.
+     */
+    public Optional<IngestionReport> findJob(String job) {
+        return checkpointRepository.findById(job).map(checkpoint -> toReport(checkpoint, List.of()));
+    }
+
+    @Override
+    public void destroy() {
+        validationExecutor.shutdownNow();
+    }
+
+    private static IngestionReport toReport(IngestionCheckpoint checkpoint, List<IngestionError> errors) {
+        return new IngestionReport(checkpoint.getJob(), checkpoint.getStatus(), checkpoint.getLastLine(),
+                checkpoint.getImported(), checkpoint.getRejected(), checkpoint.getLastLine(), errors);
+    }
+
+    /**
+     * Decode and validate a batch. Runs on the validation threads.
+     */
+    private static List<CheckedRecord> validate(List<UserFeedReader.Record> records) {
+        List<CheckedRecord> checked = new ArrayList<>(records.size());
+        for (UserFeedReader.Record record : records) {
+            UserDto user;
+            try {
+                user = record.toUser();
+            } catch (IllegalArgumentException e) {
+                checked.add(new CheckedRecord(record.line(), null, null, e.getMessage()));
+                continue;
+            }
+            String error = null;
+            try {
+                UserService.validateUserDto(user);
+            } catch (InvalidUserException e) {
+                error = e.getMessage();
+            }
+            if (error == null && (user.getEmail() == null || user.getEmail().isBlank())) {
+                error = "Email cannot be null";
+            } else if (error == null && (user.getName() == null || user.getName().isBlank())) {
+                error = "Name cannot be empty.";
+            }
+            checked.add(new CheckedRecord(record.line(), error == null ? user : null, user.getEmail(), error));
+        }
+        return checked;
+    }
+
+    /**
+     * A record after validation: either a user ready to enroll, or an error.
+     */
+    private record CheckedRecord(long line, UserDto user, String email, String error) {
+    }
+
+    /**
+     * One run of a job over its feed.
+     */
+    private final class Run {
+
+        private final UserFeedReader reader;
+        private final long resumedAfterLine;
+        private final List<IngestionError> errors = new ArrayList<>();
+        private final Deque<Future<List<CheckedRecord>>> inFlight = new ArrayDeque<>();
+        private IngestionCheckpoint checkpoint;
+        private long batches;
+
+        private Run(IngestionCheckpoint checkpoint, UserFeedReader reader) {
+            this.checkpoint = checkpoint;
+            this.reader = reader;
+            this.resumedAfterLine = checkpoint.getLastLine();
+        }
+
+        private IngestionReport execute() throws IOException {
+            updateStatus(IngestionCheckpoint.Status.RUNNING);
+            try {
+                List<UserFeedReader.Record> batch = new ArrayList<>(batchSize);
+                for (UserFeedReader.Record record = reader.read(); record != null; record = reader.read()) {
+                    if (record.line() <= resumedAfterLine) {
+                        continue;
+                    }
+                    batch.add(record);
+                    if (batch.size() == batchSize) {
+                        submit(batch);
+                        batch = new ArrayList<>(batchSize);
+                    }
+                }
+                if (!batch.isEmpty()) {
+                    submit(batch);
+                }
+                while (!inFlight.isEmpty()) {
+                    write(await(inFlight.poll()));
+                }
+            } catch (IOException | RuntimeException e) {
+                inFlight.forEach(future -> future.cancel(true));
+                logger.error("Ingestion job {} failed after line {}: {}", checkpoint.getJob(), checkpoint.getLastLine(), e.getMessage());
+                try {
+                    updateStatus(IngestionCheckpoint.Status.FAILED);
+                } catch (RuntimeException statusFailure) {
+                    e.addSuppressed(statusFailure);
+                }
+                throw e;
+            }
+            updateStatus(IngestionCheckpoint.Status.COMPLETED);
+            logger.info("Ingestion job {} completed: {} imported, {} rejected", checkpoint.getJob(),
+                    checkpoint.getImported(), checkpoint.getRejected());
+            IngestionReport report = toReport(checkpoint, errors);
+            report.setResumedAfterLine(resumedAfterLine);
+            return report;
+        }
+
+        private void submit(List<UserFeedReader.Record> batch) {
+            inFlight.add(validationExecutor.submit(() -> validate(batch)));
+            if (inFlight.size() >= maxBatchesInFlight) {
+                write(await(inFlight.poll()));
+            }
+        }
+
+        private List<CheckedRecord> await(Future<List<CheckedRecord>> future) {
+            try {
+                return future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while validating users.", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Failed to validate users.", e.getCause());
+            }
+        }
+
+        private void write(List<CheckedRecord> batch) {
+            List<CheckedRecord> valid = new ArrayList<>(batch.size());
+            for (CheckedRecord record : batch) {
+                if (record.user() != null) {
+                    valid.add(record);
+                }
+            }
+            long lastLine = batch.get(batch.size() - 1).line();
+
+            // The checkpoint commits with the batch, so a resumed job neither skips nor repeats users
+            IngestionCheckpoint current = checkpoint;
+            List<EnrollmentResult> results = new ArrayList<>(valid.size());
+            IngestionCheckpoint advanced = null;
+            for (int attempt = 1; advanced == null; attempt++) {
+                results.clear();
+                try {
+                    advanced = transactionTemplate.execute(status -> {
+                        if (!valid.isEmpty()) {
+                            results.addAll(userService.addUsers(valid.stream().map(CheckedRecord::user).toList()));
+                        }
+                        long imported = results.stream().filter(result -> result.getStatus() == EnrollmentResult.Status.CREATED).count();
+                        return checkpointRepository.save(new IngestionCheckpoint(current.getJob(), IngestionCheckpoint.Status.RUNNING,
+                                lastLine, current.getImported() + imported, current.getRejected() + batch.size() - imported, Instant.now()));
+                    });
+                } catch (InvalidUserException e) {
+                    // An email was enrolled concurrently after the batch checked it; the next check sees it
+                    if (attempt == MAX_WRITE_ATTEMPTS) {
+                        throw e;
+                    }
+                    logger.warn("Ingestion job {} batch ending at line {} lost a race with a concurrent enrollment, writing it again: {}",
+                            current.getJob(), lastLine, e.getMessage());
+                }
+            }
+            checkpoint = advanced;
+
+            for (CheckedRecord record : batch) {
+                if (record.error() != null) {
+                    report(record.line(), record.email(), record.error());
+                }
+            }
+            for (EnrollmentResult result : results) {
+                if (result.getStatus() == EnrollmentResult.Status.FAILED) {
+                    report(valid.get(result.getIndex()).line(), result.getEmail(), result.getError());
+                }
+            }
+            if (++batches % PROGRESS_LOG_INTERVAL == 0) {
+                logger.info("Ingestion job {} at line {}: {} imported, {} rejected", checkpoint.getJob(),
+                        checkpoint.getLastLine(), checkpoint.getImported(), checkpoint.getRejected());
+            }
+        }
+
+        private void report(long line, String email, String error) {
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(new IngestionError(line, email, error));
+            }
+        }
+
+        private void updateStatus(IngestionCheckpoint.Status status) {
+            checkpoint.setStatus(status);
+            checkpoint.setUpdatedAt(Instant.now());
+            checkpoint = checkpointRepository.save(checkpoint);
+        }
+    }
+}
@@ -1,38 +1,98 @@
 package com.sap.refactoring.service;
 
+import com.sap.refactoring.cache.UserCache;
 import com.sap.refactoring.entity.UserEntity;
+import com.sap.refactoring.event.UserChangedEvent;
 import com.sap.refactoring.exceptions.InvalidUserException;
 import com.sap.refactoring.exceptions.UserNotFoundException;
+import com.sap.refactoring.exceptions.UserVersionConflictException;
 import com.sap.refactoring.mapper.UserMapper;
+import com.sap.refactoring.model.CursorPage;
+import com.sap.refactoring.model.EnrollmentResult;
+import com.sap.refactoring.model.UpdateTicket;
 import com.sap.refactoring.model.UserDto;
 import com.sap.refactoring.repository.UserRepository;
+import com.sap.refactoring.repository.projection.UserRoleJoinRow;
+import com.sap.refactoring.repository.projection.UserRoleRow;
+import com.sap.refactoring.repository.projection.UserRow;
+import com.sap.refactoring.routing.ReplicaRouting;
+import com.sap.refactoring.writebehind.UserUpdateQueue;
+import io.micrometer.core.annotation.Timed;
+import jakarta.persistence.EntityManager;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * Service layer responsible for handling user business logic.
  */
 @Service
 @RequiredArgsConstructor
+@Timed(value = "user.service", histogram = true)
 public class UserService {
 
     private static final Logger logger = LoggerFactory.getLogger(UserService.class);
 
+    /**
+     * Upper bound for the size of a single keyset page.
+     */
+    public static final int MAX_PAGE_SIZE = 1000;
+
+    /**
+     * Upper bound for the number of users enrolled in a single batch.
+     */
+    public static final int MAX_BATCH_SIZE = 10000;
+
+    /**
+     * Number of users flushed to the database and cleared from the persistence context at a time.
+     */
+    private static final int INSERT_CHUNK_SIZE = 500;
+
     @Autowired
     private final UserRepository userRepository;
 
     @Autowired
     private final UserMapper userMapper;
 
+    private final EntityManager entityManager;
+
+    private final UserCache userCache;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final UserUpdateQueue userUpdateQueue;
+
+    private final ReplicaRouting replicaRouting;
+
+    @Value("${user.soft-delete.enabled:false}")
+    private boolean softDelete;
+
   /*  @Autowired
     public UserService(UserRepository userRepository, UserMapper userMapper) {
         this.userRepository = userRepository;
@@ -45,22 +105,117 @@ public class UserService {
      *
      * @param userDto the data transfer object containing user data.
      * @return the created user DTO.
-     * @throws InvalidUserException if the user data is invalid.
+     * @throws InvalidUserException if the user data is invalid or the email is already in use.
      */
     @Transactional
     public UserDto addUser(UserDto userDto) throws InvalidUserException {
         validateUserDto(userDto);
-        checkEmailUniqueness(userDto.getEmail());
 
         try {
             UserEntity userEntity = userMapper.toEntity(userDto);
             UserEntity savedUser = userRepository.save(userEntity); // Save the user to the database
+            // Flush inside the try block so that the unique email constraint is checked here
+            userRepository.flush();
+            // A name lookup cached before this insert may now resolve to a different user
+            userCache.invalidate(null, savedUser.getName());
             logger.info("User with email {} created successfully", savedUser.getEmail());
-            return userMapper.toDto(savedUser);
+            UserDto savedDto = userMapper.toDto(savedUser);
+            eventPublisher.publishEvent(UserChangedEvent.created(savedDto));
+            return savedDto;
         } catch (DataIntegrityViolationException e) {
             logger.error("Error saving user with email {}: {}", userDto.getEmail(), e.getMessage());
-            throw new InvalidUserException("User data is invalid or violates integrity constraints.");
+            throw toInvalidUserException(e);
+        }
+    }
+
+    /**
+     * Add a batch of new users to the system.
+     * <p>
+     * Users failing validation, repeating an email within the batch or using an email that is
+     * already taken are reported as failed and skipped; the others are inserted using JDBC batching.
+     * Email uniqueness is checked for the whole batch with a single query.
+     *
+     * @param userDtos the users to create.
+     * @return one result per submitted user, in submission order.
+     * @throws InvalidUserException if the batch is empty or an insert violates integrity constraints,
+     *                              in which case no user of the batch is created; the in-memory store
+     *                              has no rollback and keeps the chunks inserted before the violation.
+     * @throws IllegalArgumentException if the batch exceeds {@link #MAX_BATCH_SIZE}.
+     */
+    @Transactional
+    public List<EnrollmentResult> addUsers(List<UserDto> userDtos) throws InvalidUserException {
+        if (userDtos == null || userDtos.isEmpty()) {
+            throw new InvalidUserException("Batch must contain at least one user.");
+        }
+        if (userDtos.size() > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("Batch must not contain more than " + MAX_BATCH_SIZE + " users.");
+        }
+
+        EnrollmentResult[] results = new EnrollmentResult[userDtos.size()];
+        Set<String> batchEmails = new HashSet<>();
+        for (int i = 0; i < userDtos.size(); i++) {
+            UserDto userDto = userDtos.get(i);
+            String email = userDto == null ? null : userDto.getEmail();
+            try {
+                validateUserDto(userDto);
+            } catch (InvalidUserException e) {
+                results[i] = EnrollmentResult.failed(i, email, e.getMessage());
+                continue;
+            }
+            if (email == null) {
+                results[i] = EnrollmentResult.failed(i, null, "Email cannot be null");
+            } else if (!batchEmails.add(email)) {
+                results[i] = EnrollmentResult.failed(i, email, "Email is repeated within the batch.");
+            }
+        }
+
+        Set<String> takenEmails = batchEmails.isEmpty() ? Set.of() : userRepository.findExistingEmails(batchEmails);
+        List<UserEntity> pending = new ArrayList<>(Math.min(INSERT_CHUNK_SIZE, batchEmails.size()));
+        List<Integer> pendingIndexes = new ArrayList<>(Math.min(INSERT_CHUNK_SIZE, batchEmails.size()));
+        try {
+            for (int i = 0; i < userDtos.size(); i++) {
+                if (results[i] != null) {
+                    continue;
+                }
+                UserDto userDto = userDtos.get(i);
+                if (takenEmails.contains(userDto.getEmail())) {
+                    results[i] = EnrollmentResult.failed(i, userDto.getEmail(), "A user with this email already exists.");
+                    continue;
+                }
+                UserEntity userEntity = userMapper.toEntity(userDto);
+                userEntity.setId(null);
+                pending.add(userEntity);
+                pendingIndexes.add(i);
+                if (pending.size() == INSERT_CHUNK_SIZE) {
+                    insertChunk(pending, pendingIndexes, results);
+                    pending = new ArrayList<>(INSERT_CHUNK_SIZE);
+                    pendingIndexes = new ArrayList<>(INSERT_CHUNK_SIZE);
+                }
+            }
+            insertChunk(pending, pendingIndexes, results);
+        } catch (DataIntegrityViolationException e) {
+            logger.error("Error saving batch of {} users: {}", userDtos.size(), e.getMessage());
+            throw toInvalidUserException(e);
+        }
+
+        logger.info("Batch enrollment processed {} users", userDtos.size());
+        return Arrays.asList(results);
+    }
+
+    private void insertChunk(List<UserEntity> pending, List<Integer> pendingIndexes, EnrollmentResult[] results) {
+        if (pending.isEmpty()) {
+            return;
+        }
+        userRepository.saveAll(pending);
+        userRepository.flush();
+        for (int j = 0; j < pending.size(); j++) {
+            UserEntity saved = pending.get(j);
+            results[pendingIndexes.get(j)] = EnrollmentResult.created(pendingIndexes.get(j), saved.getEmail(), saved.getId());
+            userCache.invalidate(null, saved.getName());
+            eventPublisher.publishEvent(UserChangedEvent.created(userMapper.toDto(saved)));
         }
+        // Keep the persistence context small for large batches
+        entityManager.clear();
     }
 
     /**
@@ -70,9 +225,29 @@ public class UserService {
      * @param userDto the updated user data.
      * @return the updated user DTO.
      * @throws UserNotFoundException if the user is not found.
+     * @throws InvalidUserException  if the user data is invalid or the new email is already in use.
      */
     @Transactional
-    public UserDto updateUser(Long userId, UserDto userDto) throws UserNotFoundException {
+    public UserDto updateUser(Long userId, UserDto userDto) throws UserNotFoundException, InvalidUserException {
+        return updateUser(userId, userDto, null);
+    }
+
+    /**
+     * Update an existing user by ID, provided it is still at the given version. An update of the user
+     * still queued for write-behind is superseded, as it is older than this one.
+     *
+     * @param userId          the ID of the user to update.
+     * @param userDto         the updated user data.
+     * @param expectedVersion the version the update is based on, or null to update any version.
+     * @return the updated user DTO, with its new version.
+     * @throws UserNotFoundException        if the user is not found.
+     * @throws InvalidUserException         if the user data is invalid or the new email is already in use.
+     * @throws UserVersionConflictException if the user is no longer at the expected version.
+     * @throws OptimisticLockingFailureException if a queued update of the user is being written.
+     */
+    @Transactional
+    public UserDto updateUser(Long userId, UserDto userDto, Long expectedVersion)
+            throws UserNotFoundException, InvalidUserException, UserVersionConflictException {
         validateUserDto(userDto);
 
         Optional<UserEntity> existingUser = userRepository.findById(userId);
@@ -81,36 +256,156 @@ public class UserService {
             throw new UserNotFoundException("User with ID " + userId + " not found.");
         }
 
-        UserEntity user = existingUser.get();
-        if (!user.getEmail().equals(userDto.getEmail())) {
-            checkEmailUniqueness(userDto.getEmail());
+        return update(existingUser.get(), userDto, expectedVersion);
+    }
+
+    /**
+     * Partially update an existing user by ID. Fields that are null in the patch keep their current
+     * value; roles, if given, replace the current roles. An update of the user still queued for
+     * write-behind is superseded, and the patch applies to the stored user.
+     *
+     * @param userId          the ID of the user to update.
+     * @param patch           the fields to change.
+     * @param expectedVersion the version the update is based on, or null to update any version.
+     * @return the updated user DTO, with its new version.
+     * @throws UserNotFoundException        if the user is not found.
+     * @throws InvalidUserException         if the patched user is invalid or the new email is already in use.
+     * @throws UserVersionConflictException if the user is no longer at the expected version.
+     * @throws OptimisticLockingFailureException if a queued update of the user is being written.
+     */
+    @Transactional
+    public UserDto patchUser(Long userId, UserDto patch, Long expectedVersion)
+            throws UserNotFoundException, InvalidUserException, UserVersionConflictException {
+        UserEntity user = userRepository.findById(userId)
+                .orElseThrow(() -> new UserNotFoundException("User with ID " + userId + " not found."));
+        UserDto patched = new UserDto(userId,
+                patch.getName() != null ? patch.getName() : user.getName(),
+                patch.getEmail() != null ? patch.getEmail() : user.getEmail(),
+                patch.getRoles() != null ? patch.getRoles() : new ArrayList<>(user.getRoles()));
+        validateUserDto(patched);
+        return update(user, patched, expectedVersion);
+    }
+
+    private UserDto update(UserEntity user, UserDto userDto, Long expectedVersion) {
+        Long userId = user.getId();
+        if (expectedVersion != null && !expectedVersion.equals(user.getVersion())) {
+            throw versionConflict(userId, expectedVersion);
+        }
+        // Even an update changing nothing must keep an older queued update from being written after it
+        userUpdateQueue.withdraw(userId).ifPresent(this::supersedeOnCommit);
+        if (!applyChanges(user, userDto)) {
+            // Nothing to write: no statement, no new version, and the caches stay valid
+            logger.debug("User with ID {} unchanged by update", userId);
+            return userMapper.toDto(user);
+        }
+        UserEntity updatedUser;
+        try {
+            updatedUser = userRepository.save(user);
+            userRepository.flush();
+        } catch (DataIntegrityViolationException e) {
+            logger.error("Error updating user with ID {}: {}", userId, e.getMessage());
+            throw toInvalidUserException(e);
+        } catch (OptimisticLockingFailureException e) {
+            // Another transaction updated the user after it was read here
+            if (expectedVersion == null) {
+                throw e;
+            }
+            throw versionConflict(userId, expectedVersion);
         }
-        user.setName(userDto.getName());
-        user.setEmail(userDto.getEmail());
-        user.setRoles(userDto.getRoles());
-        UserEntity updatedUser = userRepository.save(user);
         logger.info("User with ID {} updated successfully", userId);
-        return userMapper.toDto(updatedUser);
+        UserDto updatedDto = userMapper.toDto(updatedUser);
+        eventPublisher.publishEvent(UserChangedEvent.updated(updatedDto));
+        return updatedDto;
+    }
+
+    /**
+     * Accept an update for asynchronous write-behind. The update is validated now and written by
+     * {@link com.sap.refactoring.writebehind.UserUpdateFlusher}; until then, {@link #findUserById(Long)}
+     * returns the updated data, unless a synchronous update of the user supersedes it.
+     *
+     * @param userId  the ID of the user to update.
+     * @param userDto the updated user data.
+     * @return the ticket to follow the update with.
+     * @throws InvalidUserException if the user data is invalid.
+     * @throws com.sap.refactoring.exceptions.WriteBehindQueueFullException if too many updates are pending.
+     */
+    public UpdateTicket submitUpdate(Long userId, UserDto userDto) throws InvalidUserException {
+        validateUserDto(userDto);
+        return userUpdateQueue.submit(userId, userDto);
+    }
+
+    /**
+     * Look up the status of an update accepted by {@link #submitUpdate(Long, UserDto)}.
+     *
+     * @param ticket the ticket of the update.
+     * @return the status, or empty if the ticket is unknown or expired.
+     */
+    public Optional<UpdateTicket> findUpdateTicket(String ticket) {
+        return userUpdateQueue.findTicket(ticket);
     }
 
     /**
-     * Delete a user by ID.
+     * Update a batch of existing users in a single transaction, used to flush queued updates.
+     * Users are loaded in one query and written with JDBC batching.
+     *
+     * @param updates the updated user data, keyed by user ID.
+     * @return the reason of the failure, keyed by user ID, of the updates that could not be applied.
+     * @throws InvalidUserException if an update violates integrity constraints, in which case no
+     *                              update of the batch is applied.
+     */
+    @Transactional
+    public Map<Long, String> updateUsers(Map<Long, UserDto> updates) throws InvalidUserException {
+        List<UserEntity> users = userRepository.findAllById(updates.keySet());
+        List<UserEntity> changed = new ArrayList<>(users.size());
+        for (UserEntity user : users) {
+            if (applyChanges(user, updates.get(user.getId()))) {
+                changed.add(user);
+            }
+        }
+        try {
+            // A no-op merge of managed entities for JPA; needed by stores that hand out detached copies.
+            // Unchanged users are left out, so they keep their version, like a single update changing nothing
+            userRepository.saveAll(changed);
+            userRepository.flush();
+        } catch (DataIntegrityViolationException e) {
+            logger.error("Error updating batch of {} users: {}", updates.size(), e.getMessage());
+            throw toInvalidUserException(e);
+        }
+
+        Map<Long, String> failures = new HashMap<>();
+        for (Long userId : updates.keySet()) {
+            failures.put(userId, "User with ID " + userId + " not found.");
+        }
+        for (UserEntity user : users) {
+            failures.remove(user.getId());
+        }
+        for (UserEntity user : changed) {
+            eventPublisher.publishEvent(UserChangedEvent.updated(userMapper.toDto(user)));
+        }
+        logger.info("Batch update applied to {} users", users.size());
+        return failures;
+    }
+
+    /**
+     * Delete a user by ID with a single statement, whose row count tells whether the user existed.
+     * In soft-delete mode the user is only marked as deleted, hidden from all queries, and removed
+     * later by the {@link UserTombstonePurger}.
      *
      * @param userId the ID of the user to delete.
-     * @return true if the user was deleted, false otherwise.
+     * @return true if the user was deleted, false if there was no such user.
      */
     @Transactional
     public boolean deleteUser(Long userId) {
-        Optional<UserEntity> existingUser = userRepository.findById(userId);
-
-        return existingUser.map(user -> {
-            userRepository.deleteById(userId);
-            logger.info("User with ID {} deleted successfully", userId);
-            return true;
-        }).orElseGet(() -> {
+        int deleted = softDelete ? userRepository.markDeletedById(userId) : userRepository.deleteLiveById(userId);
+        if (deleted == 0) {
             logger.warn("User with ID {} not found for deletion", userId);
             return false;
-        });
+        }
+        // The cached user, if any, leads to its name entry
+        userCache.invalidate(userId, null);
+        eventPublisher.publishEvent(UserChangedEvent.deleted(userId));
+        logger.info("User with ID {} deleted successfully", userId);
+        return true;
     }
 
     /**
@@ -120,13 +415,18 @@ public class UserService {
      * @return the user DTO if found, or throws UserNotFoundException if not found.
      * @throws UserNotFoundException if the user with the given ID does not exist.
      */
+    @Transactional(readOnly = true)
     public UserDto findUserById(Long userId) throws UserNotFoundException {
-        return userRepository.findById(userId)
-                .map(userMapper::toDto)
+        long stamp = userCache.stamp();
+        Optional<UserDto> cached = userCache.findById(userId);
+        UserDto user = cached.isPresent() ? cached.get() : findStoredUser(userId)
+                .map(found -> toCachedDto(found, stamp, false))
                 .orElseThrow(() -> {
                     logger.warn("User with ID {} not found", userId);
                     return new UserNotFoundException("User with ID " + userId + " not found.");
                 });
+        // Read-your-writes: an update accepted for write-behind wins over the not yet updated row
+        return userUpdateQueue.findPending(userId).orElse(user);
     }
 
     /**
@@ -134,41 +434,224 @@ public class UserService {
      *
      * @return a list of all user DTOs.
      */
+    @Transactional(readOnly = true)
     public List<UserDto> getAllUsers() {
         try {
-            List<UserEntity> users = userRepository.findAll();
+            // Two projection queries, merged by id: no managed entities and no dirty-checking snapshots
+            List<UserRow> users = userRepository.findAllRows();
+            List<UserRoleRow> roles = userRepository.findAllRoleRows();
             logger.info("Fetched {} users from the database", users.size());
-            return users.stream()
-                    .map(userMapper::toDto)
-                    .collect(Collectors.toList());
+            return userMapper.toDtos(users, roles);
         } catch (Exception e) {
             logger.error("Error fetching users from the database: {}", e.getMessage());
             throw new RuntimeException("An unexpected error occurred while fetching users.");
         }
     }
 
+    /**
+     * Get one page of users ordered by ID, using keyset pagination.
+     *
+     * @param cursor the cursor returned with the previous page, or null for the first page.
+     * @param limit  the maximum number of users to return.
+     * @return the page of user DTOs together with the cursor of the next page.
+     * @throws IllegalArgumentException if the cursor is malformed or the limit is out of range.
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<UserDto> getUsersPage(String cursor, int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Page limit must be between 1 and " + MAX_PAGE_SIZE + ".");
+        }
+        long afterId = cursor == null || cursor.isEmpty() ? 0L : decodeCursor(cursor);
+
+        // Fetch one extra row to know whether another page follows without a count query
+        List<UserRow> users = userRepository.findRowPageAfter(afterId, PageRequest.ofSize(limit + 1));
+        boolean hasNext = users.size() > limit;
+        if (hasNext) {
+            users = users.subList(0, limit);
+        }
+        List<UserDto> items = List.of();
+        if (!users.isEmpty()) {
+            List<Long> ids = new ArrayList<>(users.size());
+            for (UserRow user : users) {
+                ids.add(user.id());
+            }
+            items = userMapper.toDtos(users, userRepository.findRoleRowsByUserIds(ids));
+        }
+        String next = hasNext ? encodeCursor(items.get(items.size() - 1).getId()) : null;
+        return new CursorPage<>(items, next);
+    }
+
+    /**
+     * Stream all users, in ID order, to the given consumer straight from a database cursor.
+     * Rows are read as projections and grouped per user, so no entity is ever loaded and
+     * memory stays flat regardless of table size.
+     *
+     * @param consumer receives each user DTO in turn.
+     */
+    @Transactional(readOnly = true)
+    public void streamAllUsers(Consumer<UserDto> consumer) {
+        try (Stream<UserRoleJoinRow> rows = userRepository.streamAllJoinRows()) {
+            UserDto current = null;
+            for (Iterator<UserRoleJoinRow> iterator = rows.iterator(); iterator.hasNext(); ) {
+                UserRoleJoinRow row = iterator.next();
+                if (current == null || !current.getId().equals(row.id())) {
+                    if (current != null) {
+                        consumer.accept(current);
+                    }
+                    current = new UserDto(row.id(), row.name(), row.email(), new ArrayList<>(2));
+                }
+                if (row.role() != null) {
+                    current.getRoles().add(row.role());
+                }
+            }
+            if (current != null) {
+                consumer.accept(current);
+            }
+        }
+    }
+
+    /**
+     * Find users by ID, preserving the order of the given IDs. Cached users are served from the cache,
+     * the others are read through projections in two queries. Unknown IDs are skipped.
+     *
+     * @param userIds the IDs of the users to find.
+     * @return the user DTOs in the order of the given IDs.
+     */
+    @Transactional(readOnly = true)
+    public List<UserDto> findUsersByIds(List<Long> userIds) {
+        Map<Long, UserDto> found = new HashMap<>(userIds.size() * 2);
+        List<Long> missing = new ArrayList<>();
+        for (Long userId : userIds) {
+            Optional<UserDto> cached = userCache.findById(userId);
+            if (cached.isPresent()) {
+                found.put(userId, cached.get());
+            } else {
+                missing.add(userId);
+            }
+        }
+        if (!missing.isEmpty()) {
+            List<UserDto> loaded = userMapper.toDtos(userRepository.findRowsByIds(missing),
+                    userRepository.findRoleRowsByUserIds(missing));
+            for (UserDto userDto : loaded) {
+                found.put(userDto.getId(), userDto);
+            }
+        }
+
+        List<UserDto> users = new ArrayList<>(userIds.size());
+        for (Long userId : userIds) {
+            UserDto userDto = found.get(userId);
+            if (userDto != null) {
+                users.add(userDto);
+            }
+        }
+        return users;
+    }
+
     /**
      * Find a user by name.
      *
      * @param name the name of the user to find.
      * @return the user DTO if found, otherwise null.
      */
+    @Transactional(readOnly = true)
     public UserDto findUserByName(String name) {
-        return userRepository.findByName(name)
-                .map(userMapper::toDto)
-                .orElse(null);
+        long stamp = userCache.stamp();
+        Optional<UserDto> cached = userCache.findByName(name);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+        // Names are not unique: resolve to the namesake with the lowest ID
+        List<UserEntity> users = userRepository.findAllByNameOrderByIdAsc(name);
+        return users.isEmpty() ? null : toCachedDto(users.get(0), stamp, true);
     }
 
     /**
-     * Check if the email already exists in the database.
+     * Translate a constraint violation raised on insert or update into an {@link InvalidUserException}.
+     * The unique email constraint is the source of truth for email uniqueness, so no pre-check query is run.
      *
-     * @param email the email to check.
-     * @throws InvalidUserException if the email is already in use.
+     * @param e the violation reported by the database.
+     * @return the exception to throw.
      */
-    private void checkEmailUniqueness(String email) throws InvalidUserException {
-        if (userRepository.findByEmail(email).isPresent()) {
-            logger.error("User with email {} already exists", email);
-            throw new InvalidUserException("A user with this email already exists.");
+    static InvalidUserException toInvalidUserException(DataIntegrityViolationException e) {
+        String detail = e.getMostSpecificCause().getMessage();
+        if (detail != null && detail.toLowerCase(Locale.ROOT).contains(UserEntity.EMAIL_UNIQUE_CONSTRAINT)) {
+            return new InvalidUserException("A user with this email already exists.");
+        }
+        return new InvalidUserException("User data is invalid or violates integrity constraints.");
+    }
+
+    // Applies the DTO to the managed entity unless it changes nothing, returning whether it changed anything
+    private boolean applyChanges(UserEntity user, UserDto userDto) {
+        if (Objects.equals(user.getName(), userDto.getName())
+                && Objects.equals(user.getEmail(), userDto.getEmail())
+                && new HashSet<>(userDto.getRoles()).equals(user.getRoles() == null ? Set.of() : user.getRoles())) {
+            return false;
+        }
+        userCache.invalidate(user.getId(), user.getName());
+        // The new name may now resolve to this user rather than to the namesake cached under it
+        userCache.invalidate(null, userDto.getName());
+        user.setName(userDto.getName());
+        user.setEmail(userDto.getEmail());
+        // Applied as a difference, so unchanged roles are neither deleted nor inserted again
+        user.setRoles(userDto.getRoles());
+        return true;
+    }
+
+    private void supersedeOnCommit(UserUpdateQueue.PendingUpdate withdrawn) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            userUpdateQueue.supersede(withdrawn);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    userUpdateQueue.supersede(withdrawn);
+                } else {
+                    userUpdateQueue.restore(withdrawn);
+                }
+            }
+        });
+    }
+
+    private static UserVersionConflictException versionConflict(Long userId, Long expectedVersion) {
+        logger.warn("User with ID {} is no longer at version {}", userId, expectedVersion);
+        return new UserVersionConflictException("User with ID " + userId + " was modified since version " + expectedVersion + ".");
+    }
+
+    // A replica may not have applied a change made here yet, so recently changed users are read from the primary
+    private Optional<UserEntity> findStoredUser(Long userId) {
+        return replicaRouting.mayBeStale(userId)
+                ? replicaRouting.onPrimary(() -> userRepository.findById(userId))
+                : userRepository.findById(userId);
+    }
+
+    // The stamp is taken before the user is read, so a read racing with a committed change is not cached;
+    // only a lookup by name knows which namesake the name resolves to
+    private UserDto toCachedDto(UserEntity user, long stamp, boolean foundByName) {
+        UserDto userDto = userMapper.toDto(user);
+        // A replica read racing with a change would otherwise be cached past the invalidation
+        if (replicaRouting.mayBeStale(userDto.getId())) {
+            return userDto;
+        }
+        if (foundByName) {
+            userCache.putForName(userDto, stamp);
+        } else {
+            userCache.put(userDto, stamp);
+        }
+        return userDto;
+    }
+
+    private static String encodeCursor(Long lastId) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(Long.toString(lastId).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static long decodeCursor(String cursor) {
+        try {
+            return Long.parseLong(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid page cursor.");
         }
     }
 
@@ -178,10 +661,14 @@ public class UserService {
      * @param userDto the user data to validate.
      * @throws InvalidUserException if validation fails.
      */
-    private void validateUserDto(UserDto userDto) throws InvalidUserException {
+    static void validateUserDto(UserDto userDto) throws InvalidUserException {
         if (userDto == null || userDto.getRoles() == null || userDto.getRoles().isEmpty()) {
             logger.error("User data is invalid: missing roles.");
             throw new InvalidUserException("User must have at least one role.");
         }
+        if (userDto.getRoles().stream().anyMatch(role -> role == null || role.isBlank())) {
+            logger.error("User data is invalid: blank role.");
+            throw new InvalidUserException("Roles must not be blank.");
+        }
     }
 }
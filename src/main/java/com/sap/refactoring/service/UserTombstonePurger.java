@@ -0,0 +1,121 @@
+package com.sap.refactoring.service;
+
+import com.sap.refactoring.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Hard-deletes the users soft-deleted by {@link UserService#deleteUser(Long)}, together with
+ * their roles, in large batches of one transaction each.
+ * <p>
+ * Runs on a cron schedule meant for off-peak hours, and stops once no tombstones are left or
+ * the maximum duration is reached, leaving the rest for the next run. A run can take up to that
+ * duration, so it runs on a thread of its own rather than on the scheduler, which the write-behind
+ * flush and the journal need meanwhile.
+ */
+@Component
+@ConditionalOnProperty(name = "user.soft-delete.enabled", havingValue = "true")
+public class UserTombstonePurger implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserTombstonePurger.class);
+
+    private final UserRepository userRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final int batchSize;
+
+    private final Duration maxDuration;
+
+    private final ReentrantLock purgeLock = new ReentrantLock();
+
+    private final ExecutorService purgeExecutor;
+
+    public UserTombstonePurger(UserRepository userRepository, TransactionTemplate transactionTemplate,
+                               @Value("${user.soft-delete.purge-batch-size:10000}") int batchSize,
+                               @Value("${user.soft-delete.purge-max-duration:1h}") Duration maxDuration) {
+        this.userRepository = userRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = batchSize;
+        this.maxDuration = maxDuration;
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("user-purge-");
+        threadFactory.setDaemon(true);
+        this.purgeExecutor = Executors.newSingleThreadExecutor(threadFactory);
+    }
+
+    /**
+     * Start a purge on the purge thread, unless one is still running.
+     */
+    @Scheduled(cron = "${user.soft-delete.purge-cron:0 0 3 * * *}")
+    public void schedulePurge() {
+        if (purgeLock.isLocked()) {
+            logger.warn("Purge of soft-deleted users still running, skipping this run");
+            return;
+        }
+        purgeExecutor.execute(() -> {
+            try {
+                purge();
+            } catch (RuntimeException e) {
+                logger.error("Purge of soft-deleted users failed, the rest is left for the next run", e);
+            }
+        });
+    }
+
+    /**
+     * Delete tombstoned users and their roles, one transaction per batch, on the calling thread.
+     *
+     * @return the number of users deleted, 0 if another purge is running.
+     */
+    public long purge() {
+        if (!purgeLock.tryLock()) {
+            return 0;
+        }
+        try {
+            long deadline = System.nanoTime() + maxDuration.toNanos();
+            long purged = 0;
+            int batch;
+            do {
+                batch = transactionTemplate.execute(status -> purgeBatch());
+                purged += batch;
+            } while (batch > 0 && System.nanoTime() - deadline < 0 && !Thread.currentThread().isInterrupted());
+            if (purged > 0) {
+                logger.info("Purged {} soft-deleted users", purged);
+            }
+            return purged;
+        } finally {
+            purgeLock.unlock();
+        }
+    }
+
+    /**
+     * Stop a running purge after its current batch.
+     */
+    @Override
+    public void destroy() {
+        purgeExecutor.shutdownNow();
+    }
+
+    private int purgeBatch() {
+        List<Long> ids = userRepository.findTombstoneIds(batchSize);
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        int roles = userRepository.purgeTombstoneRoles(ids);
+        int users = userRepository.purgeTombstones(ids);
+        logger.debug("Purged batch of {} soft-deleted users with {} roles", users, roles);
+        return users;
+    }
+}
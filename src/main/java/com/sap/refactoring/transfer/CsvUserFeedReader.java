@@ -0,0 +1,182 @@
+package com.sap.refactoring.transfer;
+
+import com.sap.refactoring.model.UserDto;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Reads a CSV user feed following RFC 4180: a header row naming the columns {@code name},
+ * {@code email} and {@code roles} in any order, then one user per row. Roles are separated by
+ * semicolons. Fields may be quoted, and quoted fields may contain commas, line breaks and doubled
+ * quotes. Other columns and blank lines are ignored.
+ */
+public class CsvUserFeedReader implements UserFeedReader {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Maximum number of characters in a row, so that a stray quote cannot swallow the whole input.
+     */
+    static final int MAX_ROW_LENGTH = 1024 * 1024;
+
+    private final Reader input;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position;
+    private int limit;
+    private boolean eof;
+    // Line of the next character
+    private long line = 1;
+
+    private boolean headerRead;
+    private int nameColumn = -1;
+    private int emailColumn = -1;
+    private int rolesColumn = -1;
+
+    public CsvUserFeedReader(Reader input) {
+        this.input = input;
+    }
+
+    @Override
+    public Record read() throws IOException {
+        if (!headerRead) {
+            readHeader();
+        }
+        while (true) {
+            long start = line;
+            String[] fields = readRow();
+            if (fields == null) {
+                return null;
+            }
+            if (fields.length > 1 || !fields[0].isBlank()) {
+                return new CsvRecord(start, fields);
+            }
+        }
+    }
+
+    private void readHeader() throws IOException {
+        headerRead = true;
+        String[] header = readRow();
+        if (header == null) {
+            return;
+        }
+        for (int i = 0; i < header.length; i++) {
+            switch (header[i].trim().toLowerCase(Locale.ROOT)) {
+                case "name" -> nameColumn = i;
+                case "email" -> emailColumn = i;
+                case "roles" -> rolesColumn = i;
+                default -> {
+                }
+            }
+        }
+        if (nameColumn < 0 || emailColumn < 0 || rolesColumn < 0) {
+            throw new IllegalArgumentException("CSV header must name the columns name, email and roles.");
+        }
+    }
+
+    private String[] readRow() throws IOException {
+        if (!fill()) {
+            return null;
+        }
+        long start = line;
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        int length = 0;
+        while (fill()) {
+            char c = buffer[position++];
+            if (++length > MAX_ROW_LENGTH) {
+                throw new IllegalArgumentException("CSV row at line " + start + " is longer than "
+                        + MAX_ROW_LENGTH + " characters.");
+            }
+            if (quoted) {
+                if (c != '"') {
+                    if (c == '\n') {
+                        line++;
+                    }
+                    field.append(c);
+                } else if (fill() && buffer[position] == '"') {
+                    field.append('"');
+                    position++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n') {
+                line++;
+                break;
+            } else if (c != '\r') {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("CSV row at line " + start + " has an unterminated quoted field.");
+        }
+        fields.add(field.toString());
+        return fields.toArray(String[]::new);
+    }
+
+    private boolean fill() throws IOException {
+        if (position < limit) {
+            return true;
+        }
+        if (eof) {
+            return false;
+        }
+        int read = input.read(buffer);
+        if (read < 0) {
+            eof = true;
+            return false;
+        }
+        position = 0;
+        limit = read;
+        return true;
+    }
+
+    private final class CsvRecord implements Record {
+
+        private final long line;
+        private final String[] fields;
+        // Captured now: the reader moves on while the record is decoded elsewhere
+        private final int nameColumn = CsvUserFeedReader.this.nameColumn;
+        private final int emailColumn = CsvUserFeedReader.this.emailColumn;
+        private final int rolesColumn = CsvUserFeedReader.this.rolesColumn;
+
+        private CsvRecord(long line, String[] fields) {
+            this.line = line;
+            this.fields = fields;
+        }
+
+        @Override
+        public long line() {
+            return line;
+        }
+
+        @Override
+        public UserDto toUser() {
+            int columns = Math.max(nameColumn, Math.max(emailColumn, rolesColumn)) + 1;
+            if (fields.length < columns) {
+                throw new IllegalArgumentException("Expected " + columns + " fields, found " + fields.length + ".");
+            }
+            List<String> roles = Arrays.stream(fields[rolesColumn].split(";"))
+                    .map(String::trim)
+                    .filter(role -> !role.isEmpty())
+                    .toList();
+            return new UserDto(null, blankToNull(fields[nameColumn]), blankToNull(fields[emailColumn]),
+                    new ArrayList<>(roles));
+        }
+
+        private static String blankToNull(String value) {
+            String trimmed = value.trim();
+            return trimmed.isEmpty() ? null : trimmed;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.sap.refactoring.transfer;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sap.refactoring.model.UserDto;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads an NDJSON user feed: one user object per line, in the JSON shape of the REST API. Blank
+ * lines are ignored, and IDs are dropped.
+ */
+public class NdjsonUserFeedReader implements UserFeedReader {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final BufferedReader input;
+    private final ObjectMapper objectMapper;
+    private long line;
+
+    public NdjsonUserFeedReader(Reader input, ObjectMapper objectMapper) {
+        this.input = new BufferedReader(input, BUFFER_SIZE);
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public Record read() throws IOException {
+        for (String text = input.readLine(); text != null; text = input.readLine()) {
+            line++;
+            if (!text.isBlank()) {
+                return new NdjsonRecord(line, text);
+            }
+        }
+        return null;
+    }
+
+    private final class NdjsonRecord implements Record {
+
+        private final long line;
+        private final String text;
+
+        private NdjsonRecord(long line, String text) {
+            this.line = line;
+            this.text = text;
+        }
+
+        @Override
+        public long line() {
+            return line;
+        }
+
+        @Override
+        public UserDto toUser() {
+            try {
+                UserDto user = objectMapper.readValue(text, UserDto.class);
+                if (user == null) {
+                    throw new IllegalArgumentException("Expected a user object.");
+                }
+                user.setId(null);
+                return user;
+            } catch (JsonProcessingException e) {
+                throw new IllegalArgumentException("Malformed JSON: " + e.getOriginalMessage());
+            }
+        }
+    }
+}
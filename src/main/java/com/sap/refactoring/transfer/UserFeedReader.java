@@ -0,0 +1,63 @@
+package com.sap.refactoring.transfer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sap.refactoring.model.UserDto;
+import org.springframework.http.MediaType;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads a user feed, CSV or NDJSON, one record at a time. Records are only split from the input
+ * here; decoding them into users is left to {@link Record#toUser()}, so that it can run on other
+ * threads than the one reading.
+ */
+public interface UserFeedReader {
+
+    MediaType TEXT_CSV = new MediaType("text", "csv");
+
+    /**
+     * A record of a feed, not decoded yet.
+     */
+    interface Record {
+        /**
+         * @return the line of the input the record starts on, counting from 1.
+         */
+        long line();
+
+        /**
+         * @return the user of the record, without an ID.
+         * @throws IllegalArgumentException if the record is malformed.
+         */
+        UserDto toUser();
+    }
+
+    /**
+     * Read the next record.
+     *
+     * @return the record, or null at the end of the input.
+     * @throws IOException              if the input fails.
+     * @throws IllegalArgumentException if the input cannot be split into records.
+     */
+    Record read() throws IOException;
+
+    /**
+     * Open a reader for a feed of the given type.
+     *
+     * @param mediaType    {@code text/csv} or {@code application/x-ndjson}.
+     * @param input        the feed.
+     * @param objectMapper the mapper decoding NDJSON records.
+     * @return the reader.
+     * @throws IllegalArgumentException if the type is not supported.
+     */
+    static UserFeedReader open(MediaType mediaType, Reader input, ObjectMapper objectMapper) {
+        if (TEXT_CSV.isCompatibleWith(mediaType)) {
+            return new CsvUserFeedReader(input);
+        }
+        if (MediaType.APPLICATION_NDJSON.isCompatibleWith(mediaType)) {
+            return new NdjsonUserFeedReader(input, objectMapper);
+        }
+        throw new IllegalArgumentException("Unsupported feed type " + mediaType
+                + ", expected text/csv or application/x-ndjson.");
+    }
+}
@@ -0,0 +1,114 @@
+package com.sap.refactoring.transfer;
+
+import com.sap.refactoring.model.UserDto;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads users written by {@link UserRecordWriter} from a channel, one at a time, through a single
+ * buffer that only grows for users larger than it. The streams come from clients, so the strings of
+ * a user are bounded before anything is allocated for them.
+ */
+public class UserRecordReader {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Upper bound for the encoded name, email and roles of a single user.
+     */
+    public static final int MAX_USER_SIZE = 1024 * 1024;
+
+    private final ReadableByteChannel channel;
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).flip();
+    private long count;
+    private boolean started;
+    private boolean ended;
+    private int userBytes;
+
+    public UserRecordReader(ReadableByteChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Read the next user.
+     *
+     * @return the user, or null at the end of the stream.
+     * @throws IOException              if the channel fails.
+     * @throws IllegalArgumentException if the stream is not in the transfer format, is truncated, or
+     *                                  holds a user larger than {@link #MAX_USER_SIZE}.
+     */
+    public UserDto read() throws IOException {
+        if (ended) {
+            return null;
+        }
+        if (!started) {
+            if (require(4).getInt() != UserRecordWriter.MAGIC) {
+                throw new IllegalArgumentException("Not a user export stream.");
+            }
+            started = true;
+        }
+        byte type = require(1).get();
+        if (type == UserRecordWriter.END) {
+            long expected = require(8).getLong();
+            if (expected != count) {
+                throw new IllegalArgumentException("User export stream announces " + expected
+                        + " users but contains " + count + ".");
+            }
+            ended = true;
+            return null;
+        }
+        if (type != UserRecordWriter.USER) {
+            throw new IllegalArgumentException("Corrupt user export stream after " + count + " users.");
+        }
+        long id = require(8).getLong();
+        userBytes = 0;
+        String name = readString();
+        String email = readString();
+        int roleCount = Short.toUnsignedInt(require(2).getShort());
+        List<String> roles = new ArrayList<>(roleCount);
+        for (int i = 0; i < roleCount; i++) {
+            roles.add(readString());
+        }
+        count++;
+        return new UserDto(id, name, email, roles);
+    }
+
+    private String readString() throws IOException {
+        int length = require(4).getInt();
+        if (length < 0) {
+            return null;
+        }
+        // Checked before allocating, so that a forged length cannot exhaust memory
+        if (length > MAX_USER_SIZE - userBytes) {
+            throw new IllegalArgumentException("User " + (count + 1) + " of the user export stream is larger than "
+                    + MAX_USER_SIZE + " bytes.");
+        }
+        userBytes += length;
+        byte[] bytes = new byte[length];
+        require(length).get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private ByteBuffer require(int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) {
+            return buffer;
+        }
+        if (buffer.capacity() < bytes) {
+            buffer = ByteBuffer.allocateDirect(bytes).put(buffer);
+        } else {
+            buffer.compact();
+        }
+        while (buffer.position() < bytes) {
+            if (channel.read(buffer) < 0) {
+                throw new IllegalArgumentException("User export stream is truncated after " + count + " users.");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+}
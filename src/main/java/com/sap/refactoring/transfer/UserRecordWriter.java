@@ -0,0 +1,117 @@
+package com.sap.refactoring.transfer;
+
+import com.sap.refactoring.model.UserDto;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Writes users to a channel in the binary transfer format, through a single fixed-size buffer.
+ * <p>
+ * The stream starts with the magic number {@code USR1}. Every user follows as a {@code 1} byte,
+ * its ID as a long, its name and email, an unsigned short role count and the roles. Strings are
+ * UTF-8, prefixed with their length as an int, or {@code -1} for null. The stream ends with a
+ * {@code 0} byte and the number of users as a long. Integers are big-endian.
+ */
+public class UserRecordWriter {
+
+    public static final int MAGIC = 0x55535231;
+    static final byte USER = 1;
+    static final byte END = 0;
+
+    // Role counts are written as unsigned shorts
+    static final int MAX_ROLES = 0xFFFF;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final WritableByteChannel channel;
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private long count;
+
+    public UserRecordWriter(WritableByteChannel channel) {
+        this.channel = channel;
+        buffer.putInt(MAGIC);
+    }
+
+    /**
+     * @param user the user to write.
+     * @throws IOException              if the channel fails.
+     * @throws IllegalArgumentException if the user has more roles than the format can count.
+     */
+    public void write(UserDto user) throws IOException {
+        List<String> roles = user.getRoles() == null ? List.of() : user.getRoles();
+        if (roles.size() > MAX_ROLES) {
+            throw new IllegalArgumentException("User " + user.getId() + " has " + roles.size()
+                    + " roles, more than the " + MAX_ROLES + " a user record can hold.");
+        }
+        byte[] name = encode(user.getName());
+        byte[] email = encode(user.getEmail());
+        reserve(1 + 8 + 4 + length(name) + 4 + length(email) + 2);
+        buffer.put(USER);
+        buffer.putLong(user.getId() == null ? 0 : user.getId());
+        putString(name);
+        putString(email);
+        buffer.putShort((short) roles.size());
+        for (String role : roles) {
+            byte[] encoded = encode(role);
+            reserve(4 + length(encoded));
+            putString(encoded);
+        }
+        count++;
+    }
+
+    /**
+     * Write the end of the stream and flush everything to the channel.
+     *
+     * @throws IOException if the channel fails.
+     */
+    public void finish() throws IOException {
+        reserve(1 + 8);
+        buffer.put(END);
+        buffer.putLong(count);
+        flush();
+    }
+
+    /**
+     * @return the number of users written so far.
+     */
+    public long count() {
+        return count;
+    }
+
+    private void putString(byte[] value) {
+        if (value == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(value.length).put(value);
+        }
+    }
+
+    private void reserve(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+            if (buffer.capacity() < bytes) {
+                buffer = ByteBuffer.allocateDirect(bytes);
+            }
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private static byte[] encode(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int length(byte[] value) {
+        return value == null ? 0 : value.length;
+    }
+}
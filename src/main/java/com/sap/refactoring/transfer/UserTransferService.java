@@ -0,0 +1,115 @@
+package com.sap.refactoring.transfer;
+
+import com.sap.refactoring.model.EnrollmentResult;
+import com.sap.refactoring.model.ImportSummary;
+import com.sap.refactoring.model.UserDto;
+import com.sap.refactoring.service.UserService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Copies the user table out and in, in the binary format of {@link UserRecordWriter}.
+ * Neither direction holds more than one import batch of users in memory.
+ */
+@Service
+public class UserTransferService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserTransferService.class);
+
+    /**
+     * Maximum number of rejected users listed in an {@link ImportSummary}.
+     */
+    public static final int MAX_REPORTED_ERRORS = 100;
+
+    private final UserService userService;
+    private final int importBatchSize;
+
+    public UserTransferService(UserService userService,
+                               @Value("${user.transfer.import-batch-size:1000}") int importBatchSize) {
+        if (importBatchSize < 1 || importBatchSize > UserService.MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("Import batch size must be between 1 and " + UserService.MAX_BATCH_SIZE + ".");
+        }
+        this.userService = userService;
+        this.importBatchSize = importBatchSize;
+    }
+
+    /**
+     * Write all users, in ID order, straight from the database cursor to the channel.
+     *
+     * @param channel the channel to write to; not closed.
+     * @return the number of users written.
+     * @throws IOException if writing to the channel fails.
+     */
+    public long exportUsers(WritableByteChannel channel) throws IOException {
+        UserRecordWriter writer = new UserRecordWriter(channel);
+        try {
+            userService.streamAllUsers(user -> {
+                try {
+                    writer.write(user);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.finish();
+        logger.info("Exported {} users", writer.count());
+        return writer.count();
+    }
+
+    /**
+     * Create the users read from the channel, through batched inserts of one transaction per batch.
+     * Exported IDs are ignored, the users get new IDs. Users failing validation or whose email is
+     * taken are skipped and counted as rejected.
+     *
+     * @param channel the channel to read from; not closed.
+     * @return the number of imported and rejected users, and the first rejections.
+     * @throws IOException              if reading from the channel fails.
+     * @throws IllegalArgumentException if the stream is not a user export; the batches imported
+     *                                  before the error are kept.
+     */
+    public ImportSummary importUsers(ReadableByteChannel channel) throws IOException {
+        UserRecordReader reader = new UserRecordReader(channel);
+        ImportSummary summary = new ImportSummary(0, 0, new ArrayList<>());
+        List<UserDto> batch = new ArrayList<>(importBatchSize);
+        long offset = 0;
+        for (UserDto user = reader.read(); user != null; user = reader.read()) {
+            user.setId(null);
+            batch.add(user);
+            if (batch.size() == importBatchSize) {
+                importBatch(batch, offset, summary);
+                offset += batch.size();
+                batch = new ArrayList<>(importBatchSize);
+            }
+        }
+        if (!batch.isEmpty()) {
+            importBatch(batch, offset, summary);
+        }
+        logger.info("Imported {} users, rejected {}", summary.getImported(), summary.getRejected());
+        return summary;
+    }
+
+    private void importBatch(List<UserDto> batch, long offset, ImportSummary summary) {
+        for (EnrollmentResult result : userService.addUsers(batch)) {
+            if (result.getStatus() == EnrollmentResult.Status.CREATED) {
+                summary.setImported(summary.getImported() + 1);
+                continue;
+            }
+            summary.setRejected(summary.getRejected() + 1);
+            if (summary.getErrors().size() < MAX_REPORTED_ERRORS) {
+                summary.getErrors().add(EnrollmentResult.failed((int) (offset + result.getIndex()),
+                        result.getEmail(), result.getError()));
+            }
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.sap.refactoring.writebehind;
+
+import com.sap.refactoring.model.UserDto;
+import com.sap.refactoring.service.UserService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Writes the updates of the {@link UserUpdateQueue} to the database in batched transactions.
+ * <p>
+ * Runs on a fixed delay and, on shutdown, stops the queue from accepting updates and flushes
+ * whatever is left before the data source is closed.
+ */
+@Component
+public class UserUpdateFlusher implements SmartLifecycle {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserUpdateFlusher.class);
+
+    private final UserUpdateQueue userUpdateQueue;
+
+    private final UserService userService;
+
+    private final int batchSize;
+
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    private volatile boolean running;
+
+    public UserUpdateFlusher(UserUpdateQueue userUpdateQueue, UserService userService,
+                             @Value("${user.write-behind.batch-size:500}") int batchSize) {
+        this.userUpdateQueue = userUpdateQueue;
+        this.userService = userService;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Write all queued updates, one transaction per batch.
+     */
+    @Scheduled(fixedDelayString = "${user.write-behind.flush-interval-ms:200}")
+    public void flush() {
+        flushLock.lock();
+        try {
+            List<UserUpdateQueue.PendingUpdate> batch = userUpdateQueue.drain(batchSize);
+            while (!batch.isEmpty()) {
+                write(batch);
+                batch = userUpdateQueue.drain(batchSize);
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void write(List<UserUpdateQueue.PendingUpdate> batch) {
+        Map<Long, UserDto> updates = new LinkedHashMap<>(batch.size() * 2);
+        for (UserUpdateQueue.PendingUpdate update : batch) {
+            updates.put(update.userId(), update.user());
+        }
+        try {
+            Map<Long, String> failures = userService.updateUsers(updates);
+            for (UserUpdateQueue.PendingUpdate update : batch) {
+                userUpdateQueue.complete(update, failures.get(update.userId()));
+            }
+            logger.info("Flushed {} queued user updates", batch.size());
+        } catch (RuntimeException e) {
+            // A single bad update, such as a duplicate email, rolls back the whole batch: retry one by one
+            logger.warn("Batch of {} queued user updates failed, retrying individually: {}", batch.size(), e.getMessage());
+            for (UserUpdateQueue.PendingUpdate update : batch) {
+                try {
+                    // Not updateUser, which would withdraw this very update and fail as it is in flight
+                    Map<Long, String> failures = userService.updateUsers(Map.of(update.userId(), update.user()));
+                    userUpdateQueue.complete(update, failures.get(update.userId()));
+                } catch (RuntimeException updateFailure) {
+                    userUpdateQueue.complete(update, updateFailure.getMessage());
+                }
+            }
+        }
+    }
+
+    @Override
+    public void start() {
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        userUpdateQueue.close();
+        flush();
+        running = false;
+        logger.info("Update queue flushed on shutdown");
+    }
+
+    // Stop after the web server has stopped taking requests, and before the data source is closed
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 4096;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+}
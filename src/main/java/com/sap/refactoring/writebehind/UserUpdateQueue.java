@@ -0,0 +1,251 @@
+package com.sap.refactoring.writebehind;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.sap.refactoring.exceptions.WriteBehindQueueFullException;
+import com.sap.refactoring.model.UpdateTicket;
+import com.sap.refactoring.model.UserDto;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded in-memory queue of user updates waiting to be written to the database.
+ * <p>
+ * Updates are coalesced per user: a new update of a user that is still queued replaces the queued
+ * one, and both tickets report the outcome of the write that is eventually made. The queue holds
+ * at most {@code capacity} users; further users are rejected until the flusher catches up.
+ * Drained updates stay visible to {@link #findPending(Long)} until they are completed, so readers
+ * never fall back to the old database state while a flush is in progress.
+ * <p>
+ * A synchronous update of a user {@linkplain #withdraw(Long) withdraws} its queued update, which
+ * would otherwise overwrite the newer data once flushed; the tickets of the withdrawn update fail
+ * once the synchronous update commits.
+ */
+@Component
+public class UserUpdateQueue {
+
+    private final int capacity;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<Long, PendingUpdate> pending = new LinkedHashMap<>();
+    private final Map<Long, PendingUpdate> inFlight = new HashMap<>();
+    private final Cache<String, UpdateTicket> tickets;
+    private boolean closed;
+
+    public UserUpdateQueue(@Value("${user.write-behind.capacity:10000}") int capacity,
+                           @Value("${user.write-behind.ticket-ttl:1h}") Duration ticketTtl) {
+        this.capacity = capacity;
+        this.tickets = Caffeine.newBuilder()
+                .expireAfterWrite(ticketTtl)
+                .build();
+    }
+
+    /**
+     * A queued update of one user, together with the tickets of all the updates it coalesces.
+     *
+     * @param userId  the ID of the user to update.
+     * @param user    the latest requested user data.
+     * @param tickets the tickets completed by writing this update.
+     */
+    public record PendingUpdate(Long userId, UserDto user, List<String> tickets) {
+    }
+
+    /**
+     * Queue an update.
+     *
+     * @param userId the ID of the user to update.
+     * @param user   the updated user data.
+     * @return the ticket to follow the update with.
+     * @throws WriteBehindQueueFullException if the queue is full or shut down.
+     */
+    public UpdateTicket submit(Long userId, UserDto user) throws WriteBehindQueueFullException {
+        String ticket = UUID.randomUUID().toString();
+        UserDto copy = new UserDto(userId, user.getName(), user.getEmail(), List.copyOf(user.getRoles()));
+        lock.lock();
+        try {
+            if (closed) {
+                throw new WriteBehindQueueFullException("Update queue is shut down.");
+            }
+            PendingUpdate queued = pending.remove(userId);
+            if (queued == null && pending.size() >= capacity) {
+                throw new WriteBehindQueueFullException("Too many pending updates, retry later.");
+            }
+            List<String> userTickets = queued == null ? new ArrayList<>(1) : queued.tickets();
+            userTickets.add(ticket);
+            // Recorded before the update can be drained, so that its outcome is never overwritten
+            tickets.put(ticket, new UpdateTicket(ticket, userId, UpdateTicket.Status.PENDING, null));
+            // Re-inserted at the tail, so that a frequently edited user does not starve the others
+            pending.put(userId, new PendingUpdate(userId, copy, userTickets));
+        } finally {
+            lock.unlock();
+        }
+        return new UpdateTicket(ticket, userId, UpdateTicket.Status.PENDING, null);
+    }
+
+    /**
+     * The latest update of a user that is queued or being flushed.
+     *
+     * @param userId the user ID.
+     * @return the not yet persisted user data, or empty if no update is outstanding.
+     */
+    public Optional<UserDto> findPending(Long userId) {
+        lock.lock();
+        try {
+            PendingUpdate update = pending.get(userId);
+            if (update == null) {
+                update = inFlight.get(userId);
+            }
+            return update == null ? Optional.empty() : Optional.of(copy(update.user()));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Take the oldest queued updates for flushing. They remain visible to {@link #findPending(Long)}
+     * until {@link #complete(PendingUpdate, String)} is called.
+     *
+     * @param maxUpdates the maximum number of updates to take.
+     * @return the updates, oldest first.
+     */
+    public List<PendingUpdate> drain(int maxUpdates) {
+        lock.lock();
+        try {
+            List<PendingUpdate> batch = new ArrayList<>(Math.min(maxUpdates, pending.size()));
+            Iterator<PendingUpdate> iterator = pending.values().iterator();
+            while (iterator.hasNext() && batch.size() < maxUpdates) {
+                PendingUpdate update = iterator.next();
+                iterator.remove();
+                inFlight.put(update.userId(), update);
+                batch.add(update);
+            }
+            return batch;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Record the outcome of a flushed update.
+     *
+     * @param update the update taken by {@link #drain(int)}.
+     * @param error  the reason of the failure, or null if the update was written.
+     */
+    public void complete(PendingUpdate update, String error) {
+        lock.lock();
+        try {
+            inFlight.remove(update.userId(), update);
+        } finally {
+            lock.unlock();
+        }
+        UpdateTicket.Status status = error == null ? UpdateTicket.Status.APPLIED : UpdateTicket.Status.FAILED;
+        for (String ticket : update.tickets()) {
+            tickets.put(ticket, new UpdateTicket(ticket, update.userId(), status, error));
+        }
+    }
+
+    /**
+     * Withdraw the queued update of a user that is about to be updated synchronously. Until it is
+     * {@linkplain #supersede(PendingUpdate) superseded} or {@linkplain #restore(PendingUpdate) restored},
+     * {@link #findPending(Long)} no longer returns it.
+     *
+     * @param userId the user ID.
+     * @return the withdrawn update, or empty if none is queued.
+     * @throws OptimisticLockingFailureException if an update of the user is being flushed, which the
+     *                                           synchronous update could not be ordered against.
+     */
+    public Optional<PendingUpdate> withdraw(Long userId) {
+        lock.lock();
+        try {
+            if (inFlight.containsKey(userId)) {
+                throw new OptimisticLockingFailureException("A queued update of user with ID " + userId + " is being written.");
+            }
+            return Optional.ofNullable(pending.remove(userId));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Fail the tickets of a withdrawn update once the synchronous update replacing it has committed.
+     *
+     * @param update the update returned by {@link #withdraw(Long)}.
+     */
+    public void supersede(PendingUpdate update) {
+        complete(update, "Superseded by a synchronous update of the user.");
+    }
+
+    /**
+     * Queue a withdrawn update again after the synchronous update replacing it failed. If the user
+     * was queued again in the meantime, the newer update also completes the tickets of this one.
+     *
+     * @param update the update returned by {@link #withdraw(Long)}.
+     */
+    public void restore(PendingUpdate update) {
+        lock.lock();
+        try {
+            PendingUpdate newer = pending.get(update.userId());
+            if (newer != null) {
+                newer.tickets().addAll(0, update.tickets());
+            } else {
+                pending.put(update.userId(), update);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Look up the status of an update.
+     *
+     * @param ticket the ticket returned by {@link #submit(Long, UserDto)}.
+     * @return the status, or empty if the ticket is unknown or expired.
+     */
+    public Optional<UpdateTicket> findTicket(String ticket) {
+        return Optional.ofNullable(tickets.getIfPresent(ticket)).map(UserUpdateQueue::copy);
+    }
+
+    /**
+     * @return the number of users with a queued update.
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return pending.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stop accepting updates; queued updates can still be drained.
+     */
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static UpdateTicket copy(UpdateTicket ticket) {
+        return new UpdateTicket(ticket.getTicket(), ticket.getUserId(), ticket.getStatus(), ticket.getError());
+    }
+
+    private static UserDto copy(UserDto user) {
+        return new UserDto(user.getId(), user.getName(), user.getEmail(), new ArrayList<>(user.getRoles()));
+    }
+}
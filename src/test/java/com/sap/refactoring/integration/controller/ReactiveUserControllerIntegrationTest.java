@@ -0,0 +1,61 @@
+package com.sap.refactoring.integration.controller;
+
+import com.sap.refactoring.model.UserDto;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.boot.web.reactive.context.ReactiveWebServerApplicationContext;
+import org.springframework.context.ApplicationContext;
+import org.springframework.http.*;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the behavior tests of {@link UserControllerIntegrationTest} against the reactive stack.
+ */
+@ActiveProfiles({"local", "reactive"})
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.main.web-application-type=reactive",
+        "spring.datasource.url=jdbc:h2:mem:reactive;DB_CLOSE_DELAY=-1",
+        "spring.r2dbc.url=r2dbc:h2:mem:///reactive;DB_CLOSE_DELAY=-1"
+})
+public class ReactiveUserControllerIntegrationTest extends UserControllerIntegrationTest {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    @Test
+    void testServedByWebFlux() {
+        assertThat(applicationContext).isInstanceOf(ReactiveWebServerApplicationContext.class);
+    }
+
+    @Test
+    void testGetAllUsers_Ndjson() {
+        UserDto newUser = new UserDto(null, "Stream Me", "stream.me@example.com", List.of("ROLE_USER", "ROLE_ADMIN"));
+        restTemplate.postForEntity("http://localhost:" + port + "/users/enroll", newUser, UserDto.class);
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setAccept(Collections.singletonList(MediaType.APPLICATION_NDJSON));
+        ResponseEntity<String> response = restTemplate.exchange("http://localhost:" + port + "/users",
+                HttpMethod.GET, new HttpEntity<>(headers), String.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getHeaders().getContentType()).isEqualTo(MediaType.APPLICATION_NDJSON);
+        assertThat(response.getBody())
+                .contains("\"email\":\"stream.me@example.com\"")
+                .contains("\"ROLE_ADMIN\"")
+                .endsWith("}\n");
+    }
+}
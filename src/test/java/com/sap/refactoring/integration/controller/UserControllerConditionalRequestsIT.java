@@ -0,0 +1,110 @@
+package com.sap.refactoring.integration.controller;
+
+import com.sap.refactoring.model.UserDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * ETags and conditional requests of the servlet stack; the {@code reactive} profile does not support them.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "spring.datasource.url=jdbc:h2:mem:conditional-requests;DB_CLOSE_DELAY=-1")
+class UserControllerConditionalRequestsIT {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    private String baseUrl;
+
+    @BeforeEach
+    void setUp() {
+        baseUrl = "http://localhost:" + port + "/users";
+    }
+
+    @Test
+    void testGetAllUsers_IfNoneMatch_ShouldBeNotModifiedUntilAUserChanges() {
+        restTemplate.postForEntity(baseUrl + "/enroll",
+                new UserDto(null, "Polled User", "polled.user@example.com", List.of("ROLE_USER")), UserDto.class);
+        String etag = restTemplate.getForEntity(baseUrl, String.class).getHeaders().getETag();
+        assertThat(etag).startsWith("W/");
+
+        ResponseEntity<String> unchanged = restTemplate.exchange(baseUrl, HttpMethod.GET,
+                new HttpEntity<>(ifNoneMatch(etag)), String.class);
+        assertThat(unchanged.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+        assertThat(unchanged.getBody()).isNull();
+
+        restTemplate.postForEntity(baseUrl + "/enroll",
+                new UserDto(null, "New Polled User", "new.polled.user@example.com", List.of("ROLE_USER")), UserDto.class);
+        ResponseEntity<String> changed = restTemplate.exchange(baseUrl, HttpMethod.GET,
+                new HttpEntity<>(ifNoneMatch(etag)), String.class);
+        assertThat(changed.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(changed.getBody()).contains("new.polled.user@example.com");
+        assertThat(changed.getHeaders().getETag()).isNotEqualTo(etag);
+    }
+
+    @Test
+    void testFindUserByName_NotFound_ShouldNotBeTagged() {
+        String etag = restTemplate.getForEntity(baseUrl, String.class).getHeaders().getETag();
+
+        ResponseEntity<String> missing = restTemplate.getForEntity(baseUrl + "/search?name=Never Enrolled", String.class);
+        assertThat(missing.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+        assertThat(missing.getHeaders().getETag()).isNull();
+
+        // A tag of the current table version must not turn the missing user into a 304
+        ResponseEntity<String> stillMissing = restTemplate.exchange(baseUrl + "/search?name=Never Enrolled", HttpMethod.GET,
+                new HttpEntity<>(ifNoneMatch(etag)), String.class);
+        assertThat(stillMissing.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+    }
+
+    @Test
+    void testGetAndUpdateUser_ETags_ShouldValidateReadsAndGuardUpdates() {
+        UserDto created = restTemplate.postForEntity(baseUrl + "/enroll",
+                new UserDto(null, "Versioned User", "versioned.user@example.com", List.of("ROLE_USER")), UserDto.class).getBody();
+        assertThat(created).isNotNull();
+        String userUrl = baseUrl + "/" + created.getId();
+
+        ResponseEntity<UserDto> read = restTemplate.getForEntity(userUrl, UserDto.class);
+        assertThat(read.getHeaders().getETag()).isEqualTo("\"0\"");
+        assertThat(restTemplate.exchange(userUrl, HttpMethod.GET, new HttpEntity<>(ifNoneMatch("\"0\"")), UserDto.class)
+                .getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+
+        HttpHeaders ifMatch = new HttpHeaders();
+        ifMatch.setIfMatch("\"0\"");
+        UserDto renamed = new UserDto(created.getId(), "Renamed User", "versioned.user@example.com", List.of("ROLE_USER"));
+        ResponseEntity<UserDto> updated = restTemplate.exchange(baseUrl + "/edit/" + created.getId(), HttpMethod.PUT,
+                new HttpEntity<>(renamed, ifMatch), UserDto.class);
+        assertThat(updated.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(updated.getHeaders().getETag()).isEqualTo("\"1\"");
+
+        // A second writer still holding the first version is turned away
+        ResponseEntity<String> stale = restTemplate.exchange(baseUrl + "/edit/" + created.getId(), HttpMethod.PUT,
+                new HttpEntity<>(renamed, ifMatch), String.class);
+        assertThat(stale.getStatusCode()).isEqualTo(HttpStatus.PRECONDITION_FAILED);
+        ResponseEntity<UserDto> reread = restTemplate.exchange(userUrl, HttpMethod.GET,
+                new HttpEntity<>(ifNoneMatch("\"0\"")), UserDto.class);
+        assertThat(reread.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(reread.getBody().getName()).isEqualTo("Renamed User");
+    }
+
+    private static HttpHeaders ifNoneMatch(String etag) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setIfNoneMatch(etag);
+        return headers;
+    }
+}
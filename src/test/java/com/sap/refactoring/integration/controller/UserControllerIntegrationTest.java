@@ -106,14 +106,15 @@ public class UserControllerIntegrationTest {
 
     @Test
     void testDeleteUser_NotFound_Failure() {
-        ResponseEntity<Void> response = restTemplate.exchange(
+        ResponseEntity<String> response = restTemplate.exchange(
                 baseUrl + "/999",
                 HttpMethod.DELETE,
                 null,
-                Void.class
+                String.class
         );
 
-        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NO_CONTENT);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+        assertThat(response.getBody()).contains("User with ID 999 not found.");
     }
 
     @Test
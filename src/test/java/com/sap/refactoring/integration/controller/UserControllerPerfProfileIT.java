@@ -0,0 +1,71 @@
+package com.sap.refactoring.integration.controller;
+
+import com.sap.refactoring.model.EnrollmentResult;
+import com.sap.refactoring.model.UserDto;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the REST layer with the {@code perf} profile on H2, which ignores its PostgreSQL driver settings.
+ */
+@ActiveProfiles({"local", "perf"})
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "spring.datasource.url=jdbc:h2:mem:perf-profile;DB_CLOSE_DELAY=-1")
+class UserControllerPerfProfileIT {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Test
+    void testPoolIsFixedSizeWithDriverSettings() {
+        HikariDataSource hikari = (HikariDataSource) dataSource;
+
+        assertThat(hikari.getMaximumPoolSize()).isEqualTo(20);
+        assertThat(hikari.getMinimumIdle()).isEqualTo(20);
+        assertThat(hikari.getDataSourceProperties()).containsEntry("reWriteBatchedInserts", "true");
+    }
+
+    @Test
+    void testEnrollBatchAndUpdate_WithoutOpenSessionInView() {
+        String baseUrl = "http://localhost:" + port + "/users";
+        List<UserDto> users = new ArrayList<>();
+        for (int i = 0; i < 250; i++) {
+            users.add(new UserDto(null, "Perf User " + i, "perf.user" + i + "@example.com", List.of("USER")));
+        }
+
+        ResponseEntity<List<EnrollmentResult>> enrolled = restTemplate.exchange(baseUrl + "/enroll/batch", HttpMethod.POST,
+                new HttpEntity<>(users), new ParameterizedTypeReference<>() {
+                });
+
+        assertThat(enrolled.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        Long id = enrolled.getBody().get(0).getId();
+        ResponseEntity<UserDto> updated = restTemplate.exchange(baseUrl + "/edit/" + id, HttpMethod.PUT,
+                new HttpEntity<>(new UserDto(id, "Perf User 0", "perf.user0@example.com", List.of("USER", "AUDITOR"))), UserDto.class);
+        assertThat(updated.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(updated.getBody().getRoles()).containsExactly("AUDITOR", "USER");
+        assertThat(restTemplate.getForEntity(baseUrl + "/" + id, UserDto.class).getBody().getRoles())
+                .containsExactly("AUDITOR", "USER");
+    }
+}
@@ -0,0 +1,104 @@
+package com.sap.refactoring.integration.controller;
+
+import com.sap.refactoring.model.UserDto;
+import org.apache.catalina.connector.Connector;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.JRE;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.boot.web.embedded.tomcat.TomcatWebServer;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the REST layer with the {@code virtual} profile, which only takes effect on Java 21+.
+ */
+@EnabledForJreRange(min = JRE.JAVA_21)
+@ActiveProfiles({"local", "virtual"})
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "spring.datasource.url=jdbc:h2:mem:virtual-threads;DB_CLOSE_DELAY=-1")
+class UserControllerVirtualThreadsIT {
+
+    // Well above both the default Tomcat thread count and the connection pool size
+    private static final int CLIENTS = 300;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private ServletWebServerApplicationContext webServerApplicationContext;
+
+    @Test
+    void testRequestsAreServedByVirtualThreads() {
+        Connector connector = ((TomcatWebServer) webServerApplicationContext.getWebServer()).getTomcat().getConnector();
+
+        assertThat(connector.getProtocolHandler().getExecutor().getClass().getSimpleName())
+                .isEqualTo("VirtualThreadExecutor");
+    }
+
+    @Test
+    void testAddUser_ManyConcurrentClients_AllTransactionsCommit() throws Exception {
+        List<HttpStatus> statuses = runConcurrently(i ->
+                new UserDto(null, "Virtual " + i, "virtual" + i + "@example.com", List.of("ROLE_USER")));
+
+        assertThat(statuses).containsOnly(HttpStatus.CREATED);
+        for (int i = 0; i < CLIENTS; i += 50) {
+            ResponseEntity<UserDto> found = restTemplate.getForEntity(
+                    "http://localhost:" + port + "/users/search?name={name}", UserDto.class, "Virtual " + i);
+            assertThat(found.getStatusCode()).isEqualTo(HttpStatus.OK);
+        }
+    }
+
+    @Test
+    void testAddUser_ManyConcurrentClientsWithSameEmail_ExactlyOneSucceeds() throws Exception {
+        List<HttpStatus> statuses = runConcurrently(i ->
+                new UserDto(null, "Racer " + i, "virtual.racer@example.com", List.of("ROLE_USER")));
+
+        assertThat(statuses).filteredOn(HttpStatus.CREATED::equals).hasSize(1);
+        assertThat(statuses).filteredOn(HttpStatus.BAD_REQUEST::equals).hasSize(CLIENTS - 1);
+    }
+
+    private List<HttpStatus> runConcurrently(IntFunction<UserDto> users) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(CLIENTS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<HttpStatus>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < CLIENTS; i++) {
+                UserDto userDto = users.apply(i);
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    ResponseEntity<String> response = restTemplate.postForEntity(
+                            "http://localhost:" + port + "/users/enroll", userDto, String.class);
+                    return HttpStatus.valueOf(response.getStatusCode().value());
+                }));
+            }
+            start.countDown();
+            List<HttpStatus> statuses = new ArrayList<>();
+            for (Future<HttpStatus> future : futures) {
+                statuses.add(future.get(60, TimeUnit.SECONDS));
+            }
+            return statuses;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.sap.refactoring.integration.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sap.refactoring.model.UserDto;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:metrics;DB_CLOSE_DELAY=-1")
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+class UserMetricsIT {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void testPrometheusEndpoint_ExposesServiceRepositoryErrorAndPoolMetrics() throws Exception {
+        UserDto userDto = new UserDto(null, "Metered User", "metered.user@example.com", List.of("USER"));
+        mockMvc.perform(post("/users/enroll")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(userDto)))
+                .andExpect(status().isCreated());
+        mockMvc.perform(get("/users/page").param("cursor", "%%%"))
+                .andExpect(status().isBadRequest());
+
+        String scrape = mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        assertThat(scrape)
+                .contains("user_service_seconds_bucket{")
+                .contains("method=\"addUser\"")
+                .contains("spring_data_repository_invocations_seconds_bucket{")
+                .contains("user_api_errors_total{")
+                .contains("error=\"illegal_argument\"")
+                .contains("hikaricp_connections_active")
+                .contains("hibernate_statements_total")
+                .contains("cache_gets_total{");
+        // No user data in tags
+        assertThat(scrape).doesNotContain("metered.user@example.com").doesNotContain("Metered User");
+    }
+}
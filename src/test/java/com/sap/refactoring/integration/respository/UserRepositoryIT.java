@@ -75,6 +75,41 @@ class UserRepositoryIT {
         assertThat(deletedUser).isEmpty();
     }
 
+    @Test
+    void testDeleteLiveById_ShouldDeleteUserAndRolesAndCountIt() {
+        UserEntity user = new UserEntity();
+        user.setName("Mark Spencer");
+        user.setEmail("mark.spencer@example.com");
+        user.setRoles(List.of("USER", "ADMIN"));
+        UserEntity savedUser = userRepository.saveAndFlush(user);
+
+        assertThat(userRepository.deleteLiveById(savedUser.getId())).isEqualTo(1);
+        assertThat(userRepository.deleteLiveById(savedUser.getId())).isZero();
+        assertThat(userRepository.findById(savedUser.getId())).isEmpty();
+        assertThat(userRepository.findAllRoleRows()).noneMatch(row -> row.userId().equals(savedUser.getId()));
+    }
+
+    @Test
+    void testMarkDeletedById_ShouldHideUserUntilPurged() {
+        UserEntity user = new UserEntity();
+        user.setName("Mark Spencer");
+        user.setEmail("mark.spencer@example.com");
+        user.setRoles(List.of("USER", "ADMIN"));
+        UserEntity savedUser = userRepository.saveAndFlush(user);
+
+        assertThat(userRepository.markDeletedById(savedUser.getId())).isEqualTo(1);
+        assertThat(userRepository.markDeletedById(savedUser.getId())).isZero();
+        assertThat(userRepository.findById(savedUser.getId())).isEmpty();
+        assertThat(userRepository.findByEmail("mark.spencer@example.com")).isEmpty();
+        assertThat(userRepository.findAllRows()).noneMatch(row -> row.id().equals(savedUser.getId()));
+
+        List<Long> tombstones = userRepository.findTombstoneIds(100);
+        assertThat(tombstones).containsExactly(savedUser.getId());
+        assertThat(userRepository.purgeTombstoneRoles(tombstones)).isEqualTo(2);
+        assertThat(userRepository.purgeTombstones(tombstones)).isEqualTo(1);
+        assertThat(userRepository.findTombstoneIds(100)).isEmpty();
+    }
+
     @Test
     @Sql(scripts = "/test-data.sql") // Load predefined data from SQL script
     void testFindUserByName_Success() {
@@ -0,0 +1,86 @@
+package com.sap.refactoring.integration.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sap.refactoring.model.BulkUserRequest;
+import com.sap.refactoring.model.UserDto;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+
+import static org.hamcrest.Matchers.contains;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:bulk;DB_CLOSE_DELAY=-1")
+@AutoConfigureMockMvc
+class UserBulkIT {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void testBulkUpdateByRole_ShouldRevokeRoleAndKeepUsersWithOtherRoles() throws Exception {
+        Long first = enroll("bulk.first@example.com", "CONTRACTOR", "USER");
+        Long second = enroll("bulk.second@example.com", "CONTRACTOR", "USER");
+        Long onlyContractor = enroll("bulk.third@example.com", "CONTRACTOR");
+        enroll("bulk.fourth@example.com", "USER");
+
+        mockMvc.perform(post("/users/bulk/update")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(
+                                new BulkUserRequest(null, List.of("CONTRACTOR"), null, null, List.of("CONTRACTOR")))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.matched").value(3))
+                .andExpect(jsonPath("$.affected").value(2))
+                .andExpect(jsonPath("$.rejected").value(1))
+                .andExpect(jsonPath("$.rolesRemoved").value(2));
+
+        mockMvc.perform(get("/users/{id}", first))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"1\""))
+                .andExpect(jsonPath("$.roles", contains("USER")));
+        mockMvc.perform(get("/users").param("role", "CONTRACTOR"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].id", contains(onlyContractor.intValue())));
+
+        mockMvc.perform(post("/users/bulk/delete")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(
+                                new BulkUserRequest(List.of(first, second, 999L), null, null, null, null))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.matched").value(2))
+                .andExpect(jsonPath("$.affected").value(2));
+
+        mockMvc.perform(get("/users/{id}", second))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(get("/users").param("role", "USER"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].email", contains("bulk.fourth@example.com")));
+    }
+
+    @Test
+    void testBulkDelete_WithIdsAndRoles_ShouldBeRejected() throws Exception {
+        mockMvc.perform(post("/users/bulk/delete")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(
+                                new BulkUserRequest(List.of(1L), List.of("USER"), null, null, null))))
+                .andExpect(status().isBadRequest());
+    }
+
+    private Long enroll(String email, String... roles) throws Exception {
+        String created = mockMvc.perform(post("/users/enroll")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new UserDto(null, "Bulk User", email, List.of(roles)))))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readValue(created, UserDto.class).getId();
+    }
+}
@@ -0,0 +1,156 @@
+package com.sap.refactoring.integration.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sap.refactoring.entity.UserEntity;
+import com.sap.refactoring.model.UserDto;
+import com.sap.refactoring.repository.UserRepository;
+import com.sap.refactoring.routing.ReadYourWritesFilter;
+import com.sap.refactoring.routing.ReplicaRoutingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Routes reads to a replica that is a second H2 database, brought up to date with the primary only
+ * when a test copies it over, so that every read shows which database served it.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=" + UserReadReplicaIT.PRIMARY_URL,
+        "user.datasource.replica-urls=" + UserReadReplicaIT.REPLICA_URL,
+        "user.datasource.read-your-writes-window=1m"
+})
+@AutoConfigureMockMvc
+class UserReadReplicaIT {
+
+    static final String PRIMARY_URL = "jdbc:h2:mem:replica-primary;DB_CLOSE_DELAY=-1";
+    static final String REPLICA_URL = "jdbc:h2:mem:replica-copy;DB_CLOSE_DELAY=-1";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private HikariDataSource primaryDataSource;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        replicate();
+    }
+
+    @Test
+    void testGetUser_ShouldReadReplicaUntilReplicated() throws Exception {
+        // Saved without a change event, as if written by another instance
+        Long id = saveOnPrimary("replica.lag@example.com");
+
+        assertThat(dataSource).isInstanceOf(ReplicaRoutingDataSource.class);
+        mockMvc.perform(get("/users/{id}", id))
+                .andExpect(status().isNotFound());
+
+        replicate();
+
+        mockMvc.perform(get("/users/{id}", id))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.email").value("replica.lag@example.com"));
+    }
+
+    @Test
+    void testFindUserByName_ShouldReadReplicaUntilReplicated() throws Exception {
+        saveOnPrimary("Replica Namesake", "replica.namesake@example.com");
+
+        mockMvc.perform(get("/users/search").param("name", "Replica Namesake"))
+                .andExpect(status().isNotFound());
+
+        replicate();
+
+        mockMvc.perform(get("/users/search").param("name", "Replica Namesake"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.email").value("replica.namesake@example.com"));
+    }
+
+    @Test
+    void testGetUser_WithRecentWriteCookie_ShouldReadPrimary() throws Exception {
+        Long id = saveOnPrimary("replica.cookie@example.com");
+        long now = System.currentTimeMillis();
+
+        mockMvc.perform(get("/users/{id}", id)
+                        .cookie(new Cookie(ReadYourWritesFilter.COOKIE_NAME, Long.toString(now - 120_000))))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(get("/users/{id}", id)
+                        .cookie(new Cookie(ReadYourWritesFilter.COOKIE_NAME, Long.toString(now))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.email").value("replica.cookie@example.com"));
+    }
+
+    @Test
+    void testEnrollUser_ShouldServeUserFromPrimaryWithinWindow() throws Exception {
+        String created = mockMvc.perform(post("/users/enroll")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(
+                                new UserDto(null, "Replica Enrolled", "replica.enrolled@example.com", List.of("USER")))))
+                .andExpect(status().isCreated())
+                .andExpect(cookie().exists(ReadYourWritesFilter.COOKIE_NAME))
+                .andExpect(cookie().maxAge(ReadYourWritesFilter.COOKIE_NAME, 60))
+                .andReturn().getResponse().getContentAsString();
+        Long id = objectMapper.readValue(created, UserDto.class).getId();
+
+        // No cookie: the user is known to have changed here, so it is read from the primary
+        mockMvc.perform(get("/users/{id}", id))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.email").value("replica.enrolled@example.com"));
+        // Listings come from the replica and are not tagged while it may lag
+        mockMvc.perform(get("/users"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("ETag"));
+    }
+
+    private Long saveOnPrimary(String email) {
+        return saveOnPrimary("Replica User", email);
+    }
+
+    private Long saveOnPrimary(String name, String email) {
+        UserEntity user = new UserEntity();
+        user.setName(name);
+        user.setEmail(email);
+        user.setRoles(List.of("USER"));
+        return userRepository.saveAndFlush(user).getId();
+    }
+
+    // Replication stand-in: replaces the replica with a copy of the primary
+    private void replicate() throws IOException {
+        Path script = Files.createTempFile("replica", ".sql");
+        try {
+            new JdbcTemplate(primaryDataSource).execute("SCRIPT TO '" + script + "'");
+            JdbcTemplate replica = new JdbcTemplate(new DriverManagerDataSource(REPLICA_URL, "sa", ""));
+            replica.execute("DROP ALL OBJECTS");
+            replica.execute("RUNSCRIPT FROM '" + script + "'");
+        } finally {
+            Files.deleteIfExists(script);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.sap.refactoring.integration.service;
+
+import com.sap.refactoring.exceptions.InvalidUserException;
+import com.sap.refactoring.model.UpdateTicket;
+import com.sap.refactoring.model.UserDto;
+import com.sap.refactoring.repository.UserRepository;
+import com.sap.refactoring.service.UserService;
+import com.sap.refactoring.writebehind.UserUpdateFlusher;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Queued updates are only flushed when a test asks for it
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:concurrency;DB_CLOSE_DELAY=-1",
+        "user.write-behind.flush-interval-ms=3600000"
+})
+class UserServiceConcurrencyIT {
+
+    private static final int CLIENTS = 16;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserUpdateFlusher userUpdateFlusher;
+
+    @Test
+    void testAddUser_ConcurrentEnrollsWithSameEmail_ExactlyOneSucceeds() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(CLIENTS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger created = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < CLIENTS; i++) {
+                UserDto userDto = new UserDto(null, "Racer " + i, "racer@example.com", List.of("USER"));
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    try {
+                        userService.addUser(userDto);
+                        created.incrementAndGet();
+                    } catch (InvalidUserException e) {
+                        assertThat(e.getMessage()).isEqualTo("A user with this email already exists.");
+                        rejected.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(created.get()).isEqualTo(1);
+        assertThat(rejected.get()).isEqualTo(CLIENTS - 1);
+        assertThat(userRepository.findByEmail("racer@example.com")).isPresent();
+    }
+
+    @Test
+    void testUpdateUser_WhileAnOlderUpdateIsQueued_FlushDoesNotOverwriteIt() {
+        Long id = userService.addUser(new UserDto(null, "Queued Before", "queued.sync@example.com", List.of("USER"))).getId();
+        UpdateTicket ticket = userService.submitUpdate(id,
+                new UserDto(id, "Queued Async", "queued.sync@example.com", List.of("USER")));
+
+        userService.updateUser(id, new UserDto(id, "Queued Sync", "queued.sync@example.com", List.of("ADMIN")));
+        assertThat(userService.findUserById(id).getName()).isEqualTo("Queued Sync");
+
+        userUpdateFlusher.flush();
+
+        assertThat(userService.findUserById(id).getName()).isEqualTo("Queued Sync");
+        assertThat(userRepository.findById(id)).get().extracting(user -> user.getName()).isEqualTo("Queued Sync");
+        assertThat(userService.findUpdateTicket(ticket.getTicket())).get()
+                .extracting(UpdateTicket::getStatus).isEqualTo(UpdateTicket.Status.FAILED);
+    }
+}
@@ -1,7 +1,11 @@
 package com.sap.refactoring.integration.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sap.refactoring.entity.IngestionCheckpoint;
 import com.sap.refactoring.model.UserDto;
+import com.sap.refactoring.repository.IngestionCheckpointRepository;
+import com.sap.refactoring.transfer.UserRecordReader;
+import com.sap.refactoring.transfer.UserRecordWriter;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
@@ -9,7 +13,20 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.endsWith;
+import static org.hamcrest.Matchers.startsWith;
 
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -24,6 +41,9 @@ class UserServiceIT {
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private IngestionCheckpointRepository checkpointRepository;
+
     @Test
     void testAddUser_Success() throws Exception {
         UserDto userDto = new UserDto();
@@ -49,6 +69,38 @@ class UserServiceIT {
                 .andExpect(status().isBadRequest());
     }
 
+    @Test
+    void testPatchUser_ShouldChangeOnlyGivenFields() throws Exception {
+        UserDto created = objectMapper.readValue(mockMvc.perform(post("/users/enroll")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new UserDto(null, "Patch Me", "patch.me@example.com", List.of("USER")))))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString(), UserDto.class);
+
+        mockMvc.perform(patch("/users/edit/{id}", created.getId())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"roles\":[\"USER\",\"ADMIN\"]}"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"1\""))
+                .andExpect(jsonPath("$.name").value("Patch Me"))
+                .andExpect(jsonPath("$.email").value("patch.me@example.com"))
+                .andExpect(jsonPath("$.roles", containsInAnyOrder("ADMIN", "USER")));
+
+        // Patching to the current values writes nothing, so the version stays
+        mockMvc.perform(patch("/users/edit/{id}", created.getId())
+                        .header("If-Match", "\"1\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\":\"Patch Me\"}"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"1\""));
+
+        mockMvc.perform(patch("/users/edit/{id}", created.getId())
+                        .header("If-Match", "\"0\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\":\"Too Late\"}"))
+                .andExpect(status().isPreconditionFailed());
+    }
+
     @Test
     void testUpdateUser_NotFound() throws Exception {
         Long nonExistentUserId = 999L;
@@ -88,7 +140,7 @@ class UserServiceIT {
         Long nonExistentUserId = 999L;
 
         mockMvc.perform(delete("/users/{id}", nonExistentUserId))
-                .andExpect(status().isNoContent());
+                .andExpect(status().isNotFound());
     }
 
     @Test
@@ -116,4 +168,250 @@ class UserServiceIT {
                         .param("name", nonExistentUserName))
                 .andExpect(status().isNotFound());
     }
+
+    @Test
+    void testGetAllUsers_Ndjson() throws Exception {
+        UserDto userDto = new UserDto(null, "Stream Me", "stream.me@example.com", Collections.singletonList("USER"));
+        mockMvc.perform(post("/users/enroll")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(userDto)))
+                .andExpect(status().isCreated());
+
+        mockMvc.perform(get("/users").accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andExpect(content().string(containsString("\"email\":\"stream.me@example.com\"")))
+                .andExpect(content().string(endsWith("}\n")));
+    }
+
+    @Test
+    void testGetUsersPage_FollowsCursor() throws Exception {
+        for (String name : new String[]{"Page One", "Page Two"}) {
+            UserDto userDto = new UserDto(null, name, name.replace(' ', '.').toLowerCase() + "@example.com",
+                    Collections.singletonList("USER"));
+            mockMvc.perform(post("/users/enroll")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(userDto)))
+                    .andExpect(status().isCreated());
+        }
+
+        String firstPage = mockMvc.perform(get("/users/page").param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(1))
+                .andExpect(jsonPath("$.next").isNotEmpty())
+                .andReturn().getResponse().getContentAsString();
+        String next = objectMapper.readTree(firstPage).get("next").asText();
+
+        mockMvc.perform(get("/users/page").param("cursor", next).param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(1));
+    }
+
+    @Test
+    void testGetUsersPage_InvalidCursor() throws Exception {
+        mockMvc.perform(get("/users/page").param("cursor", "%%%"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testAddUsers_Batch() throws Exception {
+        List<UserDto> batch = List.of(
+                new UserDto(null, "Batch One", "batch.one@example.com", Collections.singletonList("USER")),
+                new UserDto(null, "Batch Two", "batch.two@example.com", Collections.singletonList("USER")),
+                new UserDto(null, "Batch Again", "batch.one@example.com", Collections.singletonList("USER")));
+
+        mockMvc.perform(post("/users/enroll/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(batch)))
+                .andExpect(status().isMultiStatus())
+                .andExpect(jsonPath("$[0].status").value("CREATED"))
+                .andExpect(jsonPath("$[0].id").isNumber())
+                .andExpect(jsonPath("$[1].status").value("CREATED"))
+                .andExpect(jsonPath("$[2].status").value("FAILED"));
+
+        mockMvc.perform(get("/users/search").param("name", "Batch Two"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.email").value("batch.two@example.com"));
+    }
+
+    @Test
+    void testSearchUsers_FuzzyQuery() throws Exception {
+        UserDto userDto = new UserDto(null, "Searchable Person", "searchable.person@example.com", Collections.singletonList("USER"));
+        mockMvc.perform(post("/users/enroll")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(userDto)))
+                .andExpect(status().isCreated());
+
+        mockMvc.perform(get("/users/search").param("q", "searchable pers"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].email").value("searchable.person@example.com"))
+                .andExpect(jsonPath("$.total").value(1));
+
+        mockMvc.perform(get("/users/search").param("q", "serchable person").param("mode", "FUZZY"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].email").value("searchable.person@example.com"));
+    }
+
+    @Test
+    void testGetUsersByRoles_MatchAnyAndAll() throws Exception {
+        for (UserDto userDto : List.of(
+                new UserDto(null, "Role Auditor", "role.auditor@example.com", List.of("RI_AUDITOR")),
+                new UserDto(null, "Role Biller", "role.biller@example.com", List.of("RI_AUDITOR", "RI_BILLING")))) {
+            mockMvc.perform(post("/users/enroll")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(userDto)))
+                    .andExpect(status().isCreated());
+        }
+
+        mockMvc.perform(get("/users").param("role", "RI_AUDITOR", "RI_BILLING").param("match", "ALL"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].email").value("role.biller@example.com"));
+        mockMvc.perform(get("/users").param("role", "RI_BILLING", "RI_AUDITOR"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].email").value(List.of("role.auditor@example.com", "role.biller@example.com")));
+        mockMvc.perform(get("/users").param("role", "RI_BILLING", "RI_UNKNOWN").param("match", "ALL"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(0));
+
+        mockMvc.perform(get("/users/roles/stats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.roles.RI_AUDITOR").value(2))
+                .andExpect(jsonPath("$.roles.RI_BILLING").value(1));
+    }
+
+    @Test
+    void testImportAndExportUsers_BinaryFormat() throws Exception {
+        mockMvc.perform(post("/users/enroll")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(
+                                new UserDto(null, "Already Here", "already.here@example.com", List.of("USER")))))
+                .andExpect(status().isCreated());
+        ByteArrayOutputStream upload = new ByteArrayOutputStream();
+        UserRecordWriter writer = new UserRecordWriter(Channels.newChannel(upload));
+        writer.write(new UserDto(900L, "Imported One", "imported.one@example.com", List.of("USER")));
+        writer.write(new UserDto(901L, "Imported Two", "already.here@example.com", List.of("USER")));
+        writer.write(new UserDto(902L, "Imported Three", "imported.three@example.com", List.of("ADMIN", "USER")));
+        writer.finish();
+
+        mockMvc.perform(post("/users/import")
+                        .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                        .content(upload.toByteArray()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(2))
+                .andExpect(jsonPath("$.rejected").value(1))
+                .andExpect(jsonPath("$.errors[0].index").value(1))
+                .andExpect(jsonPath("$.errors[0].email").value("already.here@example.com"));
+
+        byte[] export = mockMvc.perform(get("/users/export"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_OCTET_STREAM))
+                .andReturn().getResponse().getContentAsByteArray();
+        UserRecordReader reader = new UserRecordReader(Channels.newChannel(new ByteArrayInputStream(export)));
+        List<UserDto> exported = new ArrayList<>();
+        for (UserDto user = reader.read(); user != null; user = reader.read()) {
+            exported.add(user);
+        }
+        assertThat(exported).filteredOn(user -> user.getEmail().startsWith("imported."))
+                .extracting(UserDto::getName, UserDto::getRoles)
+                .containsExactly(tuple("Imported One", List.of("USER")), tuple("Imported Three", List.of("ADMIN", "USER")));
+    }
+
+    @Test
+    void testIngestUsers_CsvFeed_ReportsLineErrors() throws Exception {
+        String csv = "name,email,roles\n"
+                + "Feed One,feed.one@example.com,USER\n"
+                + "Feed Two,feed.one@example.com,USER\n"
+                + "\"Feed, Three\",feed.three@example.com,ADMIN;USER\n"
+                + "No Roles,feed.noroles@example.com,\n"
+                + "Short Row\n";
+
+        mockMvc.perform(post("/users/ingest").param("job", "csv-feed")
+                        .contentType("text/csv")
+                        .content(csv))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.job").value("csv-feed"))
+                .andExpect(jsonPath("$.status").value("COMPLETED"))
+                .andExpect(jsonPath("$.lastLine").value(6))
+                .andExpect(jsonPath("$.imported").value(2))
+                .andExpect(jsonPath("$.rejected").value(3))
+                .andExpect(jsonPath("$.errors[*].line", containsInAnyOrder(3, 5, 6)))
+                .andExpect(jsonPath("$.errors[?(@.line == 3)].error").value("Email is repeated within the batch."));
+
+        mockMvc.perform(get("/users/search").param("name", "Feed, Three"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.roles", containsInAnyOrder("ADMIN", "USER")));
+        mockMvc.perform(get("/users/ingest/csv-feed"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("COMPLETED"))
+                .andExpect(jsonPath("$.imported").value(2));
+        mockMvc.perform(get("/users/ingest/unknown-feed"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void testIngestUsers_NdjsonFeed_ResumesAfterCheckpoint() throws Exception {
+        // A run that crashed after committing the batch ending at line 2
+        checkpointRepository.save(new IngestionCheckpoint("ndjson-feed", IngestionCheckpoint.Status.FAILED,
+                2, 2, 0, Instant.now()));
+        String ndjson = "{\"name\":\"Resume One\",\"email\":\"resume.one@example.com\",\"roles\":[\"USER\"]}\n"
+                + "{\"name\":\"Resume Two\",\"email\":\"resume.two@example.com\",\"roles\":[\"USER\"]}\n"
+                + "{\"name\":\"Resume Three\",\"email\":\"resume.three@example.com\",\"roles\":[\"USER\"]}\n"
+                + "not json\n";
+
+        mockMvc.perform(post("/users/ingest").param("job", "ndjson-feed")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content(ndjson))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("COMPLETED"))
+                .andExpect(jsonPath("$.resumedAfterLine").value(2))
+                .andExpect(jsonPath("$.imported").value(3))
+                .andExpect(jsonPath("$.rejected").value(1))
+                .andExpect(jsonPath("$.errors[0].line").value(4));
+
+        mockMvc.perform(get("/users/search").param("name", "Resume One"))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(get("/users/search").param("name", "Resume Three"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.email").value("resume.three@example.com"));
+    }
+
+    @Test
+    void testUpdateUser_RespondAsync_ReadsOwnWriteAndAppliesInBackground() throws Exception {
+        UserDto userDto = new UserDto(null, "Async Before", "async.user@example.com", Collections.singletonList("USER"));
+        String created = mockMvc.perform(post("/users/enroll")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(userDto)))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        Long id = objectMapper.readValue(created, UserDto.class).getId();
+
+        UserDto update = new UserDto(id, "Async After", "async.user@example.com", Collections.singletonList("ADMIN"));
+        String accepted = mockMvc.perform(put("/users/edit/{id}", id)
+                        .header("Prefer", "respond-async")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(update)))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Location", startsWith("/users/updates/")))
+                .andExpect(jsonPath("$.status").value("PENDING"))
+                .andReturn().getResponse().getContentAsString();
+        String ticket = objectMapper.readTree(accepted).get("ticket").asText();
+
+        mockMvc.perform(get("/users/{id}", id))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value("Async After"));
+
+        String ticketStatus = "PENDING";
+        for (int attempt = 0; attempt < 50 && "PENDING".equals(ticketStatus); attempt++) {
+            Thread.sleep(100);
+            String body = mockMvc.perform(get("/users/updates/{ticket}", ticket))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+            ticketStatus = objectMapper.readTree(body).get("status").asText();
+        }
+        assertThat(ticketStatus).isEqualTo("APPLIED");
+        mockMvc.perform(get("/users/search").param("name", "Async After"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.roles[0]").value("ADMIN"));
+    }
 }
@@ -0,0 +1,74 @@
+package com.sap.refactoring.integration.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sap.refactoring.model.UserDto;
+import com.sap.refactoring.repository.UserRepository;
+import com.sap.refactoring.repository.memory.InMemoryUserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@ActiveProfiles({"local", "memory"})
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:memory-store;DB_CLOSE_DELAY=-1")
+@AutoConfigureMockMvc
+class UserServiceMemoryStoreIT {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void testUserRepository_IsTheInMemoryStore() {
+        assertThat(AopUtils.getTargetClass(userRepository)).isEqualTo(InMemoryUserRepository.class);
+    }
+
+    @Test
+    void testUserLifecycle_AgainstInMemoryStore() throws Exception {
+        UserDto userDto = new UserDto(null, "Memory User", "memory.user@example.com", Collections.singletonList("USER"));
+        String created = mockMvc.perform(post("/users/enroll")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(userDto)))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        Long id = objectMapper.readValue(created, UserDto.class).getId();
+
+        mockMvc.perform(post("/users/enroll")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(userDto)))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.details").value("A user with this email already exists."));
+
+        UserDto update = new UserDto(id, "Memory Renamed", "memory.user@example.com", Collections.singletonList("ADMIN"));
+        mockMvc.perform(put("/users/edit/{id}", id)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(update)))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/users/search").param("name", "Memory Renamed"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.roles[0]").value("ADMIN"));
+        mockMvc.perform(get("/users/page").param("limit", "1000"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[?(@.id == " + id + ")].name").value("Memory Renamed"));
+
+        mockMvc.perform(delete("/users/{id}", id))
+                .andExpect(status().isNoContent());
+        assertThat(userRepository.findById(id)).isEmpty();
+    }
+}
@@ -0,0 +1,186 @@
+package com.sap.refactoring.integration.service;
+
+import com.sap.refactoring.cache.UserCache;
+import com.sap.refactoring.entity.UserEntity;
+import com.sap.refactoring.model.BulkResult;
+import com.sap.refactoring.model.BulkUserRequest;
+import com.sap.refactoring.model.UserDto;
+import com.sap.refactoring.repository.UserRepository;
+import com.sap.refactoring.service.UserBulkService;
+import com.sap.refactoring.service.UserService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:query-count;DB_CLOSE_DELAY=-1",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        // Keeps the table version check from adding statements to the counts
+        "user.table-version.check-interval-ms=3600000"
+})
+class UserServiceQueryCountIT {
+
+    private static final int USER_COUNT = 25;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserBulkService userBulkService;
+
+    @Autowired
+    private UserCache userCache;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        userRepository.deleteAll();
+        List<UserEntity> users = new ArrayList<>();
+        for (int i = 0; i < USER_COUNT; i++) {
+            UserEntity user = new UserEntity();
+            user.setName("Counted User " + i);
+            user.setEmail("counted.user" + i + "@example.com");
+            user.setRoles(List.of("USER", "AUDITOR"));
+            users.add(user);
+        }
+        userRepository.saveAll(users);
+        userCache.clear();
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void testGetAllUsers_LoadsUsersAndRolesInConstantStatements() {
+        List<UserDto> users = userService.getAllUsers();
+
+        assertThat(users).hasSize(USER_COUNT);
+        assertThat(users).allSatisfy(user -> assertThat(user.getRoles()).containsExactlyInAnyOrder("USER", "AUDITOR"));
+        // One projection query for users and one for their roles, independent of the user count
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+    }
+
+    @Test
+    void testGetUsersPage_LoadsUsersAndRolesInConstantStatements() {
+        assertThat(userService.getUsersPage(null, 10).getItems()).hasSize(10);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+    }
+
+    @Test
+    void testFindUserByName_LoadsUserAndRolesInOneStatement() {
+        UserDto user = userService.findUserByName("Counted User 7");
+
+        assertThat(user).isNotNull();
+        assertThat(user.getRoles()).containsExactlyInAnyOrder("USER", "AUDITOR");
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void testUpdateUser_WhenNothingChanged_OnlyLoadsUser() {
+        UserDto user = loadAndResetStatistics("Counted User 3");
+        long load = loadStatementCount(user.getId());
+
+        UserDto result = userService.updateUser(user.getId(), new UserDto(user.getId(), user.getName(), user.getEmail(),
+                List.of("AUDITOR", "USER")));
+
+        assertThat(result.getVersion()).isEqualTo(user.getVersion());
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(load);
+        assertThat(statistics.getEntityUpdateCount()).isZero();
+    }
+
+    @Test
+    void testUpdateUser_WhenOnlyNameChanged_DoesNotTouchRoles() {
+        UserDto user = loadAndResetStatistics("Counted User 4");
+        long load = loadStatementCount(user.getId());
+
+        userService.updateUser(user.getId(), new UserDto(user.getId(), "Renamed User 4", user.getEmail(), user.getRoles()));
+
+        // The load and one update of the users row
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(load + 1);
+        assertThat(statistics.getCollectionUpdateCount()).isZero();
+        assertThat(statistics.getCollectionRecreateCount()).isZero();
+    }
+
+    @Test
+    void testPatchUser_WhenRoleReplaced_WritesOnlyChangedRoles() {
+        UserDto user = loadAndResetStatistics("Counted User 5");
+        long load = loadStatementCount(user.getId());
+
+        UserDto result = userService.patchUser(user.getId(), new UserDto(null, null, null, List.of("USER", "ADMIN")), null);
+
+        assertThat(result.getRoles()).containsExactly("ADMIN", "USER");
+        assertThat(result.getVersion()).isEqualTo(user.getVersion() + 1);
+        // The load, one delete of AUDITOR, one insert of ADMIN and the version increment of the users row
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(load + 3);
+        assertThat(statistics.getCollectionRecreateCount()).isZero();
+        assertThat(userService.findUserById(user.getId()).getRoles()).containsExactly("ADMIN", "USER");
+    }
+
+    @Test
+    void testDeleteUser_DeletesUserAndRolesInOneStatement() {
+        UserDto user = loadAndResetStatistics("Counted User 6");
+
+        assertThat(userService.deleteUser(user.getId())).isTrue();
+        // No load, and the roles go with the user through the cascading foreign key
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(userService.deleteUser(user.getId())).isFalse();
+        assertThat(userRepository.findAllRoleRows()).hasSize(2 * (USER_COUNT - 1));
+    }
+
+    @Test
+    void testBulkUpdateAndDelete_RunConstantStatements() {
+        List<Long> ids = userService.getAllUsers().stream().map(UserDto::getId).toList();
+        statistics.clear();
+
+        BulkResult updated = userBulkService.updateUsers(new BulkUserRequest(ids, null, null, List.of("ADMIN"), List.of("AUDITOR")));
+
+        assertThat(updated.getAffected()).isEqualTo(USER_COUNT);
+        assertThat(updated.getRolesAdded()).isEqualTo(USER_COUNT);
+        assertThat(updated.getRolesRemoved()).isEqualTo(USER_COUNT);
+        // Two reads, one delete of the revoked role, one insert of the granted role and one version increment
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(5);
+        assertThat(userService.findUserById(ids.get(0)).getRoles()).containsExactly("ADMIN", "USER");
+
+        statistics.clear();
+        BulkResult deleted = userBulkService.deleteUsers(new BulkUserRequest(ids, null, null, null, null));
+
+        assertThat(deleted.getAffected()).isEqualTo(USER_COUNT);
+        // Two reads and one delete, the roles going with the users
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(3);
+        assertThat(userRepository.count()).isZero();
+    }
+
+    private UserDto loadAndResetStatistics(String name) {
+        UserDto user = userService.findUserById(userService.findUserByName(name).getId());
+        userCache.clear();
+        statistics.clear();
+        return user;
+    }
+
+    // Statements taken by loading the user for an update, measured rather than assumed
+    private long loadStatementCount(Long id) {
+        long before = statistics.getPrepareStatementCount();
+        userRepository.findById(id);
+        long load = statistics.getPrepareStatementCount() - before;
+        statistics.clear();
+        return load;
+    }
+}
@@ -0,0 +1,81 @@
+package com.sap.refactoring.integration.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sap.refactoring.model.UserDto;
+import com.sap.refactoring.repository.UserRepository;
+import com.sap.refactoring.service.UserTombstonePurger;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:soft-delete;DB_CLOSE_DELAY=-1",
+        "user.soft-delete.enabled=true",
+        "user.soft-delete.purge-cron=-"
+})
+@AutoConfigureMockMvc
+class UserSoftDeleteIT {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserTombstonePurger purger;
+
+    @Test
+    void testDeleteUser_ShouldHideUserUntilPurged() throws Exception {
+        UserDto userDto = new UserDto(null, "Soft Delete", "soft.delete@example.com", List.of("USER", "ADMIN"));
+        String created = mockMvc.perform(post("/users/enroll")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(userDto)))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        Long id = objectMapper.readValue(created, UserDto.class).getId();
+
+        mockMvc.perform(delete("/users/{id}", id))
+                .andExpect(status().isNoContent());
+        mockMvc.perform(delete("/users/{id}", id))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(get("/users/{id}", id))
+                .andExpect(status().isNotFound());
+        assertThat(userRepository.findTombstoneIds(100)).containsExactly(id);
+
+        // The email stays taken by the tombstone until it is purged
+        mockMvc.perform(post("/users/enroll")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(userDto)))
+                .andExpect(status().isBadRequest());
+        // In a batch, only the user reusing it is rejected
+        UserDto other = new UserDto(null, "Soft Delete Other", "soft.delete.other@example.com", List.of("USER"));
+        mockMvc.perform(post("/users/enroll/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(List.of(userDto, other))))
+                .andExpect(status().isMultiStatus())
+                .andExpect(jsonPath("$[0].status").value("FAILED"))
+                .andExpect(jsonPath("$[0].error").value("A user with this email already exists."))
+                .andExpect(jsonPath("$[1].status").value("CREATED"));
+
+        assertThat(purger.purge()).isEqualTo(1);
+        assertThat(userRepository.findTombstoneIds(100)).isEmpty();
+
+        mockMvc.perform(post("/users/enroll")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(userDto)))
+                .andExpect(status().isCreated());
+    }
+}
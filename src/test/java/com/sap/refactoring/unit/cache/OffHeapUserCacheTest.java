@@ -0,0 +1,131 @@
+package com.sap.refactoring.unit.cache;
+
+import com.sap.refactoring.cache.OffHeapUserCache;
+import com.sap.refactoring.model.UserDto;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class OffHeapUserCacheTest {
+
+    private static OffHeapUserCache cache(int slots) {
+        return new OffHeapUserCache(DataSize.ofBytes(slots * 256L), DataSize.ofBytes(256), Duration.ofMinutes(1));
+    }
+
+    private static UserDto user(long id) {
+        return new UserDto(id, "User " + id, "user" + id + "@example.com", List.of("ROLE_USER"), 2L);
+    }
+
+    @Test
+    void testPut_ShouldResolveById() {
+        OffHeapUserCache cache = cache(16);
+        cache.put(user(1));
+
+        assertThat(cache.findById(1)).contains(user(1));
+        assertThat(cache.findById(1).orElseThrow().getVersion()).isEqualTo(2L);
+        assertThat(cache.findById(2)).isEmpty();
+    }
+
+    @Test
+    void testPut_ChangedUser_ShouldReplaceCachedVersion() {
+        OffHeapUserCache cache = cache(16);
+        cache.put(user(1));
+        cache.put(new UserDto(1L, "User 1", "renamed@example.com", List.of(), 3L));
+
+        assertThat(cache.findById(1)).get().extracting(UserDto::getEmail).isEqualTo("renamed@example.com");
+        assertThat(cache.findById(1)).get().extracting(UserDto::getVersion).isEqualTo(3L);
+        assertThat(cache.size()).isEqualTo(1);
+    }
+
+    @Test
+    void testPut_WhenFull_ShouldEvictUnreferencedUsersFirst() {
+        OffHeapUserCache cache = cache(4);
+        for (long id = 1; id <= 4; id++) {
+            cache.put(user(id));
+        }
+        cache.findById(1);
+        cache.findById(3);
+
+        cache.put(user(5));
+        cache.put(user(6));
+
+        assertThat(cache.size()).isEqualTo(4);
+        assertThat(cache.findById(1)).isPresent();
+        assertThat(cache.findById(3)).isPresent();
+        assertThat(cache.findById(2)).isEmpty();
+        assertThat(cache.findById(4)).isEmpty();
+        assertThat(cache.findById(6)).isPresent();
+    }
+
+    @Test
+    void testPut_LargerThanSlot_ShouldNotBeCached() {
+        OffHeapUserCache cache = cache(4);
+        cache.put(user(1));
+        cache.put(new UserDto(1L, "x".repeat(300), "user1@example.com", List.of(), 3L));
+
+        assertThat(cache.findById(1)).isEmpty();
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    void testInvalidate_ShouldKeepOtherUsersReachable() {
+        OffHeapUserCache cache = cache(64);
+        for (long id = 1; id <= 50; id++) {
+            cache.put(user(id));
+        }
+        for (long id = 1; id <= 50; id += 2) {
+            cache.invalidate(id);
+        }
+
+        for (long id = 1; id <= 50; id++) {
+            assertThat(cache.findById(id).isPresent()).isEqualTo(id % 2 == 0);
+        }
+    }
+
+    @Test
+    void testDisabled_ShouldCacheNothing() {
+        OffHeapUserCache cache = new OffHeapUserCache(DataSize.ofBytes(0), DataSize.ofBytes(256), Duration.ofMinutes(1));
+        cache.put(user(1));
+
+        assertThat(cache.isEnabled()).isFalse();
+        assertThat(cache.findById(1)).isEmpty();
+        assertThat(cache.allocatedBytes()).isZero();
+    }
+
+    @Test
+    void testConcurrentReadersAndWriters_ShouldOnlySeeWholeUsers() throws Exception {
+        OffHeapUserCache cache = cache(128);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 10_000; i++) {
+                        long id = i % 200;
+                        if ((i + thread) % 3 == 0) {
+                            cache.put(user(id));
+                        } else {
+                            cache.findById(id).ifPresent(found -> assertThat(found).isEqualTo(user(id)));
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(cache.size()).isLessThanOrEqualTo(128);
+    }
+}
@@ -0,0 +1,116 @@
+package com.sap.refactoring.unit.cache;
+
+import com.sap.refactoring.cache.OffHeapUserCache;
+import com.sap.refactoring.cache.UserCache;
+import com.sap.refactoring.model.UserDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class UserCacheTest {
+
+    private UserCache userCache;
+
+    @BeforeEach
+    void setUp() {
+        userCache = new UserCache(100, Duration.ofMinutes(1));
+    }
+
+    @Test
+    void testPutForName_ShouldResolveByIdAndName() {
+        userCache.putForName(new UserDto(1L, "John Doe", "john.doe@example.com", List.of("ROLE_USER")), userCache.stamp());
+
+        assertThat(userCache.findById(1L)).get().extracting(UserDto::getEmail).isEqualTo("john.doe@example.com");
+        assertThat(userCache.findByName("John Doe")).get().extracting(UserDto::getId).isEqualTo(1L);
+    }
+
+    @Test
+    void testPut_ShouldNotResolveNameToNamesake() {
+        userCache.putForName(new UserDto(1L, "John Doe", "john.doe@example.com", List.of("ROLE_USER")), userCache.stamp());
+        // A namesake with a higher ID, loaded by ID
+        userCache.put(new UserDto(2L, "John Doe", "john.other@example.com", List.of("ROLE_USER")));
+
+        assertThat(userCache.findById(2L)).isPresent();
+        assertThat(userCache.findByName("John Doe")).get().extracting(UserDto::getId).isEqualTo(1L);
+    }
+
+    @Test
+    void testFindById_ShouldReturnCopyThatDoesNotAffectCache() {
+        userCache.put(new UserDto(1L, "John Doe", "john.doe@example.com", List.of("ROLE_USER")));
+
+        userCache.findById(1L).orElseThrow().setName("Changed");
+
+        assertThat(userCache.findById(1L)).get().extracting(UserDto::getName).isEqualTo("John Doe");
+    }
+
+    @Test
+    void testInvalidate_AfterRename_ShouldNotResolveOldName() {
+        userCache.putForName(new UserDto(1L, "John Doe", "john.doe@example.com", List.of("ROLE_USER")), userCache.stamp());
+
+        userCache.invalidate(1L, "John Doe");
+        userCache.putForName(new UserDto(1L, "John New", "john.doe@example.com", List.of("ROLE_USER")), userCache.stamp());
+
+        assertThat(userCache.findByName("John Doe")).isEmpty();
+        assertThat(userCache.findByName("John New")).isPresent();
+    }
+
+    @Test
+    void testFindByName_WhenUserWasRenamed_ShouldMiss() {
+        userCache.putForName(new UserDto(1L, "John Doe", "john.doe@example.com", List.of("ROLE_USER")), userCache.stamp());
+        // Same id re-cached under a new name without an explicit invalidation of the old key
+        userCache.put(new UserDto(1L, "John New", "john.doe@example.com", List.of("ROLE_USER")));
+
+        assertThat(userCache.findByName("John Doe")).isEmpty();
+    }
+
+    @Test
+    void testPut_WhenUserWasInvalidatedAfterTheStamp_ShouldNotCacheStaleUser() {
+        long stamp = userCache.stamp();
+        // A write commits while the reader is still loading the old row
+        userCache.invalidate(1L, null);
+        userCache.putForName(new UserDto(1L, "John Doe", "john.doe@example.com", List.of("ROLE_USER"), 1L), stamp);
+
+        assertThat(userCache.findById(1L)).isEmpty();
+        assertThat(userCache.findByName("John Doe")).isEmpty();
+    }
+
+    @Test
+    void testPut_WhenOnlyOtherUsersWereInvalidated_ShouldCache() {
+        long stamp = userCache.stamp();
+        userCache.invalidate(2L, null);
+        userCache.put(new UserDto(1L, "John Doe", "john.doe@example.com", List.of("ROLE_USER"), 1L), stamp);
+
+        assertThat(userCache.findById(1L)).isPresent();
+    }
+
+    @Test
+    void testStats_ShouldCountHitsAndMisses() {
+        userCache.put(new UserDto(1L, "John Doe", "john.doe@example.com", List.of("ROLE_USER")));
+
+        userCache.findById(1L);
+        userCache.findById(2L);
+
+        assertThat(userCache.stats().get("usersById").hitCount()).isEqualTo(1);
+        assertThat(userCache.stats().get("usersById").missCount()).isEqualTo(1);
+    }
+
+    @Test
+    void testFindById_OnHeapMiss_ShouldFallBackToOffHeapTier() {
+        OffHeapUserCache offHeap = new OffHeapUserCache(DataSize.ofKilobytes(64), DataSize.ofBytes(256), Duration.ofMinutes(1));
+        UserCache tiered = new UserCache(1, Duration.ofMinutes(1), offHeap);
+        tiered.put(new UserDto(1L, "John Doe", "john.doe@example.com", List.of("ROLE_USER")));
+        tiered.put(new UserDto(2L, "Jane Doe", "jane.doe@example.com", List.of("ROLE_USER")));
+
+        assertThat(tiered.findById(1L)).get().extracting(UserDto::getName).isEqualTo("John Doe");
+        assertThat(tiered.findById(2L)).get().extracting(UserDto::getName).isEqualTo("Jane Doe");
+
+        tiered.invalidate(1L, null);
+        assertThat(offHeap.findById(1L)).isEmpty();
+        assertThat(tiered.findById(1L)).isEmpty();
+    }
+}
@@ -0,0 +1,124 @@
+package com.sap.refactoring.unit.cache;
+
+import com.sap.refactoring.cache.UserJsonCache;
+import com.sap.refactoring.event.UserChangedEvent;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class UserJsonCacheTest {
+
+    private static final byte[] JOHN = "{\"id\":1,\"name\":\"John Doe\"}".getBytes(StandardCharsets.UTF_8);
+
+    private static UserJsonCache cache(boolean offHeap) {
+        return new UserJsonCache(DataSize.ofKilobytes(16), DataSize.ofKilobytes(16), DataSize.ofBytes(64), Duration.ofMinutes(1), offHeap);
+    }
+
+    private static String text(ByteBuffer json) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        UserJsonCache.writeTo(json, out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void testFindUser_ShouldOnlyMatchCachedVersion() throws IOException {
+        UserJsonCache cache = cache(false);
+        cache.putUser(1L, 3L, JOHN);
+
+        assertThat(text(cache.findUser(1L, 3L))).isEqualTo(new String(JOHN, StandardCharsets.UTF_8));
+        assertThat(cache.findUser(1L, 4L)).isNull();
+        assertThat(cache.findUser(2L, 3L)).isNull();
+    }
+
+    @Test
+    void testFindUser_OffHeap_ShouldWriteSameBytesRepeatedly() throws IOException {
+        UserJsonCache cache = cache(true);
+        assertThat(cache.putUser(1L, 0L, JOHN).isDirect()).isTrue();
+
+        ByteBuffer json = cache.findUser(1L, 0L);
+        assertThat(text(json)).isEqualTo(new String(JOHN, StandardCharsets.UTF_8));
+        assertThat(text(json)).isEqualTo(new String(JOHN, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testFindListing_ShouldBeKeyedByChangeCount() {
+        UserJsonCache cache = cache(false);
+        cache.putListing(5L, "page 50 null", JOHN);
+
+        assertThat(cache.findListing(5L, "page 50 null")).isNotNull();
+        assertThat(cache.findListing(6L, "page 50 null")).isNull();
+        assertThat(cache.findListing(5L, "page 20 null")).isNull();
+    }
+
+    @Test
+    void testPutListing_LargerThanMaximum_ShouldNotBeCached() {
+        UserJsonCache cache = cache(false);
+        cache.putListing(1L, "all json", new byte[65]);
+
+        assertThat(cache.findListing(1L, "all json")).isNull();
+    }
+
+    @Test
+    void testOnUserChanged_ShouldDropUserAndAllListings() {
+        UserJsonCache cache = cache(false);
+        cache.putUser(1L, 0L, JOHN);
+        cache.putUser(2L, 0L, JOHN);
+        cache.putListing(1L, "all json", JOHN);
+
+        cache.onUserChanged(new UserChangedEvent(UserChangedEvent.Type.UPDATED, 1L, null));
+
+        assertThat(cache.findUser(1L, 0L)).isNull();
+        assertThat(cache.findUser(2L, 0L)).isNotNull();
+        assertThat(cache.findListing(1L, "all json")).isNull();
+    }
+
+    @Test
+    void testWeightedSize_ShouldCountCachedBytes() {
+        UserJsonCache cache = cache(false);
+        cache.putUser(1L, 0L, JOHN);
+
+        assertThat(cache.weightedSize()).isGreaterThanOrEqualTo(JOHN.length);
+
+        cache.clear();
+        assertThat(cache.findUser(1L, 0L)).isNull();
+    }
+
+    @Test
+    void testRecording_ShouldHoldBackUntilLimit() throws IOException {
+        UserJsonCache cache = cache(false);
+        ByteArrayOutputStream target = new ByteArrayOutputStream();
+        UserJsonCache.RecordingOutputStream small = cache.recording(1L, "/users", target);
+        small.write(JOHN);
+        small.close();
+        assertThat(small.recorded()).isEqualTo(JOHN);
+        assertThat(target.size()).isZero();
+
+        ByteArrayOutputStream largeTarget = new ByteArrayOutputStream();
+        UserJsonCache.RecordingOutputStream large = cache.recording(1L, "/users?role=ADMIN", largeTarget);
+        large.write(new byte[40]);
+        large.write(new byte[40]);
+        assertThat(large.recorded()).isNull();
+        assertThat(largeTarget.size()).isEqualTo(80);
+    }
+
+    @Test
+    void testRecording_ShouldRecordEachListingOnceAtATime() {
+        UserJsonCache cache = cache(false);
+        UserJsonCache.RecordingOutputStream first = cache.recording(1L, "/users", new ByteArrayOutputStream());
+        assertThat(first).isNotNull();
+        assertThat(cache.recording(1L, "/users", new ByteArrayOutputStream())).isNull();
+
+        first.release();
+        first.release();
+        UserJsonCache.RecordingOutputStream second = cache.recording(1L, "/users", new ByteArrayOutputStream());
+        assertThat(second).isNotNull();
+        second.release();
+    }
+}
@@ -0,0 +1,36 @@
+package com.sap.refactoring.unit.cache;
+
+import com.sap.refactoring.cache.UserTableVersion;
+import com.sap.refactoring.repository.UserRepository;
+import com.sap.refactoring.repository.projection.UserTableFingerprint;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class UserTableVersionTest {
+
+    @Test
+    void testCheck_WhenAnotherInstanceChangedTheTable_ShouldAdvanceTheCounter() {
+        UserRepository userRepository = mock(UserRepository.class);
+        UserTableVersion version = new UserTableVersion(userRepository,
+                new TransactionTemplate(mock(PlatformTransactionManager.class)));
+        when(userRepository.findTableFingerprint()).thenReturn(
+                new UserTableFingerprint(2L, 3L, 2L),
+                new UserTableFingerprint(2L, 3L, 2L),
+                new UserTableFingerprint(2L, 3L, 3L));
+        String etag = version.etag("json");
+
+        assertThat(version.check()).isFalse();
+        assertThat(version.check()).isFalse();
+        assertThat(version.etag("json")).isEqualTo(etag);
+
+        assertThat(version.check()).isTrue();
+        assertThat(version.changes()).isEqualTo(1);
+        assertThat(version.etag("json")).isNotEqualTo(etag);
+        version.destroy();
+    }
+}
@@ -3,8 +3,11 @@ package com.sap.refactoring.unit.mapper;
 import com.sap.refactoring.entity.UserEntity;
 import com.sap.refactoring.mapper.UserMapper;
 import com.sap.refactoring.model.UserDto;
+import com.sap.refactoring.repository.projection.UserRoleRow;
+import com.sap.refactoring.repository.projection.UserRow;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -116,4 +119,42 @@ public class UserMapperTest {
         assertThat(userEntity.getEmail()).isEqualTo("bob.doe@example.com");
         assertThat(userEntity.getRoles()).isEmpty();
     }
+
+    @Test
+    void testToDto_ShouldNotShareRolesWithEntity() {
+        // Arrange
+        UserEntity userEntity = new UserEntity();
+        userEntity.setId(5L);
+        userEntity.setRoles(new ArrayList<>(List.of("ROLE_USER")));
+
+        // Act
+        UserDto userDto = userMapper.toDto(userEntity);
+        userEntity.getRoles().add("ROLE_ADMIN");
+
+        // Assert
+        assertThat(userDto.getRoles()).containsExactly("ROLE_USER");
+    }
+
+    @Test
+    void testToDtos_WhenGivenProjections_ShouldMergeRolesByUserId() {
+        // Arrange
+        List<UserRow> users = List.of(
+                new UserRow(1L, "John Doe", "john.doe@example.com"),
+                new UserRow(3L, "Jane Doe", "jane.doe@example.com"),
+                new UserRow(4L, "No Roles", "no.roles@example.com"));
+        List<UserRoleRow> roles = List.of(
+                new UserRoleRow(1L, "ROLE_USER"),
+                new UserRoleRow(1L, "ROLE_ADMIN"),
+                new UserRoleRow(2L, "ROLE_ORPHAN"),
+                new UserRoleRow(3L, "ROLE_USER"));
+
+        // Act
+        List<UserDto> userDtos = userMapper.toDtos(users, roles);
+
+        // Assert
+        assertThat(userDtos).extracting(UserDto::getId).containsExactly(1L, 3L, 4L);
+        assertThat(userDtos.get(0).getRoles()).containsExactly("ROLE_USER", "ROLE_ADMIN");
+        assertThat(userDtos.get(1).getRoles()).containsExactly("ROLE_USER");
+        assertThat(userDtos.get(2).getRoles()).isEmpty();
+    }
 }
@@ -0,0 +1,228 @@
+package com.sap.refactoring.unit.repository;
+
+import com.sap.refactoring.entity.UserEntity;
+import com.sap.refactoring.repository.memory.InMemoryUserRepository;
+import com.sap.refactoring.repository.projection.UserRoleJoinRow;
+import com.sap.refactoring.repository.projection.UserRoleRow;
+import com.sap.refactoring.repository.projection.UserRow;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class InMemoryUserRepositoryTest {
+
+    private InMemoryUserRepository userRepository;
+
+    @BeforeEach
+    void setUp() {
+        userRepository = new InMemoryUserRepository();
+    }
+
+    @Test
+    void testSave_ShouldAssignIdAndResolveByIdEmailAndName() {
+        UserEntity saved = userRepository.save(user("John Doe", "john.doe@example.com", "USER", "ADMIN"));
+
+        assertThat(saved.getId()).isNotNull();
+        assertThat(userRepository.findById(saved.getId())).get()
+                .satisfies(found -> {
+                    assertThat(found.getEmail()).isEqualTo("john.doe@example.com");
+                    assertThat(found.getRoles()).containsExactly("ADMIN", "USER");
+                });
+        assertThat(userRepository.findByEmail("john.doe@example.com")).get().extracting(UserEntity::getId).isEqualTo(saved.getId());
+        assertThat(userRepository.findByName("John Doe")).get().extracting(UserEntity::getId).isEqualTo(saved.getId());
+    }
+
+    @Test
+    void testSave_DuplicateEmail_ShouldViolateUniqueConstraint() {
+        userRepository.save(user("John Doe", "john.doe@example.com", "USER"));
+
+        assertThatThrownBy(() -> userRepository.save(user("Other John", "john.doe@example.com", "USER")))
+                .isInstanceOf(DataIntegrityViolationException.class)
+                .hasMessageContaining(UserEntity.EMAIL_UNIQUE_CONSTRAINT);
+        assertThat(userRepository.count()).isEqualTo(1);
+    }
+
+    @Test
+    void testSaveAll_WithViolation_ShouldWriteNothing() {
+        userRepository.save(user("Taken", "taken@example.com", "USER"));
+
+        assertThatThrownBy(() -> userRepository.saveAll(List.of(
+                user("Fresh", "fresh@example.com", "USER"),
+                user("Clash", "taken@example.com", "USER"))))
+                .isInstanceOf(DataIntegrityViolationException.class);
+        assertThat(userRepository.findExistingEmails(Set.of("fresh@example.com", "taken@example.com")))
+                .containsExactly("taken@example.com");
+    }
+
+    @Test
+    void testSave_MissingEmail_ShouldViolateNotNullConstraint() {
+        assertThatThrownBy(() -> userRepository.save(user("No Email", null, "USER")))
+                .isInstanceOf(DataIntegrityViolationException.class);
+    }
+
+    @Test
+    void testSave_ExistingUser_ShouldReplaceIndexedValues() {
+        UserEntity saved = userRepository.save(user("John Doe", "john.doe@example.com", "USER"));
+        UserEntity loaded = userRepository.findById(saved.getId()).orElseThrow();
+        loaded.setName("John Smith");
+        loaded.setEmail("john.smith@example.com");
+        loaded.setRoles(List.of("ADMIN"));
+
+        userRepository.save(loaded);
+
+        assertThat(userRepository.findByEmail("john.doe@example.com")).isEmpty();
+        assertThat(userRepository.findByName("John Doe")).isEmpty();
+        assertThat(userRepository.findByEmail("john.smith@example.com")).get()
+                .extracting(UserEntity::getRoles).isEqualTo(List.of("ADMIN"));
+        // The previous email is free again
+        userRepository.save(user("New John", "john.doe@example.com", "USER"));
+    }
+
+    @Test
+    void testSave_StaleVersion_ShouldFailOptimisticLock() {
+        UserEntity saved = userRepository.save(user("John Doe", "john.doe@example.com", "USER"));
+        assertThat(saved.getVersion()).isZero();
+        UserEntity first = userRepository.findById(saved.getId()).orElseThrow();
+        UserEntity second = userRepository.findById(saved.getId()).orElseThrow();
+
+        first.setName("John Smith");
+        userRepository.save(first);
+        second.setName("Johnny");
+
+        assertThat(first.getVersion()).isEqualTo(1L);
+        assertThatThrownBy(() -> userRepository.save(second))
+                .isInstanceOf(ObjectOptimisticLockingFailureException.class);
+        assertThat(userRepository.findById(saved.getId())).get()
+                .extracting(UserEntity::getName, UserEntity::getVersion)
+                .containsExactly("John Smith", 1L);
+    }
+
+    @Test
+    void testSave_UnchangedUser_ShouldKeepVersion() {
+        UserEntity saved = userRepository.save(user("John Doe", "john.doe@example.com", "USER", "ADMIN"));
+        UserEntity unchanged = userRepository.findById(saved.getId()).orElseThrow();
+
+        userRepository.save(unchanged);
+
+        assertThat(unchanged.getVersion()).isZero();
+        assertThat(userRepository.findById(saved.getId())).get().extracting(UserEntity::getVersion).isEqualTo(0L);
+        unchanged.setRoles(List.of("USER"));
+        userRepository.save(unchanged);
+        assertThat(unchanged.getVersion()).isEqualTo(1L);
+    }
+
+    @Test
+    void testDeleteById_ShouldFreeSlotAndKeepOtherUsers() {
+        UserEntity first = userRepository.save(user("First", "first@example.com", "USER"));
+        UserEntity second = userRepository.save(user("Second", "second@example.com", "USER"));
+
+        userRepository.deleteById(first.getId());
+        UserEntity third = userRepository.save(user("Third", "third@example.com", "USER"));
+
+        assertThat(userRepository.findById(first.getId())).isEmpty();
+        assertThat(userRepository.findAll()).extracting(UserEntity::getId).containsExactly(second.getId(), third.getId());
+        assertThat(userRepository.findByEmail("third@example.com")).isPresent();
+    }
+
+    @Test
+    void testBulkRoleChanges_ShouldCountOnlyChangedRowsAndKeepVersionsUntilIncremented() {
+        UserEntity first = userRepository.save(user("First", "first@example.com", "USER", "AUDITOR"));
+        UserEntity second = userRepository.save(user("Second", "second@example.com", "USER"));
+        List<Long> ids = List.of(first.getId(), second.getId(), 999L);
+
+        assertThat(userRepository.deleteRolesOfUsers(ids, Set.of("AUDITOR"))).isEqualTo(1);
+        assertThat(userRepository.insertRoleOfUsers(ids, "ADMIN")).isEqualTo(2);
+        assertThat(userRepository.insertRoleOfUsers(ids, "ADMIN")).isZero();
+        assertThat(userRepository.findById(first.getId())).get().extracting(UserEntity::getVersion).isEqualTo(0L);
+
+        assertThat(userRepository.incrementVersions(ids)).isEqualTo(2);
+        assertThat(userRepository.findById(first.getId())).get().satisfies(found -> {
+            assertThat(found.getRoles()).containsExactly("ADMIN", "USER");
+            assertThat(found.getVersion()).isEqualTo(1L);
+        });
+        assertThat(userRepository.deleteLiveByIds(ids)).isEqualTo(2);
+        assertThat(userRepository.count()).isZero();
+    }
+
+    @Test
+    void testFindAllByName_ShouldReturnNamesakesInIdOrder() {
+        UserEntity first = userRepository.save(user("Same Name", "one@example.com", "USER"));
+        UserEntity second = userRepository.save(user("Same Name", "two@example.com", "USER"));
+
+        assertThat(userRepository.findAllByNameOrderByIdAsc("Same Name"))
+                .extracting(UserEntity::getId).containsExactly(first.getId(), second.getId());
+    }
+
+    @Test
+    void testProjections_ShouldBeOrderedById() {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            ids.add(userRepository.save(user("User " + i, "user" + i + "@example.com", "USER", "AUDITOR")).getId());
+        }
+
+        assertThat(userRepository.findAllRows()).extracting(UserRow::id).containsExactlyElementsOf(ids);
+        assertThat(userRepository.findAllRoleRows()).hasSize(10).extracting(UserRoleRow::userId).isSorted();
+        assertThat(userRepository.findRowPageAfter(ids.get(1), PageRequest.ofSize(2)))
+                .extracting(UserRow::id).containsExactly(ids.get(2), ids.get(3));
+        assertThat(userRepository.findRowsByIds(List.of(ids.get(4), ids.get(0))))
+                .extracting(UserRow::id).containsExactly(ids.get(0), ids.get(4));
+        assertThat(userRepository.streamAllJoinRows()).extracting(UserRoleJoinRow::role).hasSize(10);
+    }
+
+    @Test
+    void testConcurrentReadersAndWriters_ShouldNeverSeeTornUsers() throws Exception {
+        for (int i = 0; i < 1000; i++) {
+            userRepository.save(user("User " + i, "user" + i + "@example.com", "USER"));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Future<?> writer = executor.submit(() -> {
+                for (int i = 1000; i < 20000; i++) {
+                    UserEntity saved = userRepository.save(user("User " + i, "user" + i + "@example.com", "USER"));
+                    userRepository.deleteById(saved.getId() - 500);
+                }
+            });
+            List<Future<?>> readers = new ArrayList<>();
+            for (int r = 0; r < 3; r++) {
+                readers.add(executor.submit(() -> {
+                    while (!writer.isDone()) {
+                        for (long id = 1; id < 20000; id += 97) {
+                            userRepository.findById(id).ifPresent(found -> {
+                                assertThat(found.getEmail()).isEqualTo("user" + (found.getId() - 1) + "@example.com");
+                                assertThat(found.getRoles()).containsExactly("USER");
+                            });
+                        }
+                    }
+                }));
+            }
+            writer.get(60, TimeUnit.SECONDS);
+            for (Future<?> reader : readers) {
+                reader.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(userRepository.count()).isEqualTo(1000);
+    }
+
+    private static UserEntity user(String name, String email, String... roles) {
+        UserEntity user = new UserEntity();
+        user.setName(name);
+        user.setEmail(email);
+        user.setRoles(List.of(roles));
+        return user;
+    }
+}
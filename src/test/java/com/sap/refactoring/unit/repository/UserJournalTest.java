@@ -0,0 +1,157 @@
+package com.sap.refactoring.unit.repository;
+
+import com.sap.refactoring.entity.UserEntity;
+import com.sap.refactoring.repository.memory.InMemoryUserRepository;
+import com.sap.refactoring.repository.memory.UserJournal;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class UserJournalTest {
+
+    @TempDir
+    Path directory;
+
+    private UserJournal journal;
+
+    @AfterEach
+    void tearDown() throws IOException {
+        journal.close();
+    }
+
+    @Test
+    void testRestart_ShouldReplayLoggedWrites() throws IOException {
+        InMemoryUserRepository userRepository = open();
+        UserEntity john = userRepository.save(user("John Doe", "john.doe@example.com", "USER", "ADMIN"));
+        UserEntity jane = userRepository.save(user("Jane Doe", "jane.doe@example.com", "USER"));
+        john.setName("John Smith");
+        userRepository.save(john);
+        userRepository.deleteById(jane.getId());
+
+        InMemoryUserRepository restored = reopen();
+
+        assertThat(restored.count()).isEqualTo(1);
+        assertThat(restored.findByEmail("john.doe@example.com")).get()
+                .satisfies(found -> {
+                    assertThat(found.getName()).isEqualTo("John Smith");
+                    assertThat(found.getRoles()).containsExactly("ADMIN", "USER");
+                    assertThat(found.getVersion()).isEqualTo(1L);
+                });
+        // IDs of deleted users are not handed out again
+        assertThat(restored.save(user("New User", "new.user@example.com", "USER")).getId()).isGreaterThan(jane.getId());
+    }
+
+    @Test
+    void testSnapshot_ShouldReplaceCoveredLogGenerations() throws IOException {
+        InMemoryUserRepository userRepository = open();
+        List<UserEntity> users = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            users.add(user("User " + i, "user" + i + "@example.com", i % 2 == 0 ? "USER" : "ADMIN"));
+        }
+        userRepository.saveAll(users);
+        users.get(99).setName("User 99 Renamed");
+        userRepository.save(users.get(99));
+        journal.snapshot();
+        userRepository.deleteById(users.get(0).getId());
+        userRepository.save(user("After Snapshot", "after.snapshot@example.com", "AUDITOR"));
+
+        assertThat(logFiles()).containsExactly("users-1.wal");
+
+        InMemoryUserRepository restored = reopen();
+
+        assertThat(restored.count()).isEqualTo(100);
+        assertThat(restored.existsById(users.get(0).getId())).isFalse();
+        assertThat(restored.findByEmail("user99@example.com")).get()
+                .extracting(UserEntity::getRoles, UserEntity::getVersion).containsExactly(List.of("ADMIN"), 1L);
+        assertThat(restored.findByEmail("after.snapshot@example.com")).isPresent();
+    }
+
+    @Test
+    void testSnapshot_AfterSlotReuse_ShouldRestoreIdOrder() throws IOException {
+        InMemoryUserRepository userRepository = open();
+        List<UserEntity> users = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            users.add(userRepository.save(user("User " + i, "user" + i + "@example.com", "USER")));
+        }
+        // The freed low slots are taken by users with higher IDs
+        for (int i = 0; i < 5; i++) {
+            userRepository.deleteById(users.get(i).getId());
+        }
+        for (int i = 10; i < 15; i++) {
+            users.add(userRepository.save(user("User " + i, "user" + i + "@example.com", "USER")));
+        }
+        journal.snapshot();
+
+        InMemoryUserRepository restored = reopen();
+
+        assertThat(restored.findAll()).extracting(UserEntity::getId)
+                .containsExactlyElementsOf(users.subList(5, 15).stream().map(UserEntity::getId).toList());
+        restored.deleteById(users.get(7).getId());
+        assertThat(restored.findAll()).hasSize(9).extracting(UserEntity::getId).isSorted();
+    }
+
+    @Test
+    void testRestart_ShouldCutOffTornRecord() throws IOException {
+        InMemoryUserRepository userRepository = open();
+        userRepository.save(user("John Doe", "john.doe@example.com", "USER"));
+        journal.close();
+        try (FileChannel log = FileChannel.open(directory.resolve("users-0.wal"), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // Part of a record written before a crash, right after the last complete one
+            log.write(ByteBuffer.allocate(12).putInt(100).putInt(42).putInt(7).flip(), logEnd(log));
+        }
+
+        InMemoryUserRepository restored = reopen();
+        restored.save(user("Jane Doe", "jane.doe@example.com", "USER"));
+        InMemoryUserRepository restoredAgain = reopen();
+
+        assertThat(restoredAgain.findAll()).extracting(UserEntity::getEmail)
+                .containsExactly("john.doe@example.com", "jane.doe@example.com");
+    }
+
+    private InMemoryUserRepository open() {
+        journal = new UserJournal(directory, UserJournal.FsyncPolicy.ALWAYS, DataSize.ofKilobytes(4), DataSize.ofMegabytes(1));
+        return new InMemoryUserRepository(journal);
+    }
+
+    private InMemoryUserRepository reopen() throws IOException {
+        journal.close();
+        return open();
+    }
+
+    // Records are prefixed with their payload length and checksum; the log ends at a zero length
+    private static long logEnd(FileChannel log) throws IOException {
+        long position = 0;
+        ByteBuffer length = ByteBuffer.allocate(4);
+        while (log.read(length.clear(), position) == 4 && length.flip().getInt() != 0) {
+            position += 8 + length.getInt(0);
+        }
+        return position;
+    }
+
+    private List<String> logFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString()).filter(name -> name.endsWith(".wal")).toList();
+        }
+    }
+
+    private static UserEntity user(String name, String email, String... roles) {
+        UserEntity user = new UserEntity();
+        user.setName(name);
+        user.setEmail(email);
+        user.setRoles(List.of(roles));
+        return user;
+    }
+}
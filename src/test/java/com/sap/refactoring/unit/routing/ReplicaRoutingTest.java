@@ -0,0 +1,58 @@
+package com.sap.refactoring.unit.routing;
+
+import com.sap.refactoring.event.UserChangedEvent;
+import com.sap.refactoring.routing.ReplicaRouting;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ReplicaRoutingTest {
+
+    @Test
+    void testOnUserChanged_ShouldMarkUserAndListingsStaleWithinWindow() {
+        ReplicaRouting replicaRouting = new ReplicaRouting(List.of("jdbc:h2:mem:replica"), Duration.ofMinutes(1));
+
+        assertThat(replicaRouting.mayBeStale()).isFalse();
+        replicaRouting.onUserChanged(UserChangedEvent.deleted(1L));
+
+        assertThat(replicaRouting.mayBeStale(1L)).isTrue();
+        assertThat(replicaRouting.mayBeStale(2L)).isFalse();
+        assertThat(replicaRouting.mayBeStale()).isTrue();
+    }
+
+    @Test
+    void testOnUserChanged_AfterWindow_ShouldNotBeStale() throws InterruptedException {
+        ReplicaRouting replicaRouting = new ReplicaRouting(List.of("jdbc:h2:mem:replica"), Duration.ofMillis(50));
+
+        replicaRouting.onUserChanged(UserChangedEvent.deleted(1L));
+        Thread.sleep(100);
+
+        assertThat(replicaRouting.mayBeStale(1L)).isFalse();
+        assertThat(replicaRouting.mayBeStale()).isFalse();
+    }
+
+    @Test
+    void testOnUserChanged_WithoutReplicas_ShouldNeverBeStale() {
+        ReplicaRouting replicaRouting = new ReplicaRouting(List.of(), Duration.ofMinutes(1));
+
+        replicaRouting.onUserChanged(UserChangedEvent.deleted(1L));
+
+        assertThat(replicaRouting.isEnabled()).isFalse();
+        assertThat(replicaRouting.mayBeStale(1L)).isFalse();
+        assertThat(replicaRouting.mayBeStale()).isFalse();
+    }
+
+    @Test
+    void testOnPrimary_ShouldPinOnlyForTheAction() {
+        ReplicaRouting replicaRouting = new ReplicaRouting(List.of("jdbc:h2:mem:replica"), Duration.ofMinutes(1));
+
+        boolean pinned = replicaRouting.onPrimary(() -> replicaRouting.onPrimary(replicaRouting::isPrimaryRequired)
+                && replicaRouting.isPrimaryRequired());
+
+        assertThat(pinned).isTrue();
+        assertThat(replicaRouting.isPrimaryRequired()).isFalse();
+    }
+}
@@ -0,0 +1,61 @@
+package com.sap.refactoring.unit.search;
+
+import com.sap.refactoring.event.UserChangedEvent;
+import com.sap.refactoring.model.RoleStats;
+import com.sap.refactoring.model.UserDto;
+import com.sap.refactoring.search.RoleMatch;
+import com.sap.refactoring.search.UserRoleIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class UserRoleIndexTest {
+
+    private UserRoleIndex userRoleIndex;
+
+    @BeforeEach
+    void setUp() {
+        userRoleIndex = new UserRoleIndex(null, null);
+        userRoleIndex.put(new UserDto(1L, "John Doe", "john.doe@example.com", List.of("ADMIN", "USER")));
+        userRoleIndex.put(new UserDto(2L, "Jane Doe", "jane.doe@example.com", List.of("USER")));
+        userRoleIndex.put(new UserDto(3L, "Johnny Walker", "walker@example.com", List.of("AUDITOR")));
+    }
+
+    @Test
+    void testFindUserIds_Any_ShouldUniteRoles() {
+        assertThat(userRoleIndex.findUserIds(List.of("ADMIN", "AUDITOR"), RoleMatch.ANY)).containsExactly(1L, 3L);
+        assertThat(userRoleIndex.findUserIds(List.of("USER", "UNKNOWN"), RoleMatch.ANY)).containsExactly(1L, 2L);
+    }
+
+    @Test
+    void testFindUserIds_All_ShouldIntersectRoles() {
+        assertThat(userRoleIndex.findUserIds(List.of("USER", "ADMIN"), RoleMatch.ALL)).containsExactly(1L);
+        assertThat(userRoleIndex.findUserIds(List.of("USER", "AUDITOR"), RoleMatch.ALL)).isEmpty();
+        assertThat(userRoleIndex.findUserIds(List.of("USER", "UNKNOWN"), RoleMatch.ALL)).isEmpty();
+    }
+
+    @Test
+    void testStats_ShouldCountUsersPerRole() {
+        RoleStats stats = userRoleIndex.stats();
+
+        assertThat(stats.getUsers()).isEqualTo(3);
+        assertThat(stats.getRoles()).containsExactly(
+                Map.entry("ADMIN", 1L), Map.entry("AUDITOR", 1L), Map.entry("USER", 2L));
+    }
+
+    @Test
+    void testOnUserChanged_ShouldMoveAndRemoveUsers() {
+        userRoleIndex.onUserChanged(UserChangedEvent.updated(
+                new UserDto(1L, "John Doe", "john.doe@example.com", List.of("AUDITOR"))));
+        userRoleIndex.onUserChanged(UserChangedEvent.deleted(2L));
+
+        assertThat(userRoleIndex.findUserIds(List.of("AUDITOR"), RoleMatch.ANY)).containsExactly(1L, 3L);
+        assertThat(userRoleIndex.findUserIds(List.of("USER", "ADMIN"), RoleMatch.ANY)).isEmpty();
+        assertThat(userRoleIndex.stats().getRoles()).containsOnlyKeys("AUDITOR");
+        assertThat(userRoleIndex.stats().getUsers()).isEqualTo(2);
+    }
+}
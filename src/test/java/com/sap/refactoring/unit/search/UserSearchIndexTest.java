@@ -0,0 +1,65 @@
+package com.sap.refactoring.unit.search;
+
+import com.sap.refactoring.event.UserChangedEvent;
+import com.sap.refactoring.model.UserDto;
+import com.sap.refactoring.search.SearchMode;
+import com.sap.refactoring.search.UserSearchIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class UserSearchIndexTest {
+
+    private UserSearchIndex userSearchIndex;
+
+    @BeforeEach
+    void setUp() {
+        userSearchIndex = new UserSearchIndex(null, null);
+        userSearchIndex.put(new UserDto(1L, "John Doe", "john.doe@example.com", List.of("ROLE_USER")));
+        userSearchIndex.put(new UserDto(2L, "Jane Doe", "jane.doe@example.com", List.of("ROLE_USER")));
+        userSearchIndex.put(new UserDto(3L, "Johnny Walker", "walker@example.com", List.of("ROLE_USER")));
+    }
+
+    @Test
+    void testSearch_Prefix_ShouldRankExactMatchFirst() {
+        UserSearchIndex.Hits hits = userSearchIndex.search("JOHN DOE", SearchMode.PREFIX, 0, 10);
+
+        assertThat(hits.ids()).containsExactly(1L);
+        assertThat(hits.total()).isEqualTo(1);
+    }
+
+    @Test
+    void testSearch_Prefix_ShouldMatchNameWordsAndEmails() {
+        assertThat(userSearchIndex.search("john", SearchMode.PREFIX, 0, 10).ids()).containsExactly(1L, 3L);
+        assertThat(userSearchIndex.search("doe", SearchMode.PREFIX, 0, 10).ids()).containsExactly(2L, 1L);
+        assertThat(userSearchIndex.search("walker@", SearchMode.PREFIX, 0, 10).ids()).containsExactly(3L);
+    }
+
+    @Test
+    void testSearch_Fuzzy_ShouldTolerateTypos() {
+        assertThat(userSearchIndex.search("jhon doe", SearchMode.PREFIX, 0, 10).ids()).isEmpty();
+        assertThat(userSearchIndex.search("jhon doe", SearchMode.FUZZY, 0, 10).ids()).startsWith(1L);
+    }
+
+    @Test
+    void testSearch_ShouldPage() {
+        UserSearchIndex.Hits hits = userSearchIndex.search("j", SearchMode.PREFIX, 1, 2);
+
+        assertThat(hits.ids()).containsExactly(3L);
+        assertThat(hits.total()).isEqualTo(3);
+    }
+
+    @Test
+    void testOnUserChanged_ShouldReplaceAndRemoveUsers() {
+        userSearchIndex.onUserChanged(UserChangedEvent.updated(
+                new UserDto(1L, "Jack Smith", "jack.smith@example.com", List.of("ROLE_USER"))));
+        userSearchIndex.onUserChanged(UserChangedEvent.deleted(2L));
+
+        assertThat(userSearchIndex.search("doe", SearchMode.PREFIX, 0, 10).ids()).isEmpty();
+        assertThat(userSearchIndex.search("smith", SearchMode.PREFIX, 0, 10).ids()).containsExactly(1L);
+        assertThat(userSearchIndex.size()).isEqualTo(2);
+    }
+}
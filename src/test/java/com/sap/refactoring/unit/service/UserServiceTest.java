@@ -1,26 +1,45 @@
 package com.sap.refactoring.unit.service;
 
+import com.sap.refactoring.cache.UserCache;
 import com.sap.refactoring.entity.UserEntity;
+import com.sap.refactoring.event.UserChangedEvent;
 import com.sap.refactoring.exceptions.InvalidUserException;
 import com.sap.refactoring.exceptions.UserNotFoundException;
+import com.sap.refactoring.exceptions.UserVersionConflictException;
 import com.sap.refactoring.mapper.UserMapper;
+import com.sap.refactoring.model.CursorPage;
+import com.sap.refactoring.model.EnrollmentResult;
 import com.sap.refactoring.model.UserDto;
 import com.sap.refactoring.repository.UserRepository;
+import com.sap.refactoring.repository.projection.UserRoleRow;
+import com.sap.refactoring.repository.projection.UserRow;
+import com.sap.refactoring.routing.ReplicaRouting;
 import com.sap.refactoring.service.UserService;
+import com.sap.refactoring.writebehind.UserUpdateQueue;
+import jakarta.persistence.EntityManager;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
 
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Supplier;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
@@ -33,6 +52,21 @@ public class UserServiceTest {
     @Mock
     private UserMapper userMapper;
 
+    @Mock
+    private UserCache userCache;
+
+    @Mock
+    private EntityManager entityManager;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private UserUpdateQueue userUpdateQueue;
+
+    @Mock
+    private ReplicaRouting replicaRouting;
+
     @InjectMocks
     private UserService userService;
 
@@ -60,6 +94,7 @@ public class UserServiceTest {
         assertThat(result).isEqualTo(userDto);
         verify(userRepository).save(userEntity);
         verify(userMapper).toDto(userEntity);
+        verify(eventPublisher).publishEvent(UserChangedEvent.created(userDto));
     }
 
     @Test
@@ -74,17 +109,131 @@ public class UserServiceTest {
         verify(userRepository).save(userEntity);
     }
 
+    @Test
+    void testAddUser_WhenEmailConstraintIsViolated_ShouldThrowDuplicateEmailException() {
+        when(userMapper.toEntity(userDto)).thenReturn(userEntity);
+        when(userRepository.save(userEntity)).thenReturn(userEntity);
+        doThrow(new DataIntegrityViolationException("could not execute statement",
+                new RuntimeException("Unique index or primary key violation: \"PUBLIC.UK_USERS_EMAIL_INDEX_4 ON PUBLIC.USERS(EMAIL)\"")))
+                .when(userRepository).flush();
+
+        assertThatThrownBy(() -> userService.addUser(userDto))
+                .isInstanceOf(InvalidUserException.class)
+                .hasMessage("A user with this email already exists.");
+
+        verify(userRepository, never()).findByEmail(any());
+    }
+
+    @Test
+    void testUpdateUser_WhenNewEmailIsTaken_ShouldThrowDuplicateEmailException() {
+        UserDto changedEmail = new UserDto(1L, "John Doe", "taken@example.com", List.of("ROLE_USER"));
+        when(userRepository.findById(userDto.getId())).thenReturn(Optional.of(userEntity));
+        when(userRepository.save(userEntity)).thenThrow(new DataIntegrityViolationException("could not execute statement",
+                new RuntimeException("duplicate key value violates unique constraint \"uk_users_email\"")));
+
+        assertThatThrownBy(() -> userService.updateUser(userDto.getId(), changedEmail))
+                .isInstanceOf(InvalidUserException.class)
+                .hasMessage("A user with this email already exists.");
+
+        verify(userRepository, never()).findByEmail(any());
+    }
+
+    @Test
+    void testAddUsers_ShouldInsertValidUsersAndReportFailuresPerItem() {
+        UserDto taken = new UserDto(null, "Taken", "taken@example.com", List.of("ROLE_USER"));
+        UserDto noRoles = new UserDto(null, "No Roles", "no.roles@example.com", List.of());
+        UserDto repeated = new UserDto(null, "Repeated", "john.doe@example.com", List.of("ROLE_USER"));
+        when(userRepository.findExistingEmails(Set.of("john.doe@example.com", "taken@example.com")))
+                .thenReturn(Set.of("taken@example.com"));
+        when(userMapper.toEntity(userDto)).thenReturn(userEntity);
+        when(userMapper.toDto(userEntity)).thenReturn(userDto);
+
+        List<EnrollmentResult> results = userService.addUsers(Arrays.asList(userDto, taken, noRoles, repeated));
+
+        assertThat(results).extracting(EnrollmentResult::getStatus).containsExactly(
+                EnrollmentResult.Status.CREATED,
+                EnrollmentResult.Status.FAILED,
+                EnrollmentResult.Status.FAILED,
+                EnrollmentResult.Status.FAILED);
+        assertThat(results.get(1).getError()).isEqualTo("A user with this email already exists.");
+        assertThat(results.get(2).getError()).isEqualTo("User must have at least one role.");
+        assertThat(results.get(3).getError()).isEqualTo("Email is repeated within the batch.");
+        verify(userRepository).saveAll(List.of(userEntity));
+        verify(userRepository).flush();
+    }
+
+    @Test
+    void testAddUsers_WhenBatchIsEmpty_ShouldThrowInvalidUserException() {
+        assertThatThrownBy(() -> userService.addUsers(List.of()))
+                .isInstanceOf(InvalidUserException.class);
+
+        verify(userRepository, never()).saveAll(any());
+    }
+
+    @Test
+    void testAddUsers_WhenInsertViolatesConstraint_ShouldThrowInvalidUserException() {
+        when(userRepository.findExistingEmails(Set.of("john.doe@example.com"))).thenReturn(Set.of());
+        when(userMapper.toEntity(userDto)).thenReturn(userEntity);
+        when(userRepository.saveAll(any())).thenThrow(new DataIntegrityViolationException("Duplicate email"));
+
+        assertThatThrownBy(() -> userService.addUsers(List.of(userDto)))
+                .isInstanceOf(InvalidUserException.class)
+                .hasMessage("User data is invalid or violates integrity constraints.");
+    }
+
     @Test
     void testUpdateUser_WhenUserExists_ShouldUpdateAndReturnUserDto() throws UserNotFoundException {
+        UserDto renamed = new UserDto(1L, "John Renamed", "john.doe@example.com", List.of("ROLE_USER", "ROLE_ADMIN"));
         when(userRepository.findById(userDto.getId())).thenReturn(Optional.of(userEntity));
         when(userRepository.save(userEntity)).thenReturn(userEntity);
+        when(userMapper.toDto(userEntity)).thenReturn(renamed);
+
+        UserDto result = userService.updateUser(userDto.getId(), renamed);
+
+        assertThat(result).isEqualTo(renamed);
+        assertThat(userEntity.getRoles()).containsExactly("ROLE_ADMIN", "ROLE_USER");
+        verify(userRepository).save(userEntity);
+        verify(userMapper).toDto(userEntity);
+    }
+
+    @Test
+    void testUpdateUser_WhenNothingChanged_ShouldNotWrite() {
+        UserDto reordered = new UserDto(1L, "John Doe", "john.doe@example.com", List.of("ROLE_USER", "ROLE_USER"));
+        when(userRepository.findById(userDto.getId())).thenReturn(Optional.of(userEntity));
         when(userMapper.toDto(userEntity)).thenReturn(userDto);
 
-        UserDto result = userService.updateUser(userDto.getId(), userDto);
+        UserDto result = userService.updateUser(userDto.getId(), reordered);
 
         assertThat(result).isEqualTo(userDto);
+        verify(userRepository, never()).save(any());
+        verify(userRepository, never()).flush();
+        verify(userCache, never()).invalidate(any(), any());
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    void testPatchUser_ShouldKeepFieldsMissingFromPatch() {
+        UserDto patch = new UserDto(null, null, null, List.of("ROLE_ADMIN"));
+        when(userRepository.findById(userDto.getId())).thenReturn(Optional.of(userEntity));
+        when(userRepository.save(userEntity)).thenReturn(userEntity);
+        when(userMapper.toDto(userEntity)).thenReturn(userDto);
+
+        userService.patchUser(userDto.getId(), patch, null);
+
+        assertThat(userEntity.getName()).isEqualTo("John Doe");
+        assertThat(userEntity.getEmail()).isEqualTo("john.doe@example.com");
+        assertThat(userEntity.getRoles()).containsExactly("ROLE_ADMIN");
         verify(userRepository).save(userEntity);
-        verify(userMapper).toDto(userEntity);
+    }
+
+    @Test
+    void testPatchUser_WithBlankRole_ShouldThrowInvalidUserException() {
+        when(userRepository.findById(userDto.getId())).thenReturn(Optional.of(userEntity));
+
+        assertThatThrownBy(() -> userService.patchUser(userDto.getId(), new UserDto(null, null, null, List.of(" ")), null))
+                .isInstanceOf(InvalidUserException.class);
+
+        verify(userRepository, never()).save(any());
     }
 
     @Test
@@ -98,24 +247,51 @@ public class UserServiceTest {
         verify(userRepository, never()).save(any());
     }
 
+    @Test
+    void testUpdateUser_WhenVersionIsStale_ShouldThrowUserVersionConflictException() {
+        userEntity.setVersion(3L);
+        when(userRepository.findById(userDto.getId())).thenReturn(Optional.of(userEntity));
+
+        assertThatThrownBy(() -> userService.updateUser(userDto.getId(), userDto, 2L))
+                .isInstanceOf(UserVersionConflictException.class)
+                .hasMessageContaining("version 2");
+
+        verify(userRepository, never()).save(any());
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
     @Test
     void testDeleteUser_WhenUserExists_ShouldReturnTrue() {
-        when(userRepository.findById(userEntity.getId())).thenReturn(Optional.of(userEntity));
+        when(userRepository.deleteLiveById(userEntity.getId())).thenReturn(1);
 
         boolean result = userService.deleteUser(userEntity.getId());
 
         assertThat(result).isTrue();
-        verify(userRepository).deleteById(userEntity.getId());
+        verify(userRepository, never()).findById(anyLong());
+        verify(userCache).invalidate(userEntity.getId(), null);
+        verify(eventPublisher).publishEvent(UserChangedEvent.deleted(userEntity.getId()));
     }
 
     @Test
     void testDeleteUser_WhenUserNotFound_ShouldReturnFalse() {
-        when(userRepository.findById(userEntity.getId())).thenReturn(Optional.empty());
+        when(userRepository.deleteLiveById(userEntity.getId())).thenReturn(0);
 
         boolean result = userService.deleteUser(userEntity.getId());
 
         assertThat(result).isFalse();
-        verify(userRepository, never()).deleteById(userEntity.getId());
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    void testDeleteUser_WithSoftDelete_ShouldOnlyMarkUser() {
+        ReflectionTestUtils.setField(userService, "softDelete", true);
+        when(userRepository.markDeletedById(userEntity.getId())).thenReturn(1);
+
+        boolean result = userService.deleteUser(userEntity.getId());
+
+        assertThat(result).isTrue();
+        verify(userRepository, never()).deleteLiveById(anyLong());
+        verify(eventPublisher).publishEvent(UserChangedEvent.deleted(userEntity.getId()));
     }
 
     @Test
@@ -130,6 +306,92 @@ public class UserServiceTest {
         verify(userMapper).toDto(userEntity);
     }
 
+    @Test
+    void testFindUserById_WhenUserIsCached_ShouldNotQueryRepository() {
+        when(userCache.findById(userEntity.getId())).thenReturn(Optional.of(userDto));
+
+        UserDto result = userService.findUserById(userEntity.getId());
+
+        assertThat(result).isEqualTo(userDto);
+        verify(userRepository, never()).findById(any());
+    }
+
+    @Test
+    void testFindUserById_WhenUserIsLoaded_ShouldPopulateCache() {
+        when(userRepository.findById(userEntity.getId())).thenReturn(Optional.of(userEntity));
+        when(userMapper.toDto(userEntity)).thenReturn(userDto);
+
+        userService.findUserById(userEntity.getId());
+
+        verify(userCache).put(userDto, 0L);
+    }
+
+    @Test
+    void testFindUserById_WhenRecentlyChanged_ShouldReadPrimaryAndNotPopulateCache() {
+        when(replicaRouting.mayBeStale(userEntity.getId())).thenReturn(true);
+        when(replicaRouting.onPrimary(any())).thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(0).get());
+        when(userRepository.findById(userEntity.getId())).thenReturn(Optional.of(userEntity));
+        when(userMapper.toDto(userEntity)).thenReturn(userDto);
+
+        UserDto result = userService.findUserById(userEntity.getId());
+
+        assertThat(result).isEqualTo(userDto);
+        verify(replicaRouting).onPrimary(any());
+        verify(userCache, never()).put(any(), anyLong());
+    }
+
+    @Test
+    void testFindUserById_WhenUpdateIsQueued_ShouldReturnQueuedData() {
+        UserDto queued = new UserDto(1L, "John Queued", "john.doe@example.com", List.of("ROLE_USER"));
+        when(userCache.findById(userEntity.getId())).thenReturn(Optional.of(userDto));
+        when(userUpdateQueue.findPending(userEntity.getId())).thenReturn(Optional.of(queued));
+
+        UserDto result = userService.findUserById(userEntity.getId());
+
+        assertThat(result).isEqualTo(queued);
+    }
+
+    @Test
+    void testSubmitUpdate_WithoutRoles_ShouldThrowAndNotQueue() {
+        UserDto invalid = new UserDto(1L, "John Doe", "john.doe@example.com", List.of());
+
+        assertThatThrownBy(() -> userService.submitUpdate(1L, invalid)).isInstanceOf(InvalidUserException.class);
+        verify(userUpdateQueue, never()).submit(any(), any());
+    }
+
+    @Test
+    void testUpdateUsers_ShouldApplyFoundUsersAndReportMissingOnes() {
+        Map<Long, UserDto> updates = new LinkedHashMap<>();
+        updates.put(1L, new UserDto(1L, "John Changed", "john.doe@example.com", List.of("ROLE_ADMIN")));
+        updates.put(2L, new UserDto(2L, "Ghost", "ghost@example.com", List.of("ROLE_USER")));
+        when(userRepository.findAllById(updates.keySet())).thenReturn(List.of(userEntity));
+        when(userMapper.toDto(userEntity)).thenReturn(updates.get(1L));
+
+        Map<Long, String> failures = userService.updateUsers(updates);
+
+        assertThat(userEntity.getName()).isEqualTo("John Changed");
+        assertThat(userEntity.getRoles()).containsExactly("ROLE_ADMIN");
+        assertThat(failures).containsOnlyKeys(2L);
+        verify(userRepository).saveAll(List.of(userEntity));
+        verify(userRepository).flush();
+        verify(userCache).invalidate(1L, "John Doe");
+        verify(userCache).invalidate(null, "John Changed");
+        verify(eventPublisher).publishEvent(UserChangedEvent.updated(updates.get(1L)));
+    }
+
+    @Test
+    void testUpdateUser_ShouldInvalidatePreviousCacheKeys() {
+        UserDto changedEmail = new UserDto(1L, "John Doe", "john.new@example.com", List.of("ROLE_USER"));
+        when(userRepository.findById(userDto.getId())).thenReturn(Optional.of(userEntity));
+        when(userRepository.save(userEntity)).thenReturn(userEntity);
+        when(userMapper.toDto(userEntity)).thenReturn(changedEmail);
+
+        userService.updateUser(userDto.getId(), changedEmail);
+
+        verify(userCache).invalidate(1L, "John Doe");
+        verify(eventPublisher).publishEvent(UserChangedEvent.updated(changedEmail));
+    }
+
     @Test
     void testFindUserById_WhenUserNotFound_ShouldThrowUserNotFoundException() {
         when(userRepository.findById(userEntity.getId())).thenReturn(Optional.empty());
@@ -143,35 +405,135 @@ public class UserServiceTest {
 
     @Test
     void testGetAllUsers_ShouldReturnListOfUserDto() {
-        when(userRepository.findAll()).thenReturn(List.of(userEntity));
-        when(userMapper.toDto(userEntity)).thenReturn(userDto);
+        List<UserRow> rows = List.of(new UserRow(1L, "John Doe", "john.doe@example.com"));
+        List<UserRoleRow> roles = List.of(new UserRoleRow(1L, "ROLE_USER"));
+        when(userRepository.findAllRows()).thenReturn(rows);
+        when(userRepository.findAllRoleRows()).thenReturn(roles);
+        when(userMapper.toDtos(rows, roles)).thenReturn(List.of(userDto));
 
         List<UserDto> result = userService.getAllUsers();
 
         assertThat(result).containsExactly(userDto);
-        verify(userRepository).findAll();
-        verify(userMapper).toDto(userEntity);
+        verify(userRepository, never()).findAll();
     }
 
     @Test
     void testFindUserByName_WhenUserExists_ShouldReturnUserDto() {
-        when(userRepository.findByName(userEntity.getName())).thenReturn(Optional.of(userEntity));
+        when(userRepository.findAllByNameOrderByIdAsc(userEntity.getName())).thenReturn(List.of(userEntity));
         when(userMapper.toDto(userEntity)).thenReturn(userDto);
 
         UserDto result = userService.findUserByName(userEntity.getName());
 
         assertThat(result).isEqualTo(userDto);
-        verify(userRepository).findByName(userEntity.getName());
+        verify(userRepository).findAllByNameOrderByIdAsc(userEntity.getName());
         verify(userMapper).toDto(userEntity);
     }
 
+    @Test
+    void testFindUserByName_WhenNameIsShared_ShouldReturnLowestId() {
+        UserEntity namesake = new UserEntity();
+        namesake.setId(7L);
+        namesake.setName(userEntity.getName());
+        when(userRepository.findAllByNameOrderByIdAsc(userEntity.getName())).thenReturn(List.of(userEntity, namesake));
+        when(userMapper.toDto(userEntity)).thenReturn(userDto);
+
+        UserDto result = userService.findUserByName(userEntity.getName());
+
+        assertThat(result).isEqualTo(userDto);
+    }
+
+    @Test
+    void testFindUsersByIds_ShouldCombineCacheAndDatabaseInRequestedOrder() {
+        UserDto cached = new UserDto(2L, "Jane Doe", "jane.doe@example.com", List.of("ROLE_USER"));
+        List<UserRow> rows = List.of(new UserRow(1L, "John Doe", "john.doe@example.com"));
+        List<UserRoleRow> roles = List.of(new UserRoleRow(1L, "ROLE_USER"));
+        when(userCache.findById(2L)).thenReturn(Optional.of(cached));
+        when(userRepository.findRowsByIds(List.of(1L, 3L))).thenReturn(rows);
+        when(userRepository.findRoleRowsByUserIds(List.of(1L, 3L))).thenReturn(roles);
+        when(userMapper.toDtos(rows, roles)).thenReturn(List.of(userDto));
+
+        List<UserDto> result = userService.findUsersByIds(List.of(2L, 1L, 3L));
+
+        assertThat(result).containsExactly(cached, userDto);
+    }
+
+    @Test
+    void testFindUserByName_WhenUserIsCached_ShouldNotQueryRepository() {
+        when(userCache.findByName(userEntity.getName())).thenReturn(Optional.of(userDto));
+
+        UserDto result = userService.findUserByName(userEntity.getName());
+
+        assertThat(result).isEqualTo(userDto);
+        verify(userRepository, never()).findAllByNameOrderByIdAsc(any());
+    }
+
+    @Test
+    void testFindUserByName_WhenUserIsLoaded_ShouldCacheItForTheName() {
+        when(userRepository.findAllByNameOrderByIdAsc(userEntity.getName())).thenReturn(List.of(userEntity));
+        when(userMapper.toDto(userEntity)).thenReturn(userDto);
+
+        userService.findUserByName(userEntity.getName());
+
+        verify(userCache).putForName(userDto, 0L);
+        verify(userCache, never()).put(any(), anyLong());
+    }
+
     @Test
     void testFindUserByName_WhenUserNotFound_ShouldReturnNull() {
-        when(userRepository.findByName(userEntity.getName())).thenReturn(Optional.empty());
+        when(userRepository.findAllByNameOrderByIdAsc(userEntity.getName())).thenReturn(List.of());
 
         UserDto result = userService.findUserByName(userEntity.getName());
 
         assertThat(result).isNull();
-        verify(userRepository).findByName(userEntity.getName());
+        verify(userRepository).findAllByNameOrderByIdAsc(userEntity.getName());
+    }
+
+    @Test
+    void testGetUsersPage_WhenMoreUsersFollow_ShouldReturnNextCursor() {
+        UserRow first = new UserRow(1L, "John Doe", "john.doe@example.com");
+        UserRow second = new UserRow(2L, "Jane Doe", "jane.doe@example.com");
+        List<UserRoleRow> roles = List.of(new UserRoleRow(1L, "ROLE_USER"));
+        when(userRepository.findRowPageAfter(0L, PageRequest.ofSize(2))).thenReturn(List.of(first, second));
+        when(userRepository.findRoleRowsByUserIds(List.of(1L))).thenReturn(roles);
+        when(userMapper.toDtos(List.of(first), roles)).thenReturn(List.of(userDto));
+
+        CursorPage<UserDto> page = userService.getUsersPage(null, 1);
+
+        assertThat(page.getItems()).containsExactly(userDto);
+        assertThat(page.getNext()).isNotNull();
+
+        when(userRepository.findRowPageAfter(1L, PageRequest.ofSize(2))).thenReturn(List.of());
+        assertThat(userService.getUsersPage(page.getNext(), 1).getItems()).isEmpty();
+    }
+
+    @Test
+    void testGetUsersPage_WhenLastPage_ShouldReturnNoCursor() {
+        List<UserRow> rows = List.of(new UserRow(1L, "John Doe", "john.doe@example.com"));
+        List<UserRoleRow> roles = List.of(new UserRoleRow(1L, "ROLE_USER"));
+        when(userRepository.findRowPageAfter(0L, PageRequest.ofSize(11))).thenReturn(rows);
+        when(userRepository.findRoleRowsByUserIds(List.of(1L))).thenReturn(roles);
+        when(userMapper.toDtos(rows, roles)).thenReturn(List.of(userDto));
+
+        CursorPage<UserDto> page = userService.getUsersPage(null, 10);
+
+        assertThat(page.getItems()).containsExactly(userDto);
+        assertThat(page.getNext()).isNull();
+    }
+
+    @Test
+    void testGetUsersPage_WhenCursorIsMalformed_ShouldThrowIllegalArgumentException() {
+        assertThatThrownBy(() -> userService.getUsersPage("not-a-cursor!", 10))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Invalid page cursor.");
+
+        verify(userRepository, never()).findRowPageAfter(anyLong(), any());
+    }
+
+    @Test
+    void testGetUsersPage_WhenLimitOutOfRange_ShouldThrowIllegalArgumentException() {
+        assertThatThrownBy(() -> userService.getUsersPage(null, 0))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> userService.getUsersPage(null, UserService.MAX_PAGE_SIZE + 1))
+                .isInstanceOf(IllegalArgumentException.class);
     }
 }
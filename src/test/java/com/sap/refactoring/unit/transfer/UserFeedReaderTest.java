@@ -0,0 +1,92 @@
+package com.sap.refactoring.unit.transfer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sap.refactoring.model.UserDto;
+import com.sap.refactoring.transfer.UserFeedReader;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class UserFeedReaderTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void testCsv_ShouldHandleQuotesLineBreaksAndColumnOrder() throws IOException {
+        String csv = "email,name,roles\r\n"
+                + "john.doe@example.com,John Doe,USER;ADMIN\r\n"
+                + "\r\n"
+                + "\"jane@example.com\",\"Doe, \"\"Jane\"\"\n Second line\", USER \n"
+                + "bob@example.com,Bob,USER";
+
+        List<UserFeedReader.Record> records = readAll(UserFeedReader.TEXT_CSV, csv);
+
+        assertThat(records).extracting(UserFeedReader.Record::line).containsExactly(2L, 4L, 6L);
+        assertThat(records.get(0).toUser())
+                .isEqualTo(new UserDto(null, "John Doe", "john.doe@example.com", List.of("USER", "ADMIN")));
+        assertThat(records.get(1).toUser())
+                .isEqualTo(new UserDto(null, "Doe, \"Jane\"\n Second line", "jane@example.com", List.of("USER")));
+        assertThat(records.get(2).toUser().getEmail()).isEqualTo("bob@example.com");
+    }
+
+    @Test
+    void testCsv_MalformedRow_ShouldFailOnlyThatRecord() throws IOException {
+        List<UserFeedReader.Record> records = readAll(UserFeedReader.TEXT_CSV,
+                "name,email,roles\nNo Roles,noroles@example.com\nOk,ok@example.com,\n");
+
+        assertThatThrownBy(() -> records.get(0).toUser())
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Expected 3 fields, found 2.");
+        assertThat(records.get(1).toUser().getRoles()).isEmpty();
+    }
+
+    @Test
+    void testCsv_MissingColumnOrUnterminatedQuote_ShouldFail() {
+        assertThatThrownBy(() -> readAll(UserFeedReader.TEXT_CSV, "name,email\nJohn,john@example.com\n"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("header");
+        assertThatThrownBy(() -> readAll(UserFeedReader.TEXT_CSV, "name,email,roles\n\"John,john@example.com,USER\n"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("line 2");
+    }
+
+    @Test
+    void testNdjson_ShouldDecodeLinesAndReportMalformedOnes() throws IOException {
+        String ndjson = "{\"id\":7,\"name\":\"John Doe\",\"email\":\"john.doe@example.com\",\"roles\":[\"USER\"]}\n"
+                + "\n"
+                + "{\"name\":\"broken\"\n"
+                + "{\"name\":\"Jane\",\"email\":\"jane@example.com\",\"roles\":[\"ADMIN\"]}\n";
+
+        List<UserFeedReader.Record> records = readAll(MediaType.APPLICATION_NDJSON, ndjson);
+
+        assertThat(records).extracting(UserFeedReader.Record::line).containsExactly(1L, 3L, 4L);
+        assertThat(records.get(0).toUser())
+                .isEqualTo(new UserDto(null, "John Doe", "john.doe@example.com", List.of("USER")));
+        assertThatThrownBy(() -> records.get(1).toUser())
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageStartingWith("Malformed JSON");
+        assertThat(records.get(2).toUser().getEmail()).isEqualTo("jane@example.com");
+    }
+
+    @Test
+    void testOpen_UnsupportedType_ShouldFail() {
+        assertThatThrownBy(() -> UserFeedReader.open(MediaType.APPLICATION_XML, new StringReader(""), objectMapper))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private List<UserFeedReader.Record> readAll(MediaType mediaType, String content) throws IOException {
+        UserFeedReader reader = UserFeedReader.open(mediaType, new StringReader(content), objectMapper);
+        List<UserFeedReader.Record> records = new ArrayList<>();
+        for (UserFeedReader.Record record = reader.read(); record != null; record = reader.read()) {
+            records.add(record);
+        }
+        return records;
+    }
+}
@@ -0,0 +1,106 @@
+package com.sap.refactoring.unit.transfer;
+
+import com.sap.refactoring.model.UserDto;
+import com.sap.refactoring.transfer.UserRecordReader;
+import com.sap.refactoring.transfer.UserRecordWriter;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class UserRecordFormatTest {
+
+    @Test
+    void testRoundTrip_ShouldPreserveUsers() throws IOException {
+        List<UserDto> users = List.of(
+                new UserDto(1L, "John Doe", "john.doe@example.com", List.of("USER", "ADMIN")),
+                new UserDto(2L, "J\u00fcrgen M\u00fcller", "juergen@example.com", List.of()),
+                new UserDto(3L, "x".repeat(100_000), "long.name@example.com", List.of("USER")));
+
+        assertThat(readAll(write(users))).isEqualTo(users);
+    }
+
+    @Test
+    void testRead_ShouldStreamManyUsersThroughSmallBuffers() throws IOException {
+        List<UserDto> users = new ArrayList<>();
+        for (long i = 0; i < 20_000; i++) {
+            users.add(new UserDto(i, "User " + i, "user" + i + "@example.com", List.of("USER")));
+        }
+
+        assertThat(readAll(write(users))).isEqualTo(users);
+    }
+
+    @Test
+    void testRead_TruncatedStream_ShouldFail() throws IOException {
+        byte[] bytes = write(List.of(new UserDto(1L, "John Doe", "john.doe@example.com", List.of("USER"))));
+        UserRecordReader reader = reader(Arrays.copyOf(bytes, bytes.length - 3));
+
+        assertThat(reader.read()).isNotNull();
+        assertThatThrownBy(reader::read)
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("truncated");
+    }
+
+    @Test
+    void testRead_ForgedStringLength_ShouldFailWithoutAllocatingIt() {
+        byte[] bytes = ByteBuffer.allocate(4 + 1 + 8 + 4)
+                .putInt(UserRecordWriter.MAGIC)
+                .put((byte) 1)
+                .putLong(1L)
+                .putInt(Integer.MAX_VALUE)
+                .array();
+
+        assertThatThrownBy(() -> reader(bytes).read())
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("larger than " + UserRecordReader.MAX_USER_SIZE + " bytes");
+    }
+
+    @Test
+    void testWrite_MoreRolesThanTheCountHolds_ShouldFail() {
+        UserDto user = new UserDto(1L, "John Doe", "john.doe@example.com", Collections.nCopies(0x10000, "USER"));
+
+        assertThatThrownBy(() -> write(List.of(user)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("65536 roles");
+    }
+
+    @Test
+    void testRead_OtherContent_ShouldFail() {
+        assertThatThrownBy(() -> reader("[{\"name\":\"John\"}]".getBytes()).read())
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Not a user export stream.");
+    }
+
+    private static byte[] write(List<UserDto> users) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        UserRecordWriter writer = new UserRecordWriter(Channels.newChannel(out));
+        for (UserDto user : users) {
+            writer.write(user);
+        }
+        writer.finish();
+        return out.toByteArray();
+    }
+
+    private static List<UserDto> readAll(byte[] bytes) throws IOException {
+        UserRecordReader reader = reader(bytes);
+        List<UserDto> users = new ArrayList<>();
+        for (UserDto user = reader.read(); user != null; user = reader.read()) {
+            users.add(user);
+        }
+        return users;
+    }
+
+    private static UserRecordReader reader(byte[] bytes) {
+        return new UserRecordReader(Channels.newChannel(new ByteArrayInputStream(bytes)));
+    }
+}
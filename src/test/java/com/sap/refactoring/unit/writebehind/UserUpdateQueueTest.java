@@ -0,0 +1,122 @@
+package com.sap.refactoring.unit.writebehind;
+
+import com.sap.refactoring.exceptions.WriteBehindQueueFullException;
+import com.sap.refactoring.model.UpdateTicket;
+import com.sap.refactoring.model.UserDto;
+import com.sap.refactoring.writebehind.UserUpdateQueue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class UserUpdateQueueTest {
+
+    private UserUpdateQueue userUpdateQueue;
+
+    @BeforeEach
+    void setUp() {
+        userUpdateQueue = new UserUpdateQueue(2, Duration.ofMinutes(1));
+    }
+
+    @Test
+    void testSubmit_SameUserTwice_ShouldCoalesceAndCompleteBothTickets() {
+        UpdateTicket first = userUpdateQueue.submit(1L, user("First"));
+        UpdateTicket second = userUpdateQueue.submit(1L, user("Second"));
+
+        List<UserUpdateQueue.PendingUpdate> batch = userUpdateQueue.drain(10);
+
+        assertThat(batch).hasSize(1);
+        assertThat(batch.get(0).user().getName()).isEqualTo("Second");
+        userUpdateQueue.complete(batch.get(0), null);
+        assertThat(userUpdateQueue.findTicket(first.getTicket())).get()
+                .extracting(UpdateTicket::getStatus).isEqualTo(UpdateTicket.Status.APPLIED);
+        assertThat(userUpdateQueue.findTicket(second.getTicket())).get()
+                .extracting(UpdateTicket::getStatus).isEqualTo(UpdateTicket.Status.APPLIED);
+    }
+
+    @Test
+    void testSubmit_WhenFull_ShouldRejectNewUsersButCoalesceQueuedOnes() {
+        userUpdateQueue.submit(1L, user("One"));
+        userUpdateQueue.submit(2L, user("Two"));
+
+        assertThatThrownBy(() -> userUpdateQueue.submit(3L, user("Three")))
+                .isInstanceOf(WriteBehindQueueFullException.class);
+        userUpdateQueue.submit(2L, user("Two again"));
+        assertThat(userUpdateQueue.size()).isEqualTo(2);
+    }
+
+    @Test
+    void testFindPending_ShouldSeeUpdatesUntilCompleted() {
+        userUpdateQueue.submit(1L, user("Pending"));
+        assertThat(userUpdateQueue.findPending(1L)).get().extracting(UserDto::getName).isEqualTo("Pending");
+
+        UserUpdateQueue.PendingUpdate update = userUpdateQueue.drain(10).get(0);
+        assertThat(userUpdateQueue.findPending(1L)).get().extracting(UserDto::getName).isEqualTo("Pending");
+
+        userUpdateQueue.complete(update, "User with ID 1 not found.");
+        assertThat(userUpdateQueue.findPending(1L)).isEmpty();
+    }
+
+    @Test
+    void testComplete_WithError_ShouldMarkTicketFailed() {
+        UpdateTicket ticket = userUpdateQueue.submit(1L, user("Failing"));
+
+        userUpdateQueue.complete(userUpdateQueue.drain(10).get(0), "A user with this email already exists.");
+
+        assertThat(userUpdateQueue.findTicket(ticket.getTicket())).get()
+                .satisfies(status -> {
+                    assertThat(status.getStatus()).isEqualTo(UpdateTicket.Status.FAILED);
+                    assertThat(status.getError()).isEqualTo("A user with this email already exists.");
+                });
+    }
+
+    @Test
+    void testWithdraw_ThenSupersede_ShouldHideUpdateAndFailItsTickets() {
+        UpdateTicket ticket = userUpdateQueue.submit(1L, user("Queued"));
+
+        UserUpdateQueue.PendingUpdate withdrawn = userUpdateQueue.withdraw(1L).orElseThrow();
+        assertThat(userUpdateQueue.findPending(1L)).isEmpty();
+        assertThat(userUpdateQueue.drain(10)).isEmpty();
+
+        userUpdateQueue.supersede(withdrawn);
+        assertThat(userUpdateQueue.findTicket(ticket.getTicket())).get()
+                .extracting(UpdateTicket::getStatus).isEqualTo(UpdateTicket.Status.FAILED);
+    }
+
+    @Test
+    void testRestore_ShouldQueueWithdrawnUpdateAgain() {
+        UpdateTicket ticket = userUpdateQueue.submit(1L, user("Queued"));
+
+        userUpdateQueue.restore(userUpdateQueue.withdraw(1L).orElseThrow());
+
+        List<UserUpdateQueue.PendingUpdate> batch = userUpdateQueue.drain(10);
+        assertThat(batch).extracting(update -> update.user().getName()).containsExactly("Queued");
+        assertThat(batch.get(0).tickets()).containsExactly(ticket.getTicket());
+    }
+
+    @Test
+    void testWithdraw_WhileUpdateIsBeingFlushed_ShouldReject() {
+        userUpdateQueue.submit(1L, user("In flight"));
+        userUpdateQueue.drain(10);
+
+        assertThatThrownBy(() -> userUpdateQueue.withdraw(1L))
+                .isInstanceOf(OptimisticLockingFailureException.class);
+    }
+
+    @Test
+    void testSubmit_AfterClose_ShouldReject() {
+        userUpdateQueue.close();
+
+        assertThatThrownBy(() -> userUpdateQueue.submit(1L, user("Late")))
+                .isInstanceOf(WriteBehindQueueFullException.class);
+    }
+
+    private static UserDto user(String name) {
+        return new UserDto(null, name, name.replace(' ', '.').toLowerCase() + "@example.com", List.of("ROLE_USER"));
+    }
+}
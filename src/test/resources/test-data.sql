@@ -1,6 +1,6 @@
 -- Insert into the main user table
-INSERT INTO users (id, name, email)
-VALUES (1, 'Test User', 'test.user@example.com');
+INSERT INTO users (id, name, email, version)
+VALUES (1, 'Test User', 'test.user@example.com', 0);
 
 -- Insert roles into the associated collection table
 INSERT INTO user_roles (user_id, role)